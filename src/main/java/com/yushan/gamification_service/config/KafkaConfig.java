@@ -2,18 +2,23 @@ package com.yushan.gamification_service.config;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
@@ -21,6 +26,7 @@ import org.springframework.util.backoff.FixedBackOff;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 
 /**
  * Kafka configuration for Gamification Service
@@ -64,6 +70,12 @@ public class KafkaConfig {
     @Value("${spring.kafka.consumer.auto-offset-reset:earliest}")
     private String autoOffsetReset;
 
+    @Value("${gamification.kafka.batch-listener.max-poll-records:500}")
+    private int batchMaxPollRecords;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
     /**
      * Consumer factory configuration
      */
@@ -87,9 +99,8 @@ public class KafkaConfig {
         configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
         configProps.put(ErrorHandlingDeserializer.KEY_DESERIALIZER_CLASS, StringDeserializer.class);
         
-        // Value deserializer with error handling - use String deserializer
-        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-        configProps.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, StringDeserializer.class);
+        // Values stay raw bytes; listeners bind them to typed events with precompiled readers
+        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
         
         // Trust all packages for deserialization
         configProps.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
@@ -107,20 +118,81 @@ public class KafkaConfig {
     public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        configureListenerThreads(factory);
         
-        // Configure error handler
+        // Listeners annotated with @NonBlockingRetry get their own retry-topic error handler;
+        // any other listener retries in place and then publishes the record to "<topic>.DLT"
         DefaultErrorHandler errorHandler = new DefaultErrorHandler(
-            (record, exception) -> {
-                // Log the error and continue processing
-                System.err.println("Failed to process message: " + record + ", Error: " + exception.getMessage());
-            },
-            new FixedBackOff(1000L, 3L) // Retry 3 times with 1 second delay
+            new DeadLetterPublishingRecoverer(deadLetterKafkaTemplate()),
+            new FixedBackOff(1000L, 3L)
         );
         factory.setCommonErrorHandler(errorHandler);
         
         return factory;
     }
 
+    /**
+     * Batch listener container factory (used when gamification.kafka.batch-listener.enabled=true).
+     * Listeners report a failing record with BatchListenerFailedException; that record is retried
+     * and then published to "<topic>.DLT" while the rest of the batch is committed or redelivered.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> batchKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
+        configureListenerThreads(factory);
+
+        Properties consumerOverrides = new Properties();
+        consumerOverrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(batchMaxPollRecords));
+        factory.getContainerProperties().setKafkaConsumerProperties(consumerOverrides);
+
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(deadLetterKafkaTemplate());
+        factory.setCommonErrorHandler(new DefaultErrorHandler(recoverer, new FixedBackOff(1000L, 3L)));
+
+        return factory;
+    }
+
+    /**
+     * Run each listener container's consumer thread as a virtual thread when spring.threads.virtual.enabled=true,
+     * so listeners blocked on JDBC, Redis or Kafka sends do not hold a platform thread
+     */
+    private void configureListenerThreads(ConcurrentKafkaListenerContainerFactory<String, Object> factory) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("kafka-listener-");
+            executor.setVirtualThreads(true);
+            factory.getContainerProperties().setListenerTaskExecutor(executor);
+        }
+    }
+
+    /**
+     * Producer factory for dead-letter publishing.
+     * Records are republished as-is (String payloads, or raw bytes when deserialization failed),
+     * so values must not go through the JsonSerializer used by kafkaTemplate.
+     */
+    @Bean
+    public ProducerFactory<Object, Object> deadLetterProducerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.CLIENT_ID_CONFIG, clientId + "-dlt");
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+
+        DelegatingByTypeSerializer serializer = new DelegatingByTypeSerializer(Map.of(
+            byte[].class, new ByteArraySerializer(),
+            String.class, new StringSerializer()
+        ));
+        return new DefaultKafkaProducerFactory<>(configProps, serializer, serializer);
+    }
+
+    /**
+     * Template for dead-letter, retry-topic and DLT replay publishing
+     */
+    @Bean
+    public KafkaTemplate<Object, Object> deadLetterKafkaTemplate() {
+        return new KafkaTemplate<>(deadLetterProducerFactory());
+    }
+
     /**
      * Producer factory configuration
      */
@@ -0,0 +1,22 @@
+package com.yushan.gamification_service.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.retrytopic.DeadLetterPublishingRecovererFactory;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationSupport;
+
+import java.util.function.Consumer;
+
+/**
+ * Infrastructure for the non-blocking retry topics used by the record listeners.
+ *
+ * Retry and DLT records are partitioned by their key instead of keeping the source partition,
+ * so the retry topics do not need as many partitions as the topics they serve.
+ */
+@Configuration
+public class KafkaRetryTopicConfig extends RetryTopicConfigurationSupport {
+
+    @Override
+    protected Consumer<DeadLetterPublishingRecovererFactory> configureDeadLetterPublishingContainerFactory() {
+        return factory -> factory.setPartitionResolver((record, nextTopic) -> null);
+    }
+}
@@ -1,19 +1,36 @@
 package com.yushan.gamification_service.controller;
 
 import com.yushan.gamification_service.dto.admin.AdminAddYuanRequestDTO;
+import com.yushan.gamification_service.dto.admin.AdminBulkAddYuanRequestDTO;
+import com.yushan.gamification_service.dto.admin.BulkJobDTO;
 import com.yushan.gamification_service.dto.common.ApiResponse;
+import com.yushan.gamification_service.dto.common.CursorPageResponseDTO;
 import com.yushan.gamification_service.dto.common.PageResponseDTO;
 import com.yushan.gamification_service.dto.transaction.AdminYuanTransactionDTO;
+import com.yushan.gamification_service.enums.ExportFormat;
+import com.yushan.gamification_service.service.AdminYuanBulkGrantService;
+import com.yushan.gamification_service.service.BulkJobService;
+import com.yushan.gamification_service.service.DeadLetterReplayService;
 import com.yushan.gamification_service.service.GamificationService;
+import com.yushan.gamification_service.service.LeaderboardService;
+import com.yushan.gamification_service.service.LedgerBulkIngestService;
+import com.yushan.gamification_service.service.YuanTransactionExportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.OffsetDateTime;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @Tag(name = "Admin Gamification Management", description = "Admin APIs for managing gamification system")
 @RestController
@@ -23,6 +40,24 @@ public class AdminGamificationController {
     @Autowired
     private GamificationService gamificationService;
 
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private YuanTransactionExportService yuanTransactionExportService;
+
+    @Autowired
+    private LedgerBulkIngestService ledgerBulkIngestService;
+
+    @Autowired
+    private BulkJobService bulkJobService;
+
+    @Autowired
+    private AdminYuanBulkGrantService adminYuanBulkGrantService;
+
+    @Autowired
+    private DeadLetterReplayService deadLetterReplayService;
+
     @Operation(summary = "[ADMIN] Get Yuan transactions", description = "Get all Yuan transactions with filtering options for admin monitoring")
     @GetMapping("/yuan/transactions")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
@@ -40,6 +75,53 @@ public class AdminGamificationController {
         return ApiResponse.success(pagedResponse);
     }
 
+    @Operation(summary = "[ADMIN] Get Yuan transactions (cursor)", description = "Browse Yuan transactions with keyset pagination; the total is only returned with includeTotal and is estimated when no filter is set")
+    @GetMapping("/yuan/transactions/cursor")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ApiResponse<CursorPageResponseDTO<AdminYuanTransactionDTO>> getYuanTransactionsPage(
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) OffsetDateTime startDate,
+            @RequestParam(required = false) OffsetDateTime endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal
+    ) {
+        return ApiResponse.success(gamificationService.findYuanTransactionsPageForAdmin(
+                userId, startDate, endDate, cursor, size, includeTotal));
+    }
+
+    @Operation(summary = "[ADMIN] Export Yuan transactions", description = "Stream all Yuan transactions matching the filters as NDJSON or CSV (gzip-encoded when the client accepts it)")
+    @GetMapping("/yuan/transactions/export")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public void exportYuanTransactions(
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) OffsetDateTime startDate,
+            @RequestParam(required = false) OffsetDateTime endDate,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"yuan-transactions." + exportFormat.getFileExtension() + "\"");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        // Written on the request thread, so the export is not cut off by the async request timeout
+        OutputStream body = gzip ? new GZIPOutputStream(response.getOutputStream(), 64 * 1024) : response.getOutputStream();
+        yuanTransactionExportService.export(userId, startDate, endDate, exportFormat, body);
+        if (body instanceof GZIPOutputStream gzipBody) {
+            gzipBody.finish();
+        }
+        body.flush();
+    }
+
     @Operation(summary = "[ADMIN] Add Yuan to user", description = "Add Yuan to user's balance by admin")
     @PostMapping("/yuan/add")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
@@ -51,4 +133,52 @@ public class AdminGamificationController {
         
         return ApiResponse.success(message);
     }
+
+    @Operation(summary = "[ADMIN] Bulk add Yuan", description = "Grant Yuan to many users; all grants are validated first, then written in chunks in the background. Poll the returned job for progress and failed chunks")
+    @PostMapping(value = "/yuan/bulk-add", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ApiResponse<BulkJobDTO> adminBulkAddYuan(@Valid @RequestBody AdminBulkAddYuanRequestDTO request) {
+        return ApiResponse.success("Bulk Yuan grant started", adminYuanBulkGrantService.submit(request.getGrants()));
+    }
+
+    @Operation(summary = "[ADMIN] Bulk add Yuan from file", description = "Same as the JSON variant, from an uploaded CSV of user_id,amount[,reason] rows")
+    @PostMapping(value = "/yuan/bulk-add", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ApiResponse<BulkJobDTO> adminBulkAddYuanFromFile(@RequestParam("file") MultipartFile file) {
+        return ApiResponse.success("Bulk Yuan grant started", adminYuanBulkGrantService.submitFile(file));
+    }
+
+    @Operation(summary = "[ADMIN] Rebuild leaderboard", description = "Repopulate the Redis leaderboard from the stored EXP totals")
+    @PostMapping("/leaderboard/rebuild")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ApiResponse<Long> rebuildLeaderboard() {
+        long loaded = leaderboardService.rebuild();
+        if (loaded < 0) {
+            return ApiResponse.success("Leaderboard rebuild already in progress", loaded);
+        }
+        return ApiResponse.success(String.format("Leaderboard rebuilt with %d players", loaded), loaded);
+    }
+
+    @Operation(summary = "[ADMIN] Bulk ingest ledger rows", description = "Upload a CSV of ledger,user_id,amount,text rows (ledger = exp or yuan); rows are copied into the ledgers in the background. Poll the returned job for progress")
+    @PostMapping(value = "/ledger/ingest", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ApiResponse<BulkJobDTO> ingestLedgerRows(@RequestParam("file") MultipartFile file) {
+        return ApiResponse.success("Ledger ingest started", ledgerBulkIngestService.submitFile(file));
+    }
+
+    @Operation(summary = "[ADMIN] Replay dead-lettered events", description = "Republish up to maxRecords records from <topic>.DLT to the original topic in the background. Poll the returned job for progress")
+    @PostMapping("/kafka/dlt/{topic}/replay")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ApiResponse<BulkJobDTO> replayDeadLetters(
+            @PathVariable String topic,
+            @RequestParam(defaultValue = "1000") int maxRecords) {
+        return ApiResponse.success("Dead-letter replay started", deadLetterReplayService.submit(topic, maxRecords));
+    }
+
+    @Operation(summary = "[ADMIN] Get bulk job", description = "Progress and per-chunk failures of a bulk job started on this instance")
+    @GetMapping("/jobs/{jobId}")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ApiResponse<BulkJobDTO> getBulkJob(@PathVariable UUID jobId) {
+        return ApiResponse.success(bulkJobService.getJob(jobId));
+    }
 }
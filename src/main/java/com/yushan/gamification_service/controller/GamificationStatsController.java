@@ -2,6 +2,7 @@ package com.yushan.gamification_service.controller;
 
 import com.yushan.gamification_service.dto.achievement.AchievementDTO;
 import com.yushan.gamification_service.dto.common.ApiResponse;
+import com.yushan.gamification_service.dto.common.CursorPageResponseDTO;
 import com.yushan.gamification_service.dto.stats.GamificationStatsDTO;
 import com.yushan.gamification_service.dto.transaction.YuanTransactionDTO;
 import com.yushan.gamification_service.service.GamificationService;
@@ -53,6 +54,17 @@ public class GamificationStatsController {
         return ApiResponse.success(history);
     }
 
+    @Operation(summary = "[USER] Get my Yuan transactions (cursor)", description = "Get current user's Yuan transaction history with keyset pagination; pass nextCursor to get the next page")
+    @GetMapping("/yuan/transactions/me/cursor")
+    public ApiResponse<CursorPageResponseDTO<YuanTransactionDTO>> getMyYuanTransactionsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal
+    ) {
+        UUID userId = SecurityUtils.getCurrentUserId();
+        return ApiResponse.success(gamificationService.getTransactionHistoryPage(userId, cursor, size, includeTotal));
+    }
+
     @Operation(summary = "[USER] Get my achievements", description = "Get current user's unlocked achievements")
     @GetMapping("/achievements/me")
     public ApiResponse<List<AchievementDTO>> getMyUnlockedAchievements() {
@@ -0,0 +1,77 @@
+package com.yushan.gamification_service.controller;
+
+import com.yushan.gamification_service.dto.common.ApiResponse;
+import com.yushan.gamification_service.dto.common.PageResponseDTO;
+import com.yushan.gamification_service.dto.leaderboard.LeaderboardEntryDTO;
+import com.yushan.gamification_service.dto.leaderboard.LeaderboardRankDTO;
+import com.yushan.gamification_service.enums.LeaderboardWindow;
+import com.yushan.gamification_service.service.LeaderboardService;
+import com.yushan.gamification_service.util.SecurityUtils;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@Tag(name = "Leaderboard", description = "APIs for the all-time and rolling-window EXP leaderboards")
+@RestController
+@RequestMapping("/api/v1/gamification/leaderboard")
+public class LeaderboardController {
+
+    private final LeaderboardService leaderboardService;
+
+    public LeaderboardController(LeaderboardService leaderboardService) {
+        this.leaderboardService = leaderboardService;
+    }
+
+    @Operation(summary = "[USER] Get top players", description = "Get the top players by total EXP (max 100)")
+    @GetMapping("/top")
+    public ApiResponse<List<LeaderboardEntryDTO>> getTop(@RequestParam(defaultValue = "10") int limit) {
+        return ApiResponse.success(leaderboardService.getTop(limit));
+    }
+
+    @Operation(summary = "[USER] Get leaderboard page", description = "Page through the leaderboard ordered by total EXP")
+    @GetMapping
+    public ApiResponse<PageResponseDTO<LeaderboardEntryDTO>> getPage(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ApiResponse.success(leaderboardService.getPage(page, size));
+    }
+
+    @Operation(summary = "[USER] Get my rank", description = "Get current user's rank with the players directly above and below")
+    @GetMapping("/me")
+    public ApiResponse<LeaderboardRankDTO> getMyRank(@RequestParam(defaultValue = "5") int neighbours) {
+        UUID userId = SecurityUtils.getCurrentUserId();
+        return ApiResponse.success(leaderboardService.getUserRank(userId, neighbours));
+    }
+
+    @Operation(summary = "[USER] Get others rank", description = "Get other user's rank with the players directly above and below")
+    @GetMapping("/users/{userId}")
+    public ApiResponse<LeaderboardRankDTO> getUserRank(
+            @PathVariable UUID userId,
+            @RequestParam(defaultValue = "5") int neighbours
+    ) {
+        return ApiResponse.success(leaderboardService.getUserRank(userId, neighbours));
+    }
+
+    @Operation(summary = "[USER] Get top players in a window", description = "Get the top players by EXP gained in the last day, week (7 days) or month (30 days)")
+    @GetMapping("/windows/{window}/top")
+    public ApiResponse<List<LeaderboardEntryDTO>> getWindowTop(
+            @PathVariable String window,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        return ApiResponse.success(leaderboardService.getWindowTop(LeaderboardWindow.fromPath(window), limit));
+    }
+
+    @Operation(summary = "[USER] Get my rank in a window", description = "Get current user's rank by EXP gained in the window, with the players directly above and below")
+    @GetMapping("/windows/{window}/me")
+    public ApiResponse<LeaderboardRankDTO> getMyWindowRank(
+            @PathVariable String window,
+            @RequestParam(defaultValue = "5") int neighbours
+    ) {
+        UUID userId = SecurityUtils.getCurrentUserId();
+        return ApiResponse.success(leaderboardService.getWindowUserRank(LeaderboardWindow.fromPath(window), userId, neighbours));
+    }
+}
@@ -4,6 +4,7 @@ import com.yushan.gamification_service.entity.DailyRewardLog;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDate;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -15,4 +16,10 @@ public interface DailyRewardLogMapper {
     int insert(DailyRewardLog log);
 
     int update(DailyRewardLog log);
+
+    /**
+     * Atomically claim the daily reward for the given date.
+     * @return the user's total EXP before the reward, or null if the reward was already claimed
+     */
+    Double claim(@Param("userId") UUID userId, @Param("rewardDate") LocalDate rewardDate);
 }
\ No newline at end of file
@@ -13,6 +13,17 @@ public interface ExpTransactionMapper {
 
     int insert(ExpTransaction transaction);
 
+    /**
+     * Insert the ledger row and add its amount to user_progress in a single statement
+     * @return the user's total EXP after this transaction
+     */
+    Double insertAndAccumulate(ExpTransaction transaction);
+
+    /**
+     * Multi-row insert of ledger rows (does not touch user_progress)
+     */
+    int insertBatch(@Param("transactions") List<ExpTransaction> transactions);
+
     Double sumAmountByUserId(@Param("userId") UUID userId);
 
     List<Map<String, Object>> sumAmountGroupedByUser();
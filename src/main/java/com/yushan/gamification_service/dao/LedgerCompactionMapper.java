@@ -0,0 +1,45 @@
+package com.yushan.gamification_service.dao;
+
+import com.yushan.gamification_service.entity.LedgerCompactionProgress;
+import com.yushan.gamification_service.enums.LedgerType;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Mapper
+public interface LedgerCompactionMapper {
+
+    /**
+     * Next users (by id) that still have ledger rows created before the cutoff
+     */
+    List<UUID> findUsersWithRowsBefore(
+            @Param("ledger") LedgerType ledger,
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("afterUserId") UUID afterUserId,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Move the users' rows created before the cutoff to the archive table and add them to their snapshot rows,
+     * in a single statement
+     * @return number of ledger rows compacted
+     */
+    int compactUsers(
+            @Param("ledger") LedgerType ledger,
+            @Param("userIds") List<UUID> userIds,
+            @Param("cutoff") LocalDateTime cutoff
+    );
+
+    LedgerCompactionProgress findProgress(@Param("ledger") LedgerType ledger);
+
+    int saveProgress(
+            @Param("ledger") LedgerType ledger,
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("lastUserId") UUID lastUserId
+    );
+
+    int deleteProgress(@Param("ledger") LedgerType ledger);
+}
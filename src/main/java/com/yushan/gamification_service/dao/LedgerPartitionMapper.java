@@ -0,0 +1,17 @@
+package com.yushan.gamification_service.dao;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * Partition maintenance for the monthly-partitioned ledgers (exp_transactions, yuan_transactions)
+ */
+@Mapper
+public interface LedgerPartitionMapper {
+
+    /**
+     * Create the missing monthly partitions of both ledgers from the current month up to monthsAhead months ahead
+     * @return number of partitions created
+     */
+    int createPartitions(@Param("monthsAhead") int monthsAhead);
+}
@@ -3,6 +3,10 @@ package com.yushan.gamification_service.dao;
 import com.yushan.gamification_service.entity.ProcessedEvent;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Mapper for processed_events table to ensure idempotency
@@ -16,13 +20,41 @@ public interface ProcessedEventMapper {
     boolean existsByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
 
     /**
-     * Insert a processed event record
+     * Return which of the given idempotency keys have already been processed
+     */
+    List<String> findExistingKeys(@Param("keys") Collection<String> keys);
+
+    /**
+     * Insert a processed event record; an already processed key is skipped
+     * @return 1 if inserted, 0 if the key already existed
      */
     int insert(ProcessedEvent processedEvent);
 
     /**
-     * Delete old processed events (for cleanup)
+     * Multi-row insert of processed events; keys that already exist are skipped
+     * @return the keys that were newly inserted (i.e. claimed by this call)
+     */
+    List<String> insertBatch(@Param("keys") Collection<String> keys,
+                             @Param("eventType") String eventType,
+                             @Param("serviceName") String serviceName);
+
+    /**
+     * Stream every processed idempotency key (server-side cursor; must be consumed inside a transaction)
+     */
+    Cursor<String> streamAllKeys();
+
+    /**
+     * Pre-create daily partitions from yesterday up to daysAhead days from today (existing ones are kept);
+     * rows that fell into the default partition are moved into the partitions of their days
+     * @return number of partitions created
+     */
+    int createPartitions(@Param("daysAhead") int daysAhead);
+
+    /**
+     * Drop daily partitions that lie entirely before today minus daysToKeep, and delete the default
+     * partition's rows older than that
+     * @return number of partitions dropped
      */
-    int deleteOldProcessedEvents(@Param("beforeDate") java.time.LocalDateTime beforeDate);
+    int dropPartitionsOlderThan(@Param("daysToKeep") int daysToKeep);
 }
 
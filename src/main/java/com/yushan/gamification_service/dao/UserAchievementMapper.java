@@ -13,6 +13,12 @@ public interface UserAchievementMapper {
 
     int insert(UserAchievement userAchievement);
 
+    /**
+     * Insert the unlock unless the user already owns the achievement
+     * @return 1 if the achievement was newly unlocked, 0 otherwise
+     */
+    int insertIfAbsent(@Param("userId") UUID userId, @Param("achievementId") String achievementId);
+
     List<UserAchievement> findByUserId(@Param("userId") UUID userId);
 
     Long findByUserIdAndAchievementId(@Param("userId") UUID userId, @Param("achievementId") String achievementId);
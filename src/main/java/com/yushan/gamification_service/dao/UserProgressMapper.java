@@ -0,0 +1,81 @@
+package com.yushan.gamification_service.dao;
+
+import com.yushan.gamification_service.entity.ExpTransaction;
+import com.yushan.gamification_service.entity.UserProgress;
+import com.yushan.gamification_service.entity.YuanTransaction;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Mapper for user_progress table (materialized EXP / Yuan balances)
+ */
+@Mapper
+public interface UserProgressMapper {
+
+    Optional<UserProgress> findByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Add EXP to the user's running total (creates the row on first award)
+     */
+    int addExp(@Param("userId") UUID userId, @Param("amount") Double amount);
+
+    /**
+     * Add EXP to the user's running total
+     * @return the user's total EXP after the award
+     */
+    Double addExpAndGet(@Param("userId") UUID userId, @Param("amount") Double amount);
+
+    /**
+     * Add (or subtract, when negative) Yuan to the user's balance
+     */
+    int addYuan(@Param("userId") UUID userId, @Param("amount") Double amount);
+
+    /**
+     * Insert the EXP and Yuan ledger rows of a reward and apply both to the user's balances in one statement
+     * @return the user's total EXP including the reward
+     */
+    Double insertRewardAndAccumulate(@Param("exp") ExpTransaction exp, @Param("yuan") YuanTransaction yuan);
+
+    /**
+     * Apply pre-aggregated per-user EXP / Yuan deltas in one multi-row upsert.
+     * Each user must appear at most once; rows are written in user_id order to keep lock order stable.
+     * @return the updated balances of every user in the batch
+     */
+    List<UserProgress> addBatch(@Param("deltas") List<UserProgress> deltas);
+
+    /**
+     * Lock the user's progress row for the rest of the transaction
+     */
+    UUID lockByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Find users whose materialized balances differ from the ledger sums
+     */
+    List<Map<String, Object>> findDriftedUsers(@Param("limit") int limit);
+
+    /**
+     * Recompute a user's balances from the ledgers
+     */
+    int resyncFromLedger(@Param("userId") UUID userId);
+
+    /**
+     * Keyset chunk of users with EXP, ordered by user_id (afterUserId null = first chunk)
+     */
+    List<UserProgress> findExpTotalsAfter(@Param("afterUserId") UUID afterUserId, @Param("limit") int limit);
+
+    /**
+     * Users with EXP whose balances changed at or after the given time
+     */
+    List<UserProgress> findExpTotalsUpdatedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Database time, for comparisons with updated_at
+     */
+    LocalDateTime currentTimestamp();
+}
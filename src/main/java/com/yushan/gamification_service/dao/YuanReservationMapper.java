@@ -15,6 +15,19 @@ public interface YuanReservationMapper {
      */
     int insert(YuanReservation reservation);
     
+    /**
+     * Hold the reservation amount on the user's progress row and insert the reservation in one statement.
+     * The row is only updated while the available balance (yuan_balance - yuan_reserved) covers the amount.
+     * @return the generated id, or null if the user has no progress row or not enough available Yuan
+     */
+    Long reserve(YuanReservation reservation);
+    
+    /**
+     * Record a reservation confirmed outside Postgres (Redis reservation engine)
+     * @return 1 if inserted, 0 if the reservation was already recorded
+     */
+    int insertConfirmed(YuanReservation reservation);
+    
     /**
      * Find reservation by reservation ID
      */
@@ -26,32 +39,46 @@ public interface YuanReservationMapper {
     YuanReservation findBySagaId(@Param("sagaId") String sagaId);
     
     /**
-     * Update reservation status to CONFIRMED
+     * Update a RESERVED reservation to CONFIRMED and drop its amount from the user's reserved Yuan
+     * @return 1 if the reservation was confirmed, 0 if it was not RESERVED
      */
     int confirmReservation(@Param("reservationId") UUID reservationId, @Param("confirmedAt") OffsetDateTime confirmedAt);
     
     /**
-     * Update reservation status to RELEASED
+     * Update a RESERVED reservation to RELEASED and drop its amount from the user's reserved Yuan
+     * @return 1 if the reservation was released, 0 if it was not RESERVED
      */
     int releaseReservation(@Param("reservationId") UUID reservationId, @Param("releasedAt") OffsetDateTime releasedAt);
     
     /**
-     * Find all expired reservations with status RESERVED
+     * Update a CONFIRMED reservation to RELEASED (its amount is no longer reserved)
+     */
+    int releaseConfirmedReservation(@Param("reservationId") UUID reservationId, @Param("releasedAt") OffsetDateTime releasedAt);
+    
+    /**
+     * Release up to {@code limit} RESERVED reservations that expired before {@code now} and drop their
+     * amounts from the users' reserved Yuan, in one statement. Rows locked by another sweep are skipped.
      * Used for cleanup job
+     * @return the released reservations
      */
-    List<YuanReservation> findExpiredReservations(@Param("currentTime") OffsetDateTime currentTime);
+    List<YuanReservation> releaseExpiredBatch(@Param("now") OffsetDateTime now, @Param("limit") int limit);
     
     /**
-     * Count reservations by user ID and status
-     * Used to check if user has pending reservations
+     * Release the given reservations that are still RESERVED and expired at {@code now}, and drop their
+     * amounts from the users' reserved Yuan, in one statement
+     * Used by the expiry wheel
+     * @return the released reservations
      */
-    int countByUserIdAndStatus(@Param("userId") UUID userId, @Param("status") String status);
+    List<YuanReservation> releaseExpiredByIds(@Param("reservationIds") List<UUID> reservationIds, @Param("now") OffsetDateTime now);
+    
+    /**
+     * Page through RESERVED reservations by id (keyset), for rebuilding the expiry wheel
+     */
+    List<YuanReservation> findReservedAfter(@Param("afterId") long afterId, @Param("limit") int limit);
     
     /**
-     * Sum reserved amounts for a user (status = RESERVED)
-     * Used to calculate available balance when reserving
+     * Count reservations by user ID and status
+     * Used to check if user has pending reservations
      */
-    Double sumReservedAmountByUserId(@Param("userId") UUID userId);
+    int countByUserIdAndStatus(@Param("userId") UUID userId, @Param("status") String status);
 }
-
-
@@ -2,7 +2,9 @@ package com.yushan.gamification_service.dao;
 
 import com.yushan.gamification_service.entity.YuanTransaction;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.annotations.Param;
+import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -10,6 +12,12 @@ import java.util.UUID;
 @Mapper
 public interface YuanTransactionMapper {
     int insert(YuanTransaction transaction);
+
+    /**
+     * Multi-row insert of ledger rows (does not touch user_progress)
+     */
+    int insertBatch(@Param("transactions") List<YuanTransaction> transactions);
+
     Double sumAmountByUserId(@Param("userId") UUID userId);
 
     List<YuanTransaction> findByUserIdPaged(
@@ -18,6 +26,16 @@ public interface YuanTransactionMapper {
             @Param("size") int size
     );
 
+    /**
+     * Keyset page of a user's history, newest first; pass null afterCreatedAt/afterId for the first page
+     */
+    List<YuanTransaction> findByUserIdAfter(
+            @Param("userId") UUID userId,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+            @Param("afterId") Long afterId,
+            @Param("limit") int limit
+    );
+
     List<YuanTransaction> findWithFilters(
             @Param("userId") UUID userId,
             @Param("startDate") OffsetDateTime startDate,
@@ -26,6 +44,32 @@ public interface YuanTransactionMapper {
             @Param("size") int size
     );
 
+    /**
+     * Keyset page of all transactions matching the optional filters, newest first
+     */
+    List<YuanTransaction> findWithFiltersAfter(
+            @Param("userId") UUID userId,
+            @Param("startDate") OffsetDateTime startDate,
+            @Param("endDate") OffsetDateTime endDate,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+            @Param("afterId") Long afterId,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Stream all transactions matching the optional filters, oldest first; must be consumed inside a transaction
+     */
+    Cursor<YuanTransaction> streamWithFilters(
+            @Param("userId") UUID userId,
+            @Param("startDate") OffsetDateTime startDate,
+            @Param("endDate") OffsetDateTime endDate
+    );
+
+    /**
+     * Approximate row count of the whole table from planner statistics (no scan)
+     */
+    long estimateCount();
+
     long countWithFilters(
             @Param("userId") UUID userId,
             @Param("startDate") OffsetDateTime startDate,
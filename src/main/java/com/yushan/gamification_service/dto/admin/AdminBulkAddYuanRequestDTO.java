@@ -0,0 +1,19 @@
+package com.yushan.gamification_service.dto.admin;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Grants are validated by the service, which reports invalid entries by position
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminBulkAddYuanRequestDTO {
+    @NotEmpty(message = "grants must not be empty")
+    private List<AdminAddYuanRequestDTO> grants;
+}
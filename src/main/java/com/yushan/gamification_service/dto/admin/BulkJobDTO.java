@@ -0,0 +1,29 @@
+package com.yushan.gamification_service.dto.admin;
+
+import com.yushan.gamification_service.enums.BulkJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Progress snapshot of an asynchronous admin bulk job.
+ * failures lists the first rejected chunks only; failedRows counts all of them.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkJobDTO {
+    private UUID jobId;
+    private String type;
+    private BulkJobStatus status;
+    private long processedRows;
+    private long failedRows;
+    private OffsetDateTime startedAt;
+    private OffsetDateTime finishedAt;
+    private String error;
+    private List<ChunkFailureDTO> failures;
+}
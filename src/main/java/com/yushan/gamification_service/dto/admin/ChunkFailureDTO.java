@@ -0,0 +1,17 @@
+package com.yushan.gamification_service.dto.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Rows of a bulk job that were rejected together; firstRow is 1-based in the job's input
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkFailureDTO {
+    private long firstRow;
+    private long rows;
+    private String message;
+}
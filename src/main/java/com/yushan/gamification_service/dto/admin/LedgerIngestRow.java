@@ -0,0 +1,11 @@
+package com.yushan.gamification_service.dto.admin;
+
+import com.yushan.gamification_service.enums.LedgerType;
+
+import java.util.UUID;
+
+/**
+ * One ledger row for bulk ingest; text becomes the reason (EXP) or description (Yuan)
+ */
+public record LedgerIngestRow(LedgerType ledger, UUID userId, double amount, String text) {
+}
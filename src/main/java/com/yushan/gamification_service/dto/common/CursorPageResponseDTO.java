@@ -0,0 +1,23 @@
+package com.yushan.gamification_service.dto.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Keyset pagination response: pass nextCursor back as the cursor parameter to read the following page.
+ * totalElements is only filled when requested and may be an estimate (see totalEstimated).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponseDTO<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+    private Long totalElements;
+    private boolean totalEstimated;
+}
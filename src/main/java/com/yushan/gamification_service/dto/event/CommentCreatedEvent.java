@@ -0,0 +1,18 @@
+package com.yushan.gamification_service.dto.event;
+
+import java.util.UUID;
+
+/**
+ * comment-events message (other fields of the Engagement Service event are ignored)
+ */
+public record CommentCreatedEvent(
+        Integer commentId,
+
+        UUID userId
+) {
+    public CommentCreatedEvent {
+        if (commentId == null || userId == null) {
+            throw new IllegalArgumentException("commentId and userId are required");
+        }
+    }
+}
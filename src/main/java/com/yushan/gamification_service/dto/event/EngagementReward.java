@@ -0,0 +1,15 @@
+package com.yushan.gamification_service.dto.event;
+
+import java.util.UUID;
+
+/**
+ * A single comment/review/vote reward parsed from an engagement event.
+ * sourceId is the comment/review/vote id (null for votes without an id).
+ */
+public record EngagementReward(
+        String idempotencyKey,
+
+        UUID userId,
+
+        Long sourceId
+) {}
@@ -1,8 +1,19 @@
 package com.yushan.gamification_service.dto.event;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
+/**
+ * user.events message: the payload type is selected by eventType while parsing, so the payload is bound
+ * straight to its record. Unknown event types leave the payload null.
+ */
 public record EventEnvelope(
         String eventType,
-        JsonNode payload
+
+        @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXTERNAL_PROPERTY, property = "eventType", visible = true)
+        @JsonSubTypes({
+                @JsonSubTypes.Type(value = UserRegisteredEvent.class, name = "UserRegisteredEvent"),
+                @JsonSubTypes.Type(value = UserLoggedInEvent.class, name = "UserLoggedInEvent")
+        })
+        UserEvent payload
 ) {}
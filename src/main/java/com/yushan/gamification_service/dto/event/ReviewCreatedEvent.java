@@ -0,0 +1,18 @@
+package com.yushan.gamification_service.dto.event;
+
+import java.util.UUID;
+
+/**
+ * review-events message (other fields of the Engagement Service event are ignored)
+ */
+public record ReviewCreatedEvent(
+        Integer reviewId,
+
+        UUID userId
+) {
+    public ReviewCreatedEvent {
+        if (reviewId == null || userId == null) {
+            throw new IllegalArgumentException("reviewId and userId are required");
+        }
+    }
+}
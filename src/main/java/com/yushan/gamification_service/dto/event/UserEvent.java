@@ -0,0 +1,13 @@
+package com.yushan.gamification_service.dto.event;
+
+import java.util.UUID;
+
+/**
+ * Payload of a user.events message
+ */
+public sealed interface UserEvent permits UserRegisteredEvent, UserLoggedInEvent {
+
+    UUID uuid();
+
+    String email();
+}
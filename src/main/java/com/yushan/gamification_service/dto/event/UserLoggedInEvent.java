@@ -11,7 +11,7 @@ public record UserLoggedInEvent(
         Date updateTime,
         Date lastLoginTime,
         Date lastActiveTime
-) {
+) implements UserEvent {
     public UserLoggedInEvent {
         if (createTime != null) {
             createTime = new Date(createTime.getTime());
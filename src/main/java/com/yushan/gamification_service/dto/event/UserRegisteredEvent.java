@@ -11,7 +11,7 @@ public record UserRegisteredEvent(
         Date updateTime,
         Date lastLoginTime,
         Date lastActiveTime
-) {
+) implements UserEvent {
     public UserRegisteredEvent {
         if (createTime != null) {
             createTime = new Date(createTime.getTime());
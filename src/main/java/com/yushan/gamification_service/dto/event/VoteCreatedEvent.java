@@ -0,0 +1,18 @@
+package com.yushan.gamification_service.dto.event;
+
+import java.util.UUID;
+
+/**
+ * vote-events message (other fields of the Engagement Service event are ignored); voteId may be absent
+ */
+public record VoteCreatedEvent(
+        Integer voteId,
+
+        UUID userId
+) {
+    public VoteCreatedEvent {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId is required");
+        }
+    }
+}
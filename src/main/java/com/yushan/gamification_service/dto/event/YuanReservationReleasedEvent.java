@@ -0,0 +1,57 @@
+package com.yushan.gamification_service.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Yuan Reservation Released Event
+ * Published when the expiry sweep releases a reservation that was never confirmed
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class YuanReservationReleasedEvent {
+
+    /**
+     * SAGA ID the reservation belonged to
+     */
+    @JsonProperty("sagaId")
+    private String sagaId;
+
+    /**
+     * User ID
+     */
+    @JsonProperty("userId")
+    private UUID userId;
+
+    /**
+     * Released reservation ID
+     */
+    @JsonProperty("reservationId")
+    private UUID reservationId;
+
+    /**
+     * Amount returned to the user's available Yuan
+     */
+    @JsonProperty("amount")
+    private Double amount;
+
+    /**
+     * Release reason
+     */
+    @JsonProperty("reason")
+    private String reason;
+
+    /**
+     * Timestamp when the reservation was released
+     */
+    @JsonProperty("timestamp")
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,16 @@
+package com.yushan.gamification_service.dto.leaderboard;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardEntryDTO {
+    private long rank;
+    private String userId;
+    /** EXP over the leaderboard's period: all-time total, or EXP gained within a rolling window */
+    private Double totalExp;
+    private int level;
+}
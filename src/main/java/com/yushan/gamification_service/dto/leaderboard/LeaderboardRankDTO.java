@@ -0,0 +1,19 @@
+package com.yushan.gamification_service.dto.leaderboard;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A user's position on the leaderboard together with the entries directly above and below
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardRankDTO {
+    private LeaderboardEntryDTO user;
+    private long totalPlayers;
+    private List<LeaderboardEntryDTO> neighbours;
+}
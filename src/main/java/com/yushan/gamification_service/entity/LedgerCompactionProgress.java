@@ -0,0 +1,38 @@
+package com.yushan.gamification_service.entity;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Checkpoint of a running ledger compaction: users up to lastUserId have been compacted up to cutoff
+ */
+public class LedgerCompactionProgress {
+
+    private String ledger;
+    private LocalDateTime cutoff;
+    private UUID lastUserId;
+
+    public String getLedger() {
+        return ledger;
+    }
+
+    public void setLedger(String ledger) {
+        this.ledger = ledger;
+    }
+
+    public LocalDateTime getCutoff() {
+        return cutoff;
+    }
+
+    public void setCutoff(LocalDateTime cutoff) {
+        this.cutoff = cutoff;
+    }
+
+    public UUID getLastUserId() {
+        return lastUserId;
+    }
+
+    public void setLastUserId(UUID lastUserId) {
+        this.lastUserId = lastUserId;
+    }
+}
@@ -0,0 +1,87 @@
+package com.yushan.gamification_service.entity;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Materialized per-user balances derived from the EXP and Yuan ledgers.
+ * Updated atomically with every ledger insert.
+ */
+public class UserProgress {
+
+    private UUID userId;
+    private Double totalExp;
+    private Double yuanBalance;
+    private Double yuanReserved;
+    private Long version;
+    private OffsetDateTime updatedAt;
+
+    public UserProgress() {
+    }
+
+    public UserProgress(UUID userId, Double totalExp, Double yuanBalance) {
+        this.userId = userId;
+        this.totalExp = totalExp;
+        this.yuanBalance = yuanBalance;
+    }
+
+    /**
+     * Progress of a user that has no ledger rows yet
+     */
+    public static UserProgress empty(UUID userId) {
+        UserProgress progress = new UserProgress(userId, 0.0, 0.0);
+        progress.setVersion(0L);
+        return progress;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public Double getTotalExp() {
+        return totalExp;
+    }
+
+    public void setTotalExp(Double totalExp) {
+        this.totalExp = totalExp;
+    }
+
+    public Double getYuanBalance() {
+        return yuanBalance;
+    }
+
+    public void setYuanBalance(Double yuanBalance) {
+        this.yuanBalance = yuanBalance;
+    }
+
+    /**
+     * Yuan held by open SAGA reservations; the spendable balance is yuanBalance - yuanReserved
+     */
+    public Double getYuanReserved() {
+        return yuanReserved;
+    }
+
+    public void setYuanReserved(Double yuanReserved) {
+        this.yuanReserved = yuanReserved;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public OffsetDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(OffsetDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,13 @@
+package com.yushan.gamification_service.enums;
+
+/**
+ * Lifecycle of an asynchronous admin bulk job
+ */
+public enum BulkJobStatus {
+    RUNNING,
+    COMPLETED,
+    /** Finished, but some chunks or rows were rejected (see the job's failures) */
+    COMPLETED_WITH_ERRORS,
+    /** Aborted before reaching the end of the input */
+    FAILED
+}
@@ -0,0 +1,26 @@
+package com.yushan.gamification_service.enums;
+
+/**
+ * Engagement events that earn rewards, with the idempotency settings of each
+ */
+public enum EngagementRewardType {
+    COMMENT("idempotency:comment-reward:", "CommentReward"),
+    REVIEW("idempotency:review-reward:", "ReviewReward"),
+    VOTE("idempotency:vote-reward:", "VoteReward");
+
+    private final String idempotencyPrefix;
+    private final String eventType;
+
+    EngagementRewardType(String idempotencyPrefix, String eventType) {
+        this.idempotencyPrefix = idempotencyPrefix;
+        this.eventType = eventType;
+    }
+
+    public String getIdempotencyPrefix() {
+        return idempotencyPrefix;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+}
@@ -0,0 +1,40 @@
+package com.yushan.gamification_service.enums;
+
+import com.yushan.gamification_service.exception.ValidationException;
+
+import java.util.Locale;
+
+/**
+ * Line-oriented export formats
+ */
+public enum ExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String fileExtension;
+
+    ExportFormat(String contentType, String fileExtension) {
+        this.contentType = contentType;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Parse a format from a request parameter (case-insensitive)
+     */
+    public static ExportFormat fromParam(String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Unknown export format: " + value + " (expected ndjson or csv)");
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.yushan.gamification_service.enums;
+
+import com.yushan.gamification_service.exception.ValidationException;
+
+import java.util.Locale;
+
+/**
+ * Rolling leaderboard windows, each covering the last {@code days} daily buckets (today included)
+ */
+public enum LeaderboardWindow {
+    DAILY(1),
+    WEEKLY(7),
+    MONTHLY(30);
+
+    private final int days;
+
+    LeaderboardWindow(int days) {
+        this.days = days;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * Parse a window from a request path segment (case-insensitive)
+     */
+    public static LeaderboardWindow fromPath(String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Unknown leaderboard window: " + value + " (expected daily, weekly or monthly)");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.yushan.gamification_service.enums;
+
+/**
+ * The append-only balance ledgers, with the tables their rows are compacted from and archived to
+ */
+public enum LedgerType {
+    EXP("exp", "exp_transactions", "reason"),
+    YUAN("yuan", "yuan_transactions", "description");
+
+    private final String code;
+    private final String tableName;
+    private final String textColumn;
+
+    LedgerType(String code, String tableName, String textColumn) {
+        this.code = code;
+        this.tableName = tableName;
+        this.textColumn = textColumn;
+    }
+
+    /**
+     * Value of ledger_snapshot.ledger
+     */
+    public String getCode() {
+        return code;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getArchiveTableName() {
+        return tableName + "_archive";
+    }
+
+    /**
+     * Free-text column of the ledger table (reason / description)
+     */
+    public String getTextColumn() {
+        return textColumn;
+    }
+
+    /**
+     * @throws IllegalArgumentException if no ledger has the given code (case-insensitive)
+     */
+    public static LedgerType fromCode(String code) {
+        for (LedgerType type : values()) {
+            if (type.code.equalsIgnoreCase(code)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown ledger: " + code + " (expected exp or yuan)");
+    }
+}
@@ -0,0 +1,146 @@
+package com.yushan.gamification_service.listener;
+
+import com.yushan.gamification_service.dto.event.CommentCreatedEvent;
+import com.yushan.gamification_service.dto.event.EngagementReward;
+import com.yushan.gamification_service.dto.event.ReviewCreatedEvent;
+import com.yushan.gamification_service.dto.event.VoteCreatedEvent;
+import com.yushan.gamification_service.enums.EngagementRewardType;
+import com.yushan.gamification_service.service.EngagementRewardBatchService;
+import com.yushan.gamification_service.service.GamificationService;
+import com.yushan.gamification_service.service.IdempotencyService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch variant of {@link EngagementEventListener}, enabled with gamification.kafka.batch-listener.enabled=true.
+ *
+ * Each poll is deduplicated in memory, checked for idempotency in bulk and written with multi-row inserts.
+ * A record that cannot be parsed or processed is reported by index through {@link BatchListenerFailedException}:
+ * records before it are committed, the failed record is retried and then published to the dead-letter topic,
+ * and the rest of the poll is redelivered.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "gamification.kafka.batch-listener.enabled", havingValue = "true")
+public class EngagementBatchEventListener {
+
+    @Autowired
+    private GamificationService gamificationService;
+
+    @Autowired
+    private EventReader eventReader;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private EngagementRewardBatchService engagementRewardBatchService;
+
+    @KafkaListener(topics = "comment-events", groupId = "gamification-service", containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleCommentCreatedEvents(List<ConsumerRecord<String, byte[]>> records) {
+        processBatch(EngagementRewardType.COMMENT, records);
+    }
+
+    @KafkaListener(topics = "review-events", groupId = "gamification-service", containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleReviewCreatedEvents(List<ConsumerRecord<String, byte[]>> records) {
+        processBatch(EngagementRewardType.REVIEW, records);
+    }
+
+    @KafkaListener(topics = "vote-events", groupId = "gamification-service", containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleVoteCreatedEvents(List<ConsumerRecord<String, byte[]>> records) {
+        processBatch(EngagementRewardType.VOTE, records);
+    }
+
+    private void processBatch(EngagementRewardType type, List<ConsumerRecord<String, byte[]>> records) {
+        log.debug("Received batch of {} {} events", records.size(), type);
+
+        // Parse up to the first poison record; rewards.get(i) always belongs to records.get(i)
+        List<EngagementReward> rewards = new ArrayList<>(records.size());
+        int poisonIndex = -1;
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            try {
+                rewards.add(parseReward(type, record.value()));
+            } catch (Exception e) {
+                log.error("Unparseable {} event at {}-{}@{}: {}", type, record.topic(), record.partition(), record.offset(), EventReader.text(record.value()), e);
+                poisonIndex = i;
+                break;
+            }
+        }
+
+        if (!rewards.isEmpty()) {
+            awardRewards(type, rewards);
+        }
+
+        if (poisonIndex >= 0) {
+            throw new BatchListenerFailedException("Failed to parse " + type + " event", poisonIndex);
+        }
+    }
+
+    private void awardRewards(EngagementRewardType type, List<EngagementReward> rewards) {
+        try {
+            List<EngagementReward> pending = engagementRewardBatchService.filterUnprocessed(rewards);
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<EngagementReward> awarded = engagementRewardBatchService.award(type, pending);
+
+            // Transaction committed: cache keys in Redis
+            idempotencyService.cacheProcessed(awarded.stream().map(EngagementReward::idempotencyKey).toList());
+            log.info("Successfully processed {} {} rewards in batch", awarded.size(), type);
+        } catch (Exception e) {
+            // Bulk write failed as a whole; isolate the failing record by replaying one at a time
+            log.warn("Batch of {} {} rewards failed, falling back to per-record processing", rewards.size(), type, e);
+            for (int i = 0; i < rewards.size(); i++) {
+                try {
+                    processSingle(type, rewards.get(i));
+                } catch (Exception recordError) {
+                    throw new BatchListenerFailedException("Failed to process " + type + " reward", recordError, i);
+                }
+            }
+        }
+    }
+
+    private void processSingle(EngagementRewardType type, EngagementReward reward) {
+        idempotencyService.processOnce(reward.idempotencyKey(), type.getEventType(), () -> {
+            switch (type) {
+                case COMMENT -> gamificationService.processUserComment(reward.userId(), reward.sourceId());
+                case REVIEW -> gamificationService.processUserReview(reward.userId(), reward.sourceId());
+                case VOTE -> gamificationService.processUserVote(reward.userId());
+            }
+        });
+    }
+
+    private EngagementReward parseReward(EngagementRewardType type, byte[] payload) throws Exception {
+        switch (type) {
+            case COMMENT: {
+                CommentCreatedEvent event = eventReader.readComment(payload);
+                long commentId = event.commentId();
+                return new EngagementReward(type.getIdempotencyPrefix() + commentId, event.userId(), commentId);
+            }
+            case REVIEW: {
+                ReviewCreatedEvent event = eventReader.readReview(payload);
+                long reviewId = event.reviewId();
+                return new EngagementReward(type.getIdempotencyPrefix() + reviewId, event.userId(), reviewId);
+            }
+            default: {
+                // Same key scheme as EngagementEventListener: voteId, or userId + minute as fallback
+                VoteCreatedEvent event = eventReader.readVote(payload);
+                if (event.voteId() != null) {
+                    long voteId = event.voteId();
+                    return new EngagementReward(type.getIdempotencyPrefix() + voteId, event.userId(), voteId);
+                }
+                long timestampMinutes = System.currentTimeMillis() / (60 * 1000);
+                return new EngagementReward(type.getIdempotencyPrefix() + event.userId() + ":" + timestampMinutes, event.userId(), null);
+            }
+        }
+    }
+}
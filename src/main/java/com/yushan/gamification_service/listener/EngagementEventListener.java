@@ -1,25 +1,33 @@
 package com.yushan.gamification_service.listener;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yushan.gamification_service.dto.event.CommentCreatedEvent;
+import com.yushan.gamification_service.dto.event.ReviewCreatedEvent;
+import com.yushan.gamification_service.dto.event.VoteCreatedEvent;
 import com.yushan.gamification_service.service.GamificationService;
 import com.yushan.gamification_service.service.IdempotencyService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
 import java.util.UUID;
 
+/**
+ * Record-at-a-time engagement listener (default).
+ * Replaced by {@link EngagementBatchEventListener} when gamification.kafka.batch-listener.enabled=true.
+ */
 @Slf4j
 @Component
+@ConditionalOnProperty(name = "gamification.kafka.batch-listener.enabled", havingValue = "false", matchIfMissing = true)
 public class EngagementEventListener {
 
     @Autowired
     private GamificationService gamificationService;
     
     @Autowired
-    private ObjectMapper objectMapper;
+    private EventReader eventReader;
 
     @Autowired
     private IdempotencyService idempotencyService;
@@ -31,31 +39,26 @@ public class EngagementEventListener {
     /**
      * Consume CommentCreatedEvent from engagement service
      */
+    @NonBlockingRetry
     @KafkaListener(topics = "comment-events", groupId = "gamification-service")
-    public void handleCommentCreatedEvent(@Payload String eventJson) {
+    public void handleCommentCreatedEvent(@Payload byte[] payload) {
         try {
-            // Parse JSON to extract commentId and userId
-            com.fasterxml.jackson.databind.JsonNode jsonNode = objectMapper.readTree(eventJson);
-            Integer commentId = jsonNode.get("commentId").asInt();
-            String userIdStr = jsonNode.get("userId").asText();
-            UUID userId = UUID.fromString(userIdStr);
+            CommentCreatedEvent event = eventReader.readComment(payload);
+            Integer commentId = event.commentId();
+            UUID userId = event.userId();
             
-            // Idempotency check: each comment should only be rewarded once (hybrid: Redis + Database)
+            // Idempotency: each comment should only be rewarded once (claim + reward in one transaction)
             String idempotencyKey = IDEMPOTENCY_PREFIX_COMMENT + commentId;
-            if (idempotencyService.isProcessed(idempotencyKey, "CommentReward")) {
+            boolean processed = idempotencyService.processOnce(idempotencyKey, "CommentReward",
+                    () -> gamificationService.processUserComment(userId, commentId.longValue()));
+            if (!processed) {
                 log.info("Comment reward already processed, skipping: commentId={}", commentId);
                 return;
             }
-            
-            // Process comment reward
-            gamificationService.processUserComment(userId, commentId.longValue());
-            
-            // Mark as processed (both Redis and Database)
-            idempotencyService.markAsProcessed(idempotencyKey, "CommentReward");
             log.info("Successfully processed CommentCreatedEvent: commentId={}, userId={}", commentId, userId);
             
         } catch (Exception e) {
-            log.error("Error processing CommentCreatedEvent: {}", eventJson, e);
+            log.error("Error processing CommentCreatedEvent: {}", EventReader.text(payload), e);
             // Re-throw to trigger Kafka retry mechanism
             throw new RuntimeException("Failed to process CommentCreatedEvent", e);
         }
@@ -64,31 +67,26 @@ public class EngagementEventListener {
     /**
      * Consume ReviewCreatedEvent from engagement service
      */
+    @NonBlockingRetry
     @KafkaListener(topics = "review-events", groupId = "gamification-service")
-    public void handleReviewCreatedEvent(@Payload String eventJson) {
+    public void handleReviewCreatedEvent(@Payload byte[] payload) {
         try {
-            // Parse JSON to extract reviewId and userId
-            com.fasterxml.jackson.databind.JsonNode jsonNode = objectMapper.readTree(eventJson);
-            Integer reviewId = jsonNode.get("reviewId").asInt();
-            String userIdStr = jsonNode.get("userId").asText();
-            UUID userId = UUID.fromString(userIdStr);
+            ReviewCreatedEvent event = eventReader.readReview(payload);
+            Integer reviewId = event.reviewId();
+            UUID userId = event.userId();
             
-            // Idempotency check: each review should only be rewarded once (hybrid: Redis + Database)
+            // Idempotency: each review should only be rewarded once (claim + reward in one transaction)
             String idempotencyKey = IDEMPOTENCY_PREFIX_REVIEW + reviewId;
-            if (idempotencyService.isProcessed(idempotencyKey, "ReviewReward")) {
+            boolean processed = idempotencyService.processOnce(idempotencyKey, "ReviewReward",
+                    () -> gamificationService.processUserReview(userId, reviewId.longValue()));
+            if (!processed) {
                 log.info("Review reward already processed, skipping: reviewId={}", reviewId);
                 return;
             }
-            
-            // Process review reward
-            gamificationService.processUserReview(userId, reviewId.longValue());
-            
-            // Mark as processed (both Redis and Database)
-            idempotencyService.markAsProcessed(idempotencyKey, "ReviewReward");
             log.info("Successfully processed ReviewCreatedEvent: reviewId={}, userId={}", reviewId, userId);
             
         } catch (Exception e) {
-            log.error("Error processing ReviewCreatedEvent: {}", eventJson, e);
+            log.error("Error processing ReviewCreatedEvent: {}", EventReader.text(payload), e);
             // Re-throw to trigger Kafka retry mechanism
             throw new RuntimeException("Failed to process ReviewCreatedEvent", e);
         }
@@ -97,16 +95,15 @@ public class EngagementEventListener {
     /**
      * Consume VoteCreatedEvent from engagement service
      */
+    @NonBlockingRetry
     @KafkaListener(topics = "vote-events", groupId = "gamification-service")
-    public void handleVoteCreatedEvent(@Payload String eventJson) {
+    public void handleVoteCreatedEvent(@Payload byte[] payload) {
         try {
-            // Parse JSON to extract voteId and userId
-            com.fasterxml.jackson.databind.JsonNode jsonNode = objectMapper.readTree(eventJson);
-            Integer voteId = jsonNode.has("voteId") ? jsonNode.get("voteId").asInt() : null;
-            String userIdStr = jsonNode.get("userId").asText();
-            UUID userId = UUID.fromString(userIdStr);
+            VoteCreatedEvent event = eventReader.readVote(payload);
+            Integer voteId = event.voteId();
+            UUID userId = event.userId();
             
-            // Idempotency check: each vote should only be rewarded once (hybrid: Redis + Database)
+            // Idempotency: each vote should only be rewarded once (claim + reward in one transaction)
             // Use voteId if available, otherwise use userId + timestamp
             String idempotencyKey;
             if (voteId != null) {
@@ -117,20 +114,17 @@ public class EngagementEventListener {
                 idempotencyKey = IDEMPOTENCY_PREFIX_VOTE + userId + ":" + timestampMinutes;
             }
             
-            if (idempotencyService.isProcessed(idempotencyKey, "VoteReward")) {
+            // Process vote reward (EXP only, Yuan deduction is handled separately)
+            boolean processed = idempotencyService.processOnce(idempotencyKey, "VoteReward",
+                    () -> gamificationService.processUserVote(userId));
+            if (!processed) {
                 log.info("Vote reward already processed, skipping: voteId={}, userId={}", voteId, userId);
                 return;
             }
-            
-            // Process vote reward (EXP only, Yuan deduction is handled separately)
-            gamificationService.processUserVote(userId);
-            
-            // Mark as processed (both Redis and Database)
-            idempotencyService.markAsProcessed(idempotencyKey, "VoteReward");
             log.info("Successfully processed VoteCreatedEvent: voteId={}, userId={}", voteId, userId);
             
         } catch (Exception e) {
-            log.error("Error processing VoteCreatedEvent: {}", eventJson, e);
+            log.error("Error processing VoteCreatedEvent: {}", EventReader.text(payload), e);
             // Re-throw to trigger Kafka retry mechanism
             throw new RuntimeException("Failed to process VoteCreatedEvent", e);
         }
@@ -0,0 +1,116 @@
+package com.yushan.gamification_service.listener;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.yushan.gamification_service.dto.event.CommentCreatedEvent;
+import com.yushan.gamification_service.dto.event.EventEnvelope;
+import com.yushan.gamification_service.dto.event.LevelUpEvent;
+import com.yushan.gamification_service.dto.event.ReviewCreatedEvent;
+import com.yushan.gamification_service.dto.event.VoteCreatedEvent;
+import com.yushan.gamification_service.dto.event.VoteSagaCompensateYuanEvent;
+import com.yushan.gamification_service.dto.event.VoteSagaStartEvent;
+import com.yushan.gamification_service.dto.event.VoteSagaVoteCreatedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binds raw Kafka record values straight to the typed event of each topic.
+ *
+ * One ObjectReader per event type is created up front, so its deserializer is resolved once instead of on
+ * every message, and values are parsed from the record bytes without decoding them to a String first.
+ * Unknown fields are ignored. A value that is itself a JSON string (double-encoded by the producer) is
+ * unwrapped and parsed again.
+ */
+@Component
+class EventReader {
+
+    private final ObjectReader textReader;
+    private final ObjectReader userEventReader;
+    private final ObjectReader levelUpReader;
+    private final ObjectReader commentReader;
+    private final ObjectReader reviewReader;
+    private final ObjectReader voteReader;
+    private final ObjectReader voteSagaStartReader;
+    private final ObjectReader voteSagaVoteCreatedReader;
+    private final ObjectReader voteSagaCompensateReader;
+
+    @Autowired
+    EventReader(ObjectMapper objectMapper) {
+        ObjectReader reader = objectMapper.reader()
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .without(DeserializationFeature.FAIL_ON_INVALID_SUBTYPE);
+        textReader = reader.forType(String.class);
+        userEventReader = reader.forType(EventEnvelope.class);
+        levelUpReader = reader.forType(LevelUpEvent.class);
+        commentReader = reader.forType(CommentCreatedEvent.class);
+        reviewReader = reader.forType(ReviewCreatedEvent.class);
+        voteReader = reader.forType(VoteCreatedEvent.class);
+        voteSagaStartReader = reader.forType(VoteSagaStartEvent.class);
+        voteSagaVoteCreatedReader = reader.forType(VoteSagaVoteCreatedEvent.class);
+        voteSagaCompensateReader = reader.forType(VoteSagaCompensateYuanEvent.class);
+    }
+
+    EventEnvelope readUserEvent(byte[] value) throws IOException {
+        return read(userEventReader, value);
+    }
+
+    LevelUpEvent readLevelUp(byte[] value) throws IOException {
+        return read(levelUpReader, value);
+    }
+
+    CommentCreatedEvent readComment(byte[] value) throws IOException {
+        return read(commentReader, value);
+    }
+
+    ReviewCreatedEvent readReview(byte[] value) throws IOException {
+        return read(reviewReader, value);
+    }
+
+    VoteCreatedEvent readVote(byte[] value) throws IOException {
+        return read(voteReader, value);
+    }
+
+    VoteSagaStartEvent readVoteSagaStart(byte[] value) throws IOException {
+        return read(voteSagaStartReader, value);
+    }
+
+    VoteSagaVoteCreatedEvent readVoteSagaVoteCreated(byte[] value) throws IOException {
+        return read(voteSagaVoteCreatedReader, value);
+    }
+
+    VoteSagaCompensateYuanEvent readVoteSagaCompensate(byte[] value) throws IOException {
+        return read(voteSagaCompensateReader, value);
+    }
+
+    /**
+     * Record value as text, for log and error messages only
+     */
+    static String text(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    private <T> T read(ObjectReader reader, byte[] value) throws IOException {
+        if (value == null || value.length == 0) {
+            throw JsonMappingException.from((JsonParser) null, "Empty event payload");
+        }
+        if (isDoubleEncoded(value)) {
+            return reader.readValue(textReader.<String>readValue(value));
+        }
+        return reader.readValue(value);
+    }
+
+    private static boolean isDoubleEncoded(byte[] value) {
+        for (byte b : value) {
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return b == '"';
+            }
+        }
+        return false;
+    }
+}
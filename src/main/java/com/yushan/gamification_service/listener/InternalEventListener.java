@@ -1,6 +1,5 @@
 package com.yushan.gamification_service.listener;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yushan.gamification_service.dto.event.LevelUpEvent;
 import com.yushan.gamification_service.service.AchievementService;
 import com.yushan.gamification_service.service.IdempotencyService;
@@ -21,37 +20,35 @@ public class InternalEventListener {
     private AchievementService achievementService;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private EventReader eventReader;
 
     @Autowired
     private IdempotencyService idempotencyService;
 
     private static final String IDEMPOTENCY_PREFIX_LEVEL_UP = "idempotency:level-up:";
 
-    @KafkaListener(topics = "internal_gamification_events", groupId = "gamification-service-internal")
-    public void handleLevelUpEvent(String message) {
+    @NonBlockingRetry
+    @KafkaListener(topics = "internal_gamification_events", groupId = "gamification-service-internal", autoStartup = "#{!${gamification.kafka.key-ordered.enabled:false}}")
+    public void handleLevelUpEvent(byte[] message) {
         try {
-            LevelUpEvent event = objectMapper.readValue(message, LevelUpEvent.class);
+            LevelUpEvent event = eventReader.readLevelUp(message);
             UUID userId = event.userId();
             int newLevel = event.newLevel();
             
-            // Idempotency check: level-up achievement check should only happen once per user+level (hybrid: Redis + Database)
+            // Idempotency: level-up achievement check should only happen once per user+level (claim + check in one transaction)
             // (Note: checkAndUnlockLevelAchievements is naturally idempotent, but this prevents duplicate processing)
             String idempotencyKey = IDEMPOTENCY_PREFIX_LEVEL_UP + userId + ":" + newLevel;
-            if (idempotencyService.isProcessed(idempotencyKey, "LevelUpAchievement")) {
+            log.info("Received internal LevelUpEvent for user {}, new level: {}", userId, newLevel);
+            boolean processed = idempotencyService.processOnce(idempotencyKey, "LevelUpAchievement",
+                    () -> achievementService.checkAndUnlockLevelAchievements(userId, newLevel));
+            if (!processed) {
                 log.info("Level-up achievement check already processed, skipping: userId={}, level={}", userId, newLevel);
                 return;
             }
-            
-            log.info("Received internal LevelUpEvent for user {}, new level: {}", userId, newLevel);
-            achievementService.checkAndUnlockLevelAchievements(userId, newLevel);
-            
-            // Mark as processed (both Redis and Database)
-            idempotencyService.markAsProcessed(idempotencyKey, "LevelUpAchievement");
             log.info("Successfully processed LevelUpEvent: userId={}, level={}", userId, newLevel);
 
         } catch (Exception e) {
-            log.error("Failed to process internal LevelUpEvent: {}", message, e);
+            log.error("Failed to process internal LevelUpEvent: {}", EventReader.text(message), e);
             // Re-throw to trigger Kafka retry mechanism
             throw new RuntimeException("Failed to process LevelUpEvent", e);
         }
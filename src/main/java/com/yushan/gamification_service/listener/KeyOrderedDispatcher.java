@@ -0,0 +1,165 @@
+package com.yushan.gamification_service.listener;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import com.yushan.gamification_service.util.ThreadFactories;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the records of one poll in parallel while keeping the order of records with the same key.
+ *
+ * Records are split into lanes by key (the Kafka record key, or else the first of the given JSON fields found in
+ * the payload; with payloadKeyFirst the other way round; records with neither share one lane). Lanes run concurrently on a fixed pool; records inside a
+ * lane run one after another, and a lane stops at its first failure. The call returns once every lane is done.
+ * If a record failed, the lowest failed index is reported through {@link BatchListenerFailedException}: every
+ * record before it has completed, so the container commits up to it and redelivers the rest. Completed records
+ * after it are delivered again, so handlers must be idempotent.
+ */
+class KeyOrderedDispatcher {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String NO_KEY_LANE = "";
+
+    private final String name;
+    private final Set<String> keyFields;
+    private final boolean payloadKeyFirst;
+    private final ExecutorService executor;
+
+    /**
+     * @param keyFields payload fields that identify the ordering key, used when the record has no key
+     * @param concurrency number of lanes that run at the same time
+     * @param virtualThreads run lanes on virtual threads (still at most concurrency at a time)
+     */
+    KeyOrderedDispatcher(String name, int concurrency, Set<String> keyFields, boolean virtualThreads) {
+        this(name, concurrency, keyFields, false, virtualThreads);
+    }
+
+    /**
+     * @param payloadKeyFirst look up the key fields before the record key, for topics whose record key is not
+     *                        the entity whose records must stay in order
+     */
+    KeyOrderedDispatcher(String name, int concurrency, Set<String> keyFields, boolean payloadKeyFirst, boolean virtualThreads) {
+        this.name = name;
+        this.keyFields = keyFields;
+        this.payloadKeyFirst = payloadKeyFirst;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, concurrency),
+                ThreadFactories.named(name + "-lane-", virtualThreads));
+    }
+
+    void dispatch(List<ConsumerRecord<String, byte[]>> records, Consumer<ConsumerRecord<String, byte[]>> handler) {
+        Map<String, List<Integer>> lanes = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            lanes.computeIfAbsent(keyOf(records.get(i)), key -> new ArrayList<>()).add(i);
+        }
+
+        AtomicInteger lowestFailure = new AtomicInteger(Integer.MAX_VALUE);
+        Map<Integer, Throwable> failures = new ConcurrentHashMap<>();
+        List<Future<?>> running = new ArrayList<>(lanes.size());
+        for (List<Integer> lane : lanes.values()) {
+            running.add(executor.submit(() -> {
+                for (int index : lane) {
+                    try {
+                        handler.accept(records.get(index));
+                    } catch (RuntimeException | Error e) {
+                        failures.put(index, e);
+                        lowestFailure.accumulateAndGet(index, Math::min);
+                        return;
+                    }
+                }
+            }));
+        }
+        awaitAll(running);
+
+        int failedIndex = lowestFailure.get();
+        if (failedIndex != Integer.MAX_VALUE) {
+            ConsumerRecord<String, byte[]> failed = records.get(failedIndex);
+            throw new BatchListenerFailedException(name + " failed at " + failed.topic() + "-" + failed.partition()
+                    + "@" + failed.offset(), failures.get(failedIndex), failedIndex);
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    String keyOf(ConsumerRecord<String, byte[]> record) {
+        if (payloadKeyFirst) {
+            String payloadKey = payloadKeyOf(record);
+            if (payloadKey != null) {
+                return payloadKey;
+            }
+        }
+        if (record.key() != null) {
+            return record.key();
+        }
+        if (!payloadKeyFirst) {
+            String payloadKey = payloadKeyOf(record);
+            if (payloadKey != null) {
+                return payloadKey;
+            }
+        }
+        return NO_KEY_LANE;
+    }
+
+    /**
+     * @return the value of the first key field found in the payload, or null
+     */
+    private String payloadKeyOf(ConsumerRecord<String, byte[]> record) {
+        byte[] value = record.value();
+        if (value == null || keyFields.isEmpty()) {
+            return null;
+        }
+        // Streaming scan for the first key field at any depth, without building a tree
+        try (JsonParser parser = JSON_FACTORY.createParser(value)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME && keyFields.contains(parser.currentName())) {
+                    JsonToken valueToken = parser.nextToken();
+                    if (valueToken != null && valueToken.isScalarValue()) {
+                        return parser.getText();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Unparseable payloads fall back to the record key or the shared lane; the handler reports them
+        }
+        return null;
+    }
+
+    private static void awaitAll(List<Future<?>> running) {
+        boolean interrupted = false;
+        for (Future<?> future : running) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // Keep waiting: returning early would let the container commit offsets of unfinished records
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // Not reached: lane tasks record handler failures themselves
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
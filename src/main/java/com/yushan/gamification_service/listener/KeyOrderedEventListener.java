@@ -0,0 +1,99 @@
+package com.yushan.gamification_service.listener;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Key-ordered parallel variant of {@link UserEventListener}, {@link InternalEventListener} and
+ * {@link VoteSagaListener}, enabled with gamification.kafka.key-ordered.enabled=true (their own containers
+ * then stay stopped).
+ *
+ * Each poll is dispatched by user id through a {@link KeyOrderedDispatcher}: one user's events keep their order,
+ * while a slow user no longer holds up the other users of the partition. Offsets are committed only after the
+ * whole poll ran, or up to the first failed record. Lane concurrency is set per listener with
+ * gamification.kafka.key-ordered.concurrency.{user-events|internal-events|vote-saga}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "gamification.kafka.key-ordered.enabled", havingValue = "true")
+public class KeyOrderedEventListener {
+
+    @Autowired
+    private UserEventListener userEventListener;
+
+    @Autowired
+    private InternalEventListener internalEventListener;
+
+    @Autowired
+    private VoteSagaListener voteSagaListener;
+
+    @Value("${gamification.kafka.key-ordered.concurrency.user-events:${gamification.kafka.key-ordered.default-concurrency:8}}")
+    private int userEventsConcurrency;
+
+    @Value("${gamification.kafka.key-ordered.concurrency.internal-events:${gamification.kafka.key-ordered.default-concurrency:8}}")
+    private int internalEventsConcurrency;
+
+    @Value("${gamification.kafka.key-ordered.concurrency.vote-saga:${gamification.kafka.key-ordered.default-concurrency:8}}")
+    private int voteSagaConcurrency;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private KeyOrderedDispatcher userEvents;
+    private KeyOrderedDispatcher internalEvents;
+    private KeyOrderedDispatcher voteSaga;
+
+    @PostConstruct
+    public void init() {
+        // User events carry the user id as "uuid" inside the envelope payload
+        userEvents = new KeyOrderedDispatcher("user-events", userEventsConcurrency, Set.of("uuid", "userId"), virtualThreads);
+        internalEvents = new KeyOrderedDispatcher("internal-events", internalEventsConcurrency, Set.of("userId"), virtualThreads);
+        // SAGA records are keyed by sagaId: lane by the payload's userId instead, so one user's reservations
+        // never race each other
+        voteSaga = new KeyOrderedDispatcher("vote-saga", voteSagaConcurrency, Set.of("userId"), true, virtualThreads);
+        log.info("Key-ordered Kafka listeners enabled (user-events={}, internal-events={}, vote-saga={} lanes)",
+                userEventsConcurrency, internalEventsConcurrency, voteSagaConcurrency);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        userEvents.shutdown();
+        internalEvents.shutdown();
+        voteSaga.shutdown();
+    }
+
+    @KafkaListener(topics = "user.events", groupId = "gamification-service", containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleUserEvents(List<ConsumerRecord<String, byte[]>> records) {
+        userEvents.dispatch(records, record -> userEventListener.handleUserEvent(record.value()));
+    }
+
+    @KafkaListener(topics = "internal_gamification_events", groupId = "gamification-service-internal", containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleInternalEvents(List<ConsumerRecord<String, byte[]>> records) {
+        internalEvents.dispatch(records, record -> internalEventListener.handleLevelUpEvent(record.value()));
+    }
+
+    @KafkaListener(topics = "vote-saga.start", groupId = "gamification-service-vote-saga", containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleVoteSagaStartEvents(List<ConsumerRecord<String, byte[]>> records) {
+        voteSaga.dispatch(records, record -> voteSagaListener.handleVoteSagaStart(record.value()));
+    }
+
+    @KafkaListener(topics = "vote-saga.vote-created", groupId = "gamification-service-vote-saga", containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleVoteSagaVoteCreatedEvents(List<ConsumerRecord<String, byte[]>> records) {
+        voteSaga.dispatch(records, record -> voteSagaListener.handleVoteSagaVoteCreated(record.value()));
+    }
+
+    @KafkaListener(topics = "vote-saga.compensate-yuan", groupId = "gamification-service-vote-saga", containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleVoteSagaCompensationEvents(List<ConsumerRecord<String, byte[]>> records) {
+        voteSaga.dispatch(records, record -> voteSagaListener.handleVoteSagaCompensation(record.value()));
+    }
+}
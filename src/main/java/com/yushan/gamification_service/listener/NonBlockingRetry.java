@@ -0,0 +1,36 @@
+package com.yushan.gamification_service.listener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.retry.annotation.Backoff;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Non-blocking retries for a record listener.
+ *
+ * A failing record is moved to "<topic>.retry-<delay>" topics with exponentially growing delays and finally to
+ * "<topic>.DLT", so the main partition keeps moving while the record waits. Records that cannot be parsed go
+ * straight to the DLT. DLT records can be re-driven with POST /api/v1/gamification/admin/kafka/dlt/{topic}/replay.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@RetryableTopic(
+        attempts = "${gamification.kafka.retry.attempts:4}",
+        backoff = @Backoff(
+                delayExpression = "${gamification.kafka.retry.initial-delay-ms:1000}",
+                multiplierExpression = "${gamification.kafka.retry.multiplier:4}",
+                maxDelayExpression = "${gamification.kafka.retry.max-delay-ms:60000}"),
+        kafkaTemplate = "deadLetterKafkaTemplate",
+        autoCreateTopics = "${gamification.kafka.retry.auto-create-topics:true}",
+        numPartitions = "${gamification.kafka.retry.partitions:-1}",
+        replicationFactor = "${gamification.kafka.retry.replication-factor:-1}",
+        retryTopicSuffix = ".retry",
+        dltTopicSuffix = ".DLT",
+        exclude = JsonProcessingException.class,
+        traversingCauses = "true")
+@interface NonBlockingRetry {
+}
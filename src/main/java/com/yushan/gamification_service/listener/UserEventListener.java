@@ -1,6 +1,5 @@
 package com.yushan.gamification_service.listener;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yushan.gamification_service.dto.event.EventEnvelope;
 import com.yushan.gamification_service.dto.event.UserLoggedInEvent;
 import com.yushan.gamification_service.dto.event.UserRegisteredEvent;
@@ -22,7 +21,7 @@ public class UserEventListener {
     private GamificationService gamificationService;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private EventReader eventReader;
 
     @Autowired
     private IdempotencyService idempotencyService;
@@ -30,58 +29,51 @@ public class UserEventListener {
     private static final String IDEMPOTENCY_PREFIX_REGISTRATION = "idempotency:user-registration:";
     private static final String IDEMPOTENCY_PREFIX_LOGIN = "idempotency:user-login:";
 
-    @KafkaListener(topics = "user.events", groupId = "gamification-service")
-    public void handleUserEvent(String message) {
+    @NonBlockingRetry
+    @KafkaListener(topics = "user.events", groupId = "gamification-service", autoStartup = "#{!${gamification.kafka.key-ordered.enabled:false}}")
+    public void handleUserEvent(byte[] message) {
         try {
-            EventEnvelope envelope = objectMapper.readValue(message, EventEnvelope.class);
+            EventEnvelope envelope = eventReader.readUserEvent(message);
 
-            switch (envelope.eventType()) {
-                case "UserRegisteredEvent":
-                    UserRegisteredEvent registeredEvent = objectMapper.treeToValue(envelope.payload(), UserRegisteredEvent.class);
+            switch (envelope.payload()) {
+                case UserRegisteredEvent registeredEvent:
                     UUID userId = registeredEvent.uuid();
                     
-                    // Idempotency check: registration should only happen once per user (hybrid: Redis + Database)
+                    // Idempotency: registration should only happen once per user (claim + reward in one transaction)
                     String registrationKey = IDEMPOTENCY_PREFIX_REGISTRATION + userId;
-                    if (idempotencyService.isProcessed(registrationKey, "UserRegistration")) {
+                    log.info("Processing UserRegisteredEvent for email: {}", registeredEvent.email());
+                    boolean registrationProcessed = idempotencyService.processOnce(registrationKey, "UserRegistration",
+                            () -> gamificationService.processUserRegistration(userId));
+                    if (!registrationProcessed) {
                         log.info("UserRegistrationEvent already processed, skipping: userId={}", userId);
                         return;
                     }
-                    
-                    log.info("Processing UserRegisteredEvent for email: {}", registeredEvent.email());
-                    gamificationService.processUserRegistration(userId);
-                    
-                    // Mark as processed (both Redis and Database)
-                    idempotencyService.markAsProcessed(registrationKey, "UserRegistration");
                     log.info("Successfully processed UserRegistrationEvent for userId: {}", userId);
                     break;
 
-                case "UserLoggedInEvent":
-                    UserLoggedInEvent loggedInEvent = objectMapper.treeToValue(envelope.payload(), UserLoggedInEvent.class);
+                case UserLoggedInEvent loggedInEvent:
                     UUID loginUserId = loggedInEvent.uuid();
                     
-                    // Idempotency check: daily login reward should only be processed once per day (hybrid: Redis + Database)
+                    // Idempotency: daily login reward should only be processed once per day (claim + reward in one transaction)
                     // Use userId + date as key (processUserLogin already checks if reward was claimed today)
                     LocalDate today = LocalDate.now();
                     String loginKey = IDEMPOTENCY_PREFIX_LOGIN + loginUserId + ":" + today;
-                    if (idempotencyService.isProcessed(loginKey, "UserLogin")) {
+                    log.info("Processing UserLoggedInEvent for email: {}", loggedInEvent.email());
+                    boolean loginProcessed = idempotencyService.processOnce(loginKey, "UserLogin",
+                            () -> gamificationService.processUserLogin(loginUserId));
+                    if (!loginProcessed) {
                         log.info("UserLoggedInEvent already processed for today, skipping: userId={}, date={}", loginUserId, today);
                         return;
                     }
-                    
-                    log.info("Processing UserLoggedInEvent for email: {}", loggedInEvent.email());
-                    gamificationService.processUserLogin(loginUserId);
-                    
-                    // Mark as processed (both Redis and Database)
-                    idempotencyService.markAsProcessed(loginKey, "UserLogin");
                     log.info("Successfully processed UserLoggedInEvent for userId: {}", loginUserId);
                     break;
 
-                default:
+                case null:
                     log.warn("Received unknown event type: {}", envelope.eventType());
                     break;
             }
         } catch (Exception e) {
-            log.error("Failed to process event message: {}", message, e);
+            log.error("Failed to process event message: {}", EventReader.text(message), e);
             // Re-throw to trigger Kafka retry mechanism
             throw new RuntimeException("Failed to process user event", e);
         }
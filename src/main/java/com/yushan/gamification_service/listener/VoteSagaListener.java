@@ -42,6 +42,9 @@ public class VoteSagaListener {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private EventReader eventReader;
+
     @Autowired
     private IdempotencyService idempotencyService;
 
@@ -60,201 +63,170 @@ public class VoteSagaListener {
     /**
      * Step 1: Start SAGA - Reserve Yuan
      * Listens to vote-saga.start topic
+     * Business rejections (e.g. insufficient Yuan) fail the SAGA; any other error is re-thrown so the record
+     * goes through the retry topics, and unparseable payloads go straight to the DLT
      */
-    @KafkaListener(topics = SAGA_TOPIC_START, groupId = "gamification-service-vote-saga")
-    public void handleVoteSagaStart(@Payload String eventJson) {
+    @NonBlockingRetry
+    @KafkaListener(topics = SAGA_TOPIC_START, groupId = "gamification-service-vote-saga", autoStartup = "#{!${gamification.kafka.key-ordered.enabled:false}}")
+    public void handleVoteSagaStart(@Payload byte[] payload) {
+        VoteSagaStartEvent event;
         try {
-            log.info("Received VoteSagaStartEvent: {}", eventJson);
-            
-            VoteSagaStartEvent event = objectMapper.readValue(eventJson, VoteSagaStartEvent.class);
+            event = eventReader.readVoteSagaStart(payload);
+        } catch (Exception e) {
+            log.error("Failed to parse VoteSagaStartEvent: {}", EventReader.text(payload), e);
+            throw new RuntimeException("Failed to parse VoteSagaStartEvent", e);
+        }
+        try {
+            log.info("Received VoteSagaStartEvent: {}", event);
             
-            // Idempotency check
+            // Idempotency: claim + reservation in one transaction
             String idempotencyKey = IDEMPOTENCY_PREFIX_SAGA_START + event.getSagaId();
-            if (idempotencyService.isProcessed(idempotencyKey, "VoteSagaStart")) {
+            boolean processed = idempotencyService.processOnce(idempotencyKey, "VoteSagaStart",
+                    () -> reserveYuanForSaga(event));
+            if (!processed) {
                 log.info("VoteSagaStartEvent already processed, skipping: sagaId={}", event.getSagaId());
-                return;
             }
-
-            // Check for pending reservations
-            YuanReservation pendingReservation = yuanReservationService.getReservationBySagaId(event.getSagaId());
-            if (pendingReservation != null && 
-                pendingReservation.getStatus() == YuanReservation.ReservationStatus.RESERVED) {
-                log.warn("Reservation already exists for SAGA: {}", event.getSagaId());
-                // Continue with existing reservation
-                publishYuanReservedEvent(event, pendingReservation.getReservationId());
-                idempotencyService.markAsProcessed(idempotencyKey, "VoteSagaStart");
-                return;
-            }
-
-            // Reserve Yuan
-            UUID reservationId = yuanReservationService.reserveYuan(
-                event.getUserId(),
-                1.0, // 1 Yuan per vote
-                event.getSagaId()
-            );
-
-            // Publish Yuan reserved event
-            publishYuanReservedEvent(event, reservationId);
-            
-            // Mark as processed
-            idempotencyService.markAsProcessed(idempotencyKey, "VoteSagaStart");
-            
-            log.info("Successfully processed VoteSagaStartEvent: sagaId={}, reservationId={}", 
-                    event.getSagaId(), reservationId);
                     
         } catch (ValidationException e) {
-            log.error("Validation failed for VoteSagaStartEvent: {}", eventJson, e);
-            handleSagaFailure(eventJson, e.getMessage());
+            log.error("Validation failed for VoteSagaStartEvent: {}", event, e);
+            handleSagaFailure(event, e.getMessage());
         } catch (Exception e) {
-            log.error("Error processing VoteSagaStartEvent: {}", eventJson, e);
-            handleSagaFailure(eventJson, "Failed to reserve Yuan: " + e.getMessage());
+            log.error("Error processing VoteSagaStartEvent: {}", event, e);
+            // Re-throw to trigger Kafka retry mechanism
+            throw new RuntimeException("Failed to process VoteSagaStartEvent", e);
         }
     }
 
+    /**
+     * Reserve Yuan for a new SAGA (or reuse a pending reservation) and publish the reserved event
+     */
+    private void reserveYuanForSaga(VoteSagaStartEvent event) {
+        // Check for pending reservations
+        YuanReservation pendingReservation = yuanReservationService.getReservationBySagaId(event.getSagaId());
+        if (pendingReservation != null && 
+            pendingReservation.getStatus() == YuanReservation.ReservationStatus.RESERVED) {
+            log.warn("Reservation already exists for SAGA: {}", event.getSagaId());
+            // Continue with existing reservation
+            publishYuanReservedEvent(event, pendingReservation.getReservationId());
+            return;
+        }
+
+        // Reserve Yuan
+        UUID reservationId = yuanReservationService.reserveYuan(
+            event.getUserId(),
+            1.0, // 1 Yuan per vote
+            event.getSagaId()
+        );
+
+        // Publish Yuan reserved event
+        publishYuanReservedEvent(event, reservationId);
+        
+        log.info("Successfully processed VoteSagaStartEvent: sagaId={}, reservationId={}", 
+                event.getSagaId(), reservationId);
+    }
+
     /**
      * Step 3: Confirm & Finalize - After vote is created
      * Listens to vote-saga.vote-created topic
+     * Compensation runs only when the confirmation is rejected (ValidationException); any other error is
+     * re-thrown so the record goes through the retry topics instead of deleting the vote. Records that are
+     * still failing end up in the DLT, and their reservation is released by the expiry job meanwhile
      */
-    @KafkaListener(topics = SAGA_TOPIC_VOTE_CREATED, groupId = "gamification-service-vote-saga")
-    public void handleVoteSagaVoteCreated(@Payload String eventJson) {
-        VoteSagaVoteCreatedEvent event = null;
+    @NonBlockingRetry
+    @KafkaListener(topics = SAGA_TOPIC_VOTE_CREATED, groupId = "gamification-service-vote-saga", autoStartup = "#{!${gamification.kafka.key-ordered.enabled:false}}")
+    public void handleVoteSagaVoteCreated(@Payload byte[] payload) {
+        VoteSagaVoteCreatedEvent event;
         try {
-            log.info("Received VoteSagaVoteCreatedEvent: {}", eventJson);
-            
-            // Parse event - handle case where JSON might be double-encoded or escaped
-            String jsonToParse = eventJson;
-            if (jsonToParse.startsWith("\"") && jsonToParse.endsWith("\"")) {
-                // Remove outer quotes if double-encoded
-                jsonToParse = jsonToParse.substring(1, jsonToParse.length() - 1).replace("\\\"", "\"");
-            }
-            
-            // Parse event first
-            event = objectMapper.readValue(jsonToParse, VoteSagaVoteCreatedEvent.class);
+            // Double-encoded payloads are unwrapped by the reader
+            event = eventReader.readVoteSagaVoteCreated(payload);
+        } catch (Exception e) {
+            log.error("Failed to parse VoteSagaVoteCreatedEvent: {}", EventReader.text(payload), e);
+            throw new RuntimeException("Failed to parse VoteSagaVoteCreatedEvent", e);
+        }
+        try {
+            log.info("Received VoteSagaVoteCreatedEvent: {}", event);
             
-            // Idempotency check
+            // Idempotency: claim + confirmation + EXP award in one transaction
             String idempotencyKey = "idempotency:vote-saga-confirm:" + event.getSagaId();
-            if (idempotencyService.isProcessed(idempotencyKey, "VoteSagaConfirm")) {
+            boolean processed = idempotencyService.processOnce(idempotencyKey, "VoteSagaConfirm", () -> {
+                // Confirm reservation (convert to actual deduction)
+                // This method will check balance, create YuanTransaction, and mark reservation as CONFIRMED
+                yuanReservationService.confirmReservation(event.getReservationId(), event.getUserId(), userProgressRepository);
+                
+                // Award EXP for voting (without deducting Yuan - already done in confirmReservation)
+                gamificationService.awardExpForVote(event.getUserId());
+            });
+            if (!processed) {
                 log.info("VoteSagaVoteCreatedEvent already processed, skipping: sagaId={}", event.getSagaId());
                 return;
             }
-
-            // Confirm reservation (convert to actual deduction)
-            // This method will check balance, create YuanTransaction, and mark reservation as CONFIRMED
-            yuanReservationService.confirmReservation(event.getReservationId(), event.getUserId(), userProgressRepository);
-            
-            // Award EXP for voting (without deducting Yuan - already done in confirmReservation)
-            gamificationService.awardExpForVote(event.getUserId());
-            
-            // Mark as processed
-            idempotencyService.markAsProcessed(idempotencyKey, "VoteSagaConfirm");
             
             log.info("Successfully confirmed Yuan deduction and awarded EXP: sagaId={}, userId={}", 
                     event.getSagaId(), event.getUserId());
                     
+        } catch (ValidationException e) {
+            log.error("Confirmation rejected for VoteSagaVoteCreatedEvent: {}", event, e);
+            String reason = "Failed to confirm Yuan deduction: " + e.getMessage();
+            
+            // Publish compensation event (release Yuan)
+            handleSagaCompensation(event.getSagaId(), event.getUserId(), event.getReservationId(), reason);
+            
+            // Publish failure event (so Engagement Service can delete vote)
+            VoteSagaFailedEvent failedEvent = VoteSagaFailedEvent.builder()
+                    .sagaId(event.getSagaId())
+                    .userId(event.getUserId())
+                    .novelId(event.getNovelId())
+                    .reservationId(event.getReservationId())
+                    .reason(reason)
+                    .timestamp(LocalDateTime.now())
+                    .build();
+            
+            kafkaTemplate.send(SAGA_TOPIC_FAILED, event.getSagaId(), failedEvent);
+            log.info("Published VoteSagaFailedEvent for compensation: sagaId={}, novelId={}", 
+                    event.getSagaId(), event.getNovelId());
         } catch (Exception e) {
-            log.error("Error processing VoteSagaVoteCreatedEvent: {}", eventJson, e);
-            // If confirmation fails, trigger compensation and publish failure event
-            if (event != null) {
-                // Use parsed event object - we have all info needed
-                String reason = "Failed to confirm Yuan deduction: " + e.getMessage();
-                
-                // Publish compensation event (release Yuan)
-                handleSagaCompensation(event.getSagaId(), event.getUserId(), event.getReservationId(), reason);
-                
-                // Publish failure event (so Engagement Service can delete vote)
-                VoteSagaFailedEvent failedEvent = VoteSagaFailedEvent.builder()
-                        .sagaId(event.getSagaId())
-                        .userId(event.getUserId())
-                        .novelId(event.getNovelId())
-                        .reservationId(event.getReservationId())
-                        .reason(reason)
-                        .timestamp(LocalDateTime.now())
-                        .build();
-                
-                kafkaTemplate.send(SAGA_TOPIC_FAILED, event.getSagaId(), failedEvent);
-                log.info("Published VoteSagaFailedEvent for compensation: sagaId={}, novelId={}", 
-                        event.getSagaId(), event.getNovelId());
-            } else {
-                // If we can't parse event, get reservation info from database using sagaId
-                try {
-                    // Try to extract sagaId from JSON string
-                    if (eventJson.contains("sagaId")) {
-                        String sagaId = extractSagaIdFromJson(eventJson);
-                        if (sagaId != null) {
-                            YuanReservation reservation = yuanReservationService.getReservationBySagaId(sagaId);
-                            if (reservation != null) {
-                                String reason = "Failed to confirm Yuan deduction: " + e.getMessage();
-                                handleSagaCompensation(sagaId, reservation.getUserId(), reservation.getReservationId(), reason);
-                                log.warn("Published compensation event but VoteSagaFailedEvent cannot be published without novelId: sagaId={}", sagaId);
-                            } else {
-                                log.error("Could not find reservation for sagaId: {}", sagaId);
-                            }
-                        }
-                    }
-                } catch (Exception parseEx) {
-                    log.error("Failed to extract sagaId from event JSON for compensation", parseEx);
-                }
-            }
-        }
-    }
-    
-    /**
-     * Extract sagaId from JSON string
-     */
-    private String extractSagaIdFromJson(String json) {
-        try {
-            // Simple JSON parsing to extract sagaId
-            int sagaIdStart = json.indexOf("\"sagaId\":\"") + 10;
-            if (sagaIdStart > 9) {
-                int sagaIdEnd = json.indexOf("\"", sagaIdStart);
-                if (sagaIdEnd > sagaIdStart) {
-                    return json.substring(sagaIdStart, sagaIdEnd);
-                }
-            }
-        } catch (Exception e) {
-            log.warn("Failed to extract sagaId from JSON string", e);
+            log.error("Error processing VoteSagaVoteCreatedEvent: {}", event, e);
+            // Re-throw to trigger Kafka retry mechanism
+            throw new RuntimeException("Failed to process VoteSagaVoteCreatedEvent", e);
         }
-        return null;
     }
 
     /**
      * Compensation Handler: Release Yuan reservation
      * Listens to vote-saga.compensate-yuan topic
      */
-    @KafkaListener(topics = SAGA_TOPIC_COMPENSATE, groupId = "gamification-service-vote-saga")
-    public void handleVoteSagaCompensation(@Payload String eventJson) {
+    @NonBlockingRetry
+    @KafkaListener(topics = SAGA_TOPIC_COMPENSATE, groupId = "gamification-service-vote-saga", autoStartup = "#{!${gamification.kafka.key-ordered.enabled:false}}")
+    public void handleVoteSagaCompensation(@Payload byte[] payload) {
         try {
-            log.info("Received VoteSagaCompensateYuanEvent: {}", eventJson);
-            
-            VoteSagaCompensateYuanEvent event = objectMapper.readValue(eventJson, VoteSagaCompensateYuanEvent.class);
+            VoteSagaCompensateYuanEvent event = eventReader.readVoteSagaCompensate(payload);
+            log.info("Received VoteSagaCompensateYuanEvent: {}", event);
             
-            // Idempotency check
+            // Idempotency: claim + release in one transaction
             String idempotencyKey = IDEMPOTENCY_PREFIX_SAGA_COMPENSATE + event.getSagaId();
-            if (idempotencyService.isProcessed(idempotencyKey, "VoteSagaCompensate")) {
+            boolean processed = idempotencyService.processOnce(idempotencyKey, "VoteSagaCompensate", () -> {
+                // Release reservation (rollback)
+                boolean released = yuanReservationService.releaseReservation(
+                    event.getReservationId(),
+                    event.getUserId()
+                );
+                
+                if (released) {
+                    log.info("Successfully released Yuan reservation: sagaId={}, reservationId={}", 
+                            event.getSagaId(), event.getReservationId());
+                } else {
+                    log.warn("Failed to release Yuan reservation (may already be processed): sagaId={}, reservationId={}", 
+                            event.getSagaId(), event.getReservationId());
+                }
+            });
+            if (!processed) {
                 log.info("VoteSagaCompensateYuanEvent already processed, skipping: sagaId={}", event.getSagaId());
-                return;
-            }
-
-            // Release reservation (rollback)
-            boolean released = yuanReservationService.releaseReservation(
-                event.getReservationId(),
-                event.getUserId()
-            );
-            
-            if (released) {
-                log.info("Successfully released Yuan reservation: sagaId={}, reservationId={}", 
-                        event.getSagaId(), event.getReservationId());
-            } else {
-                log.warn("Failed to release Yuan reservation (may already be processed): sagaId={}, reservationId={}", 
-                        event.getSagaId(), event.getReservationId());
             }
             
-            // Mark as processed
-            idempotencyService.markAsProcessed(idempotencyKey, "VoteSagaCompensate");
-            
         } catch (Exception e) {
-            log.error("Error processing VoteSagaCompensateYuanEvent: {}", eventJson, e);
-            // Don't throw - compensation should be idempotent
+            log.error("Error processing VoteSagaCompensateYuanEvent: {}", EventReader.text(payload), e);
+            // Re-throw so the release goes through the retry topics; the release is idempotent
+            throw new RuntimeException("Failed to process VoteSagaCompensateYuanEvent", e);
         }
     }
 
@@ -285,10 +257,8 @@ public class VoteSagaListener {
     /**
      * Handle SAGA failure
      */
-    private void handleSagaFailure(String eventJson, String reason) {
+    private void handleSagaFailure(VoteSagaStartEvent event, String reason) {
         try {
-            VoteSagaStartEvent event = objectMapper.readValue(eventJson, VoteSagaStartEvent.class);
-            
             VoteSagaFailedEvent failedEvent = VoteSagaFailedEvent.builder()
                     .sagaId(event.getSagaId())
                     .userId(event.getUserId())
@@ -5,8 +5,11 @@ import com.yushan.gamification_service.entity.Achievement;
 import com.yushan.gamification_service.entity.DailyRewardLog;
 import com.yushan.gamification_service.entity.ExpTransaction;
 import com.yushan.gamification_service.entity.UserAchievement;
+import com.yushan.gamification_service.entity.UserProgress;
 import com.yushan.gamification_service.entity.YuanTransaction;
+import com.yushan.gamification_service.util.TransactionCursor;
 
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
@@ -16,11 +19,23 @@ import java.util.UUID;
 /**
  * Repository interface for UserProgress aggregate.
  * Abstracts data access operations for ExpTransaction, YuanTransaction, Achievement, UserAchievement, DailyRewardLog.
+ * Ledger inserts also keep the materialized UserProgress balances in sync within the same transaction.
  */
 public interface UserProgressRepository {
     
+    /**
+     * Buffer the EXP / Yuan ledger rows written by the rest of the current transaction and insert them with one
+     * multi-row INSERT per ledger just before commit (or every max-buffered-rows rows). Balances are still updated
+     * immediately. Worth it for transactions that write several ledger rows; no-op outside a transaction.
+     */
+    void deferLedgerWrites();
+    
     // ExpTransaction operations
-    void saveExpTransaction(ExpTransaction transaction);
+    /**
+     * Insert an EXP ledger row and update the user's running total
+     * @return the user's total EXP including this transaction
+     */
+    double saveExpTransaction(ExpTransaction transaction);
     
     Double sumExpAmountByUserId(UUID userId);
     
@@ -43,6 +58,21 @@ public interface UserProgressRepository {
             int size
     );
     
+    /**
+     * Keyset page of a user's Yuan history; a null cursor reads the first page
+     */
+    List<YuanTransaction> findYuanTransactionsByUserIdAfter(UUID userId, TransactionCursor cursor, int limit);
+    
+    List<YuanTransaction> findYuanTransactionsWithFiltersAfter(
+            UUID userId,
+            OffsetDateTime startDate,
+            OffsetDateTime endDate,
+            TransactionCursor cursor,
+            int limit
+    );
+    
+    long estimateYuanTransactionCount();
+    
     long countYuanTransactionsWithFilters(
             UUID userId,
             OffsetDateTime startDate,
@@ -51,6 +81,22 @@ public interface UserProgressRepository {
     
     long countYuanTransactionsByUserId(UUID userId);
     
+    // UserProgress operations
+    Optional<UserProgress> findUserProgressByUserId(UUID userId);
+    
+    /**
+     * Insert the EXP and Yuan rows of a reward and update both balances in a single round trip
+     * @return the user's total EXP including the reward
+     */
+    double saveRewardTransactions(ExpTransaction expTransaction, YuanTransaction yuanTransaction);
+    
+    /**
+     * Multi-row insert of EXP and Yuan ledger rows (buffered if the transaction defers ledger writes);
+     * balances are updated with one upsert per batch
+     * @return the updated balances of every user touched by the batch
+     */
+    List<UserProgress> saveRewardTransactionsBatch(List<ExpTransaction> expTransactions, List<YuanTransaction> yuanTransactions);
+    
     // Achievement operations
     Optional<Achievement> findAchievementById(String id);
     
@@ -65,6 +111,12 @@ public interface UserProgressRepository {
     
     Long findUserAchievementByUserIdAndAchievementId(UUID userId, String achievementId);
     
+    /**
+     * Unlock an achievement unless the user already owns it
+     * @return true if the achievement was newly unlocked
+     */
+    boolean saveUserAchievementIfAbsent(UUID userId, String achievementId);
+    
     List<AchievementDTO> findUnlockedAchievementsByUserId(UUID userId);
     
     // DailyRewardLog operations
@@ -73,5 +125,11 @@ public interface UserProgressRepository {
     void saveDailyRewardLog(DailyRewardLog log);
     
     void updateDailyRewardLog(DailyRewardLog log);
+    
+    /**
+     * Claim the daily reward for the given date (insert or advance the reward log)
+     * @return the user's total EXP before the reward, or null if already claimed for that date
+     */
+    Double claimDailyReward(UUID userId, LocalDate rewardDate);
 }
 
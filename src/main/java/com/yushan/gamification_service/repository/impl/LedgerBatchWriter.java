@@ -0,0 +1,153 @@
+package com.yushan.gamification_service.repository.impl;
+
+import com.yushan.gamification_service.dao.ExpTransactionMapper;
+import com.yushan.gamification_service.dao.YuanTransactionMapper;
+import com.yushan.gamification_service.entity.ExpTransaction;
+import com.yushan.gamification_service.entity.YuanTransaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write-behind buffer for ledger rows of one transaction.
+ *
+ * Once a transaction opts in with {@link #deferUntilCommit()}, appended EXP / Yuan ledger rows are kept in memory
+ * and written with one multi-row INSERT per ledger just before commit (or earlier, when the buffer is full or
+ * the transaction reads the ledgers). Rows keep their append order, so each user's rows get ascending ids in the
+ * order they were written; across transactions, the user_progress row lock taken by the balance update already
+ * orders writers of the same user. Balances are never deferred, only the ledger rows.
+ */
+@Component
+class LedgerBatchWriter {
+
+    private static final Object BUFFER_KEY = LedgerBatchWriter.class.getName() + ".buffer";
+
+    @Autowired
+    private ExpTransactionMapper expTransactionMapper;
+
+    @Autowired
+    private YuanTransactionMapper yuanTransactionMapper;
+
+    @Value("${gamification.ledger.write-behind.max-buffered-rows:1000}")
+    private int maxBufferedRows;
+
+    private static final class Buffer {
+        private final List<ExpTransaction> expRows = new ArrayList<>();
+        private final List<YuanTransaction> yuanRows = new ArrayList<>();
+
+        private int size() {
+            return expRows.size() + yuanRows.size();
+        }
+    }
+
+    /**
+     * Buffer the ledger rows appended in the current transaction until it commits.
+     * Without an active transaction this is a no-op and rows are written immediately.
+     */
+    void deferUntilCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || currentBuffer() != null) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(BUFFER_KEY, new Buffer());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                // Before MyBatis's own synchronization commits and releases the SqlSession
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                // Qualified: TransactionSynchronization declares its own (no-op) flush()
+                LedgerBatchWriter.this.flush();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(BUFFER_KEY);
+            }
+        });
+    }
+
+    /**
+     * @return false if the current transaction does not defer ledger writes; the caller must write the row itself
+     */
+    boolean append(ExpTransaction transaction) {
+        Buffer buffer = currentBuffer();
+        if (buffer == null) {
+            return false;
+        }
+        buffer.expRows.add(transaction);
+        flushIfFull(buffer);
+        return true;
+    }
+
+    /**
+     * @return false if the current transaction does not defer ledger writes; the caller must write the row itself
+     */
+    boolean append(YuanTransaction transaction) {
+        Buffer buffer = currentBuffer();
+        if (buffer == null) {
+            return false;
+        }
+        buffer.yuanRows.add(transaction);
+        flushIfFull(buffer);
+        return true;
+    }
+
+    /**
+     * Buffer many rows at once; the buffer is flushed every max-buffered-rows rows, which bounds the size of each
+     * multi-row INSERT
+     *
+     * @return false if the current transaction does not defer ledger writes; the caller must write the rows itself
+     */
+    boolean appendAll(List<ExpTransaction> expRows, List<YuanTransaction> yuanRows) {
+        Buffer buffer = currentBuffer();
+        if (buffer == null) {
+            return false;
+        }
+        for (ExpTransaction row : expRows) {
+            buffer.expRows.add(row);
+            flushIfFull(buffer);
+        }
+        for (YuanTransaction row : yuanRows) {
+            buffer.yuanRows.add(row);
+            flushIfFull(buffer);
+        }
+        return true;
+    }
+
+    /**
+     * Write the buffered rows now, e.g. before reading the ledgers in the same transaction
+     */
+    void flush() {
+        Buffer buffer = currentBuffer();
+        if (buffer == null) {
+            return;
+        }
+        if (!buffer.expRows.isEmpty()) {
+            expTransactionMapper.insertBatch(buffer.expRows);
+            buffer.expRows.clear();
+        }
+        if (!buffer.yuanRows.isEmpty()) {
+            yuanTransactionMapper.insertBatch(buffer.yuanRows);
+            buffer.yuanRows.clear();
+        }
+    }
+
+    private void flushIfFull(Buffer buffer) {
+        if (buffer.size() >= maxBufferedRows) {
+            flush();
+        }
+    }
+
+    private static Buffer currentBuffer() {
+        return (Buffer) TransactionSynchronizationManager.getResource(BUFFER_KEY);
+    }
+}
@@ -6,15 +6,28 @@ import com.yushan.gamification_service.entity.Achievement;
 import com.yushan.gamification_service.entity.DailyRewardLog;
 import com.yushan.gamification_service.entity.ExpTransaction;
 import com.yushan.gamification_service.entity.UserAchievement;
+import com.yushan.gamification_service.entity.UserProgress;
 import com.yushan.gamification_service.entity.YuanTransaction;
 import com.yushan.gamification_service.repository.UserProgressRepository;
+import com.yushan.gamification_service.service.RedisYuanReservationEngine;
+import com.yushan.gamification_service.util.TransactionCursor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 
 /**
@@ -39,40 +52,70 @@ public class MyBatisUserProgressRepository implements UserProgressRepository {
     @Autowired
     private DailyRewardLogMapper dailyRewardLogMapper;
     
+    @Autowired
+    private UserProgressMapper userProgressMapper;
+    
+    @Autowired
+    private LedgerBatchWriter ledgerBatchWriter;
+    
+    /**
+     * Resolved lazily: the engine itself writes the ledger through this repository
+     */
+    @Autowired
+    private ObjectProvider<RedisYuanReservationEngine> redisYuanReservationEngine;
+    
+    @Override
+    public void deferLedgerWrites() {
+        ledgerBatchWriter.deferUntilCommit();
+    }
+    
     // ExpTransaction operations
     @Override
-    public void saveExpTransaction(ExpTransaction transaction) {
-        expTransactionMapper.insert(transaction);
+    public double saveExpTransaction(ExpTransaction transaction) {
+        Double totalExp = ledgerBatchWriter.append(transaction)
+                ? userProgressMapper.addExpAndGet(transaction.getUserId(), transaction.getAmount())
+                : expTransactionMapper.insertAndAccumulate(transaction);
+        return (totalExp == null) ? 0.0 : totalExp;
     }
     
     @Override
     public Double sumExpAmountByUserId(UUID userId) {
+        ledgerBatchWriter.flush();
         return expTransactionMapper.sumAmountByUserId(userId);
     }
     
     @Override
     public List<Map<String, Object>> sumExpAmountGroupedByUser() {
+        ledgerBatchWriter.flush();
         return expTransactionMapper.sumAmountGroupedByUser();
     }
     
     @Override
     public List<Map<String, Object>> sumExpAmountGroupedByUsers(List<UUID> userIds) {
+        ledgerBatchWriter.flush();
         return expTransactionMapper.sumAmountGroupedByUsers(userIds);
     }
     
     // YuanTransaction operations
     @Override
+    @Transactional
     public void saveYuanTransaction(YuanTransaction transaction) {
-        yuanTransactionMapper.insert(transaction);
+        if (!ledgerBatchWriter.append(transaction)) {
+            yuanTransactionMapper.insert(transaction);
+        }
+        userProgressMapper.addYuan(transaction.getUserId(), transaction.getAmount());
+        syncRedisYuanBalances(List.of(transaction.getUserId()));
     }
     
     @Override
     public Double sumYuanAmountByUserId(UUID userId) {
+        ledgerBatchWriter.flush();
         return yuanTransactionMapper.sumAmountByUserId(userId);
     }
     
     @Override
     public List<YuanTransaction> findYuanTransactionsByUserIdPaged(UUID userId, int offset, int size) {
+        ledgerBatchWriter.flush();
         return yuanTransactionMapper.findByUserIdPaged(userId, offset, size);
     }
     
@@ -84,23 +127,116 @@ public class MyBatisUserProgressRepository implements UserProgressRepository {
             int offset,
             int size
     ) {
+        ledgerBatchWriter.flush();
         return yuanTransactionMapper.findWithFilters(userId, startDate, endDate, offset, size);
     }
     
+    @Override
+    public List<YuanTransaction> findYuanTransactionsByUserIdAfter(UUID userId, TransactionCursor cursor, int limit) {
+        ledgerBatchWriter.flush();
+        return yuanTransactionMapper.findByUserIdAfter(
+                userId,
+                cursor != null ? cursor.createdAt() : null,
+                cursor != null ? cursor.id() : null,
+                limit);
+    }
+    
+    @Override
+    public List<YuanTransaction> findYuanTransactionsWithFiltersAfter(
+            UUID userId,
+            OffsetDateTime startDate,
+            OffsetDateTime endDate,
+            TransactionCursor cursor,
+            int limit
+    ) {
+        ledgerBatchWriter.flush();
+        return yuanTransactionMapper.findWithFiltersAfter(
+                userId, startDate, endDate,
+                cursor != null ? cursor.createdAt() : null,
+                cursor != null ? cursor.id() : null,
+                limit);
+    }
+    
+    @Override
+    public long estimateYuanTransactionCount() {
+        return yuanTransactionMapper.estimateCount();
+    }
+    
     @Override
     public long countYuanTransactionsWithFilters(
             UUID userId,
             OffsetDateTime startDate,
             OffsetDateTime endDate
     ) {
+        ledgerBatchWriter.flush();
         return yuanTransactionMapper.countWithFilters(userId, startDate, endDate);
     }
     
     @Override
     public long countYuanTransactionsByUserId(UUID userId) {
+        ledgerBatchWriter.flush();
         return yuanTransactionMapper.countByUserId(userId);
     }
     
+    // UserProgress operations
+    @Override
+    public Optional<UserProgress> findUserProgressByUserId(UUID userId) {
+        return userProgressMapper.findByUserId(userId);
+    }
+    
+    @Override
+    public double saveRewardTransactions(ExpTransaction expTransaction, YuanTransaction yuanTransaction) {
+        ledgerBatchWriter.flush();
+        Double totalExp = userProgressMapper.insertRewardAndAccumulate(expTransaction, yuanTransaction);
+        syncRedisYuanBalances(List.of(yuanTransaction.getUserId()));
+        return (totalExp == null) ? 0.0 : totalExp;
+    }
+    
+    @Override
+    @Transactional
+    public List<UserProgress> saveRewardTransactionsBatch(List<ExpTransaction> expTransactions, List<YuanTransaction> yuanTransactions) {
+        // Deferred rows join the buffer behind the rows already in it, so the append order is kept
+        if (!ledgerBatchWriter.appendAll(expTransactions, yuanTransactions)) {
+            if (!expTransactions.isEmpty()) {
+                expTransactionMapper.insertBatch(expTransactions);
+            }
+            if (!yuanTransactions.isEmpty()) {
+                yuanTransactionMapper.insertBatch(yuanTransactions);
+            }
+        }
+        // Pre-aggregate per user: an upsert cannot touch the same row twice.
+        // Ordered like PostgreSQL orders uuids so concurrent batches lock rows in the same order.
+        Map<UUID, UserProgress> deltas = new TreeMap<>(Comparator.comparing(UUID::toString));
+        for (ExpTransaction transaction : expTransactions) {
+            UserProgress delta = deltas.computeIfAbsent(transaction.getUserId(), UserProgress::empty);
+            delta.setTotalExp(delta.getTotalExp() + transaction.getAmount());
+        }
+        for (YuanTransaction transaction : yuanTransactions) {
+            UserProgress delta = deltas.computeIfAbsent(transaction.getUserId(), UserProgress::empty);
+            delta.setYuanBalance(delta.getYuanBalance() + transaction.getAmount());
+        }
+        if (deltas.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<UserProgress> balances = userProgressMapper.addBatch(new ArrayList<>(deltas.values()));
+        if (!yuanTransactions.isEmpty()) {
+            Set<UUID> yuanUserIds = new LinkedHashSet<>();
+            yuanTransactions.forEach(transaction -> yuanUserIds.add(transaction.getUserId()));
+            syncRedisYuanBalances(yuanUserIds);
+        }
+        return balances;
+    }
+    
+    /**
+     * Yuan spent in Postgres must also leave the Redis reservation balance, or it could be reserved again
+     */
+    private void syncRedisYuanBalances(Collection<UUID> userIds) {
+        RedisYuanReservationEngine engine = redisYuanReservationEngine.getIfAvailable();
+        if (engine != null) {
+            engine.syncBalancesAfterCommit(userIds);
+        }
+    }
+    
     // Achievement operations
     @Override
     public Optional<Achievement> findAchievementById(String id) {
@@ -133,6 +269,11 @@ public class MyBatisUserProgressRepository implements UserProgressRepository {
         return userAchievementMapper.findByUserIdAndAchievementId(userId, achievementId);
     }
     
+    @Override
+    public boolean saveUserAchievementIfAbsent(UUID userId, String achievementId) {
+        return userAchievementMapper.insertIfAbsent(userId, achievementId) > 0;
+    }
+    
     @Override
     public List<AchievementDTO> findUnlockedAchievementsByUserId(UUID userId) {
         return userAchievementMapper.findUnlockedAchievementsByUserId(userId);
@@ -153,5 +294,10 @@ public class MyBatisUserProgressRepository implements UserProgressRepository {
     public void updateDailyRewardLog(DailyRewardLog log) {
         dailyRewardLogMapper.update(log);
     }
+    
+    @Override
+    public Double claimDailyReward(UUID userId, LocalDate rewardDate) {
+        return dailyRewardLogMapper.claim(userId, rewardDate);
+    }
 }
 
@@ -0,0 +1,56 @@
+package com.yushan.gamification_service.scheduler;
+
+import com.yushan.gamification_service.service.LeaderboardService;
+import com.yushan.gamification_service.service.ScheduledJobLockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task for rebuilding the Redis leaderboard from user_progress
+ */
+@Slf4j
+@Component
+public class LeaderboardRebuildScheduler {
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private ScheduledJobLockService scheduledJobLockService;
+
+    /**
+     * Populate the leaderboard in the background if Redis has none (first deploy, flushed Redis)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread loader = new Thread(() -> {
+            try {
+                if (!leaderboardService.isPopulated()) {
+                    leaderboardService.rebuild();
+                }
+            } catch (Exception e) {
+                log.warn("Initial leaderboard rebuild failed", e);
+            }
+        }, "leaderboard-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Nightly rebuild after the user_progress reconciliation (default 03:45)
+     */
+    @Scheduled(cron = "${gamification.leaderboard.rebuild-cron:0 45 3 * * *}")
+    public void rebuildLeaderboard() {
+        scheduledJobLockService.runExclusively("leaderboard-rebuild", () -> {
+            try {
+                leaderboardService.rebuild();
+            } catch (Exception e) {
+                log.error("Error during leaderboard rebuild", e);
+            }
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package com.yushan.gamification_service.scheduler;
+
+import com.yushan.gamification_service.service.LedgerCompactionService;
+import com.yushan.gamification_service.service.ScheduledJobLockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task that folds old EXP/Yuan ledger rows into ledger_snapshot and archives them
+ */
+@Slf4j
+@Component
+public class LedgerCompactionScheduler {
+
+    @Autowired
+    private LedgerCompactionService ledgerCompactionService;
+
+    @Autowired
+    private ScheduledJobLockService scheduledJobLockService;
+
+    @Value("${gamification.ledger.compaction.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Nightly compaction (default 02:30), before the reconciliation run
+     */
+    @Scheduled(cron = "${gamification.ledger.compaction.cron:0 30 2 * * *}")
+    public void compactLedgers() {
+        if (!enabled) {
+            return;
+        }
+        scheduledJobLockService.runExclusively("ledger-compaction", () -> {
+            try {
+                ledgerCompactionService.compactAll();
+            } catch (Exception e) {
+                log.error("Error compacting ledgers, the next run resumes from the last checkpoint", e);
+            }
+        });
+    }
+}
@@ -0,0 +1,50 @@
+package com.yushan.gamification_service.scheduler;
+
+import com.yushan.gamification_service.service.LedgerPartitionService;
+import com.yushan.gamification_service.service.ScheduledJobLockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task that pre-creates upcoming monthly partitions of exp_transactions and yuan_transactions
+ */
+@Slf4j
+@Component
+public class LedgerPartitionScheduler {
+
+    @Autowired
+    private LedgerPartitionService ledgerPartitionService;
+
+    @Autowired
+    private ScheduledJobLockService scheduledJobLockService;
+
+    @Value("${gamification.ledger.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    /**
+     * Run once at startup so a freshly deployed instance never writes into a missing partition
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        maintainPartitions();
+    }
+
+    /**
+     * Daily maintenance (default 00:20); a missed run is harmless while months-ahead partitions remain
+     */
+    @Scheduled(cron = "${gamification.ledger.partitions.cron:0 20 0 * * *}")
+    public void maintainPartitions() {
+        scheduledJobLockService.runExclusively("ledger-partitions", () -> {
+            try {
+                ledgerPartitionService.createUpcomingPartitions(monthsAhead);
+            } catch (Exception e) {
+                log.error("Error creating ledger partitions", e);
+            }
+        });
+    }
+}
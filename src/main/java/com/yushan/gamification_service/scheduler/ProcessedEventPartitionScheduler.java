@@ -0,0 +1,60 @@
+package com.yushan.gamification_service.scheduler;
+
+import com.yushan.gamification_service.service.IdempotencyService;
+import com.yushan.gamification_service.service.ScheduledJobLockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task for processed_events partition maintenance:
+ * pre-creates upcoming daily partitions, moves rows out of the default partition and drops the ones past
+ * the retention window
+ */
+@Slf4j
+@Component
+public class ProcessedEventPartitionScheduler {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private ScheduledJobLockService scheduledJobLockService;
+
+    @Value("${gamification.idempotency.partitions.days-ahead:7}")
+    private int daysAhead;
+
+    @Value("${gamification.idempotency.retention-days:30}")
+    private int retentionDays;
+
+    /**
+     * Run once at startup so a freshly deployed instance does not write into the default partition
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        maintainPartitions();
+    }
+
+    /**
+     * Daily maintenance (default 00:15)
+     */
+    @Scheduled(cron = "${gamification.idempotency.partitions.cron:0 15 0 * * *}")
+    public void maintainPartitions() {
+        scheduledJobLockService.runExclusively("processed-event-partitions", () -> {
+            try {
+                idempotencyService.createUpcomingPartitions(daysAhead);
+            } catch (Exception e) {
+                log.error("Error creating processed_events partitions", e);
+            }
+            try {
+                idempotencyService.cleanupOldProcessedEvents(retentionDays);
+            } catch (Exception e) {
+                log.error("Error dropping expired processed_events partitions", e);
+            }
+        });
+    }
+}
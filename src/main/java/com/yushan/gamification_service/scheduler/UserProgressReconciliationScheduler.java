@@ -0,0 +1,40 @@
+package com.yushan.gamification_service.scheduler;
+
+import com.yushan.gamification_service.service.UserProgressReconciliationService;
+import com.yushan.gamification_service.service.ScheduledJobLockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task for reconciling user_progress balances against the ledgers
+ */
+@Slf4j
+@Component
+public class UserProgressReconciliationScheduler {
+
+    @Autowired
+    private UserProgressReconciliationService reconciliationService;
+
+    @Autowired
+    private ScheduledJobLockService scheduledJobLockService;
+
+    /**
+     * Reconcile once a day during low traffic (default 03:30)
+     */
+    @Scheduled(cron = "${gamification.user-progress.reconciliation.cron:0 30 3 * * *}")
+    public void reconcileUserProgress() {
+        scheduledJobLockService.runExclusively("user-progress-reconciliation", () -> {
+            try {
+                log.debug("Starting user_progress reconciliation");
+                int drifted = reconciliationService.reconcile();
+                if (drifted > 0) {
+                    log.warn("user_progress reconciliation found {} drifted users", drifted);
+                }
+            } catch (Exception e) {
+                log.error("Error during user_progress reconciliation", e);
+            }
+        });
+    }
+}
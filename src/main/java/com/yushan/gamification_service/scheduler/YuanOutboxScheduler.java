@@ -0,0 +1,65 @@
+package com.yushan.gamification_service.scheduler;
+
+import com.yushan.gamification_service.service.RedisYuanReservationEngine;
+import com.yushan.gamification_service.service.ScheduledJobLockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drains confirmed Redis reservations into yuan_transactions and reconciles the Redis balances on startup.
+ * No-op unless saga.yuan-reservation.redis.enabled is set.
+ */
+@Slf4j
+@Component
+public class YuanOutboxScheduler {
+
+    private static final int MAX_PASSES_PER_RUN = 100;
+
+    @Autowired
+    private RedisYuanReservationEngine redisYuanReservationEngine;
+
+    @Autowired
+    private ScheduledJobLockService scheduledJobLockService;
+
+    /**
+     * Drain what earlier runs left behind and reload the Redis balances from Postgres, in the background
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!redisYuanReservationEngine.isEnabled()) {
+            return;
+        }
+        Thread reconciler = new Thread(() -> {
+            try {
+                redisYuanReservationEngine.reconcile();
+            } catch (Exception e) {
+                log.warn("Redis Yuan balance reconciliation failed", e);
+            }
+        }, "yuan-outbox-reconciler");
+        reconciler.setDaemon(true);
+        reconciler.start();
+    }
+
+    /**
+     * Drain the outbox until it is empty, at most 100 batches per run (default every second)
+     */
+    @Scheduled(fixedDelayString = "${saga.yuan-reservation.redis.outbox-drain-interval-ms:1000}")
+    public void drainOutbox() {
+        if (!redisYuanReservationEngine.isEnabled()) {
+            return;
+        }
+        scheduledJobLockService.runExclusively("yuan-outbox-drain", () -> {
+            try {
+                for (int pass = 0; pass < MAX_PASSES_PER_RUN && redisYuanReservationEngine.drainOutbox() > 0; pass++) {
+                    log.debug("Drained a batch of the Yuan outbox");
+                }
+            } catch (Exception e) {
+                log.error("Error draining Yuan outbox", e);
+            }
+        });
+    }
+}
@@ -1,13 +1,18 @@
 package com.yushan.gamification_service.scheduler;
 
+import com.yushan.gamification_service.service.YuanReservationExpiryWheel;
 import com.yushan.gamification_service.service.YuanReservationService;
+import com.yushan.gamification_service.service.ScheduledJobLockService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 /**
  * Scheduled task for cleaning up expired Yuan reservations
+ * Reservations normally expire on the expiry wheel; the periodic sweep is a safety net
  */
 @Slf4j
 @Component
@@ -16,24 +21,50 @@ public class YuanReservationCleanupScheduler {
     @Autowired
     private YuanReservationService yuanReservationService;
 
+    @Autowired
+    private ScheduledJobLockService scheduledJobLockService;
+
+    @Autowired
+    private YuanReservationExpiryWheel yuanReservationExpiryWheel;
+
     /**
-     * Cleanup expired reservations every 5 minutes
+     * Start the expiry wheel and schedule the reservations created before this instance started, in the background
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!yuanReservationExpiryWheel.isEnabled()) {
+            return;
+        }
+        yuanReservationExpiryWheel.start(yuanReservationService::releaseExpiredReservations);
+        Thread loader = new Thread(() -> {
+            try {
+                yuanReservationExpiryWheel.rebuild();
+            } catch (Exception e) {
+                log.warn("Rebuilding the Yuan reservation expiry wheel failed", e);
+            }
+        }, "yuan-expiry-wheel-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Cleanup expired reservations every 5 minutes (saga.yuan-reservation.sweep.interval-ms)
      * Runs at fixed rate: every 5 minutes after previous execution completes
      */
-    @Scheduled(fixedRate = 300000) // 5 minutes in milliseconds
+    @Scheduled(fixedRateString = "${saga.yuan-reservation.sweep.interval-ms:300000}")
     public void cleanupExpiredReservations() {
-        try {
-            log.debug("Starting cleanup of expired Yuan reservations");
-            int releasedCount = yuanReservationService.cleanupExpiredReservations();
-            if (releasedCount > 0) {
-                log.info("Cleaned up {} expired Yuan reservations", releasedCount);
-            } else {
-                log.debug("No expired Yuan reservations to clean up");
+        scheduledJobLockService.runExclusively("yuan-reservation-cleanup", () -> {
+            try {
+                log.debug("Starting cleanup of expired Yuan reservations");
+                int releasedCount = yuanReservationService.cleanupExpiredReservations();
+                if (releasedCount > 0) {
+                    log.info("Cleaned up {} expired Yuan reservations", releasedCount);
+                } else {
+                    log.debug("No expired Yuan reservations to clean up");
+                }
+            } catch (Exception e) {
+                log.error("Error during cleanup of expired Yuan reservations", e);
             }
-        } catch (Exception e) {
-            log.error("Error during cleanup of expired Yuan reservations", e);
-        }
+        });
     }
 }
-
-
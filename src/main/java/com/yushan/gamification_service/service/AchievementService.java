@@ -36,7 +36,10 @@ public class AchievementService {
     @Transactional
     public void checkAndUnlockLoginAchievements(UUID userId) {
         logger.debug("Checking login achievements for user: {}", userId);
-        unlockAchievementIfNotOwned(userId, ACHIEVEMENT_ID_FIRST_LOGIN);
+        // Runs on every login, so use a single conflict-ignoring insert instead of select-then-insert
+        if (userProgressRepository.saveUserAchievementIfAbsent(userId, ACHIEVEMENT_ID_FIRST_LOGIN)) {
+            logger.info("Unlocking achievement '{}' for user '{}'", ACHIEVEMENT_ID_FIRST_LOGIN, userId);
+        }
     }
 
     @Transactional
@@ -0,0 +1,189 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dto.admin.AdminAddYuanRequestDTO;
+import com.yushan.gamification_service.dto.admin.BulkJobDTO;
+import com.yushan.gamification_service.entity.YuanTransaction;
+import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.repository.UserProgressRepository;
+import com.yushan.gamification_service.util.CsvUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Admin Yuan grants for many users at once.
+ *
+ * The whole request is validated up front, so nothing is written unless every grant is valid. The grants are
+ * then written in the background in chunks, each chunk in its own short transaction with one multi-row ledger
+ * insert and one multi-row balance upsert. A failing chunk is rolled back and reported on the job by the
+ * position of its first grant; the remaining chunks still run.
+ */
+@Slf4j
+@Service
+public class AdminYuanBulkGrantService {
+
+    public static final String JOB_TYPE = "YUAN_BULK_GRANT";
+
+    private static final int MAX_REASON_LENGTH = 500;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final String DEFAULT_REASON = "Admin adjustment";
+
+    @Autowired
+    private UserProgressRepository userProgressRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BulkJobService bulkJobService;
+
+    @Value("${gamification.admin.bulk-yuan.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${gamification.admin.bulk-yuan.max-grants:1000000}")
+    private int maxGrants;
+
+    /**
+     * Validate all grants and start writing them in the background
+     *
+     * @throws ValidationException listing the first invalid grants (1-based positions) if any is invalid
+     */
+    public BulkJobDTO submit(List<AdminAddYuanRequestDTO> grants) {
+        if (grants == null || grants.isEmpty()) {
+            throw new ValidationException("grants must not be empty");
+        }
+        if (grants.size() > maxGrants) {
+            throw new ValidationException("At most " + maxGrants + " grants per request");
+        }
+
+        List<String> errors = new ArrayList<>();
+        int invalid = 0;
+        for (int i = 0; i < grants.size(); i++) {
+            String problem = validate(grants.get(i));
+            if (problem != null) {
+                if (invalid++ < MAX_REPORTED_ERRORS) {
+                    errors.add("grant " + (i + 1) + ": " + problem);
+                }
+            }
+        }
+        if (invalid > 0) {
+            throw new ValidationException(invalid + " invalid grants: " + String.join("; ", errors));
+        }
+
+        List<AdminAddYuanRequestDTO> snapshot = List.copyOf(grants);
+        return bulkJobService.submit(JOB_TYPE, job -> grant(snapshot, job));
+    }
+
+    /**
+     * Parse an uploaded CSV of user_id,amount[,reason] (header line starting with "user_id" is skipped),
+     * then validate and start it like {@link #submit(List)}; errors are reported by line number
+     */
+    public BulkJobDTO submitFile(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new ValidationException("Grant file must not be empty");
+        }
+        List<AdminAddYuanRequestDTO> grants = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        int invalid = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.regionMatches(true, 0, "user_id", 0, 7))) {
+                    continue;
+                }
+                String problem;
+                try {
+                    AdminAddYuanRequestDTO grant = parseLine(line);
+                    problem = validate(grant);
+                    grants.add(grant);
+                } catch (IllegalArgumentException e) {
+                    problem = e.getMessage();
+                }
+                if (problem != null && invalid++ < MAX_REPORTED_ERRORS) {
+                    errors.add("line " + lineNumber + ": " + problem);
+                }
+                if (grants.size() > maxGrants) {
+                    throw new ValidationException("At most " + maxGrants + " grants per file");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read grant file", e);
+        }
+        if (invalid > 0) {
+            throw new ValidationException(invalid + " invalid grants: " + String.join("; ", errors));
+        }
+        return submit(grants);
+    }
+
+    /**
+     * Write the grants chunk by chunk, recording progress and failed chunks on the job
+     */
+    void grant(List<AdminAddYuanRequestDTO> grants, BulkJob job) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int from = 0; from < grants.size(); from += chunkSize) {
+            List<AdminAddYuanRequestDTO> chunk = grants.subList(from, Math.min(from + chunkSize, grants.size()));
+            List<YuanTransaction> transactions = new ArrayList<>(chunk.size());
+            for (AdminAddYuanRequestDTO grant : chunk) {
+                YuanTransaction transaction = new YuanTransaction();
+                transaction.setUserId(grant.getUserId());
+                transaction.setAmount(grant.getAmount());
+                transaction.setDescription(grant.getReason() != null ? grant.getReason() : DEFAULT_REASON);
+                transactions.add(transaction);
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    // Large chunks are split into INSERTs of at most max-buffered-rows rows
+                    userProgressRepository.deferLedgerWrites();
+                    userProgressRepository.saveRewardTransactionsBatch(Collections.emptyList(), transactions);
+                });
+                job.addProcessed(chunk.size());
+            } catch (Exception e) {
+                log.warn("Bulk Yuan grant chunk of {} grants starting at {} failed", chunk.size(), from + 1, e);
+                job.addFailedChunk(from + 1, chunk.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return why the grant is invalid, or null
+     */
+    private static String validate(AdminAddYuanRequestDTO grant) {
+        if (grant == null || grant.getUserId() == null) {
+            return "userId must not be null";
+        }
+        if (grant.getAmount() == null || !Double.isFinite(grant.getAmount()) || grant.getAmount() < 0.01) {
+            return "amount must be greater than 0";
+        }
+        if (grant.getReason() != null && grant.getReason().length() > MAX_REASON_LENGTH) {
+            return "reason must be at most " + MAX_REASON_LENGTH + " characters";
+        }
+        return null;
+    }
+
+    static AdminAddYuanRequestDTO parseLine(String line) {
+        List<String> fields = CsvUtil.splitLine(line);
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("Expected 2 or 3 columns but got " + fields.size());
+        }
+        UUID userId = UUID.fromString(fields.get(0).trim());
+        double amount = Double.parseDouble(fields.get(1).trim());
+        String reason = fields.size() == 3 && !fields.get(2).isEmpty() ? fields.get(2) : null;
+        return new AdminAddYuanRequestDTO(userId, amount, reason);
+    }
+}
@@ -0,0 +1,98 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dto.admin.BulkJobDTO;
+import com.yushan.gamification_service.dto.admin.ChunkFailureDTO;
+import com.yushan.gamification_service.enums.BulkJobStatus;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one asynchronous bulk job, updated by the worker and read by the status endpoint
+ */
+public class BulkJob {
+
+    /** Only the first failures are kept; the failed row count covers all of them */
+    static final int MAX_REPORTED_FAILURES = 100;
+
+    private final UUID id = UUID.randomUUID();
+    private final String type;
+    private final OffsetDateTime startedAt = OffsetDateTime.now(ZoneOffset.UTC);
+    private final AtomicLong processedRows = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final List<ChunkFailureDTO> failures = new ArrayList<>();
+
+    private volatile BulkJobStatus status = BulkJobStatus.RUNNING;
+    private volatile OffsetDateTime finishedAt;
+    private volatile String error;
+
+    public BulkJob(String type) {
+        this.type = type;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public BulkJobStatus getStatus() {
+        return status;
+    }
+
+    public long getProcessedRows() {
+        return processedRows.get();
+    }
+
+    public long getFailedRows() {
+        return failedRows.get();
+    }
+
+    public void addProcessed(long rows) {
+        processedRows.addAndGet(rows);
+    }
+
+    /**
+     * Record rejected rows; the job continues with the next chunk
+     *
+     * @param firstRow 1-based position of the first rejected row in the job's input
+     */
+    public void addFailedChunk(long firstRow, long rows, String message) {
+        failedRows.addAndGet(rows);
+        synchronized (failures) {
+            if (failures.size() < MAX_REPORTED_FAILURES) {
+                failures.add(new ChunkFailureDTO(firstRow, rows, message));
+            }
+        }
+    }
+
+    void complete() {
+        finish(failedRows.get() > 0 ? BulkJobStatus.COMPLETED_WITH_ERRORS : BulkJobStatus.COMPLETED, null);
+    }
+
+    void fail(String message) {
+        finish(BulkJobStatus.FAILED, message);
+    }
+
+    private void finish(BulkJobStatus finalStatus, String message) {
+        error = message;
+        finishedAt = OffsetDateTime.now(ZoneOffset.UTC);
+        status = finalStatus;
+    }
+
+    boolean isFinishedBefore(OffsetDateTime time) {
+        OffsetDateTime finished = finishedAt;
+        return finished != null && finished.isBefore(time);
+    }
+
+    public BulkJobDTO toDTO() {
+        List<ChunkFailureDTO> reported;
+        synchronized (failures) {
+            reported = new ArrayList<>(failures);
+        }
+        return new BulkJobDTO(id, type, status, processedRows.get(), failedRows.get(),
+                startedAt, finishedAt, error, reported);
+    }
+}
@@ -0,0 +1,104 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dto.admin.BulkJobDTO;
+import com.yushan.gamification_service.enums.BulkJobStatus;
+import com.yushan.gamification_service.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs admin bulk jobs in the background and keeps their progress in memory.
+ *
+ * Jobs live on the instance that accepted them; finished jobs are forgotten after the retention period.
+ */
+@Slf4j
+@Service
+public class BulkJobService {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gamification.bulk-jobs.threads:2}")
+    private int threads;
+
+    @Value("${gamification.bulk-jobs.retention-minutes:1440}")
+    private long retentionMinutes;
+
+    private final Map<UUID, BulkJob> jobs = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("gamification.bulk_jobs.running", jobs,
+                        all -> all.values().stream().filter(job -> job.getStatus() == BulkJobStatus.RUNNING).count())
+                .description("Admin bulk jobs that have not finished yet")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start a job; the work reports progress on the job it is given.
+     * An exception thrown by the work marks the job as failed.
+     *
+     * @return the job's initial state, including the id to poll
+     */
+    public BulkJobDTO submit(String type, Consumer<BulkJob> work) {
+        evictFinishedJobs();
+        BulkJob job = new BulkJob(type);
+        jobs.put(job.getId(), job);
+        executor.execute(() -> run(type, job, work));
+        log.info("Started {} job {}", type, job.getId());
+        return job.toDTO();
+    }
+
+    public BulkJobDTO getJob(UUID jobId) {
+        BulkJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("Bulk job not found: " + jobId);
+        }
+        return job.toDTO();
+    }
+
+    private void run(String type, BulkJob job, Consumer<BulkJob> work) {
+        try {
+            work.accept(job);
+            job.complete();
+            log.info("{} job {} finished: {} rows processed, {} rows failed",
+                    type, job.getId(), job.getProcessedRows(), job.getFailedRows());
+        } catch (Exception e) {
+            log.error("{} job {} failed after {} rows", type, job.getId(), job.getProcessedRows(), e);
+            job.fail(e.getMessage());
+        }
+    }
+
+    private void evictFinishedJobs() {
+        OffsetDateTime cutoff = OffsetDateTime.now(ZoneOffset.UTC).minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinishedBefore(cutoff));
+    }
+}
@@ -0,0 +1,213 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dto.admin.BulkJobDTO;
+import com.yushan.gamification_service.exception.ValidationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-drives records parked in "<topic>.DLT" back onto the original topic.
+ *
+ * A replay reads the dead-letter partitions up to the end offsets seen when it starts, so records that fail
+ * again and land back in the DLT are not picked up by the same replay. Offsets are committed under a dedicated
+ * consumer group after each polled batch has been acknowledged by the broker, so the next replay continues
+ * where the previous one stopped. Dead-letter and retry headers are dropped; keys and other headers are kept.
+ */
+@Slf4j
+@Service
+public class DeadLetterReplayService {
+
+    public static final String JOB_TYPE = "DLT_REPLAY";
+    public static final String DLT_SUFFIX = ".DLT";
+
+    public static final Set<String> REPLAYABLE_TOPICS = Set.of(
+            "user.events",
+            "comment-events",
+            "review-events",
+            "vote-events",
+            "internal_gamification_events",
+            "vote-saga.start",
+            "vote-saga.vote-created",
+            "vote-saga.compensate-yuan");
+
+    private static final String DLT_HEADER_PREFIX = "kafka_dlt-";
+    private static final String RETRY_HEADER_PREFIX = "retry_topic-";
+    private static final int MAX_EMPTY_POLLS = 3;
+
+    @Autowired
+    private ConsumerFactory<String, Object> consumerFactory;
+
+    @Autowired
+    @Qualifier("deadLetterKafkaTemplate")
+    private KafkaTemplate<Object, Object> deadLetterKafkaTemplate;
+
+    @Autowired
+    private BulkJobService bulkJobService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gamification.kafka.dlt-replay.group-id:gamification-service-dlt-replay}")
+    private String groupId;
+
+    @Value("${gamification.kafka.dlt-replay.max-records:100000}")
+    private int maxRecordsLimit;
+
+    @Value("${gamification.kafka.dlt-replay.poll-timeout-ms:2000}")
+    private long pollTimeoutMs;
+
+    @Value("${gamification.kafka.dlt-replay.send-timeout-seconds:60}")
+    private long sendTimeoutSeconds;
+
+    private final Set<String> runningTopics = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Start replaying up to maxRecords dead-lettered records of the topic in the background
+     *
+     * @param topic the original topic (without the ".DLT" suffix)
+     */
+    public BulkJobDTO submit(String topic, int maxRecords) {
+        if (!REPLAYABLE_TOPICS.contains(topic)) {
+            throw new ValidationException("Unknown topic: " + topic + ". Replayable topics: " + REPLAYABLE_TOPICS);
+        }
+        if (maxRecords < 1 || maxRecords > maxRecordsLimit) {
+            throw new ValidationException("maxRecords must be between 1 and " + maxRecordsLimit);
+        }
+        if (!runningTopics.add(topic)) {
+            throw new ValidationException("A replay of " + topic + DLT_SUFFIX + " is already running");
+        }
+        try {
+            return bulkJobService.submit(JOB_TYPE, job -> {
+                try {
+                    replay(topic, maxRecords, job);
+                } finally {
+                    runningTopics.remove(topic);
+                }
+            });
+        } catch (RuntimeException e) {
+            runningTopics.remove(topic);
+            throw e;
+        }
+    }
+
+    /**
+     * Republish dead-lettered records batch by batch, committing each batch once every send has succeeded
+     */
+    void replay(String topic, int maxRecords, BulkJob job) {
+        String deadLetterTopic = topic + DLT_SUFFIX;
+        try (Consumer<byte[], byte[]> consumer = createConsumer()) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            List<PartitionInfo> infos = consumer.partitionsFor(deadLetterTopic);
+            if (infos != null) {
+                for (PartitionInfo info : infos) {
+                    partitions.add(new TopicPartition(deadLetterTopic, info.partition()));
+                }
+            }
+            if (partitions.isEmpty()) {
+                log.info("Nothing to replay: {} has no partitions", deadLetterTopic);
+                return;
+            }
+            consumer.assign(partitions);
+            Map<TopicPartition, Long> endOffsets = new HashMap<>(consumer.endOffsets(partitions));
+
+            int replayed = 0;
+            int emptyPolls = 0;
+            while (replayed < maxRecords && !reachedEnd(consumer, endOffsets)) {
+                ConsumerRecords<byte[], byte[]> records = consumer.poll(Duration.ofMillis(pollTimeoutMs));
+                if (records.isEmpty()) {
+                    // Offsets below the end can be gaps (compaction, transaction markers) that never yield a record
+                    if (++emptyPolls >= MAX_EMPTY_POLLS) {
+                        break;
+                    }
+                    continue;
+                }
+                emptyPolls = 0;
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                List<CompletableFuture<?>> sends = new ArrayList<>();
+                for (ConsumerRecord<byte[], byte[]> record : records) {
+                    TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                    if (replayed >= maxRecords || record.offset() >= endOffsets.getOrDefault(partition, 0L)) {
+                        continue;
+                    }
+                    sends.add(deadLetterKafkaTemplate.send(new ProducerRecord<>(
+                            topic, null, record.key(), record.value(), replayHeaders(record))));
+                    offsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+                    replayed++;
+                }
+                try {
+                    CompletableFuture.allOf(sends.toArray(new CompletableFuture[0]))
+                            .get(sendTimeoutSeconds, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    // Nothing of this batch is committed, so a later replay sends it again
+                    job.addFailedChunk(replayed - sends.size() + 1, sends.size(), e.getMessage());
+                    throw new IllegalStateException("Failed to republish records from " + deadLetterTopic, e);
+                }
+                consumer.commitSync(offsets);
+                job.addProcessed(sends.size());
+                meterRegistry.counter("gamification.kafka.dlt.replayed", "topic", topic).increment(sends.size());
+
+                // Continue from the committed offsets; records past maxRecords were fetched but not sent
+                offsets.forEach((partition, offset) -> consumer.seek(partition, offset.offset()));
+            }
+            log.info("Replayed {} records from {} to {}", replayed, deadLetterTopic, topic);
+        }
+    }
+
+    private static boolean reachedEnd(Consumer<byte[], byte[]> consumer, Map<TopicPartition, Long> endOffsets) {
+        for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet()) {
+            if (consumer.position(end.getKey()) < end.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static RecordHeaders replayHeaders(ConsumerRecord<byte[], byte[]> record) {
+        RecordHeaders headers = new RecordHeaders();
+        for (Header header : record.headers()) {
+            if (!header.key().startsWith(DLT_HEADER_PREFIX) && !header.key().startsWith(RETRY_HEADER_PREFIX)) {
+                headers.add(header);
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Raw consumer on the replay group: values are copied byte for byte, including records that failed to deserialize
+     */
+    Consumer<byte[], byte[]> createConsumer() {
+        Map<String, Object> configs = new HashMap<>(consumerFactory.getConfigurationProperties());
+        configs.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        configs.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        configs.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        return new KafkaConsumer<>(configs, new ByteArrayDeserializer(), new ByteArrayDeserializer());
+    }
+}
@@ -0,0 +1,73 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dto.event.EngagementReward;
+import com.yushan.gamification_service.enums.EngagementRewardType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Batch processing of engagement rewards for the batch Kafka listener.
+ *
+ * Flow per poll:
+ * 1. Drop in-batch duplicates, then bulk-check Redis + Database for already processed keys
+ * 2. Claim the remaining keys and award them in one transaction (multi-row inserts)
+ * 3. Cache the claimed keys in Redis once the transaction has committed (done by the caller)
+ */
+@Slf4j
+@Service
+public class EngagementRewardBatchService {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private GamificationService gamificationService;
+
+    /**
+     * Remove duplicate keys within the batch (first occurrence wins) and keys that were already processed
+     */
+    public List<EngagementReward> filterUnprocessed(List<EngagementReward> rewards) {
+        Map<String, EngagementReward> unique = new LinkedHashMap<>();
+        for (EngagementReward reward : rewards) {
+            unique.putIfAbsent(reward.idempotencyKey(), reward);
+        }
+        if (unique.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<String> processed = idempotencyService.findProcessedKeys(unique.keySet());
+        unique.keySet().removeAll(processed);
+        if (rewards.size() != unique.size()) {
+            log.info("Skipping {} duplicate or already processed rewards", rewards.size() - unique.size());
+        }
+        return new ArrayList<>(unique.values());
+    }
+
+    /**
+     * Claim the idempotency keys and award the rewards in a single transaction.
+     * Keys claimed concurrently by another consumer are skipped.
+     *
+     * @return the rewards that were actually awarded
+     */
+    @Transactional
+    public List<EngagementReward> award(EngagementRewardType type, List<EngagementReward> rewards) {
+        List<String> keys = rewards.stream().map(EngagementReward::idempotencyKey).toList();
+        Set<String> claimed = idempotencyService.claimAll(keys, type.getEventType());
+
+        List<EngagementReward> awarded = rewards.stream()
+                .filter(reward -> claimed.contains(reward.idempotencyKey()))
+                .toList();
+        if (!awarded.isEmpty()) {
+            gamificationService.awardEngagementBatch(type, awarded);
+        }
+        return awarded;
+    }
+}
@@ -6,11 +6,14 @@ import com.yushan.gamification_service.dto.stats.GamificationStatsDTO;
 import com.yushan.gamification_service.dto.user.UserLevelDTO;
 import com.yushan.gamification_service.dto.vote.VoteCheckResponseDTO;
 import com.yushan.gamification_service.dto.transaction.YuanTransactionDTO;
-import com.yushan.gamification_service.entity.DailyRewardLog;
 import com.yushan.gamification_service.entity.ExpTransaction;
+import com.yushan.gamification_service.entity.UserProgress;
 import com.yushan.gamification_service.entity.YuanTransaction;
+import com.yushan.gamification_service.dto.event.EngagementReward;
 import com.yushan.gamification_service.dto.event.LevelUpEvent;
+import com.yushan.gamification_service.enums.EngagementRewardType;
 import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.util.TransactionCursor;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +21,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import com.yushan.gamification_service.dto.common.CursorPageResponseDTO;
 import com.yushan.gamification_service.dto.common.PageResponseDTO;
 import com.yushan.gamification_service.dto.transaction.AdminYuanTransactionDTO;
 import java.time.OffsetDateTime;
@@ -61,7 +65,11 @@ public class GamificationService {
     @Autowired
     private TransactionAwareKafkaPublisher transactionAwareKafkaPublisher;
 
+    @Autowired
+    private LeaderboardService leaderboardService;
+
     private static final String INTERNAL_EVENTS_TOPIC = "internal_gamification_events";
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
 
     @Transactional
     public void processUserRegistration(UUID userId) {
@@ -73,14 +81,19 @@ public class GamificationService {
         logger.debug("Inserted Yuan transaction for user: {} with amount: {}", userId, registrationYuan);
     }
 
+    /**
+     * Award the daily login reward.
+     * The day is claimed atomically on the reward log, then both ledger rows and the balances
+     * are written in one statement, so a first login of the day costs two round trips.
+     */
     @Transactional
     public void processUserLogin(UUID userId) {
         logger.info("Processing login for user: {}", userId);
 
         LocalDate today = LocalDate.now();
-        Optional<DailyRewardLog> rewardLogOpt = userProgressRepository.findDailyRewardLogByUserId(userId);
+        Double previousTotalExp = userProgressRepository.claimDailyReward(userId, today);
 
-        if (rewardLogOpt.isPresent() && rewardLogOpt.get().getLastRewardDate().isEqual(today)) {
+        if (previousTotalExp == null) {
             logger.info("User {} has already claimed the daily reward today.", userId);
             achievementService.checkAndUnlockLoginAchievements(userId);
             return;
@@ -89,42 +102,26 @@ public class GamificationService {
         logger.info("Awarding daily login reward to user: {}", userId);
         
         // Calculate current level to determine Yuan reward
-        Double currentTotalExp = userProgressRepository.sumExpAmountByUserId(userId);
-        double currentTotalExpValue = (currentTotalExp == null) ? 0.0 : currentTotalExp;
-        int currentLevel = levelService.calculateLevel(currentTotalExpValue);
+        int currentLevel = levelService.calculateLevel(previousTotalExp);
         
         // (EXP)
         ExpTransaction expTransaction = new ExpTransaction();
         expTransaction.setUserId(userId);
         expTransaction.setAmount(dailyLoginExp);
         expTransaction.setReason("Daily Login Reward");
-        userProgressRepository.saveExpTransaction(expTransaction);
-        logger.debug("Inserted EXP transaction for user: {}", userId);
 
         // (Yuan) - Yuan = level (matching yushan-backend logic)
         YuanTransaction yuanTransaction = new YuanTransaction();
         yuanTransaction.setUserId(userId);
         yuanTransaction.setAmount((double) currentLevel); // Yuan = level
         yuanTransaction.setDescription("Daily Login Reward");
-        userProgressRepository.saveYuanTransaction(yuanTransaction);
-        logger.debug("Inserted Yuan transaction for user: {} with amount: {}", userId, currentLevel);
-
-        if (rewardLogOpt.isPresent()) {
-            DailyRewardLog rewardLog = rewardLogOpt.get();
-            rewardLog.setLastRewardDate(today);
-            userProgressRepository.updateDailyRewardLog(rewardLog);
-            logger.debug("Updated daily reward log for user: {}", userId);
-        } else {
-            DailyRewardLog newRewardLog = new DailyRewardLog();
-            newRewardLog.setUserId(userId);
-            newRewardLog.setLastRewardDate(today);
-            userProgressRepository.saveDailyRewardLog(newRewardLog);
-            logger.debug("Created new daily reward log for user: {}", userId);
-        }
+
+        double newTotalExp = userProgressRepository.saveRewardTransactions(expTransaction, yuanTransaction);
+        logger.debug("Inserted EXP and Yuan transactions for user: {} with Yuan amount: {}", userId, currentLevel);
 
         logger.info("Successfully processed login and awarded daily reward for user: {}", userId);
 
-        checkLevelUpAndPublishEvent(userId, dailyLoginExp);
+        onExpAwarded(userId, newTotalExp, dailyLoginExp);
         achievementService.checkAndUnlockLoginAchievements(userId);
     }
 
@@ -136,12 +133,12 @@ public class GamificationService {
         expTransaction.setUserId(userId);
         expTransaction.setAmount(commentExp);
         expTransaction.setReason("Posted a comment with ID: " + commentId);
-        userProgressRepository.saveExpTransaction(expTransaction);
+        double newTotalExp = userProgressRepository.saveExpTransaction(expTransaction);
         logger.debug("Awarded {} EXP to user {} for comment {}", commentExp, userId, commentId);
 
         achievementService.checkAndUnlockCommentAchievements(userId, 1L);
 
-        checkLevelUpAndPublishEvent(userId, commentExp);
+        onExpAwarded(userId, newTotalExp, commentExp);
     }
 
     @Transactional
@@ -152,21 +149,20 @@ public class GamificationService {
         expTransaction.setUserId(userId);
         expTransaction.setAmount(reviewExp);
         expTransaction.setReason("Posted a review with ID: " + reviewId);
-        userProgressRepository.saveExpTransaction(expTransaction);
+        double newTotalExp = userProgressRepository.saveExpTransaction(expTransaction);
         logger.debug("Awarded {} EXP to user {} for review {}", reviewExp, userId, reviewId);
 
         achievementService.checkAndUnlockReviewAchievements(userId, 1L);
 
-        checkLevelUpAndPublishEvent(userId, reviewExp);
+        onExpAwarded(userId, newTotalExp, reviewExp);
     }
 
 
     public GamificationStatsDTO getGamificationStatsForUser(UUID userId) {
-        Double totalExp = userProgressRepository.sumExpAmountByUserId(userId);
-        Double yuanBalance = userProgressRepository.sumYuanAmountByUserId(userId);
+        UserProgress progress = loadUserProgress(userId);
 
-        double totalExpValue = (totalExp == null) ? 0.0 : totalExp;
-        double yuanBalanceValue = (yuanBalance == null) ? 0.0 : yuanBalance;
+        double totalExpValue = progress.getTotalExp();
+        double yuanBalanceValue = progress.getYuanBalance();
 
         int currentLevel = levelService.calculateLevel(totalExpValue);
 
@@ -191,6 +187,23 @@ public class GamificationService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Keyset page of the user's Yuan history, newest first.
+     * The exact total is only counted when includeTotal is set.
+     */
+    public CursorPageResponseDTO<YuanTransactionDTO> getTransactionHistoryPage(UUID userId, String cursor, int size, boolean includeTotal) {
+        int limit = cursorPageSize(size);
+        List<YuanTransaction> rows = userProgressRepository.findYuanTransactionsByUserIdAfter(
+                userId, TransactionCursor.decode(cursor), limit + 1);
+
+        List<YuanTransactionDTO> content = rows.stream()
+                .limit(limit)
+                .map(t -> new YuanTransactionDTO(t.getAmount(), t.getDescription(), t.getCreatedAt()))
+                .collect(Collectors.toList());
+        Long total = includeTotal ? userProgressRepository.countYuanTransactionsByUserId(userId) : null;
+        return toCursorPage(rows, content, limit, total, false);
+    }
+
     public List<AchievementDTO> getUnlockedAchievements(UUID userId) {
         return userProgressRepository.findUnlockedAchievementsByUserId(userId);
     }
@@ -209,7 +222,7 @@ public class GamificationService {
         expTransaction.setUserId(userId);
         expTransaction.setAmount(voteExp);
         expTransaction.setReason("Voted on a novel");
-        userProgressRepository.saveExpTransaction(expTransaction);
+        double newTotalExp = userProgressRepository.saveExpTransaction(expTransaction);
 
         // Deduct Yuan
         YuanTransaction yuanTransaction = new YuanTransaction();
@@ -220,7 +233,7 @@ public class GamificationService {
 
         logger.info("Awarded {} EXP and deducted 1 Yuan from user {} for voting.", voteExp, userId);
         
-        checkLevelUpAndPublishEvent(userId, voteExp);
+        onExpAwarded(userId, newTotalExp, voteExp);
     }
 
     /**
@@ -235,20 +248,90 @@ public class GamificationService {
         expTransaction.setUserId(userId);
         expTransaction.setAmount(voteExp);
         expTransaction.setReason("Voted on a novel (SAGA)");
-        userProgressRepository.saveExpTransaction(expTransaction);
+        double newTotalExp = userProgressRepository.saveExpTransaction(expTransaction);
 
         logger.info("Awarded {} EXP to user {} for voting (SAGA flow).", voteExp, userId);
         
-        checkLevelUpAndPublishEvent(userId, voteExp);
+        onExpAwarded(userId, newTotalExp, voteExp);
     }
 
-    private void checkLevelUpAndPublishEvent(UUID userId, Double expGained) {
-        Double currentTotalExp = userProgressRepository.sumExpAmountByUserId(userId);
-        if (currentTotalExp == null) currentTotalExp = 0.0;
+    /**
+     * Award a batch of comment/review/vote rewards with multi-row ledger inserts and one balance upsert.
+     * Produces the same ledger rows, level-up events and achievement checks as the per-event methods;
+     * idempotency is the caller's responsibility.
+     */
+    @Transactional
+    public void awardEngagementBatch(EngagementRewardType type, List<EngagementReward> rewards) {
+        logger.info("Processing batch of {} {} rewards", rewards.size(), type);
+        // Ledger rows go out in INSERTs of at most max-buffered-rows rows, the last ones just before commit
+        userProgressRepository.deferLedgerWrites();
+
+        double expAmount = switch (type) {
+            case COMMENT -> commentExp;
+            case REVIEW -> reviewExp;
+            case VOTE -> voteExp;
+        };
+
+        List<ExpTransaction> expTransactions = new ArrayList<>(rewards.size());
+        List<YuanTransaction> yuanTransactions = new ArrayList<>();
+        Map<UUID, Double> expGainedByUser = new LinkedHashMap<>();
+        for (EngagementReward reward : rewards) {
+            ExpTransaction expTransaction = new ExpTransaction();
+            expTransaction.setUserId(reward.userId());
+            expTransaction.setAmount(expAmount);
+            expTransaction.setReason(switch (type) {
+                case COMMENT -> "Posted a comment with ID: " + reward.sourceId();
+                case REVIEW -> "Posted a review with ID: " + reward.sourceId();
+                case VOTE -> "Voted on a novel";
+            });
+            expTransactions.add(expTransaction);
+            expGainedByUser.merge(reward.userId(), expAmount, Double::sum);
+
+            if (type == EngagementRewardType.VOTE) {
+                // Deduct Yuan (same as processUserVote)
+                YuanTransaction yuanTransaction = new YuanTransaction();
+                yuanTransaction.setUserId(reward.userId());
+                yuanTransaction.setAmount(-1.0);
+                yuanTransaction.setDescription("Voted on a novel");
+                yuanTransactions.add(yuanTransaction);
+            }
+        }
+
+        List<UserProgress> balances = userProgressRepository.saveRewardTransactionsBatch(expTransactions, yuanTransactions);
+        logger.debug("Awarded {} EXP rows across {} users", expTransactions.size(), balances.size());
+
+        for (UserProgress balance : balances) {
+            Double expGained = expGainedByUser.get(balance.getUserId());
+            if (expGained != null) {
+                onExpAwarded(balance.getUserId(), balance.getTotalExp(), expGained);
+            }
+        }
 
+        for (UUID userId : expGainedByUser.keySet()) {
+            if (type == EngagementRewardType.COMMENT) {
+                achievementService.checkAndUnlockCommentAchievements(userId, 1L);
+            } else if (type == EngagementRewardType.REVIEW) {
+                achievementService.checkAndUnlockReviewAchievements(userId, 1L);
+            }
+        }
+    }
+
+    /**
+     * Post-write hook for every EXP award: update the leaderboard and check for a level-up
+     */
+    private void onExpAwarded(UUID userId, double currentTotalExp, double expGained) {
+        leaderboardService.recordExpAward(userId, currentTotalExp, expGained);
+        checkLevelUpAndPublishEvent(userId, currentTotalExp, expGained);
+    }
+
+    /**
+     * Compare levels before and after an EXP award.
+     * The new total comes straight from the EXP write, so no extra ledger query is needed.
+     */
+    private void checkLevelUpAndPublishEvent(UUID userId, double currentTotalExp, double expGained) {
         int currentLevel = levelService.calculateLevel(currentTotalExp);
 
-        Double previousTotalExp = currentTotalExp - expGained;
+        double previousTotalExp = currentTotalExp - expGained;
         int previousLevel = levelService.calculateLevel(previousTotalExp);
 
         if (currentLevel > previousLevel) {
@@ -290,9 +373,58 @@ public class GamificationService {
         return new PageResponseDTO<>(dtos, totalElements, page, size);
     }
 
+    /**
+     * Keyset page of all Yuan transactions for admin monitoring, newest first.
+     * With includeTotal, an unfiltered request gets the planner's row estimate instead of a full COUNT.
+     */
+    public CursorPageResponseDTO<AdminYuanTransactionDTO> findYuanTransactionsPageForAdmin(
+            UUID userId,
+            OffsetDateTime startDate,
+            OffsetDateTime endDate,
+            String cursor,
+            int size,
+            boolean includeTotal
+    ) {
+        int limit = cursorPageSize(size);
+        List<YuanTransaction> rows = userProgressRepository.findYuanTransactionsWithFiltersAfter(
+                userId, startDate, endDate, TransactionCursor.decode(cursor), limit + 1);
+
+        List<AdminYuanTransactionDTO> content = rows.stream()
+                .limit(limit)
+                .map(t -> new AdminYuanTransactionDTO(t.getId(), t.getUserId(), t.getAmount(), t.getDescription(), t.getCreatedAt()))
+                .collect(Collectors.toList());
+
+        Long total = null;
+        boolean estimated = false;
+        if (includeTotal) {
+            estimated = userId == null && startDate == null && endDate == null;
+            total = estimated
+                    ? userProgressRepository.estimateYuanTransactionCount()
+                    : userProgressRepository.countYuanTransactionsWithFilters(userId, startDate, endDate);
+        }
+        return toCursorPage(rows, content, limit, total, estimated);
+    }
+
+    private static int cursorPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+    }
+
+    /**
+     * rows holds one row more than the page when there is a next page; its cursor is the last row shown
+     */
+    private static <T> CursorPageResponseDTO<T> toCursorPage(
+            List<YuanTransaction> rows, List<T> content, int limit, Long total, boolean estimated) {
+        boolean hasNext = rows.size() > limit;
+        String nextCursor = null;
+        if (hasNext) {
+            YuanTransaction last = rows.get(limit - 1);
+            nextCursor = TransactionCursor.of(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPageResponseDTO<>(content, limit, hasNext, nextCursor, total, estimated);
+    }
+
     public UserLevelDTO getUserLevel(UUID userId) {
-        Double totalExp = userProgressRepository.sumExpAmountByUserId(userId);
-        double totalExpValue = (totalExp == null) ? 0.0 : totalExp;
+        double totalExpValue = loadUserProgress(userId).getTotalExp();
         
         int currentLevel = levelService.calculateLevel(totalExpValue);
         Double expForNextLevel = levelService.getExpForNextLevel(currentLevel);
@@ -324,11 +456,11 @@ public class GamificationService {
         expTransaction.setUserId(userId);
         expTransaction.setAmount(commentExp);
         expTransaction.setReason("Comment reward for comment ID: " + commentId);
-        userProgressRepository.saveExpTransaction(expTransaction);
+        double newTotalExp = userProgressRepository.saveExpTransaction(expTransaction);
         
         logger.info("Awarded {} EXP to user {} for comment {}", commentExp, userId, commentId);
         
-        checkLevelUpAndPublishEvent(userId, commentExp);
+        onExpAwarded(userId, newTotalExp, commentExp);
     }
 
 
@@ -341,11 +473,11 @@ public class GamificationService {
         expTransaction.setUserId(userId);
         expTransaction.setAmount(reviewExp);
         expTransaction.setReason("Review reward for review ID: " + reviewId);
-        userProgressRepository.saveExpTransaction(expTransaction);
+        double newTotalExp = userProgressRepository.saveExpTransaction(expTransaction);
         
         logger.info("Awarded {} EXP to user {} for review {}", reviewExp, userId, reviewId);
         
-        checkLevelUpAndPublishEvent(userId, reviewExp);
+        onExpAwarded(userId, newTotalExp, reviewExp);
     }
 
 
@@ -358,23 +490,25 @@ public class GamificationService {
         expTransaction.setUserId(userId);
         expTransaction.setAmount(voteExp);
         expTransaction.setReason("Vote reward");
-        userProgressRepository.saveExpTransaction(expTransaction);
+        double newTotalExp = userProgressRepository.saveExpTransaction(expTransaction);
         
         logger.info("Awarded {} EXP to user {} for voting", voteExp, userId);
         
-        checkLevelUpAndPublishEvent(userId, voteExp);
+        onExpAwarded(userId, newTotalExp, voteExp);
     }
 
 
     public VoteCheckResponseDTO checkVoteEligibility(UUID userId) {
-        Double yuanBalance = userProgressRepository.sumYuanAmountByUserId(userId);
-        double currentYuanBalance = (yuanBalance == null) ? 0.0 : yuanBalance;
+        // Yuan held by open SAGA reservations cannot be spent again, so only the rest counts (as in reserveYuan)
+        UserProgress progress = loadUserProgress(userId);
+        double reservedYuan = (progress.getYuanReserved() == null) ? 0.0 : progress.getYuanReserved();
+        double currentYuanBalance = progress.getYuanBalance() - reservedYuan;
         double requiredYuan = 1.0;
         
         boolean canVote = currentYuanBalance >= requiredYuan;
         String message = canVote ? 
-            "You can vote! You have " + currentYuanBalance + " Yuan." :
-            "Insufficient Yuan balance. You need at least " + requiredYuan + " Yuan to vote.";
+            "You can vote! You have " + currentYuanBalance + " Yuan available." :
+            "Insufficient Yuan balance. You need at least " + requiredYuan + " available Yuan to vote.";
         
         return new VoteCheckResponseDTO(canVote, currentYuanBalance, requiredYuan, message);
     }
@@ -416,6 +550,21 @@ public class GamificationService {
         logger.info("Successfully added {} Yuan to user {} by admin", amount, userId);
     }
 
+    /**
+     * Load the materialized balances of a user (O(1) primary-key lookup instead of summing the ledgers)
+     */
+    private UserProgress loadUserProgress(UUID userId) {
+        UserProgress progress = userProgressRepository.findUserProgressByUserId(userId)
+                .orElseGet(() -> UserProgress.empty(userId));
+        if (progress.getTotalExp() == null) {
+            progress.setTotalExp(0.0);
+        }
+        if (progress.getYuanBalance() == null) {
+            progress.setYuanBalance(0.0);
+        }
+        return progress;
+    }
+
     public List<GamificationStatsDTO> getAllUsersGamificationStats() {
         List<Map<String, Object>> allUsersExp = userProgressRepository.sumExpAmountGroupedByUser();
 
@@ -5,11 +5,19 @@ import com.yushan.gamification_service.entity.ProcessedEvent;
 import com.yushan.gamification_service.util.RedisUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Hybrid idempotency service: Redis (fast) + Database (persistent)
@@ -19,6 +27,12 @@ import java.time.LocalDateTime;
  * 2. If Redis not found → Check Database (persistent)
  * 3. If Database not found → Process event + Save both Redis + Database
  * 4. If Database found → Skip + Backfill Redis cache
+ *
+ * Listeners use {@link #processOnce(String, String, Runnable)}, which claims the key atomically
+ * (see {@link #tryClaim(String, String)}) in the same transaction as the business work.
+ *
+ * Lookups are fronted by an in-process Bloom filter ({@link ProcessedEventFilter}): a definite
+ * negative skips Redis and the database read entirely. The database insert stays authoritative.
  */
 @Slf4j
 @Service
@@ -30,8 +44,92 @@ public class IdempotencyService {
     @Autowired
     private ProcessedEventMapper processedEventMapper;
 
+    @Autowired
+    private ProcessedEventFilter processedEventFilter;
+
     private static final Duration REDIS_TTL = Duration.ofDays(7); // Keep in Redis for 7 days
     private static final String SERVICE_NAME = "gamification-service";
+    private static final String PENDING_MARKER = "pending";
+    private static final String PROCESSED_MARKER = "processed";
+
+    /**
+     * How long an uncommitted claim blocks other consumers in Redis (must exceed the longest transaction)
+     */
+    @Value("${gamification.idempotency.claim-ttl-ms:60000}")
+    private long claimTtlMs;
+
+    /**
+     * Atomically claim an event for processing (check-and-mark in one step).
+     * Runs inside the caller's transaction:
+     * 1. Redis SET NX PX with a short-lived pending marker → key already holding the processed marker → false.
+     *    Skipped when the Bloom filter reports a definite negative (concurrent claims are still serialized by step 2)
+     * 2. Otherwise (new key, skipped lookup, or another consumer's pending marker) claim in processed_events.
+     *    A claim of the same key by an in-flight transaction is waited for until it commits or rolls back, so a pending marker
+     *    left by a crashed or rebalanced consumer never drops the event → no row means it was committed → false
+     * After commit the Redis marker is replaced by the long-lived processed marker; after rollback it is
+     * deleted so the redelivered event can be claimed again.
+     *
+     * @return true if this caller owns the event and must process it
+     */
+    @Transactional
+    public boolean tryClaim(String idempotencyKey, String eventType) {
+        boolean maybeProcessed = processedEventFilter.mightContain(idempotencyKey);
+        if (maybeProcessed
+                && !redisUtil.setIfAbsent(idempotencyKey, PENDING_MARKER, Duration.ofMillis(claimTtlMs))
+                && PROCESSED_MARKER.equals(redisUtil.get(idempotencyKey))) {
+            log.debug("Event already processed (Redis): {}", idempotencyKey);
+            return false;
+        }
+        registerClaimCompletion(idempotencyKey);
+
+        List<String> claimed = processedEventMapper.insertBatch(List.of(idempotencyKey), eventType, SERVICE_NAME);
+        processedEventFilter.put(idempotencyKey);
+        if (claimed.isEmpty()) {
+            log.debug("Event already processed (Database): {}", idempotencyKey);
+            return false;
+        }
+        if (maybeProcessed) {
+            processedEventFilter.recordFalsePositives(1);
+        }
+        return true;
+    }
+
+    /**
+     * Claim the event and run the action in one transaction; the action is skipped if the event was already claimed.
+     * If the action throws, the claim is rolled back together with the action's writes.
+     *
+     * @return true if the action ran
+     */
+    @Transactional
+    public boolean processOnce(String idempotencyKey, String eventType, Runnable action) {
+        if (!tryClaim(idempotencyKey, eventType)) {
+            return false;
+        }
+        action.run();
+        return true;
+    }
+
+    private void registerClaimCompletion(String idempotencyKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            redisUtil.set(idempotencyKey, PROCESSED_MARKER, REDIS_TTL);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        redisUtil.set(idempotencyKey, PROCESSED_MARKER, REDIS_TTL);
+                    } else {
+                        redisUtil.delete(idempotencyKey);
+                    }
+                } catch (Exception e) {
+                    // Pending marker expires on its own; the database row stays authoritative
+                    log.warn("Failed to update Redis idempotency marker after completion: {}", idempotencyKey, e);
+                }
+            }
+        });
+    }
 
     /**
      * Check if an event has already been processed (hybrid: Redis + Database)
@@ -41,8 +139,13 @@ public class IdempotencyService {
      * @return true if already processed, false otherwise
      */
     public boolean isProcessed(String idempotencyKey, String eventType) {
-        // 1. Check Redis first (fast path)
-        if (redisUtil.exists(idempotencyKey)) {
+        // 0. Bloom filter: a definite negative needs no remote lookup
+        if (!processedEventFilter.mightContain(idempotencyKey)) {
+            return false;
+        }
+
+        // 1. Check Redis first (fast path); a pending marker is still in flight and may roll back
+        if (PROCESSED_MARKER.equals(redisUtil.get(idempotencyKey))) {
             log.debug("Event already processed (Redis cache): {}", idempotencyKey);
             return true;
         }
@@ -52,10 +155,11 @@ public class IdempotencyService {
         if (existsInDb) {
             log.debug("Event already processed (Database): {}", idempotencyKey);
             // Backfill Redis cache for faster future checks
-            redisUtil.set(idempotencyKey, "processed", REDIS_TTL);
+            redisUtil.set(idempotencyKey, PROCESSED_MARKER, REDIS_TTL);
             return true;
         }
 
+        processedEventFilter.recordFalsePositives(1);
         return false;
     }
 
@@ -69,7 +173,7 @@ public class IdempotencyService {
     @Transactional
     public void markAsProcessed(String idempotencyKey, String eventType, String eventData) {
         // Save to Redis (fast access)
-        redisUtil.set(idempotencyKey, "processed", REDIS_TTL);
+        redisUtil.set(idempotencyKey, PROCESSED_MARKER, REDIS_TTL);
         
         // Save to Database (persistent)
         ProcessedEvent event = new ProcessedEvent();
@@ -80,6 +184,7 @@ public class IdempotencyService {
         event.setEventData(eventData);
         
         int result = processedEventMapper.insert(event);
+        processedEventFilter.put(idempotencyKey);
         if (result > 0) {
             log.debug("Marked event as processed (both Redis and Database): {}", idempotencyKey);
         } else {
@@ -95,14 +200,92 @@ public class IdempotencyService {
     }
 
     /**
-     * Cleanup old processed events (older than specified days)
-     * Should be called periodically via scheduled job
+     * Bulk variant of isProcessed: keys the Bloom filter rules out are dropped, then one MGET against Redis
+     * and one IN query for the Redis misses. Only the processed marker counts as a Redis hit; pending keys are
+     * checked in the database like any other miss
+     *
+     * @param idempotencyKeys Keys to check
+     * @return the keys that have already been processed
+     */
+    public Set<String> findProcessedKeys(Collection<String> idempotencyKeys) {
+        List<String> keys = new ArrayList<>();
+        for (String key : idempotencyKeys) {
+            if (processedEventFilter.mightContain(key)) {
+                keys.add(key);
+            }
+        }
+        if (keys.isEmpty()) {
+            return new HashSet<>();
+        }
+        Set<String> processed = redisUtil.keysWithValue(keys, PROCESSED_MARKER);
+
+        List<String> misses = new ArrayList<>();
+        for (String key : keys) {
+            if (!processed.contains(key)) {
+                misses.add(key);
+            }
+        }
+        if (misses.isEmpty()) {
+            return processed;
+        }
+
+        List<String> existingInDb = processedEventMapper.findExistingKeys(misses);
+        if (!existingInDb.isEmpty()) {
+            log.debug("{} events already processed (Database), backfilling Redis", existingInDb.size());
+            // Backfill Redis cache for faster future checks
+            redisUtil.setAll(existingInDb, PROCESSED_MARKER, REDIS_TTL);
+            processed.addAll(existingInDb);
+        }
+        processedEventFilter.recordFalsePositives(misses.size() - existingInDb.size());
+        return processed;
+    }
+
+    /**
+     * Bulk claim of idempotency keys in the database (multi-row insert, conflicts skipped).
+     * Runs in the caller's transaction so the claim rolls back with the work it guards.
+     * Redis is not touched here; call {@link #cacheProcessed(Collection)} after commit.
+     *
+     * @return the keys newly claimed by this call
+     */
+    @Transactional
+    public Set<String> claimAll(Collection<String> idempotencyKeys, String eventType) {
+        if (idempotencyKeys.isEmpty()) {
+            return new HashSet<>();
+        }
+        Set<String> claimed = new HashSet<>(processedEventMapper.insertBatch(idempotencyKeys, eventType, SERVICE_NAME));
+        claimed.forEach(processedEventFilter::put);
+        return claimed;
+    }
+
+    /**
+     * Cache already-persisted processed keys in Redis (pipelined)
+     */
+    public void cacheProcessed(Collection<String> idempotencyKeys) {
+        redisUtil.setAll(idempotencyKeys, PROCESSED_MARKER, REDIS_TTL);
+    }
+
+    /**
+     * Make sure daily processed_events partitions exist for the coming days
+     *
+     * @return number of partitions created
+     */
+    @Transactional
+    public int createUpcomingPartitions(int daysAhead) {
+        int created = processedEventMapper.createPartitions(daysAhead);
+        if (created > 0) {
+            log.info("Created {} processed_events partitions ({} days ahead)", created, daysAhead);
+        }
+        return created;
+    }
+
+    /**
+     * Cleanup old processed events by dropping whole daily partitions older than the retention window
+     * Called periodically by ProcessedEventPartitionScheduler
      */
     @Transactional
     public void cleanupOldProcessedEvents(int daysToKeep) {
-        LocalDateTime beforeDate = LocalDateTime.now().minusDays(daysToKeep);
-        int deleted = processedEventMapper.deleteOldProcessedEvents(beforeDate);
-        log.info("Cleaned up {} old processed events (older than {} days)", deleted, daysToKeep);
+        int dropped = processedEventMapper.dropPartitionsOlderThan(daysToKeep);
+        log.info("Dropped {} processed_events partitions (older than {} days)", dropped, daysToKeep);
     }
 }
 
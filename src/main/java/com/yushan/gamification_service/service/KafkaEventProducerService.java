@@ -1,12 +1,14 @@
 package com.yushan.gamification_service.service;
 
 import com.yushan.gamification_service.dto.event.UserActivityEvent;
+import com.yushan.gamification_service.dto.event.YuanReservationReleasedEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -47,4 +49,19 @@ public class KafkaEventProducerService {
             log.error("Failed to publish user activity event for user: {}", event.userId(), e);
         }
     }
+
+    /**
+     * Publish the reservations released by one expiry sweep batch, keyed by SAGA ID.
+     * The sends share the producer's batches; a failed send is logged and does not stop the rest.
+     */
+    public void publishYuanReservationReleasedEvents(List<YuanReservationReleasedEvent> events) {
+        for (YuanReservationReleasedEvent event : events) {
+            try {
+                publishEvent("yuan-reservation.released", event.getSagaId(), event);
+            } catch (Exception e) {
+                log.error("Failed to publish Yuan reservation released event: reservationId={}", event.getReservationId(), e);
+            }
+        }
+        log.info("Published {} Yuan reservation released events", events.size());
+    }
 }
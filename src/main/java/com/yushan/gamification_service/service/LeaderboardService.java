@@ -0,0 +1,354 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.UserProgressMapper;
+import com.yushan.gamification_service.dto.common.PageResponseDTO;
+import com.yushan.gamification_service.dto.leaderboard.LeaderboardEntryDTO;
+import com.yushan.gamification_service.dto.leaderboard.LeaderboardRankDTO;
+import com.yushan.gamification_service.entity.UserProgress;
+import com.yushan.gamification_service.enums.LeaderboardWindow;
+import com.yushan.gamification_service.exception.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * All-time EXP leaderboard kept in a Redis sorted set (member = userId, score = total EXP).
+ *
+ * Every EXP award writes the user's new total after the transaction commits, using ZADD GT:
+ * the total comes from the authoritative user_progress upsert, so the write is idempotent and a
+ * late, smaller total can never overwrite a newer one. Reads are O(log N + M) sorted-set range queries.
+ * {@link #rebuild()} repopulates the set from user_progress in keyset chunks.
+ *
+ * Windowed leaderboards ({@link LeaderboardWindow}) use one sorted set per day holding the EXP gained
+ * that day (ZINCRBY, expiring after the longest window). A rolling window is the ZUNIONSTORE of its
+ * daily buckets, cached for a few seconds so reads are a single range query on a precomputed set
+ * (the union and its TTL are set by one Lua script, so the cached set always expires).
+ */
+@Slf4j
+@Service
+public class LeaderboardService {
+
+    static final String ALL_TIME_KEY = "leaderboard:exp:all-time";
+    private static final String REBUILD_KEY_PREFIX = ALL_TIME_KEY + ":rebuild:";
+    private static final Duration REBUILD_KEY_TTL = Duration.ofHours(1);
+    private static final String DAILY_BUCKET_PREFIX = "leaderboard:exp:daily:";
+    private static final String WINDOW_PREFIX = "leaderboard:exp:window:";
+    private static final DateTimeFormatter BUCKET_DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /**
+     * Daily buckets outlive the longest window by a day so a window never reads an expired bucket
+     */
+    private static final Duration DAILY_BUCKET_TTL = Duration.ofDays(LeaderboardWindow.MONTHLY.getDays() + 1L);
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_NEIGHBOURS = 50;
+
+    /**
+     * Awards from transactions that started before the rebuild may land in the old set; replay them
+     */
+    private static final Duration REBUILD_CATCH_UP_MARGIN = Duration.ofMinutes(2);
+
+    private static final Object PENDING_AWARDS_KEY = new Object();
+
+    static final RedisScript<Long> WINDOW_UNION_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/leaderboard-window-union.lua"), Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private UserProgressMapper userProgressMapper;
+
+    @Autowired
+    private LevelService levelService;
+
+    @Value("${gamification.leaderboard.rebuild-chunk-size:1000}")
+    private int rebuildChunkSize;
+
+    /**
+     * How long a merged window is reused before it is recomputed from the daily buckets
+     */
+    @Value("${gamification.leaderboard.window-cache-ttl-ms:30000}")
+    private long windowCacheTtlMs;
+
+    private final AtomicBoolean rebuildInProgress = new AtomicBoolean();
+
+    private record ExpAward(UUID userId, double totalExp, double expGained) {
+    }
+
+    /**
+     * Record an EXP award. Inside a transaction the award is buffered and all awards of the
+     * transaction are written in one pipelined round trip after commit; rolled back awards are dropped.
+     *
+     * @param totalExp the user's total EXP including this award
+     * @param expGained EXP added by this award
+     */
+    public void recordExpAward(UUID userId, double totalExp, double expGained) {
+        ExpAward award = new ExpAward(userId, totalExp, expGained);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            writeAwards(List.of(award));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<ExpAward> pending = (List<ExpAward>) TransactionSynchronizationManager.getResource(PENDING_AWARDS_KEY);
+        if (pending == null) {
+            List<ExpAward> awards = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(PENDING_AWARDS_KEY, awards);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_AWARDS_KEY);
+                    if (status == STATUS_COMMITTED) {
+                        writeAwards(awards);
+                    }
+                }
+            });
+            pending = awards;
+        }
+        pending.add(award);
+    }
+
+    private void writeAwards(List<ExpAward> awards) {
+        String todayBucket = dailyBucketKey(LocalDate.now());
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                boolean bucketTouched = false;
+                for (ExpAward award : awards) {
+                    String member = award.userId().toString();
+                    redis.zAdd(ALL_TIME_KEY, award.totalExp(), member, RedisZSetCommands.ZAddArgs.empty().gt());
+                    if (award.expGained() > 0) {
+                        redis.zIncrBy(todayBucket, award.expGained(), member);
+                        bucketTouched = true;
+                    }
+                }
+                if (bucketTouched) {
+                    redis.expire(todayBucket, DAILY_BUCKET_TTL.getSeconds());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // The ledger is authoritative; the next award or the nightly rebuild repairs the ranking
+            log.warn("Failed to update leaderboard for {} EXP awards", awards.size(), e);
+        }
+    }
+
+    /**
+     * Top players by total EXP
+     */
+    public List<LeaderboardEntryDTO> getTop(int limit) {
+        return topFrom(ALL_TIME_KEY, limit);
+    }
+
+    /**
+     * Top players by EXP gained within a rolling window (level is still the all-time level)
+     */
+    public List<LeaderboardEntryDTO> getWindowTop(LeaderboardWindow window, int limit) {
+        return topFrom(windowKey(window), limit);
+    }
+
+    /**
+     * A user's rank within a rolling window, with up to {@code neighbours} players above and below
+     */
+    public LeaderboardRankDTO getWindowUserRank(LeaderboardWindow window, UUID userId, int neighbours) {
+        return rankFrom(windowKey(window), userId, neighbours);
+    }
+
+    private List<LeaderboardEntryDTO> topFrom(String key, int limit) {
+        int size = clamp(limit, MAX_PAGE_SIZE);
+        return toEntries(key, stringRedisTemplate.opsForZSet().reverseRangeWithScores(key, 0, size - 1L), 1);
+    }
+
+    /**
+     * Sorted set holding the window's scores: today's bucket for a one-day window, otherwise the cached
+     * union of the window's daily buckets (computed on first read, then reused until it expires)
+     */
+    private String windowKey(LeaderboardWindow window) {
+        LocalDate today = LocalDate.now();
+        if (window.getDays() == 1) {
+            return dailyBucketKey(today);
+        }
+        String unionKey = WINDOW_PREFIX + window.name().toLowerCase() + ":" + today.format(BUCKET_DATE_FORMAT);
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(unionKey))) {
+            List<String> keys = new ArrayList<>(window.getDays() + 1);
+            keys.add(unionKey);
+            for (int i = 0; i < window.getDays(); i++) {
+                keys.add(dailyBucketKey(today.minusDays(i)));
+            }
+            // ZUNIONSTORE + PEXPIRE in one script: a failure in between cannot leave the window without a TTL
+            stringRedisTemplate.execute(WINDOW_UNION_SCRIPT, keys, String.valueOf(windowCacheTtlMs));
+        }
+        return unionKey;
+    }
+
+    private static String dailyBucketKey(LocalDate day) {
+        return DAILY_BUCKET_PREFIX + day.format(BUCKET_DATE_FORMAT);
+    }
+
+    /**
+     * Page through the leaderboard (page is 0-based)
+     */
+    public PageResponseDTO<LeaderboardEntryDTO> getPage(int page, int size) {
+        int pageSize = clamp(size, MAX_PAGE_SIZE);
+        long start = (long) Math.max(page, 0) * pageSize;
+        long total = countPlayers(ALL_TIME_KEY);
+        List<LeaderboardEntryDTO> entries = toEntries(ALL_TIME_KEY,
+                stringRedisTemplate.opsForZSet().reverseRangeWithScores(ALL_TIME_KEY, start, start + pageSize - 1),
+                start + 1);
+        return PageResponseDTO.of(entries, total, Math.max(page, 0), pageSize);
+    }
+
+    /**
+     * A user's rank with up to {@code neighbours} players above and below
+     */
+    public LeaderboardRankDTO getUserRank(UUID userId, int neighbours) {
+        return rankFrom(ALL_TIME_KEY, userId, neighbours);
+    }
+
+    private LeaderboardRankDTO rankFrom(String key, UUID userId, int neighbours) {
+        Long index = stringRedisTemplate.opsForZSet().reverseRank(key, userId.toString());
+        if (index == null) {
+            throw new ResourceNotFoundException("User " + userId + " is not on the leaderboard");
+        }
+        int around = Math.min(Math.max(neighbours, 0), MAX_NEIGHBOURS);
+        long start = Math.max(0, index - around);
+        List<LeaderboardEntryDTO> window = toEntries(key,
+                stringRedisTemplate.opsForZSet().reverseRangeWithScores(key, start, index + around),
+                start + 1);
+
+        LeaderboardEntryDTO self = window.stream()
+                .filter(entry -> entry.getUserId().equals(userId.toString()))
+                .findFirst()
+                .orElseThrow(() -> new ResourceNotFoundException("User " + userId + " is not on the leaderboard"));
+        return new LeaderboardRankDTO(self, countPlayers(key), window);
+    }
+
+    private long countPlayers(String key) {
+        Long size = stringRedisTemplate.opsForZSet().zCard(key);
+        return size != null ? size : 0;
+    }
+
+    private List<LeaderboardEntryDTO> toEntries(String key, Set<ZSetOperations.TypedTuple<String>> tuples, long firstRank) {
+        if (tuples == null || tuples.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Window scores are EXP gained in the window; levels come from the all-time totals (one ZMSCORE)
+        List<Double> allTimeExp = null;
+        if (!ALL_TIME_KEY.equals(key)) {
+            Object[] members = tuples.stream().map(ZSetOperations.TypedTuple::getValue).toArray();
+            allTimeExp = stringRedisTemplate.opsForZSet().score(ALL_TIME_KEY, members);
+        }
+
+        List<LeaderboardEntryDTO> entries = new ArrayList<>(tuples.size());
+        long rank = firstRank;
+        int i = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            double exp = tuple.getScore() != null ? tuple.getScore() : 0.0;
+            Double levelExp = allTimeExp == null ? Double.valueOf(exp) : allTimeExp.get(i);
+            int level = levelService.calculateLevel(levelExp != null ? levelExp : exp);
+            entries.add(new LeaderboardEntryDTO(rank++, tuple.getValue(), exp, level));
+            i++;
+        }
+        return entries;
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.min(Math.max(value, 1), max);
+    }
+
+    public boolean isPopulated() {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(ALL_TIME_KEY));
+    }
+
+    /**
+     * Repopulate the leaderboard from user_progress: chunks are loaded into a temporary set which then
+     * atomically replaces the live one (RENAME), so readers never see a partial leaderboard.
+     *
+     * @return number of players loaded, or -1 if a rebuild is already running on this instance
+     */
+    public long rebuild() {
+        if (!rebuildInProgress.compareAndSet(false, true)) {
+            log.info("Leaderboard rebuild already running, skipping");
+            return -1;
+        }
+        long startMillis = System.currentTimeMillis();
+        // updated_at is written by the database clock, so the catch-up window is measured on it too
+        LocalDateTime startedAt = userProgressMapper.currentTimestamp();
+        String rebuildKey = REBUILD_KEY_PREFIX + UUID.randomUUID();
+        try {
+            long loaded = 0;
+            UUID after = null;
+            while (true) {
+                List<UserProgress> chunk = userProgressMapper.findExpTotalsAfter(after, rebuildChunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                stringRedisTemplate.opsForZSet().add(rebuildKey, toTuples(chunk));
+                if (loaded == 0) {
+                    stringRedisTemplate.expire(rebuildKey, REBUILD_KEY_TTL);
+                }
+                loaded += chunk.size();
+                after = chunk.get(chunk.size() - 1).getUserId();
+                if (chunk.size() < rebuildChunkSize) {
+                    break;
+                }
+            }
+
+            if (loaded == 0) {
+                stringRedisTemplate.delete(ALL_TIME_KEY);
+            } else {
+                stringRedisTemplate.persist(rebuildKey);
+                stringRedisTemplate.rename(rebuildKey, ALL_TIME_KEY);
+            }
+
+            List<UserProgress> recent = userProgressMapper.findExpTotalsUpdatedSince(startedAt.minus(REBUILD_CATCH_UP_MARGIN));
+            if (!recent.isEmpty()) {
+                List<ExpAward> replay = new ArrayList<>(recent.size());
+                for (UserProgress progress : recent) {
+                    replay.add(new ExpAward(progress.getUserId(), progress.getTotalExp(), 0));
+                }
+                writeAwards(replay);
+            }
+
+            log.info("Rebuilt leaderboard with {} players in {} ms ({} recent updates replayed)",
+                    loaded, System.currentTimeMillis() - startMillis, recent.size());
+            return loaded;
+        } catch (RuntimeException e) {
+            stringRedisTemplate.delete(rebuildKey);
+            throw e;
+        } finally {
+            rebuildInProgress.set(false);
+        }
+    }
+
+    private static Set<ZSetOperations.TypedTuple<String>> toTuples(List<UserProgress> chunk) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>(chunk.size() * 2);
+        for (UserProgress progress : chunk) {
+            tuples.add(new DefaultTypedTuple<>(progress.getUserId().toString(), progress.getTotalExp()));
+        }
+        return tuples;
+    }
+}
@@ -0,0 +1,352 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.UserProgressMapper;
+import com.yushan.gamification_service.dto.admin.BulkJobDTO;
+import com.yushan.gamification_service.dto.admin.LedgerIngestRow;
+import com.yushan.gamification_service.entity.UserProgress;
+import com.yushan.gamification_service.enums.LedgerType;
+import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.util.CsvUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Bulk ingest of ledger rows for reward backfills and topic replays.
+ *
+ * Rows are written in batches, each in its own transaction: the EXP and Yuan rows are streamed into the
+ * ledgers with the PostgreSQL COPY protocol, then the per-user balance deltas of the batch are applied with
+ * multi-row upserts and the leaderboard is updated after commit. A failing batch is rolled back and reported
+ * on the job; the following batches still run. Rows are not deduplicated, and no level-up events are published.
+ */
+@Slf4j
+@Service
+public class LedgerBulkIngestService {
+
+    public static final String JOB_TYPE = "LEDGER_INGEST";
+
+    private static final int BALANCE_UPSERT_CHUNK = 1000;
+    private static final int MAX_REASON_LENGTH = 255;
+    private static final String METRIC_PREFIX = "gamification.ledger.ingest";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserProgressMapper userProgressMapper;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private RedisYuanReservationEngine redisYuanReservationEngine;
+
+    @Autowired
+    private BulkJobService bulkJobService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gamification.ledger.ingest.batch-size:50000}")
+    private int batchSize;
+
+    private final Map<LedgerType, Counter> ingestedRows = new EnumMap<>(LedgerType.class);
+    private Counter rejectedRows;
+    private Timer batchTimer;
+
+    @PostConstruct
+    public void init() {
+        for (LedgerType ledger : LedgerType.values()) {
+            ingestedRows.put(ledger, Counter.builder(METRIC_PREFIX + ".rows")
+                    .description("Ledger rows written by bulk ingest")
+                    .tag("ledger", ledger.getCode())
+                    .register(meterRegistry));
+        }
+        rejectedRows = Counter.builder(METRIC_PREFIX + ".rejected")
+                .description("Bulk ingest rows that were invalid or belonged to a failed batch")
+                .register(meterRegistry);
+        batchTimer = Timer.builder(METRIC_PREFIX + ".batch")
+                .description("Time to copy one batch and apply its balance deltas")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ingest an uploaded CSV file in the background.
+     * Columns: ledger (exp|yuan), user_id, amount, text; a header line starting with "ledger" is skipped.
+     * Failures are reported by line number.
+     */
+    public BulkJobDTO submitFile(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new ValidationException("Ingest file must not be empty");
+        }
+        Path path;
+        try {
+            // The upload is gone once the request ends, so the job reads a copy
+            path = Files.createTempFile("ledger-ingest-", ".csv");
+            file.transferTo(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store ingest file", e);
+        }
+        return bulkJobService.submit(JOB_TYPE, job -> {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                ingest(new CsvRows(reader, job), job);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Failed to delete ingest file {}", path, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Ingest rows from an internal source (e.g. a topic replay) in the background.
+     * Failures are reported by 1-based position in the iteration.
+     */
+    public BulkJobDTO submit(Iterator<LedgerIngestRow> rows) {
+        return bulkJobService.submit(JOB_TYPE, job -> ingest(rows, job));
+    }
+
+    /**
+     * Ingest all rows synchronously, recording progress and failures on the job
+     */
+    public void ingest(Iterator<LedgerIngestRow> rows, BulkJob job) {
+        List<LedgerIngestRow> batch = new ArrayList<>(Math.min(batchSize, 10_000));
+        long position = 0;
+        long batchStart = 0;
+        while (rows.hasNext()) {
+            LedgerIngestRow row = rows.next();
+            position = rows instanceof CsvRows csv ? csv.lineNumber : position + 1;
+            String problem = validate(row);
+            if (problem != null) {
+                job.addFailedChunk(position, 1, problem);
+                rejectedRows.increment();
+                continue;
+            }
+            if (batch.isEmpty()) {
+                batchStart = position;
+            }
+            batch.add(row);
+            if (batch.size() >= batchSize) {
+                writeBatch(batch, batchStart, job);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch, batchStart, job);
+        }
+    }
+
+    private void writeBatch(List<LedgerIngestRow> batch, long firstRow, BulkJob job) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                copyIn(LedgerType.EXP, batch);
+                copyIn(LedgerType.YUAN, batch);
+                applyBalances(batch);
+            });
+            job.addProcessed(batch.size());
+            for (LedgerType ledger : LedgerType.values()) {
+                ingestedRows.get(ledger).increment(batch.stream().filter(row -> row.ledger() == ledger).count());
+            }
+        } catch (Exception e) {
+            log.warn("Bulk ingest batch of {} rows starting at {} failed", batch.size(), firstRow, e);
+            job.addFailedChunk(firstRow, batch.size(), e.getMessage());
+            rejectedRows.increment(batch.size());
+        } finally {
+            sample.stop(batchTimer);
+        }
+    }
+
+    /**
+     * Stream the batch's rows of one ledger through COPY on the transaction's connection
+     */
+    private void copyIn(LedgerType ledger, List<LedgerIngestRow> batch) {
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        for (LedgerIngestRow row : batch) {
+            if (row.ledger() == ledger) {
+                csv.writeBytes(copyLine(row).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        if (csv.size() == 0) {
+            return;
+        }
+
+        String sql = "COPY " + ledger.getTableName() + " (user_id, amount, " + ledger.getTextColumn()
+                + ") FROM STDIN WITH (FORMAT csv)";
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            copyManager.copyIn(sql, new ByteArrayInputStream(csv.toByteArray()));
+        } catch (SQLException e) {
+            throw new IllegalStateException("COPY into " + ledger.getTableName() + " failed: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * Apply the batch's per-user deltas, in PostgreSQL uuid order like the other multi-row balance upserts
+     */
+    private void applyBalances(List<LedgerIngestRow> batch) {
+        Map<UUID, UserProgress> deltas = new TreeMap<>(Comparator.comparing(UUID::toString));
+        for (LedgerIngestRow row : batch) {
+            UserProgress delta = deltas.computeIfAbsent(row.userId(), UserProgress::empty);
+            if (row.ledger() == LedgerType.EXP) {
+                delta.setTotalExp(delta.getTotalExp() + row.amount());
+            } else {
+                delta.setYuanBalance(delta.getYuanBalance() + row.amount());
+            }
+        }
+
+        List<UUID> yuanUserIds = new ArrayList<>();
+        deltas.forEach((userId, delta) -> {
+            if (delta.getYuanBalance() != 0) {
+                yuanUserIds.add(userId);
+            }
+        });
+        redisYuanReservationEngine.syncBalancesAfterCommit(yuanUserIds);
+
+        List<UserProgress> ordered = new ArrayList<>(deltas.values());
+        for (int from = 0; from < ordered.size(); from += BALANCE_UPSERT_CHUNK) {
+            List<UserProgress> chunk = ordered.subList(from, Math.min(from + BALANCE_UPSERT_CHUNK, ordered.size()));
+            for (UserProgress balance : userProgressMapper.addBatch(chunk)) {
+                double expGained = deltas.get(balance.getUserId()).getTotalExp();
+                if (expGained != 0) {
+                    leaderboardService.recordExpAward(balance.getUserId(), balance.getTotalExp(), expGained);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return why the row cannot be ingested, or null if it is valid
+     */
+    static String validate(LedgerIngestRow row) {
+        if (row.ledger() == null || row.userId() == null) {
+            return "ledger and userId are required";
+        }
+        if (!Double.isFinite(row.amount()) || row.amount() == 0) {
+            return "amount must be a non-zero number";
+        }
+        if (row.ledger() == LedgerType.EXP && row.text() != null && row.text().length() > MAX_REASON_LENGTH) {
+            return "reason must be at most " + MAX_REASON_LENGTH + " characters";
+        }
+        return null;
+    }
+
+    static String copyLine(LedgerIngestRow row) {
+        String text = row.text() == null
+                ? ""
+                : "\"" + row.text().replace("\"", "\"\"") + "\"";
+        return row.userId() + "," + row.amount() + "," + text + "\n";
+    }
+
+    /**
+     * Lazily parsed CSV rows; unparseable lines are reported on the job and skipped
+     */
+    final class CsvRows implements Iterator<LedgerIngestRow> {
+        private final BufferedReader reader;
+        private final BulkJob job;
+        private LedgerIngestRow next;
+        private long lineNumber;
+        private long nextLineNumber;
+
+        CsvRows(BufferedReader reader, BulkJob job) {
+            this.reader = reader;
+            this.job = job;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                String line;
+                try {
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (line == null) {
+                    return false;
+                }
+                nextLineNumber++;
+                if (line.isBlank() || (nextLineNumber == 1 && line.regionMatches(true, 0, "ledger", 0, 6))) {
+                    continue;
+                }
+                try {
+                    next = parseLine(line);
+                } catch (IllegalArgumentException e) {
+                    job.addFailedChunk(nextLineNumber, 1, e.getMessage());
+                    rejectedRows.increment();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public LedgerIngestRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            LedgerIngestRow row = next;
+            next = null;
+            lineNumber = nextLineNumber;
+            return row;
+        }
+    }
+
+    /**
+     * Parse "ledger,user_id,amount,text"; text may be quoted with "" escaping and may be omitted
+     */
+    static LedgerIngestRow parseLine(String line) {
+        List<String> fields = CsvUtil.splitLine(line);
+        if (fields.size() < 3 || fields.size() > 4) {
+            throw new IllegalArgumentException("Expected 3 or 4 columns but got " + fields.size());
+        }
+        LedgerType ledger = LedgerType.fromCode(fields.get(0).trim());
+        UUID userId = UUID.fromString(fields.get(1).trim());
+        double amount = Double.parseDouble(fields.get(2).trim());
+        String text = fields.size() == 4 && !fields.get(3).isEmpty() ? fields.get(3) : null;
+        return new LedgerIngestRow(ledger, userId, amount, text);
+    }
+}
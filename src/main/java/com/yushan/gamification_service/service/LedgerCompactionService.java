@@ -0,0 +1,147 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.LedgerCompactionMapper;
+import com.yushan.gamification_service.entity.LedgerCompactionProgress;
+import com.yushan.gamification_service.enums.LedgerType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Folds ledger rows older than the retention window into per-user ledger_snapshot rows and moves them to the
+ * archive tables, so per-user sums only scan recent rows.
+ *
+ * Users are walked in id order one page at a time; each page is split into chunks that are compacted in parallel,
+ * one transaction per chunk. The last user of every finished page is checkpointed in ledger_compaction_progress,
+ * so an interrupted run resumes there with the same cutoff. Compacting a chunk again is a no-op.
+ */
+@Slf4j
+@Service
+public class LedgerCompactionService {
+
+    @Autowired
+    private LedgerCompactionMapper ledgerCompactionMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gamification.ledger.compaction.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${gamification.ledger.compaction.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${gamification.ledger.compaction.parallelism:4}")
+    private int parallelism;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Compact both ledgers
+     *
+     * @return number of ledger rows compacted, or -1 if a compaction is already running in this instance
+     */
+    public long compactAll() {
+        if (!running.compareAndSet(false, true)) {
+            log.debug("Ledger compaction already running");
+            return -1;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "ledger-compaction-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+            long compacted = 0;
+            for (LedgerType ledger : LedgerType.values()) {
+                compacted += compact(ledger, cutoff, workers);
+            }
+            return compacted;
+        } finally {
+            workers.shutdownNow();
+            running.set(false);
+        }
+    }
+
+    long compact(LedgerType ledger, LocalDateTime defaultCutoff, ExecutorService workers) {
+        long start = System.currentTimeMillis();
+        LedgerCompactionProgress progress = ledgerCompactionMapper.findProgress(ledger);
+        LocalDateTime cutoff = progress != null ? progress.getCutoff() : defaultCutoff;
+        UUID afterUserId = progress != null ? progress.getLastUserId() : null;
+        if (progress == null) {
+            ledgerCompactionMapper.saveProgress(ledger, cutoff, null);
+        } else {
+            log.info("Resuming {} ledger compaction (cutoff {}) after user {}", ledger, cutoff, afterUserId);
+        }
+
+        Counter rowsCounter = Counter.builder("gamification.ledger.compaction.rows")
+                .tag("ledger", ledger.getCode())
+                .register(meterRegistry);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long compacted = 0;
+        int users = 0;
+        while (true) {
+            List<UUID> page = ledgerCompactionMapper.findUsersWithRowsBefore(
+                    ledger, cutoff, afterUserId, chunkSize * Math.max(1, parallelism));
+            if (page.isEmpty()) {
+                break;
+            }
+
+            List<Future<Integer>> chunks = new ArrayList<>();
+            for (int from = 0; from < page.size(); from += chunkSize) {
+                List<UUID> chunk = page.subList(from, Math.min(from + chunkSize, page.size()));
+                chunks.add(workers.submit(() -> transactionTemplate.execute(
+                        status -> ledgerCompactionMapper.compactUsers(ledger, chunk, cutoff))));
+            }
+            compacted += awaitAll(chunks);
+            users += page.size();
+
+            // Only checkpoint once every chunk of the page has committed
+            afterUserId = page.get(page.size() - 1);
+            ledgerCompactionMapper.saveProgress(ledger, cutoff, afterUserId);
+        }
+        ledgerCompactionMapper.deleteProgress(ledger);
+        rowsCounter.increment(compacted);
+
+        log.info("Compacted {} {} ledger rows of {} users older than {} in {} ms",
+                compacted, ledger, users, cutoff, System.currentTimeMillis() - start);
+        return compacted;
+    }
+
+    private static long awaitAll(List<Future<Integer>> chunks) {
+        long compacted = 0;
+        try {
+            for (Future<Integer> chunk : chunks) {
+                Integer rows = chunk.get();
+                compacted += rows == null ? 0 : rows;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ledger compaction interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ledger compaction chunk failed", e.getCause());
+        }
+        return compacted;
+    }
+}
@@ -0,0 +1,32 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.LedgerPartitionMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Maintenance of the monthly partitions of exp_transactions and yuan_transactions
+ */
+@Slf4j
+@Service
+public class LedgerPartitionService {
+
+    @Autowired
+    private LedgerPartitionMapper ledgerPartitionMapper;
+
+    /**
+     * Make sure monthly ledger partitions exist for the coming months
+     *
+     * @return number of partitions created
+     */
+    @Transactional
+    public int createUpcomingPartitions(int monthsAhead) {
+        int created = ledgerPartitionMapper.createPartitions(monthsAhead);
+        if (created > 0) {
+            log.info("Created {} ledger partitions ({} months ahead)", created, monthsAhead);
+        }
+        return created;
+    }
+}
@@ -0,0 +1,213 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.ProcessedEventMapper;
+import com.yushan.gamification_service.util.ScalableBloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-process Bloom filter over processed_events idempotency keys.
+ *
+ * A negative answer means the key was never processed, so callers can skip both the Redis and the
+ * database lookup. A positive answer may be a false positive and must be confirmed remotely.
+ * Until the filter has been loaded from the database every key is reported as possibly present.
+ */
+@Slf4j
+@Component
+public class ProcessedEventFilter {
+
+    private static final String METRIC_PREFIX = "gamification.idempotency.bloom";
+
+    @Autowired
+    private ProcessedEventMapper processedEventMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gamification.idempotency.bloom.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gamification.idempotency.bloom.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    @Value("${gamification.idempotency.bloom.fpp:0.001}")
+    private double fpp;
+
+    private volatile ScalableBloomFilter filter;
+    private volatile ScalableBloomFilter rebuilding;
+    private volatile boolean ready;
+    private final AtomicBoolean rebuildInProgress = new AtomicBoolean();
+
+    private Counter definiteNegatives;
+    private Counter maybePresent;
+    private Counter notReady;
+    private Counter falsePositives;
+
+    @PostConstruct
+    public void init() {
+        filter = new ScalableBloomFilter(expectedInsertions, fpp);
+
+        Gauge.builder(METRIC_PREFIX + ".expected_fpp", this, f -> f.filter.expectedFpp())
+                .description("Estimated false-positive probability from the current bit fill")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".memory", this, f -> f.filter.memoryBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".keys", this, f -> f.filter.approximateCount())
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".ready", this, f -> f.ready ? 1 : 0)
+                .register(meterRegistry);
+
+        definiteNegatives = lookupCounter("definite_negative");
+        maybePresent = lookupCounter("maybe_present");
+        notReady = lookupCounter("not_ready");
+        falsePositives = Counter.builder(METRIC_PREFIX + ".false_positives")
+                .description("Positive filter answers that Redis and the database did not confirm")
+                .register(meterRegistry);
+    }
+
+    private Counter lookupCounter(String result) {
+        return Counter.builder(METRIC_PREFIX + ".lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return false only if the key has definitely never been processed
+     */
+    public boolean mightContain(String idempotencyKey) {
+        if (!enabled) {
+            return true;
+        }
+        if (!ready) {
+            notReady.increment();
+            return true;
+        }
+        if (filter.mightContain(idempotencyKey)) {
+            maybePresent.increment();
+            return true;
+        }
+        definiteNegatives.increment();
+        return false;
+    }
+
+    /**
+     * Record a key as processed (or claimed). Keys of rolled-back claims stay in the filter as false positives.
+     */
+    public void put(String idempotencyKey) {
+        if (!enabled) {
+            return;
+        }
+        ScalableBloomFilter current = filter;
+        current.put(idempotencyKey);
+        ScalableBloomFilter pending = rebuilding;
+        if (pending != null) {
+            pending.put(idempotencyKey);
+        }
+        // A rebuild swapped the filter in between: make sure the new one has the key too
+        if (filter != current) {
+            filter.put(idempotencyKey);
+        }
+    }
+
+    /**
+     * Count positive answers that turned out to be unprocessed after the remote lookup
+     */
+    public void recordFalsePositives(int count) {
+        if (enabled && ready && count > 0) {
+            falsePositives.increment(count);
+        }
+    }
+
+    /**
+     * Load the filter in the background once the application is up, so startup is not blocked
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            log.info("Processed-event Bloom filter disabled");
+            return;
+        }
+        Thread loader = new Thread(this::rebuild, "processed-event-filter-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Periodic rebuild drops keys removed by the processed_events cleanup and resets the fill ratio (default Sunday 04:00)
+     */
+    @Scheduled(cron = "${gamification.idempotency.bloom.rebuild-cron:0 0 4 * * SUN}")
+    public void scheduledRebuild() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Stream all keys from processed_events into a fresh filter and swap it in.
+     * Keys put while the rebuild runs are added to both filters.
+     *
+     * @return number of keys loaded, or -1 if the rebuild was skipped or failed
+     */
+    public long rebuild() {
+        if (!rebuildInProgress.compareAndSet(false, true)) {
+            log.debug("Processed-event Bloom filter rebuild already running");
+            return -1;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            ScalableBloomFilter next = new ScalableBloomFilter(expectedInsertions, fpp);
+            rebuilding = next;
+
+            TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+            Long loaded = readOnly.execute(status -> {
+                long count = 0;
+                try (Cursor<String> keys = processedEventMapper.streamAllKeys()) {
+                    for (String key : keys) {
+                        next.put(key);
+                        count++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return count;
+            });
+
+            filter = next;
+            ready = true;
+            log.info("Loaded {} processed-event keys into Bloom filter in {} ms ({} bytes, {} stages)",
+                    loaded, System.currentTimeMillis() - start, next.memoryBytes(), next.stageCount());
+            return loaded == null ? 0 : loaded;
+        } catch (Exception e) {
+            log.warn("Failed to rebuild processed-event Bloom filter, lookups fall back to Redis/database", e);
+            return -1;
+        } finally {
+            rebuilding = null;
+            rebuildInProgress.set(false);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+}
@@ -0,0 +1,412 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.YuanReservationMapper;
+import com.yushan.gamification_service.entity.UserProgress;
+import com.yushan.gamification_service.entity.YuanReservation;
+import com.yushan.gamification_service.entity.YuanTransaction;
+import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.repository.UserProgressRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Optional Redis engine for SAGA Yuan reservations (saga.yuan-reservation.redis.enabled).
+ *
+ * Each user has a balance hash (balance, reserved, pending, version) and each reservation a hash of its own.
+ * Reserve, confirm and release are each one Lua script, so every step is a single atomic round trip.
+ * Confirmed deductions are appended to a Redis stream in the confirm script and drained into
+ * yuan_transactions in the background; an entry is only acknowledged after its ledger row is committed,
+ * and its reservation row makes the drain idempotent.
+ *
+ * Credits and other Yuan writes keep going to Postgres only. The balance hash holds the Postgres balance minus
+ * the confirmed deductions still in the outbox ("pending"). It is reloaded from Postgres when it is missing or
+ * a reservation does not fit, and after every committed Postgres Yuan write ({@link #syncBalancesAfterCommit}),
+ * so Yuan spent outside the SAGA cannot be reserved again. Each load carries the user_progress version,
+ * so an older read never overwrites a newer one.
+ */
+@Slf4j
+@Service
+public class RedisYuanReservationEngine {
+
+    static final String BALANCE_KEY_PREFIX = "yuan:balance:";
+    static final String RESERVATION_KEY_PREFIX = "yuan:reservation:";
+    static final String SAGA_KEY_PREFIX = "yuan:reservation:saga:";
+    static final String EXPIRY_KEY = "yuan:reservation:expiry";
+    static final String OUTBOX_KEY = "yuan:outbox";
+    static final String OUTBOX_GROUP = "yuan-outbox-drainer";
+
+    /**
+     * Shared by all instances: entries left unacknowledged by a stopped instance are retried by the others
+     */
+    private static final String OUTBOX_CONSUMER = "gamification-service";
+    private static final String CONFIRMED_DESCRIPTION = "Vote cost (SAGA confirmed)";
+    private static final Object PENDING_SYNCS_KEY = RedisYuanReservationEngine.class.getName() + ".pendingSyncs";
+
+    static final RedisScript<List> RESERVE_SCRIPT = script("yuan-reserve.lua");
+    static final RedisScript<List> CONFIRM_SCRIPT = script("yuan-confirm.lua");
+    static final RedisScript<List> RELEASE_SCRIPT = script("yuan-release.lua");
+    static final RedisScript<Long> SYNC_SCRIPT = RedisScript.of(new ClassPathResource("scripts/yuan-sync.lua"), Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private YuanReservationMapper yuanReservationMapper;
+
+    @Autowired
+    private UserProgressRepository userProgressRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${saga.yuan-reservation.redis.enabled:false}")
+    private boolean enabled;
+
+    @Value("${saga.yuan-reservation.timeout-minutes:5}")
+    private int reservationTimeoutMinutes;
+
+    /**
+     * How long confirmed and released reservations stay readable in Redis
+     */
+    @Value("${saga.yuan-reservation.redis.retention-seconds:86400}")
+    private long retentionSeconds;
+
+    @Value("${saga.yuan-reservation.redis.outbox-batch-size:500}")
+    private int outboxBatchSize;
+
+    @Value("${saga.yuan-reservation.redis.expiry-batch-size:500}")
+    private int expiryBatchSize;
+
+    private volatile boolean outboxGroupCreated;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reserve Yuan for a SAGA
+     * @return Reservation ID
+     */
+    public UUID reserve(UUID userId, double amount, String sagaId) {
+        UUID reservationId = UUID.randomUUID();
+        long now = System.currentTimeMillis();
+        long expiresAt = now + reservationTimeoutMinutes * 60_000L;
+        List<String> keys = List.of(balanceKey(userId), reservationKey(reservationId), SAGA_KEY_PREFIX + sagaId, EXPIRY_KEY);
+        Object[] args = {reservationId.toString(), userId.toString(), String.valueOf(amount), sagaId,
+                String.valueOf(now), String.valueOf(expiresAt), String.valueOf(retentionSeconds)};
+
+        List<?> result = stringRedisTemplate.execute(RESERVE_SCRIPT, keys, args);
+        if (!"OK".equals(result.get(0))) {
+            // Balance not loaded yet, or Yuan credited in Postgres since it was loaded
+            syncBalance(userId);
+            result = stringRedisTemplate.execute(RESERVE_SCRIPT, keys, args);
+        }
+        String status = (String) result.get(0);
+        count("reserve", status);
+        if ("INSUFFICIENT".equals(status) || "MISSING".equals(status)) {
+            String available = result.size() > 1 ? (String) result.get(1) : "0";
+            log.error("Insufficient balance to reserve Yuan: user {} has {} available, needs {}", userId, available, amount);
+            throw new ValidationException("Insufficient Yuan balance. Available: " + available + ", Required: " + amount);
+        }
+        log.info("Reserved {} Yuan in Redis for user {} in SAGA {}, reservationId: {}", amount, userId, sagaId, reservationId);
+        return reservationId;
+    }
+
+    /**
+     * Confirm a reservation; the deduction reaches yuan_transactions through the outbox.
+     * Confirming an already confirmed reservation succeeds, so a retried SAGA step is harmless.
+     */
+    public boolean confirm(UUID reservationId, UUID userId) {
+        List<?> result = stringRedisTemplate.execute(CONFIRM_SCRIPT,
+                List.of(reservationKey(reservationId), balanceKey(userId), EXPIRY_KEY, OUTBOX_KEY),
+                reservationId.toString(), userId.toString(), String.valueOf(System.currentTimeMillis()),
+                String.valueOf(retentionSeconds));
+        String status = (String) result.get(0);
+        count("confirm", status);
+        switch (status) {
+            case "OK", "CONFIRMED" -> {
+                log.info("Confirmed Yuan reservation {} for user {}", reservationId, userId);
+                return true;
+            }
+            case "NOT_FOUND" -> throw new ValidationException("Reservation not found: " + reservationId);
+            case "MISMATCH" -> throw new ValidationException("Reservation does not belong to user");
+            case "EXPIRED" -> throw new ValidationException("Reservation has expired");
+            case "INSUFFICIENT" -> throw new ValidationException("Insufficient Yuan balance");
+            default -> throw new ValidationException("Reservation is not in RESERVED status");
+        }
+    }
+
+    /**
+     * Release a reservation (compensation or expiry)
+     * @return true if released now or before, false if the reservation does not exist
+     */
+    public boolean release(UUID reservationId, UUID userId) {
+        List<?> result = stringRedisTemplate.execute(RELEASE_SCRIPT,
+                List.of(reservationKey(reservationId), balanceKey(userId), EXPIRY_KEY),
+                reservationId.toString(), userId.toString(), String.valueOf(System.currentTimeMillis()),
+                String.valueOf(retentionSeconds));
+        String status = (String) result.get(0);
+        count("release", status);
+        if ("MISMATCH".equals(status)) {
+            throw new ValidationException("Reservation does not belong to user");
+        }
+        if ("NOT_FOUND".equals(status)) {
+            log.warn("Reservation not found for release: {}", reservationId);
+            return false;
+        }
+        return true;
+    }
+
+    public YuanReservation findByReservationId(UUID reservationId) {
+        Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(reservationKey(reservationId));
+        return fields.isEmpty() ? null : toReservation(fields);
+    }
+
+    public YuanReservation findBySagaId(String sagaId) {
+        String reservationId = stringRedisTemplate.opsForValue().get(SAGA_KEY_PREFIX + sagaId);
+        return reservationId == null ? null : findByReservationId(UUID.fromString(reservationId));
+    }
+
+    /**
+     * Release reservations whose expiry has passed, oldest first
+     * @return number of reservations released
+     */
+    public int releaseExpired() {
+        Set<String> expired = stringRedisTemplate.opsForZSet().rangeByScore(EXPIRY_KEY,
+                0, System.currentTimeMillis(), 0, expiryBatchSize);
+        if (expired == null || expired.isEmpty()) {
+            return 0;
+        }
+        int released = 0;
+        for (String id : expired) {
+            UUID reservationId = UUID.fromString(id);
+            Object userId = stringRedisTemplate.opsForHash().get(reservationKey(reservationId), "userId");
+            if (userId == null) {
+                stringRedisTemplate.opsForZSet().remove(EXPIRY_KEY, id);
+                continue;
+            }
+            if (release(reservationId, UUID.fromString((String) userId))) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Write one batch of confirmed deductions from the outbox to yuan_transactions.
+     * Entries left unacknowledged by an earlier failed run are retried first.
+     * @return number of entries processed
+     */
+    public int drainOutbox() {
+        ensureOutboxGroup();
+        Consumer consumer = Consumer.from(OUTBOX_GROUP, OUTBOX_CONSUMER);
+        StreamReadOptions options = StreamReadOptions.empty().count(outboxBatchSize);
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                .read(consumer, options, StreamOffset.create(OUTBOX_KEY, ReadOffset.from("0")));
+        if (records == null || records.isEmpty()) {
+            records = stringRedisTemplate.opsForStream()
+                    .read(consumer, options, StreamOffset.create(OUTBOX_KEY, ReadOffset.lastConsumed()));
+        }
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+
+        List<MapRecord<String, Object, Object>> batch = records;
+        Map<UUID, UserProgress> balances = new TransactionTemplate(transactionManager).execute(status -> {
+            userProgressRepository.deferLedgerWrites();
+            Set<UUID> userIds = new LinkedHashSet<>();
+            for (MapRecord<String, Object, Object> record : batch) {
+                YuanReservation reservation = toReservation(record.getValue());
+                if (yuanReservationMapper.insertConfirmed(reservation) == 1) {
+                    YuanTransaction transaction = new YuanTransaction();
+                    transaction.setUserId(reservation.getUserId());
+                    transaction.setAmount(-reservation.getAmount());
+                    transaction.setDescription(CONFIRMED_DESCRIPTION);
+                    userProgressRepository.saveYuanTransaction(transaction);
+                }
+                userIds.add(reservation.getUserId());
+            }
+            Map<UUID, UserProgress> progress = new HashMap<>();
+            for (UUID userId : userIds) {
+                progress.put(userId, userProgressRepository.findUserProgressByUserId(userId)
+                        .orElseGet(() -> UserProgress.empty(userId)));
+            }
+            return progress;
+        });
+
+        for (MapRecord<String, Object, Object> record : batch) {
+            UUID userId = UUID.fromString((String) record.getValue().get("userId"));
+            sync(balances.get(userId), record.getId().getValue(), (String) record.getValue().get("amount"), false);
+        }
+        meterRegistry.counter("gamification.yuan.outbox.drained").increment(batch.size());
+        return batch.size();
+    }
+
+    /**
+     * Startup reconciliation: drain the outbox, then reload every balance hash from Postgres
+     * @return number of balance hashes reloaded
+     */
+    public int reconcile() {
+        int drained = 0;
+        for (int batch; (batch = drainOutbox()) > 0; ) {
+            drained += batch;
+        }
+        log.info("Drained {} Yuan outbox entries before reconciliation", drained);
+        int reloaded = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(BALANCE_KEY_PREFIX + "*").count(1000).build();
+        try (Cursor<String> keys = stringRedisTemplate.scan(options)) {
+            while (keys.hasNext()) {
+                syncBalance(UUID.fromString(keys.next().substring(BALANCE_KEY_PREFIX.length())));
+                reloaded++;
+            }
+        }
+        log.info("Reconciled {} Redis Yuan balances with Postgres", reloaded);
+        return reloaded;
+    }
+
+    /**
+     * Reload the balance hashes of users whose Yuan was written in Postgres, once the current transaction commits
+     * (immediately without a transaction). Only hashes that are already loaded are reloaded; a missing one is
+     * loaded by the user's next reservation. No-op when the Redis engine is disabled.
+     */
+    public void syncBalancesAfterCommit(Collection<UUID> userIds) {
+        if (!enabled || userIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            syncLoadedBalances(userIds);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<UUID> pending = (Set<UUID>) TransactionSynchronizationManager.getResource(PENDING_SYNCS_KEY);
+        if (pending == null) {
+            Set<UUID> users = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(PENDING_SYNCS_KEY, users);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_SYNCS_KEY);
+                    if (status == STATUS_COMMITTED) {
+                        syncLoadedBalances(users);
+                    }
+                }
+            });
+            pending = users;
+        }
+        pending.addAll(userIds);
+    }
+
+    private void syncLoadedBalances(Collection<UUID> userIds) {
+        for (UUID userId : userIds) {
+            try {
+                sync(userProgressRepository.findUserProgressByUserId(userId).orElseGet(() -> UserProgress.empty(userId)),
+                        "", "0", true);
+            } catch (Exception e) {
+                // The hash keeps over-stating the balance until the next reload (startup reconciliation at the latest)
+                log.warn("Failed to reload Redis Yuan balance of user {} after a Postgres write", userId, e);
+            }
+        }
+    }
+
+    /**
+     * Reload the user's balance hash from user_progress
+     */
+    void syncBalance(UUID userId) {
+        sync(userProgressRepository.findUserProgressByUserId(userId).orElseGet(() -> UserProgress.empty(userId)), "", "0", false);
+    }
+
+    private void sync(UserProgress progress, String drainedEntryId, String drainedAmount, boolean loadedOnly) {
+        double balance = progress.getYuanBalance() == null ? 0.0 : progress.getYuanBalance();
+        long version = progress.getVersion() == null ? 0L : progress.getVersion();
+        stringRedisTemplate.execute(SYNC_SCRIPT, List.of(balanceKey(progress.getUserId()), OUTBOX_KEY),
+                String.valueOf(balance), String.valueOf(version), OUTBOX_GROUP, drainedEntryId, drainedAmount,
+                loadedOnly ? "1" : "0");
+    }
+
+    private void ensureOutboxGroup() {
+        if (outboxGroupCreated) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForStream().createGroup(OUTBOX_KEY, ReadOffset.from("0"), OUTBOX_GROUP);
+        } catch (RedisSystemException e) {
+            // BUSYGROUP: created by an earlier run or another instance
+            log.debug("Yuan outbox consumer group already exists");
+        }
+        outboxGroupCreated = true;
+    }
+
+    private void count(String operation, String result) {
+        meterRegistry.counter("gamification.yuan.redis_reservation", "operation", operation, "result", result).increment();
+    }
+
+    private static YuanReservation toReservation(Map<Object, Object> fields) {
+        YuanReservation reservation = new YuanReservation();
+        reservation.setReservationId(UUID.fromString((String) fields.get("reservationId")));
+        reservation.setUserId(UUID.fromString((String) fields.get("userId")));
+        reservation.setAmount(Double.valueOf((String) fields.get("amount")));
+        reservation.setSagaId((String) fields.get("sagaId"));
+        // Outbox entries carry no status: they are confirmed reservations
+        reservation.setStatus(fields.containsKey("status")
+                ? YuanReservation.ReservationStatus.valueOf((String) fields.get("status"))
+                : YuanReservation.ReservationStatus.CONFIRMED);
+        reservation.setCreatedAt(time(fields.get("createdAt")));
+        reservation.setExpiresAt(time(fields.get("expiresAt")));
+        reservation.setConfirmedAt(time(fields.get("confirmedAt")));
+        reservation.setReleasedAt(time(fields.get("releasedAt")));
+        return reservation;
+    }
+
+    private static OffsetDateTime time(Object epochMillis) {
+        return epochMillis == null
+                ? null
+                : OffsetDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong((String) epochMillis)), ZoneId.systemDefault())
+                        .truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private static String balanceKey(UUID userId) {
+        return BALANCE_KEY_PREFIX + userId;
+    }
+
+    private static String reservationKey(UUID reservationId) {
+        return RESERVATION_KEY_PREFIX + reservationId;
+    }
+
+    private static RedisScript<List> script(String name) {
+        return RedisScript.of(new ClassPathResource("scripts/" + name), List.class);
+    }
+}
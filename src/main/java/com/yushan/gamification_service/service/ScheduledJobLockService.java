@@ -0,0 +1,97 @@
+package com.yushan.gamification_service.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Cluster-wide mutual exclusion for scheduled jobs, so that with several replicas each run of a job
+ * happens on one instance only.
+ *
+ * Uses a session-level Postgres advisory lock keyed by the job name, held on a dedicated connection
+ * while the job runs. If the instance dies the session ends and Postgres drops the lock, so there is
+ * no lease to expire. Instances that do not get the lock skip that run.
+ * Turned off with gamification.scheduler.cluster-lock.enabled=false (every instance runs every job).
+ */
+@Slf4j
+@Service
+public class ScheduledJobLockService {
+
+    private static final String KEY_PREFIX = "scheduled_job:";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gamification.scheduler.cluster-lock.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Run the job unless another instance is running the job of the same name
+     *
+     * @return true if the job ran on this instance
+     */
+    public boolean runExclusively(String jobName, Runnable job) {
+        if (!enabled) {
+            job.run();
+            return true;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            if (!queryFlag(connection, "SELECT pg_try_advisory_lock(hashtext(?))", jobName)) {
+                log.debug("Skipping scheduled job {}, another instance holds its lock", jobName);
+                count(jobName, "skipped");
+                return false;
+            }
+            count(jobName, "acquired");
+            try {
+                job.run();
+                return true;
+            } finally {
+                unlock(connection, jobName);
+            }
+        } catch (SQLException e) {
+            log.error("Failed to take the cluster lock for scheduled job {}, skipping this run", jobName, e);
+            count(jobName, "error");
+            return false;
+        }
+    }
+
+    private boolean queryFlag(Connection connection, String sql, String jobName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, KEY_PREFIX + jobName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private void unlock(Connection connection, String jobName) {
+        try {
+            if (!queryFlag(connection, "SELECT pg_advisory_unlock(hashtext(?))", jobName)) {
+                log.warn("Cluster lock for scheduled job {} was not held at unlock", jobName);
+            }
+        } catch (SQLException e) {
+            // A pooled connection would keep the lock, so drop the session instead
+            log.error("Failed to release the cluster lock for scheduled job {}, closing its session", jobName, e);
+            try {
+                connection.abort(Runnable::run);
+            } catch (SQLException abortFailure) {
+                log.error("Failed to close the session holding the lock for scheduled job {}", jobName, abortFailure);
+            }
+        }
+    }
+
+    private void count(String jobName, String result) {
+        meterRegistry.counter("gamification.scheduler.lock", "job", jobName, "result", result).increment();
+    }
+}
@@ -0,0 +1,69 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.UserProgressMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reconciles the materialized user_progress balances against the EXP / Yuan ledgers.
+ * 
+ * The ledgers stay the source of truth: any drift is logged and, when repair is enabled,
+ * the affected rows are recomputed from the ledger sums.
+ */
+@Slf4j
+@Service
+public class UserProgressReconciliationService {
+
+    @Autowired
+    private UserProgressMapper userProgressMapper;
+
+    @Value("${gamification.user-progress.reconciliation.batch-size:500}")
+    private int batchSize;
+
+    @Value("${gamification.user-progress.reconciliation.repair:true}")
+    private boolean repairEnabled;
+
+    /**
+     * Check user_progress against the ledgers
+     * 
+     * @return number of users whose balances drifted from the ledger
+     */
+    public int reconcile() {
+        List<Map<String, Object>> drifted = userProgressMapper.findDriftedUsers(batchSize);
+        if (drifted.isEmpty()) {
+            log.debug("user_progress is consistent with the ledgers");
+            return 0;
+        }
+
+        for (Map<String, Object> row : drifted) {
+            UUID userId = (UUID) row.get("userId");
+            log.warn("user_progress drift for user {}: exp stored={} ledger={}, yuan stored={} ledger={}",
+                    userId, row.get("storedExp"), row.get("ledgerExp"), row.get("storedYuan"), row.get("ledgerYuan"));
+            if (repairEnabled) {
+                repairUser(userId);
+            }
+        }
+
+        log.warn("Found {} users with user_progress drift (repair {})", drifted.size(), repairEnabled ? "applied" : "disabled");
+        return drifted.size();
+    }
+
+    /**
+     * Recompute a single user's balances from the ledgers.
+     * The progress row is locked first so that concurrent ledger writers either commit
+     * before the recomputation (and are included) or apply their delta afterwards.
+     */
+    @Transactional
+    public void repairUser(UUID userId) {
+        userProgressMapper.lockByUserId(userId);
+        userProgressMapper.resyncFromLedger(userId);
+        log.info("Recomputed user_progress from ledgers for user {}", userId);
+    }
+}
@@ -0,0 +1,173 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.YuanReservationMapper;
+import com.yushan.gamification_service.entity.YuanReservation;
+import com.yushan.gamification_service.util.HashedTimingWheel;
+import com.yushan.gamification_service.util.ThreadFactories;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * In-process timing wheel that fires each Yuan reservation's expiry within a tick of its expires_at,
+ * so expired reservations stop holding Yuan without waiting for the cleanup sweep.
+ *
+ * Reservations are scheduled when they are created and the wheel is rebuilt from yuan_reservation on startup.
+ * Confirmed and released reservations are not removed; their expiry fires later and releases nothing.
+ * Turned off with saga.yuan-reservation.expiry-wheel.enabled=false, leaving expiry to the sweep.
+ */
+@Slf4j
+@Service
+public class YuanReservationExpiryWheel {
+
+    @Autowired
+    private YuanReservationMapper yuanReservationMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${saga.yuan-reservation.expiry-wheel.enabled:true}")
+    private boolean enabled;
+
+    @Value("${saga.yuan-reservation.expiry-wheel.tick-ms:100}")
+    private long tickMillis;
+
+    @Value("${saga.yuan-reservation.expiry-wheel.wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${saga.yuan-reservation.expiry-wheel.rebuild-page-size:1000}")
+    private int rebuildPageSize;
+
+    private HashedTimingWheel<ScheduledExpiry> wheel;
+    private Timer lagTimer;
+    private volatile Thread worker;
+
+    @PostConstruct
+    public void init() {
+        wheel = new HashedTimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+        lagTimer = Timer.builder("gamification.yuan.expiry_wheel.lag")
+                .description("Time between a reservation's expires_at and its expiry firing")
+                .register(meterRegistry);
+        meterRegistry.gauge("gamification.yuan.expiry_wheel.pending", wheel, HashedTimingWheel::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Schedule a reservation's expiry once the current transaction commits (immediately without one)
+     */
+    public void schedule(UUID reservationId, OffsetDateTime expiresAt) {
+        if (!enabled) {
+            return;
+        }
+        ScheduledExpiry expiry = new ScheduledExpiry(reservationId, expiresAt.toInstant().toEpochMilli());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wheel.schedule(expiry, expiry.deadlineMillis());
+                }
+            });
+        } else {
+            wheel.schedule(expiry, expiry.deadlineMillis());
+        }
+    }
+
+    /**
+     * Schedule every RESERVED reservation in yuan_reservation; ones already expired fire on the next tick.
+     * Reservations scheduled twice are released once, so this may overlap with new reservations.
+     *
+     * @return number of reservations scheduled
+     */
+    public int rebuild() {
+        if (!enabled) {
+            return 0;
+        }
+        int scheduled = 0;
+        long afterId = 0;
+        List<YuanReservation> page;
+        do {
+            page = yuanReservationMapper.findReservedAfter(afterId, rebuildPageSize);
+            for (YuanReservation reservation : page) {
+                long deadlineMillis = reservation.getExpiresAt().toInstant().toEpochMilli();
+                wheel.schedule(new ScheduledExpiry(reservation.getReservationId(), deadlineMillis), deadlineMillis);
+                afterId = reservation.getId();
+            }
+            scheduled += page.size();
+        } while (page.size() >= rebuildPageSize);
+        log.info("Scheduled {} reserved Yuan reservations on the expiry wheel", scheduled);
+        return scheduled;
+    }
+
+    /**
+     * Start the tick thread; each tick hands the reservations that expired to {@code onExpired}
+     */
+    public synchronized void start(Consumer<List<UUID>> onExpired) {
+        if (!enabled || worker != null) {
+            return;
+        }
+        worker = ThreadFactories.named("yuan-expiry-wheel-", false).newThread(() -> run(onExpired));
+        worker.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /**
+     * Fire the expiries due at {@code nowMillis}
+     */
+    void tick(long nowMillis, Consumer<List<UUID>> onExpired) {
+        List<ScheduledExpiry> due = wheel.advance(nowMillis);
+        if (due.isEmpty()) {
+            return;
+        }
+        for (ScheduledExpiry expiry : due) {
+            lagTimer.record(Duration.ofMillis(Math.max(nowMillis - expiry.deadlineMillis(), 0)));
+        }
+        try {
+            onExpired.accept(due.stream().map(ScheduledExpiry::reservationId).toList());
+        } catch (Exception e) {
+            // The cleanup sweep releases whatever this missed
+            log.error("Failed to release {} expired Yuan reservations", due.size(), e);
+        }
+    }
+
+    int pending() {
+        return wheel.size();
+    }
+
+    private void run(Consumer<List<UUID>> onExpired) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(tickMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            tick(System.currentTimeMillis(), onExpired);
+        }
+    }
+
+    private record ScheduledExpiry(UUID reservationId, long deadlineMillis) {
+    }
+}
@@ -1,14 +1,23 @@
 package com.yushan.gamification_service.service;
 
 import com.yushan.gamification_service.dao.YuanReservationMapper;
+import com.yushan.gamification_service.dto.event.YuanReservationReleasedEvent;
+import com.yushan.gamification_service.entity.UserProgress;
 import com.yushan.gamification_service.entity.YuanReservation;
 import com.yushan.gamification_service.exception.ValidationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
@@ -17,29 +26,56 @@ import java.util.UUID;
 /**
  * Service for managing Yuan reservations in SAGA pattern
  * Handles reserve, confirm, and release operations
+ * (delegated to {@link RedisYuanReservationEngine} when saga.yuan-reservation.redis.enabled is set)
  */
 @Slf4j
 @Service
 public class YuanReservationService {
 
+    /**
+     * Scale of yuan_reservation.amount
+     */
+    private static final int RESERVATION_AMOUNT_SCALE = 2;
+
     @Autowired
     private YuanReservationMapper yuanReservationMapper;
     
     @Autowired
     private com.yushan.gamification_service.repository.UserProgressRepository userProgressRepository;
 
+    @Autowired
+    private RedisYuanReservationEngine redisEngine;
+
+    @Autowired
+    private YuanReservationExpiryWheel expiryWheel;
+
+    @Autowired
+    private KafkaEventProducerService kafkaEventProducerService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Value("${saga.yuan-reservation.timeout-minutes:5}")
     private int reservationTimeoutMinutes;
 
     @Value("${saga.yuan-reservation.enabled:true}")
     private boolean sagaEnabled;
 
+    @Value("${saga.yuan-reservation.sweep.batch-size:500}")
+    private int sweepBatchSize;
+
+    @Value("${saga.yuan-reservation.sweep.max-batches:1000}")
+    private int sweepMaxBatches;
+
     /**
      * Reserve Yuan for a SAGA transaction
      * Creates a pending reservation that will expire after timeout
      * 
      * @param userId User ID
-     * @param amount Amount to reserve (must be positive)
+     * @param amount Amount to reserve (must be positive; rounded to yuan_reservation's 2 decimal places)
      * @param sagaId Unique SAGA ID for tracking
      * @return Reservation ID
      */
@@ -47,28 +83,21 @@ public class YuanReservationService {
     public UUID reserveYuan(UUID userId, Double amount, String sagaId) {
         log.info("Reserving {} Yuan for user {} in SAGA {}", amount, userId, sagaId);
 
+        // Round once to the DECIMAL(10,2) the reservation is stored with: release and confirm give back the
+        // stored amount, so holding the unrounded one on yuan_reserved would leave the difference held forever
+        if (amount != null) {
+            amount = BigDecimal.valueOf(amount).setScale(RESERVATION_AMOUNT_SCALE, RoundingMode.HALF_UP).doubleValue();
+        }
+
         // Validate amount
         if (amount == null || amount <= 0) {
             throw new ValidationException("Amount must be greater than 0");
         }
 
-        // Check if user has sufficient balance (check BEFORE reserving)
-        Double currentBalance = userProgressRepository.sumYuanAmountByUserId(userId);
-        double totalBalance = (currentBalance == null) ? 0.0 : currentBalance;
-        
-        // Calculate reserved amount (pending reservations)
-        Double reservedAmount = yuanReservationMapper.sumReservedAmountByUserId(userId);
-        double totalReserved = (reservedAmount == null) ? 0.0 : reservedAmount;
-        
-        // Available balance = total balance - already reserved
-        double availableBalance = totalBalance - totalReserved;
-        
-        if (availableBalance < amount) {
-            log.error("Insufficient balance to reserve Yuan: user {} has {} available (total: {}, reserved: {}), needs {}", 
-                    userId, availableBalance, totalBalance, totalReserved, amount);
-            throw new ValidationException("Insufficient Yuan balance. Available: " + availableBalance + ", Required: " + amount);
+        if (redisEngine.isEnabled()) {
+            return redisEngine.reserve(userId, amount, sagaId);
         }
-        
+
         // Create reservation
         UUID reservationId = UUID.randomUUID();
         YuanReservation reservation = new YuanReservation();
@@ -79,7 +108,21 @@ public class YuanReservationService {
         reservation.setStatus(YuanReservation.ReservationStatus.RESERVED);
         reservation.setExpiresAt(OffsetDateTime.now().plus(reservationTimeoutMinutes, ChronoUnit.MINUTES));
         
-        yuanReservationMapper.insert(reservation);
+        // Holds the amount on the user's progress row and inserts the reservation in one statement;
+        // concurrent reservations of the same user serialize on that row, so they cannot overspend
+        Long id = yuanReservationMapper.reserve(reservation);
+        if (id == null) {
+            UserProgress progress = userProgressRepository.findUserProgressByUserId(userId)
+                    .orElseGet(() -> UserProgress.empty(userId));
+            double totalBalance = (progress.getYuanBalance() == null) ? 0.0 : progress.getYuanBalance();
+            double totalReserved = (progress.getYuanReserved() == null) ? 0.0 : progress.getYuanReserved();
+            double availableBalance = totalBalance - totalReserved;
+            log.error("Insufficient balance to reserve Yuan: user {} has {} available (total: {}, reserved: {}), needs {}", 
+                    userId, availableBalance, totalBalance, totalReserved, amount);
+            throw new ValidationException("Insufficient Yuan balance. Available: " + availableBalance + ", Required: " + amount);
+        }
+        reservation.setId(id);
+        expiryWheel.schedule(reservationId, reservation.getExpiresAt());
         
         log.info("Successfully reserved {} Yuan for user {} in SAGA {}, reservationId: {}", 
                 amount, userId, sagaId, reservationId);
@@ -100,6 +143,10 @@ public class YuanReservationService {
     public boolean confirmReservation(UUID reservationId, UUID userId, com.yushan.gamification_service.repository.UserProgressRepository userProgressRepository) {
         log.info("Confirming Yuan reservation {} for user {}", reservationId, userId);
 
+        if (redisEngine.isEnabled()) {
+            return redisEngine.confirm(reservationId, userId);
+        }
+
         YuanReservation reservation = yuanReservationMapper.findByReservationId(reservationId);
         if (reservation == null) {
             log.error("Reservation not found: {}", reservationId);
@@ -128,8 +175,9 @@ public class YuanReservationService {
         }
 
         // Check if user has sufficient balance (including this reservation)
-        Double currentBalance = userProgressRepository.sumYuanAmountByUserId(userId);
-        double availableBalance = (currentBalance == null) ? 0.0 : currentBalance;
+        double availableBalance = userProgressRepository.findUserProgressByUserId(userId)
+                .map(UserProgress::getYuanBalance)
+                .orElse(0.0);
         
         if (availableBalance < reservation.getAmount()) {
             log.error("Insufficient balance: user {} has {} but needs {}", userId, availableBalance, reservation.getAmount());
@@ -138,7 +186,16 @@ public class YuanReservationService {
             throw new ValidationException("Insufficient Yuan balance");
         }
 
-        // Create Yuan transaction (deduct)
+        // Update reservation status to CONFIRMED first (also drops the amount from the user's reserved Yuan):
+        // it locks the reservation row and then user_progress, the same order as release and the expiry sweeps,
+        // so a confirm racing an expiry release cannot deadlock. 0 rows: released since it was read above.
+        int updated = yuanReservationMapper.confirmReservation(reservationId, OffsetDateTime.now());
+        if (updated == 0) {
+            log.error("Failed to confirm reservation: {}", reservationId);
+            throw new ValidationException("Failed to confirm reservation");
+        }
+
+        // Create Yuan transaction (deduct); user_progress is already locked by this transaction
         com.yushan.gamification_service.entity.YuanTransaction yuanTransaction = 
             new com.yushan.gamification_service.entity.YuanTransaction();
         yuanTransaction.setUserId(userId);
@@ -146,13 +203,6 @@ public class YuanReservationService {
         yuanTransaction.setDescription("Vote cost (SAGA confirmed)");
         userProgressRepository.saveYuanTransaction(yuanTransaction);
 
-        // Update reservation status to CONFIRMED
-        int updated = yuanReservationMapper.confirmReservation(reservationId, OffsetDateTime.now());
-        if (updated == 0) {
-            log.error("Failed to confirm reservation: {}", reservationId);
-            throw new ValidationException("Failed to confirm reservation");
-        }
-
         log.info("Successfully confirmed Yuan reservation {} for user {}, deducted {} Yuan", 
                 reservationId, userId, reservation.getAmount());
         return true;
@@ -170,6 +220,16 @@ public class YuanReservationService {
     public boolean releaseReservation(UUID reservationId, UUID userId) {
         log.info("Releasing Yuan reservation {} for user {}", reservationId, userId);
 
+        if (redisEngine.isEnabled()) {
+            return redisEngine.release(reservationId, userId);
+        }
+        return releaseStoredReservation(reservationId, userId);
+    }
+
+    /**
+     * Release a reservation held in yuan_reservation
+     */
+    private boolean releaseStoredReservation(UUID reservationId, UUID userId) {
         YuanReservation reservation = yuanReservationMapper.findByReservationId(reservationId);
         if (reservation == null) {
             log.warn("Reservation not found for release: {}", reservationId);
@@ -189,8 +249,15 @@ public class YuanReservationService {
             return true; // Already released
         }
 
-        // Update reservation status to RELEASED
-        int updated = yuanReservationMapper.releaseReservation(reservationId, OffsetDateTime.now());
+        // Update reservation status to RELEASED; only a RESERVED reservation still holds reserved Yuan.
+        // Falls back to the CONFIRMED transition when a confirm got there first.
+        OffsetDateTime now = OffsetDateTime.now();
+        int updated = (reservation.getStatus() == YuanReservation.ReservationStatus.RESERVED)
+                ? yuanReservationMapper.releaseReservation(reservationId, now)
+                : 0;
+        if (updated == 0) {
+            updated = yuanReservationMapper.releaseConfirmedReservation(reservationId, now);
+        }
         if (updated == 0) {
             log.warn("Failed to release reservation (may already be processed): {}", reservationId);
             return false;
@@ -210,7 +277,7 @@ public class YuanReservationService {
     public boolean releaseReservationBySagaId(String sagaId) {
         log.info("Releasing Yuan reservation by SAGA ID: {}", sagaId);
 
-        YuanReservation reservation = yuanReservationMapper.findBySagaId(sagaId);
+        YuanReservation reservation = getReservationBySagaId(sagaId);
         if (reservation == null) {
             log.warn("Reservation not found for SAGA ID: {}", sagaId);
             return false;
@@ -226,6 +293,9 @@ public class YuanReservationService {
      * @return Reservation or null if not found
      */
     public YuanReservation getReservationBySagaId(String sagaId) {
+        if (redisEngine.isEnabled()) {
+            return redisEngine.findBySagaId(sagaId);
+        }
         return yuanReservationMapper.findBySagaId(sagaId);
     }
 
@@ -236,42 +306,88 @@ public class YuanReservationService {
      * @return Reservation or null if not found
      */
     public YuanReservation getReservation(UUID reservationId) {
+        if (redisEngine.isEnabled()) {
+            return redisEngine.findByReservationId(reservationId);
+        }
         return yuanReservationMapper.findByReservationId(reservationId);
     }
 
-    /**
-     * Find all expired reservations (for cleanup job)
-     * 
-     * @return List of expired reservations
-     */
-    public List<YuanReservation> findExpiredReservations() {
-        return yuanReservationMapper.findExpiredReservations(OffsetDateTime.now());
-    }
-
     /**
      * Cleanup expired reservations (should be called by scheduled job)
-     * Releases all expired RESERVED reservations
+     * Safety net for the expiry wheel: catches what it missed (e.g. releases that failed, the Redis engine).
+     * Releases expired RESERVED reservations in batches of saga.yuan-reservation.sweep.batch-size,
+     * each in its own short transaction, until none are left (at most sweep.max-batches per run)
      */
-    @Transactional
     public int cleanupExpiredReservations() {
         log.info("Starting cleanup of expired Yuan reservations");
-        
-        List<YuanReservation> expiredReservations = findExpiredReservations();
-        int releasedCount = 0;
 
-        for (YuanReservation reservation : expiredReservations) {
-            try {
-                if (releaseReservation(reservation.getReservationId(), reservation.getUserId())) {
-                    releasedCount++;
-                    log.debug("Released expired reservation: {}", reservation.getReservationId());
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int releasedCount = 0;
+        try {
+            for (int batch = 0; batch < sweepMaxBatches; batch++) {
+                int released = releaseExpiredBatch();
+                releasedCount += released;
+                if (released < sweepBatchSize) {
+                    break;
                 }
-            } catch (Exception e) {
-                log.error("Failed to release expired reservation: {}", reservation.getReservationId(), e);
             }
+
+            if (redisEngine.isEnabled()) {
+                releasedCount += redisEngine.releaseExpired();
+            }
+        } finally {
+            sample.stop(meterRegistry.timer("gamification.yuan.expiry_sweep"));
         }
 
         log.info("Cleaned up {} expired Yuan reservations", releasedCount);
         return releasedCount;
     }
-}
 
+    /**
+     * Release the given reservations that have expired and are still RESERVED (called by the expiry wheel)
+     * Others are skipped, so confirmed or already released reservations may be passed
+     */
+    public int releaseExpiredReservations(List<UUID> reservationIds) {
+        int releasedCount = 0;
+        for (int from = 0; from < reservationIds.size(); from += sweepBatchSize) {
+            List<UUID> batch = reservationIds.subList(from, Math.min(from + sweepBatchSize, reservationIds.size()));
+            List<YuanReservation> released = new TransactionTemplate(transactionManager).execute(status ->
+                    yuanReservationMapper.releaseExpiredByIds(batch, OffsetDateTime.now()));
+            releasedCount += publishReleased(released, "gamification.yuan.expiry_wheel.released");
+        }
+        return releasedCount;
+    }
+
+    /**
+     * Release one batch of expired reservations and publish their release events once it has committed
+     */
+    private int releaseExpiredBatch() {
+        List<YuanReservation> released = new TransactionTemplate(transactionManager).execute(status ->
+                yuanReservationMapper.releaseExpiredBatch(OffsetDateTime.now(), sweepBatchSize));
+        return publishReleased(released, "gamification.yuan.expiry_sweep.released");
+    }
+
+    /**
+     * Count the released reservations on {@code metric} and publish their release events in one batch
+     */
+    private int publishReleased(List<YuanReservation> released, String metric) {
+        if (released == null || released.isEmpty()) {
+            return 0;
+        }
+        meterRegistry.counter(metric).increment(released.size());
+        log.debug("Released a batch of {} expired Yuan reservations", released.size());
+
+        LocalDateTime now = LocalDateTime.now();
+        kafkaEventProducerService.publishYuanReservationReleasedEvents(released.stream()
+                .map(reservation -> YuanReservationReleasedEvent.builder()
+                        .sagaId(reservation.getSagaId())
+                        .userId(reservation.getUserId())
+                        .reservationId(reservation.getReservationId())
+                        .amount(reservation.getAmount())
+                        .reason("Yuan reservation expired")
+                        .timestamp(now)
+                        .build())
+                .toList());
+        return released.size();
+    }
+}
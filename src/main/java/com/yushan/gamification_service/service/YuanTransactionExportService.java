@@ -0,0 +1,134 @@
+package com.yushan.gamification_service.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.yushan.gamification_service.dao.YuanTransactionMapper;
+import com.yushan.gamification_service.dto.transaction.AdminYuanTransactionDTO;
+import com.yushan.gamification_service.entity.YuanTransaction;
+import com.yushan.gamification_service.enums.ExportFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Streams Yuan transactions for reconciliation exports.
+ *
+ * Rows come from a server-side cursor (fetched in chunks of the mapper's fetchSize) and are written to the
+ * output as they are read, so heap use does not grow with the number of rows exported.
+ */
+@Slf4j
+@Service
+public class YuanTransactionExportService {
+
+    private static final String CSV_HEADER = "id,user_id,amount,description,created_at";
+
+    @Autowired
+    private YuanTransactionMapper yuanTransactionMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Write every transaction matching the filters to the output, oldest first.
+     * The output is flushed but not closed.
+     *
+     * @return number of rows written
+     */
+    public long export(UUID userId, OffsetDateTime startDate, OffsetDateTime endDate,
+                       ExportFormat format, OutputStream output) {
+        long start = System.currentTimeMillis();
+        // The cursor only streams while its connection stays in a (non auto-commit) transaction
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Long written = readOnly.execute(status -> {
+            try (Cursor<YuanTransaction> rows = yuanTransactionMapper.streamWithFilters(userId, startDate, endDate)) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024);
+                long count = format == ExportFormat.CSV ? writeCsv(rows, writer) : writeNdjson(rows, writer);
+                writer.flush();
+                return count;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long count = written == null ? 0 : written;
+        log.info("Exported {} Yuan transactions as {} in {} ms (userId={}, startDate={}, endDate={})",
+                count, format, System.currentTimeMillis() - start, userId, startDate, endDate);
+        return count;
+    }
+
+    private long writeNdjson(Cursor<YuanTransaction> rows, Writer writer) throws IOException {
+        long count = 0;
+        // SequenceWriter must not close the response writer
+        SequenceWriter lines = objectMapper.writer()
+                .withoutFeatures(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(writer);
+        for (YuanTransaction row : rows) {
+            lines.write(toDto(row));
+            count++;
+        }
+        lines.close();
+        if (count > 0) {
+            writer.write('\n');
+        }
+        return count;
+    }
+
+    private long writeCsv(Cursor<YuanTransaction> rows, Writer writer) throws IOException {
+        long count = 0;
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        for (YuanTransaction row : rows) {
+            writer.write(String.valueOf(row.getId()));
+            writer.write(',');
+            writer.write(String.valueOf(row.getUserId()));
+            writer.write(',');
+            writer.write(String.valueOf(row.getAmount()));
+            writer.write(',');
+            writer.write(csvField(row.getDescription()));
+            writer.write(',');
+            writer.write(row.getCreatedAt() != null ? row.getCreatedAt().toString() : "");
+            writer.write('\n');
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Quote a free-text field (RFC 4180) and neutralise leading formula characters for spreadsheet imports
+     */
+    static String csvField(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String text = value;
+        char first = text.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@') {
+            text = "'" + text;
+        }
+        boolean needsQuoting = text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+        return needsQuoting ? '"' + text.replace("\"", "\"\"") + '"' : text;
+    }
+
+    private static AdminYuanTransactionDTO toDto(YuanTransaction row) {
+        return new AdminYuanTransactionDTO(row.getId(), row.getUserId(), row.getAmount(), row.getDescription(), row.getCreatedAt());
+    }
+}
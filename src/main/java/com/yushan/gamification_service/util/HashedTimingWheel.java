@@ -0,0 +1,110 @@
+package com.yushan.gamification_service.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe hashed timing wheel.
+ *
+ * Time is cut into ticks of {@code tickMillis}; an item due at tick t is kept in bucket t mod wheelSize, so
+ * scheduling is O(1) and advancing one tick only looks at one bucket. Items more than one revolution ahead
+ * share a bucket with nearer ones and stay there until their own tick comes round. An item never fires
+ * before its deadline and fires at most one tick after it, provided {@link #advance} is called every tick.
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickMillis;
+    private final List<Entry<T>>[] buckets;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMillis length of one tick
+     * @param wheelSize number of buckets; one revolution covers tickMillis * wheelSize
+     * @param startMillis time the wheel starts at; deadlines before it fire on the first advance
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis and wheelSize must be > 0");
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Schedule an item; a deadline that has already passed fires on the next advance
+     */
+    public void schedule(T item, long deadlineMillis) {
+        // Round up so the item's tick never starts before its deadline
+        long tick = Math.ceilDiv(deadlineMillis, tickMillis);
+        lock.lock();
+        try {
+            tick = Math.max(tick, currentTick + 1);
+            buckets[(int) Math.floorMod(tick, (long) buckets.length)].add(new Entry<>(item, tick));
+            size++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Move the wheel to {@code nowMillis} and remove the items that are due
+     *
+     * @return the due items, in no particular order
+     */
+    public List<T> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<T> due = new ArrayList<>();
+        lock.lock();
+        try {
+            if (targetTick <= currentTick) {
+                return due;
+            }
+            // After a long pause every bucket is visited once, which still finds every due item
+            long firstTick = Math.max(currentTick + 1, targetTick - buckets.length + 1);
+            for (long tick = firstTick; tick <= targetTick; tick++) {
+                Iterator<Entry<T>> entries = buckets[(int) Math.floorMod(tick, (long) buckets.length)].iterator();
+                while (entries.hasNext()) {
+                    Entry<T> entry = entries.next();
+                    if (entry.tick <= targetTick) {
+                        due.add(entry.item);
+                        entries.remove();
+                        size--;
+                    }
+                }
+            }
+            currentTick = targetTick;
+            return due;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of scheduled items that have not fired yet
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    private record Entry<T>(T item, long tick) {
+    }
+}
@@ -1,10 +1,15 @@
 package com.yushan.gamification_service.util;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -79,6 +84,14 @@ public class RedisUtil {
         redisTemplate.delete(keys);
     }
 
+    /**
+     * Set key with TTL only if it does not exist (SET NX PX)
+     * @return true if the key was set
+     */
+    public boolean setIfAbsent(String key, Object value, Duration ttl) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, ttl));
+    }
+
     /**
      * Check if key exists
      */
@@ -86,6 +99,46 @@ public class RedisUtil {
         return Boolean.TRUE.equals(redisTemplate.hasKey(key));
     }
 
+    /**
+     * Return the subset of keys that currently hold the given value (single MGET round trip)
+     */
+    public Set<String> keysWithValue(List<String> keys, Object value) {
+        Set<String> matching = new HashSet<>();
+        if (keys.isEmpty()) {
+            return matching;
+        }
+        List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return matching;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            if (value.equals(values.get(i))) {
+                matching.add(keys.get(i));
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Set the same value with TTL on multiple keys (pipelined, single round trip)
+     */
+    public void setAll(Collection<String> keys, Object value, Duration ttl) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (String key : keys) {
+                    ops.opsForValue().set(key, value, ttl);
+                }
+                return null;
+            }
+        });
+    }
+
     /**
      * Increment a numeric value
      */
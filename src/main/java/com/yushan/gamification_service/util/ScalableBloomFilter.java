@@ -0,0 +1,229 @@
+package com.yushan.gamification_service.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe scalable Bloom filter for string keys.
+ *
+ * Starts with one stage sized for the initial capacity; when a stage is full a new stage with twice the
+ * capacity and half the false-positive rate is appended, so the compound false-positive rate stays below
+ * the target no matter how many keys are added. No false negatives; keys cannot be removed.
+ */
+public class ScalableBloomFilter {
+
+    private static final double TIGHTENING_RATIO = 0.5;
+    private static final int GROWTH_FACTOR = 2;
+
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+    private final ReentrantLock growthLock = new ReentrantLock();
+
+    /**
+     * @param initialCapacity keys the first stage holds before the filter grows
+     * @param targetFpp upper bound for the compound false-positive probability
+     */
+    public ScalableBloomFilter(long initialCapacity, double targetFpp) {
+        if (initialCapacity <= 0 || targetFpp <= 0 || targetFpp >= 1) {
+            throw new IllegalArgumentException("initialCapacity must be > 0 and targetFpp in (0, 1)");
+        }
+        // Stage fpps form a geometric series p0 * r^i whose sum equals targetFpp
+        stages.add(new Stage(initialCapacity, targetFpp * (1 - TIGHTENING_RATIO)));
+    }
+
+    /**
+     * @return false if the key was definitely never added, true if it may have been
+     */
+    public boolean mightContain(String key) {
+        long[] hash = hash(key);
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void put(String key) {
+        long[] hash = hash(key);
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash)) {
+                return;
+            }
+        }
+
+        Stage current = stages.get(stages.size() - 1);
+        if (current.isFull()) {
+            growthLock.lock();
+            try {
+                current = stages.get(stages.size() - 1);
+                if (current.isFull()) {
+                    current = new Stage(current.capacity * GROWTH_FACTOR, current.fpp * TIGHTENING_RATIO);
+                    stages.add(current);
+                }
+            } finally {
+                growthLock.unlock();
+            }
+        }
+        current.put(hash);
+    }
+
+    /**
+     * Number of distinct keys added (approximate: keys that collided with existing bits are not counted)
+     */
+    public long approximateCount() {
+        long count = 0;
+        for (Stage stage : stages) {
+            count += stage.count.get();
+        }
+        return count;
+    }
+
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Stage stage : stages) {
+            bytes += (long) stage.bits.length() * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    public int stageCount() {
+        return stages.size();
+    }
+
+    /**
+     * Estimated current false-positive probability, computed from the actual bit fill of each stage
+     */
+    public double expectedFpp() {
+        double allStagesNegative = 1.0;
+        for (Stage stage : stages) {
+            allStagesNegative *= 1.0 - Math.pow(stage.fillRatio(), stage.hashFunctions);
+        }
+        return 1.0 - allStagesNegative;
+    }
+
+    private static final class Stage {
+        private final long capacity;
+        private final double fpp;
+        private final long bitSize;
+        private final int hashFunctions;
+        private final AtomicLongArray bits;
+        private final AtomicLong count = new AtomicLong();
+
+        private Stage(long capacity, double fpp) {
+            this.capacity = capacity;
+            this.fpp = fpp;
+            long optimalBits = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            this.bitSize = Math.max(64, ((optimalBits + 63) / 64) * 64);
+            this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / capacity * Math.log(2)));
+            this.bits = new AtomicLongArray((int) (bitSize / 64));
+        }
+
+        private boolean isFull() {
+            return count.get() >= capacity;
+        }
+
+        private boolean mightContain(long[] hash) {
+            long combined = hash[0];
+            for (int i = 0; i < hashFunctions; i++) {
+                long index = (combined & Long.MAX_VALUE) % bitSize;
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+                combined += hash[1];
+            }
+            return true;
+        }
+
+        private void put(long[] hash) {
+            long combined = hash[0];
+            for (int i = 0; i < hashFunctions; i++) {
+                long index = (combined & Long.MAX_VALUE) % bitSize;
+                long mask = 1L << index;
+                bits.getAndUpdate((int) (index >>> 6), word -> word | mask);
+                combined += hash[1];
+            }
+            count.incrementAndGet();
+        }
+
+        private double fillRatio() {
+            long setBits = 0;
+            for (int i = 0; i < bits.length(); i++) {
+                setBits += Long.bitCount(bits.get(i));
+            }
+            return (double) setBits / bitSize;
+        }
+    }
+
+    /**
+     * MurmurHash3 x64 128-bit of the UTF-8 bytes; the two halves drive double hashing (Kirsch-Mitzenmacher)
+     */
+    static long[] hash(String key) {
+        byte[] data = key.getBytes(StandardCharsets.UTF_8);
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = data.length / 16;
+
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLongLittleEndian(data, i * 16);
+            long k2 = getLongLittleEndian(data, i * 16 + 8);
+
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int tail = blocks * 16;
+        int remaining = data.length & 15;
+        for (int i = remaining - 1; i >= 0; i--) {
+            long b = data[tail + i] & 0xffL;
+            if (i >= 8) {
+                k2 ^= b << ((i - 8) * 8);
+            } else {
+                k1 ^= b << (i * 8);
+            }
+        }
+        if (remaining > 8) {
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+        }
+        if (remaining > 0) {
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+        }
+
+        h1 ^= data.length;
+        h2 ^= data.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[] {h1, h2};
+    }
+
+    private static long getLongLittleEndian(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xffL);
+        }
+        return value;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
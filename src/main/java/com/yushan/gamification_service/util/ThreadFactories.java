@@ -0,0 +1,22 @@
+package com.yushan.gamification_service.util;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Named thread factories that switch to virtual threads when spring.threads.virtual.enabled is set
+ */
+public final class ThreadFactories {
+
+    private ThreadFactories() {
+    }
+
+    /**
+     * @param prefix thread name prefix; threads are numbered from 1
+     * @param virtual virtual threads if true, otherwise daemon platform threads
+     */
+    public static ThreadFactory named(String prefix, boolean virtual) {
+        return virtual
+                ? Thread.ofVirtual().name(prefix, 1).factory()
+                : Thread.ofPlatform().name(prefix, 1).daemon(true).factory();
+    }
+}
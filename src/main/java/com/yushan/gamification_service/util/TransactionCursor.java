@@ -0,0 +1,45 @@
+package com.yushan.gamification_service.util;
+
+import com.yushan.gamification_service.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position (created_at, id) of the last ledger row returned to the client.
+ * created_at is stored as a timestamp without time zone, which the JDBC driver reads as UTC.
+ */
+public record TransactionCursor(LocalDateTime createdAt, long id) {
+
+    private static final char SEPARATOR = '|';
+
+    public static TransactionCursor of(OffsetDateTime createdAt, Long id) {
+        return new TransactionCursor(createdAt.withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime(), id);
+    }
+
+    public String encode() {
+        String raw = createdAt.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the decoded cursor, or null for a blank value (first page)
+     */
+    public static TransactionCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return new TransactionCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new ValidationException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
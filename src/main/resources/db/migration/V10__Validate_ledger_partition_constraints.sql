@@ -0,0 +1,11 @@
+-- Monthly ledger partitioning, step 3 of 4: validate the V8 constraints.
+-- VALIDATE CONSTRAINT scans the table under SHARE UPDATE EXCLUSIVE, which does not block reads or writes.
+
+-- Rows from before created_at was always set by the application; they belong to the oldest data anyway
+UPDATE exp_transactions SET created_at = TIMESTAMP '1970-01-01' WHERE created_at IS NULL;
+UPDATE yuan_transactions SET created_at = TIMESTAMP '1970-01-01' WHERE created_at IS NULL;
+
+ALTER TABLE exp_transactions VALIDATE CONSTRAINT exp_transactions_created_at_not_null;
+ALTER TABLE exp_transactions VALIDATE CONSTRAINT exp_transactions_legacy_range;
+ALTER TABLE yuan_transactions VALIDATE CONSTRAINT yuan_transactions_created_at_not_null;
+ALTER TABLE yuan_transactions VALIDATE CONSTRAINT yuan_transactions_legacy_range;
@@ -0,0 +1,117 @@
+-- Monthly ledger partitioning, step 4 of 4: swap in the partitioned tables.
+-- Every statement here is catalog-only thanks to V8-V10, so the exclusive locks are held only briefly.
+--
+-- A partitioned table's primary key must contain the partition column, so the key becomes (id, created_at);
+-- ids still come from the original sequences and stay unique.
+-- Each partition gets (user_id, created_at DESC, id DESC) for per-user history and sums;
+-- yuan_transactions partitions also get (created_at DESC, id DESC) for admin browsing.
+-- Date-filtered queries only visit the partitions overlapping the requested range.
+
+-- Create monthly partitions of p_table for every month overlapping [p_from, p_to]; existing ones are skipped.
+-- Months before ledger_partition_floor() are covered by the legacy partition.
+CREATE OR REPLACE FUNCTION create_ledger_partitions(p_table TEXT, p_from DATE, p_to DATE)
+RETURNS INTEGER AS $$
+DECLARE
+    partition_month TIMESTAMP;
+    partition_name TEXT;
+    created INTEGER := 0;
+BEGIN
+    IF p_table NOT IN ('exp_transactions', 'yuan_transactions') THEN
+        RAISE EXCEPTION 'Not a ledger table: %', p_table;
+    END IF;
+
+    -- Several instances may run partition maintenance at the same time
+    PERFORM pg_advisory_xact_lock(hashtext('ledger_partitions'));
+
+    partition_month := GREATEST(date_trunc('month', p_from::timestamp), ledger_partition_floor());
+    WHILE partition_month <= p_to LOOP
+        partition_name := p_table || '_p' || to_char(partition_month, 'YYYYMM');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format(
+                'CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                partition_name, p_table, partition_month, partition_month + INTERVAL '1 month');
+            created := created + 1;
+        END IF;
+        partition_month := partition_month + INTERVAL '1 month';
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- ========================================
+-- exp_transactions
+-- ========================================
+
+ALTER TABLE exp_transactions RENAME TO exp_transactions_legacy;
+-- Proven by the validated CHECK constraint: no table scan
+ALTER TABLE exp_transactions_legacy ALTER COLUMN created_at SET NOT NULL;
+ALTER TABLE exp_transactions_legacy ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE exp_transactions_legacy DROP CONSTRAINT exp_transactions_pkey;
+ALTER TABLE exp_transactions_legacy
+    ADD CONSTRAINT exp_transactions_legacy_pkey PRIMARY KEY USING INDEX exp_transactions_legacy_id_created_at_key;
+-- Superseded by idx_exp_transactions_legacy_user_created_id
+DROP INDEX IF EXISTS idx_exp_transactions_user_id;
+
+CREATE TABLE exp_transactions (
+    id INTEGER NOT NULL DEFAULT nextval('exp_transactions_id_seq'),
+    user_id UUID NOT NULL,
+    amount DOUBLE PRECISION NOT NULL,
+    reason VARCHAR(255),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE exp_transactions_id_seq OWNED BY exp_transactions.id;
+
+CREATE INDEX idx_exp_transactions_user_created_id ON exp_transactions (user_id, created_at DESC, id DESC);
+
+-- ========================================
+-- yuan_transactions
+-- ========================================
+
+ALTER TABLE yuan_transactions RENAME TO yuan_transactions_legacy;
+ALTER TABLE yuan_transactions_legacy ALTER COLUMN created_at SET NOT NULL;
+ALTER TABLE yuan_transactions_legacy ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE yuan_transactions_legacy DROP CONSTRAINT yuan_transactions_pkey;
+ALTER TABLE yuan_transactions_legacy
+    ADD CONSTRAINT yuan_transactions_legacy_pkey PRIMARY KEY USING INDEX yuan_transactions_legacy_id_created_at_key;
+ALTER INDEX idx_yuan_transactions_user_created_id RENAME TO idx_yuan_transactions_legacy_user_created_id;
+ALTER INDEX idx_yuan_transactions_created_id RENAME TO idx_yuan_transactions_legacy_created_id;
+
+CREATE TABLE yuan_transactions (
+    id INTEGER NOT NULL DEFAULT nextval('yuan_transactions_id_seq'),
+    user_id UUID NOT NULL,
+    amount DOUBLE PRECISION NOT NULL,
+    description TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE yuan_transactions_id_seq OWNED BY yuan_transactions.id;
+
+CREATE INDEX idx_yuan_transactions_user_created_id ON yuan_transactions (user_id, created_at DESC, id DESC);
+CREATE INDEX idx_yuan_transactions_created_id ON yuan_transactions (created_at DESC, id DESC);
+
+-- ========================================
+-- Attach the legacy tables and create the first monthly partitions
+-- ========================================
+
+-- The validated range constraints prove the partition bounds: no table scan, and the existing
+-- legacy indexes are attached to the partitioned indexes instead of being rebuilt
+DO $$
+BEGIN
+    EXECUTE format('ALTER TABLE exp_transactions ATTACH PARTITION exp_transactions_legacy ' ||
+            'FOR VALUES FROM (MINVALUE) TO (%L)', ledger_partition_floor());
+    EXECUTE format('ALTER TABLE yuan_transactions ATTACH PARTITION yuan_transactions_legacy ' ||
+            'FOR VALUES FROM (MINVALUE) TO (%L)', ledger_partition_floor());
+END;
+$$;
+
+-- Implied by the partition bounds from here on
+ALTER TABLE exp_transactions_legacy DROP CONSTRAINT exp_transactions_created_at_not_null;
+ALTER TABLE exp_transactions_legacy DROP CONSTRAINT exp_transactions_legacy_range;
+ALTER TABLE yuan_transactions_legacy DROP CONSTRAINT yuan_transactions_created_at_not_null;
+ALTER TABLE yuan_transactions_legacy DROP CONSTRAINT yuan_transactions_legacy_range;
+
+SELECT create_ledger_partitions('exp_transactions', CURRENT_DATE, (CURRENT_DATE + INTERVAL '3 months')::date);
+SELECT create_ledger_partitions('yuan_transactions', CURRENT_DATE, (CURRENT_DATE + INTERVAL '3 months')::date);
@@ -0,0 +1,52 @@
+-- Ledger compaction: rows older than the retention window are folded into one snapshot row per user and ledger
+-- and moved to cold archive tables. A user's ledger total is snapshot amount + SUM(rows still in the ledger).
+-- Folding and moving happen in the same statement, so the total never changes.
+
+CREATE TABLE IF NOT EXISTS ledger_snapshot (
+    user_id UUID NOT NULL,
+    ledger VARCHAR(10) NOT NULL,
+    amount DOUBLE PRECISION NOT NULL DEFAULT 0,
+    row_count BIGINT NOT NULL DEFAULT 0,
+    compacted_before TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, ledger),
+    CONSTRAINT ledger_snapshot_ledger_check CHECK (ledger IN ('exp', 'yuan'))
+);
+
+-- Cold copies of the compacted rows, kept for audits only
+CREATE TABLE IF NOT EXISTS exp_transactions_archive (
+    id INTEGER NOT NULL,
+    user_id UUID NOT NULL,
+    amount DOUBLE PRECISION NOT NULL,
+    reason VARCHAR(255),
+    created_at TIMESTAMP NOT NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+);
+
+CREATE TABLE IF NOT EXISTS yuan_transactions_archive (
+    id INTEGER NOT NULL,
+    user_id UUID NOT NULL,
+    amount DOUBLE PRECISION NOT NULL,
+    description TEXT,
+    created_at TIMESTAMP NOT NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+);
+
+CREATE INDEX IF NOT EXISTS idx_exp_transactions_archive_user_created ON exp_transactions_archive (user_id, created_at);
+
+-- Transaction history, admin browsing and exports also read yuan_transactions_archive, merged with the ledger in
+-- (created_at DESC, id DESC) order, so the archive gets the same keyset indexes as yuan_transactions
+CREATE INDEX IF NOT EXISTS idx_yuan_transactions_archive_user_created_id
+    ON yuan_transactions_archive (user_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_yuan_transactions_archive_created_id
+    ON yuan_transactions_archive (created_at DESC, id DESC);
+
+-- Position of an interrupted compaction run, so the next run resumes with the same cutoff after last_user_id
+CREATE TABLE IF NOT EXISTS ledger_compaction_progress (
+    ledger VARCHAR(10) PRIMARY KEY,
+    cutoff TIMESTAMP NOT NULL,
+    last_user_id UUID,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
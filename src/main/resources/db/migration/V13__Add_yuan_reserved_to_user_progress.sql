@@ -0,0 +1,18 @@
+-- Track the Yuan held by open SAGA reservations on the user's progress row, so a reservation is a single
+-- conditional UPDATE of that row (yuan_balance - yuan_reserved >= amount) instead of two aggregates
+-- checked in application code. Concurrent reservations of one user serialize on the row lock.
+
+ALTER TABLE user_progress
+    ADD COLUMN IF NOT EXISTS yuan_reserved DOUBLE PRECISION NOT NULL DEFAULT 0;
+
+-- Backfill from the reservations that are still open
+INSERT INTO user_progress (user_id, total_exp, yuan_balance, yuan_reserved, version, updated_at)
+SELECT user_id, 0, 0, SUM(amount), 1, CURRENT_TIMESTAMP
+FROM yuan_reservation
+WHERE status = 'RESERVED'
+GROUP BY user_id
+ON CONFLICT (user_id) DO UPDATE
+SET yuan_reserved = EXCLUDED.yuan_reserved;
+
+ALTER TABLE user_progress
+    ADD CONSTRAINT user_progress_yuan_reserved_non_negative CHECK (yuan_reserved >= 0);
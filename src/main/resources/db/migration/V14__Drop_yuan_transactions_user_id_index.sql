@@ -0,0 +1,5 @@
+-- idx_yuan_transactions_user_id (V1) is superseded by (user_id, created_at DESC, id DESC) from V7 and now only
+-- exists on the legacy partition of yuan_transactions. Dropped without blocking writes.
+-- Only CONCURRENTLY statements: Flyway runs this script outside a transaction.
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_yuan_transactions_user_id;
@@ -0,0 +1,32 @@
+-- Create user_progress table: materialized per-user balances
+-- Maintained in the same transaction as every exp_transactions / yuan_transactions insert
+-- so that stats, level and vote-check reads are a single primary-key lookup.
+
+CREATE TABLE IF NOT EXISTS user_progress (
+    user_id UUID PRIMARY KEY,
+    total_exp DOUBLE PRECISION NOT NULL DEFAULT 0,
+    yuan_balance DOUBLE PRECISION NOT NULL DEFAULT 0,
+    version BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Backfill from the existing ledgers
+INSERT INTO user_progress (user_id, total_exp, yuan_balance, version, updated_at)
+SELECT
+    ledger.user_id,
+    SUM(ledger.exp_amount),
+    SUM(ledger.yuan_amount),
+    1,
+    CURRENT_TIMESTAMP
+FROM (
+    SELECT user_id, amount AS exp_amount, 0 AS yuan_amount FROM exp_transactions
+    UNION ALL
+    SELECT user_id, 0 AS exp_amount, amount AS yuan_amount FROM yuan_transactions
+) ledger
+GROUP BY ledger.user_id
+ON CONFLICT (user_id) DO UPDATE
+SET
+    total_exp = EXCLUDED.total_exp,
+    yuan_balance = EXCLUDED.yuan_balance,
+    version = user_progress.version + 1,
+    updated_at = CURRENT_TIMESTAMP;
@@ -0,0 +1,148 @@
+-- Convert processed_events to daily range partitions on processed_at.
+-- Retention drops whole expired partitions instead of issuing a bulk DELETE.
+--
+-- A partitioned table's primary key must contain the partition column, so (idempotency_key, processed_at)
+-- no longer guarantees one row per key. claim_processed_events enforces that instead: concurrent claims of a
+-- key serialize on processed_event_claims, and only keys that are not yet present are inserted.
+-- Key lookups use the primary key index of each partition (idempotency_key is its leading column).
+--
+-- Rows whose day has no partition yet (maintenance missed, clock skew around midnight) go to the DEFAULT
+-- partition instead of failing the claim; the next partition maintenance run moves them into their day.
+
+ALTER TABLE processed_events RENAME TO processed_events_legacy;
+ALTER INDEX IF EXISTS processed_events_pkey RENAME TO processed_events_legacy_pkey;
+DROP INDEX IF EXISTS idx_processed_events_processed_at;
+DROP INDEX IF EXISTS idx_processed_events_event_type_service;
+
+CREATE TABLE processed_events (
+    idempotency_key VARCHAR(255) NOT NULL,
+    event_type VARCHAR(100) NOT NULL,
+    service_name VARCHAR(50) NOT NULL,
+    processed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    event_data TEXT,
+    PRIMARY KEY (idempotency_key, processed_at)
+) PARTITION BY RANGE (processed_at);
+
+-- Index for querying by event type and service (created on every partition)
+CREATE INDEX idx_processed_events_event_type_service ON processed_events (event_type, service_name);
+
+CREATE TABLE processed_events_default PARTITION OF processed_events DEFAULT;
+
+-- Keys being claimed by an open transaction. A row lives only until the end of its claim call, so the table
+-- stays tiny; its primary key makes a second claimer of the same key wait for the first transaction to end.
+-- Unlike one advisory lock per key, waiting here uses no slots of the shared lock table.
+CREATE UNLOGGED TABLE processed_event_claims (
+    idempotency_key VARCHAR(255) PRIMARY KEY
+);
+
+-- Create one partition per day in [p_from, p_to]; existing partitions are skipped.
+-- Days before p_from that still have rows in the default partition are created as well.
+-- A new partition is filled from the default partition before it is attached, because a default partition
+-- must never hold rows that belong to another partition.
+CREATE OR REPLACE FUNCTION create_processed_events_partitions(p_from DATE, p_to DATE)
+RETURNS INTEGER AS $$
+DECLARE
+    partition_day DATE;
+    partition_name TEXT;
+    created INTEGER := 0;
+BEGIN
+    -- Several instances may run partition maintenance at the same time
+    PERFORM pg_advisory_xact_lock(hashtext('processed_events_partitions'));
+
+    partition_day := LEAST(p_from, (SELECT MIN(processed_at)::date FROM processed_events_default));
+    WHILE partition_day <= p_to LOOP
+        partition_name := 'processed_events_p' || to_char(partition_day, 'YYYYMMDD');
+        IF to_regclass(partition_name) IS NULL THEN
+            -- No claim may add a row for this day to the default partition between the move and the attach
+            LOCK TABLE processed_events_default IN ACCESS EXCLUSIVE MODE;
+            EXECUTE format('CREATE TABLE %I (LIKE processed_events INCLUDING DEFAULTS)', partition_name);
+            EXECUTE format(
+                'WITH moved AS (DELETE FROM processed_events_default WHERE processed_at >= %L AND processed_at < %L '
+                    || 'RETURNING *) INSERT INTO %I SELECT * FROM moved',
+                partition_day::timestamp, (partition_day + 1)::timestamp, partition_name);
+            -- Attaching builds the partition's primary key and indexes from the parent's
+            EXECUTE format(
+                'ALTER TABLE processed_events ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                partition_name, partition_day::timestamp, (partition_day + 1)::timestamp);
+            created := created + 1;
+        END IF;
+        partition_day := partition_day + 1;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Drop every daily partition whose whole range lies before p_before, and expired rows of the default partition
+CREATE OR REPLACE FUNCTION drop_processed_events_partitions(p_before DATE)
+RETURNS INTEGER AS $$
+DECLARE
+    partition_name TEXT;
+    dropped INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('processed_events_partitions'));
+
+    FOR partition_name IN
+        SELECT child.relname
+        FROM pg_inherits inh
+        JOIN pg_class child ON child.oid = inh.inhrelid
+        JOIN pg_class parent ON parent.oid = inh.inhparent
+        WHERE parent.relname = 'processed_events'
+          AND child.relname ~ '^processed_events_p[0-9]{8}$'
+          AND to_date(right(child.relname, 8), 'YYYYMMDD') < p_before
+        ORDER BY child.relname
+    LOOP
+        EXECUTE format('DROP TABLE %I', partition_name);
+        dropped := dropped + 1;
+    END LOOP;
+
+    DELETE FROM processed_events_default WHERE processed_at < p_before;
+    RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Claim idempotency keys: returns the keys inserted by this call, skipping keys that already exist.
+-- Inserting a key into processed_event_claims waits while another open transaction is claiming it; the claim row
+-- is deleted again before this call returns, so once that transaction ends the insert goes through.
+-- The function is VOLATILE, so the processed_events INSERT takes a fresh snapshot after that wait and sees
+-- rows committed by a concurrent claimer of the same key.
+CREATE OR REPLACE FUNCTION claim_processed_events(
+    p_keys TEXT[],
+    p_event_type TEXT,
+    p_service_name TEXT,
+    p_event_data TEXT DEFAULT NULL,
+    p_processed_at TIMESTAMP DEFAULT NULL)
+RETURNS SETOF VARCHAR AS $$
+BEGIN
+    -- Claim in key order so that overlapping batches cannot deadlock
+    INSERT INTO processed_event_claims (idempotency_key)
+    SELECT DISTINCT k FROM unnest(p_keys) AS k ORDER BY k
+    ON CONFLICT DO NOTHING;
+
+    RETURN QUERY
+    INSERT INTO processed_events (idempotency_key, event_type, service_name, processed_at, event_data)
+    SELECT DISTINCT ON (k) k, p_event_type, p_service_name, COALESCE(p_processed_at, LOCALTIMESTAMP), p_event_data
+    FROM unnest(p_keys) AS k
+    WHERE NOT EXISTS (
+        SELECT 1 FROM processed_events pe WHERE pe.idempotency_key = k
+    )
+    RETURNING processed_events.idempotency_key;
+
+    DELETE FROM processed_event_claims WHERE idempotency_key = ANY (p_keys);
+END;
+$$ LANGUAGE plpgsql;
+
+-- Partitions for the last 30 days of existing data plus one week ahead
+SELECT create_processed_events_partitions(
+    LEAST(
+        CURRENT_DATE - 1,
+        COALESCE((SELECT MIN(processed_at)::date FROM processed_events_legacy
+                  WHERE processed_at >= CURRENT_DATE - 30), CURRENT_DATE)),
+    CURRENT_DATE + 7);
+
+INSERT INTO processed_events (idempotency_key, event_type, service_name, processed_at, event_data)
+SELECT idempotency_key, event_type, service_name, processed_at, event_data
+FROM processed_events_legacy
+WHERE processed_at >= CURRENT_DATE - 30
+  AND processed_at < CURRENT_DATE + 8;
+
+DROP TABLE processed_events_legacy;
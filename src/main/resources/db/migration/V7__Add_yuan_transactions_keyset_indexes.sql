@@ -0,0 +1,13 @@
+-- Keyset pagination for Yuan transaction history.
+-- Pages are read with ORDER BY created_at DESC, id DESC and a (created_at, id) < (cursor) predicate,
+-- so every page is an index range scan regardless of how deep it is.
+-- Only CONCURRENTLY statements: Flyway runs this script outside a transaction, and writes keep running
+-- while the indexes are built. The superseded single-column index is dropped in V14.
+
+-- Per-user history (also covers every lookup of the old single-column index)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_yuan_transactions_user_created_id
+    ON yuan_transactions (user_id, created_at DESC, id DESC);
+
+-- Unfiltered / date-filtered admin browsing
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_yuan_transactions_created_id
+    ON yuan_transactions (created_at DESC, id DESC);
@@ -0,0 +1,33 @@
+-- Monthly range partitioning of exp_transactions and yuan_transactions on created_at, step 1 of 4.
+--
+-- The existing tables are not copied: each one becomes the first ("legacy") partition of a new partitioned
+-- table and covers every created_at before ledger_partition_floor(); monthly partitions start there.
+-- Attaching a table as a partition normally scans it to prove its bounds, and SET NOT NULL scans it too.
+-- Both scans are skipped when validated CHECK constraints already prove the same, so the work is split:
+--   V8  adds the CHECK constraints NOT VALID (catalog only, enforced for new rows from now on)
+--   V9  builds the partition indexes on the legacy tables CONCURRENTLY
+--   V10 validates the constraints (SHARE UPDATE EXCLUSIVE: reads and writes keep running)
+--   V11 swaps in the partitioned tables with catalog-only DDL under a brief exclusive lock
+--
+-- The floor is the start of the month after next, so rows written while V9/V10 run (even across a month
+-- boundary) still satisfy the legacy range constraint.
+
+DO $$
+DECLARE
+    floor_ts TIMESTAMP := date_trunc('month', LOCALTIMESTAMP) + INTERVAL '2 months';
+BEGIN
+    EXECUTE format(
+        'CREATE OR REPLACE FUNCTION ledger_partition_floor() RETURNS TIMESTAMP AS %L LANGUAGE sql IMMUTABLE',
+        format('SELECT %L::timestamp', floor_ts));
+
+    EXECUTE 'ALTER TABLE exp_transactions ADD CONSTRAINT exp_transactions_created_at_not_null ' ||
+            'CHECK (created_at IS NOT NULL) NOT VALID';
+    EXECUTE format('ALTER TABLE exp_transactions ADD CONSTRAINT exp_transactions_legacy_range ' ||
+            'CHECK (created_at < %L::timestamp) NOT VALID', floor_ts);
+
+    EXECUTE 'ALTER TABLE yuan_transactions ADD CONSTRAINT yuan_transactions_created_at_not_null ' ||
+            'CHECK (created_at IS NOT NULL) NOT VALID';
+    EXECUTE format('ALTER TABLE yuan_transactions ADD CONSTRAINT yuan_transactions_legacy_range ' ||
+            'CHECK (created_at < %L::timestamp) NOT VALID', floor_ts);
+END;
+$$;
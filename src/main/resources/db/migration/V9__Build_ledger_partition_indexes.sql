@@ -0,0 +1,13 @@
+-- Monthly ledger partitioning, step 2 of 4: build the indexes the partitioned tables declare on the
+-- legacy tables without blocking writes, so attaching them in V11 reuses these instead of building new ones.
+-- Only CONCURRENTLY statements: Flyway runs this script outside a transaction.
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS exp_transactions_legacy_id_created_at_key
+    ON exp_transactions (id, created_at);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_exp_transactions_legacy_user_created_id
+    ON exp_transactions (user_id, created_at DESC, id DESC);
+
+-- yuan_transactions already has (user_id, created_at DESC, id DESC) and (created_at DESC, id DESC) from V7
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS yuan_transactions_legacy_id_created_at_key
+    ON yuan_transactions (id, created_at);
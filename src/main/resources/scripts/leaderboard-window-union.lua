@@ -0,0 +1,12 @@
+-- Merge the daily buckets of a rolling window and set the merged set's TTL in one atomic step,
+-- so a cached window can never be left without an expiry.
+-- KEYS[1] merged window set, KEYS[2..n] daily buckets
+-- ARGV[1] TTL of the merged set (ms)
+-- Returns the number of players in the merged set
+local buckets = {}
+for i = 2, #KEYS do
+    buckets[#buckets + 1] = KEYS[i]
+end
+local players = redis.call('ZUNIONSTORE', KEYS[1], #buckets, unpack(buckets))
+redis.call('PEXPIRE', KEYS[1], ARGV[1])
+return players
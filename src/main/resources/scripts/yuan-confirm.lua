@@ -0,0 +1,47 @@
+-- Confirm a reservation: move its amount from reserved to a pending deduction and append it to the outbox
+-- stream, which is drained into yuan_transactions.
+-- KEYS[1] reservation hash, KEYS[2] balance hash, KEYS[3] expiry sorted set, KEYS[4] outbox stream
+-- ARGV[1] reservationId, ARGV[2] userId, ARGV[3] now (ms), ARGV[4] retention of finished reservations (s)
+-- Returns {'OK'}, {'NOT_FOUND'}, {'MISMATCH'}, {'EXPIRED'}, {'INSUFFICIENT'} or {current status}
+local reservation = redis.call('HMGET', KEYS[1], 'userId', 'amount', 'status', 'expiresAt', 'sagaId', 'createdAt')
+if not reservation[1] then
+    return {'NOT_FOUND'}
+end
+if reservation[1] ~= ARGV[2] then
+    return {'MISMATCH'}
+end
+if reservation[3] ~= 'RESERVED' then
+    return {reservation[3]}
+end
+
+local amount = tonumber(reservation[2])
+local function release(result)
+    redis.call('HINCRBYFLOAT', KEYS[2], 'reserved', -amount)
+    redis.call('HSET', KEYS[1], 'status', 'RELEASED', 'releasedAt', ARGV[3])
+    redis.call('ZREM', KEYS[3], ARGV[1])
+    redis.call('EXPIRE', KEYS[1], ARGV[4])
+    return {result}
+end
+
+if tonumber(reservation[4]) < tonumber(ARGV[3]) then
+    return release('EXPIRED')
+end
+if tonumber(redis.call('HGET', KEYS[2], 'balance') or '0') < amount then
+    return release('INSUFFICIENT')
+end
+
+redis.call('HINCRBYFLOAT', KEYS[2], 'reserved', -amount)
+redis.call('HINCRBYFLOAT', KEYS[2], 'balance', -amount)
+redis.call('HINCRBYFLOAT', KEYS[2], 'pending', amount)
+redis.call('HSET', KEYS[1], 'status', 'CONFIRMED', 'confirmedAt', ARGV[3])
+redis.call('ZREM', KEYS[3], ARGV[1])
+redis.call('EXPIRE', KEYS[1], ARGV[4])
+redis.call('XADD', KEYS[4], '*',
+    'reservationId', ARGV[1],
+    'userId', ARGV[2],
+    'amount', reservation[2],
+    'sagaId', reservation[5],
+    'createdAt', reservation[6],
+    'expiresAt', reservation[4],
+    'confirmedAt', ARGV[3])
+return {'OK'}
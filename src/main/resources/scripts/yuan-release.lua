@@ -0,0 +1,22 @@
+-- Release a reservation; only a RESERVED one still holds Yuan on the balance hash.
+-- KEYS[1] reservation hash, KEYS[2] balance hash, KEYS[3] expiry sorted set
+-- ARGV[1] reservationId, ARGV[2] userId, ARGV[3] now (ms), ARGV[4] retention of finished reservations (s)
+-- Returns {'OK'}, {'NOT_FOUND'}, {'MISMATCH'} or {'RELEASED'} (already released)
+local reservation = redis.call('HMGET', KEYS[1], 'userId', 'amount', 'status')
+if not reservation[1] then
+    return {'NOT_FOUND'}
+end
+if reservation[1] ~= ARGV[2] then
+    return {'MISMATCH'}
+end
+if reservation[3] == 'RELEASED' then
+    return {'RELEASED'}
+end
+
+if reservation[3] == 'RESERVED' then
+    redis.call('HINCRBYFLOAT', KEYS[2], 'reserved', -tonumber(reservation[2]))
+end
+redis.call('HSET', KEYS[1], 'status', 'RELEASED', 'releasedAt', ARGV[3])
+redis.call('ZREM', KEYS[3], ARGV[1])
+redis.call('EXPIRE', KEYS[1], ARGV[4])
+return {'OK'}
@@ -0,0 +1,28 @@
+-- Reserve Yuan for a SAGA: hold the amount on the user's balance hash and create the reservation.
+-- KEYS[1] balance hash, KEYS[2] reservation hash, KEYS[3] saga index, KEYS[4] expiry sorted set
+-- ARGV[1] reservationId, ARGV[2] userId, ARGV[3] amount, ARGV[4] sagaId, ARGV[5] now (ms),
+-- ARGV[6] expiresAt (ms), ARGV[7] retention of finished reservations (s)
+-- Returns {'OK'}, {'MISSING'} (balance not loaded yet) or {'INSUFFICIENT', available}
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return {'MISSING'}
+end
+
+local amount = tonumber(ARGV[3])
+local balance = redis.call('HMGET', KEYS[1], 'balance', 'reserved')
+local available = tonumber(balance[1] or '0') - tonumber(balance[2] or '0')
+if available < amount then
+    return {'INSUFFICIENT', tostring(available)}
+end
+
+redis.call('HINCRBYFLOAT', KEYS[1], 'reserved', ARGV[3])
+redis.call('HSET', KEYS[2],
+    'reservationId', ARGV[1],
+    'userId', ARGV[2],
+    'amount', ARGV[3],
+    'sagaId', ARGV[4],
+    'status', 'RESERVED',
+    'createdAt', ARGV[5],
+    'expiresAt', ARGV[6])
+redis.call('SET', KEYS[3], ARGV[1], 'PX', tonumber(ARGV[6]) - tonumber(ARGV[5]) + tonumber(ARGV[7]) * 1000)
+redis.call('ZADD', KEYS[4], ARGV[6], ARGV[1])
+return {'OK'}
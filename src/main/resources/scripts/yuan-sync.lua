@@ -0,0 +1,31 @@
+-- Load the user's Postgres balance into the balance hash, keeping reserved Yuan and confirmed deductions
+-- that are not in Postgres yet. Optionally acknowledges one drained outbox entry first.
+-- KEYS[1] balance hash, KEYS[2] outbox stream
+-- ARGV[1] Postgres yuan_balance, ARGV[2] Postgres user_progress version,
+-- ARGV[3] consumer group, ARGV[4] drained entry id (empty = none), ARGV[5] drained amount,
+-- ARGV[6] '1' = only reload a hash that is already loaded
+-- Returns 1 if the balance was replaced, 0 if the hash already reflects a newer Postgres version or is not loaded
+if ARGV[6] == '1' and redis.call('EXISTS', KEYS[1]) == 0 then
+    return 0
+end
+
+local acked = ARGV[4] ~= '' and redis.call('XACK', KEYS[2], ARGV[3], ARGV[4]) == 1
+if acked then
+    redis.call('XDEL', KEYS[2], ARGV[4])
+    redis.call('HINCRBYFLOAT', KEYS[1], 'pending', -tonumber(ARGV[5]))
+end
+
+local version = redis.call('HGET', KEYS[1], 'version')
+if version and tonumber(version) > tonumber(ARGV[2]) then
+    -- The newer Postgres balance already contains the drained deduction, which was also still pending
+    if acked then
+        redis.call('HINCRBYFLOAT', KEYS[1], 'balance', ARGV[5])
+    end
+    return 0
+end
+
+local pending = tonumber(redis.call('HGET', KEYS[1], 'pending') or '0')
+redis.call('HSET', KEYS[1], 'balance', tostring(tonumber(ARGV[1]) - pending), 'version', ARGV[2])
+redis.call('HSETNX', KEYS[1], 'reserved', '0')
+redis.call('HSETNX', KEYS[1], 'pending', '0')
+return 1
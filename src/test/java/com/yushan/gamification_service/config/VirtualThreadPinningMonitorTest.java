@@ -0,0 +1,51 @@
+package com.yushan.gamification_service.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadPinningMonitorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor();
+    private final Object lock = new Object();
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+    }
+
+    @Test
+    void shouldCountParkingInsideSynchronizedBlock() throws Exception {
+        ReflectionTestUtils.setField(monitor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(monitor, "enabled", true);
+        ReflectionTestUtils.setField(monitor, "thresholdMs", 5L);
+        monitor.start();
+
+        Thread.ofVirtual().start(this::sleepWhileHoldingMonitor).join();
+
+        Counter pinned = null;
+        for (int i = 0; i < 100 && pinned == null; i++) {
+            pinned = meterRegistry.find("gamification.virtual_threads.pinned").counter();
+            if (pinned == null) {
+                Thread.sleep(100);
+            }
+        }
+        assertNotNull(pinned, "pinned event not reported");
+        assertEquals(getClass().getName() + ".sleepWhileHoldingMonitor", pinned.getId().getTag("site"));
+    }
+
+    private void sleepWhileHoldingMonitor() {
+        synchronized (lock) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
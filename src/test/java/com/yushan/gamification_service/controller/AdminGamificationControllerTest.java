@@ -3,32 +3,58 @@ package com.yushan.gamification_service.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yushan.gamification_service.config.SecurityConfig;
 import com.yushan.gamification_service.dto.admin.AdminAddYuanRequestDTO;
+import com.yushan.gamification_service.dto.admin.AdminBulkAddYuanRequestDTO;
+import com.yushan.gamification_service.dto.admin.BulkJobDTO;
+import com.yushan.gamification_service.dto.common.CursorPageResponseDTO;
 import com.yushan.gamification_service.dto.common.PageResponseDTO;
 import com.yushan.gamification_service.dto.transaction.AdminYuanTransactionDTO;
+import com.yushan.gamification_service.enums.BulkJobStatus;
+import com.yushan.gamification_service.enums.ExportFormat;
+import com.yushan.gamification_service.exception.ResourceNotFoundException;
 import com.yushan.gamification_service.security.JwtAuthenticationEntryPoint;
+import com.yushan.gamification_service.service.AdminYuanBulkGrantService;
+import com.yushan.gamification_service.service.BulkJobService;
+import com.yushan.gamification_service.service.DeadLetterReplayService;
 import com.yushan.gamification_service.service.GamificationService;
 import com.yushan.gamification_service.service.KafkaEventProducerService;
+import com.yushan.gamification_service.service.LeaderboardService;
+import com.yushan.gamification_service.service.LedgerBulkIngestService;
+import com.yushan.gamification_service.service.YuanTransactionExportService;
 import com.yushan.gamification_service.util.JwtUtil;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -45,6 +71,24 @@ class AdminGamificationControllerTest {
     @MockBean
     private GamificationService gamificationService;
 
+    @MockBean
+    private LeaderboardService leaderboardService;
+
+    @MockBean
+    private YuanTransactionExportService yuanTransactionExportService;
+
+    @MockBean
+    private LedgerBulkIngestService ledgerBulkIngestService;
+
+    @MockBean
+    private BulkJobService bulkJobService;
+
+    @MockBean
+    private AdminYuanBulkGrantService adminYuanBulkGrantService;
+
+    @MockBean
+    private DeadLetterReplayService deadLetterReplayService;
+
     @MockBean
     private JwtUtil jwtUtil;
 
@@ -83,6 +127,67 @@ class AdminGamificationControllerTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    @WithMockUser(authorities = "ROLE_ADMIN")
+    void getYuanTransactionsPage_Success() throws Exception {
+        // Given
+        AdminYuanTransactionDTO transaction = new AdminYuanTransactionDTO(1L, testUserId, 100.0, "Test", OffsetDateTime.now());
+        CursorPageResponseDTO<AdminYuanTransactionDTO> page =
+                new CursorPageResponseDTO<>(List.of(transaction), 10, true, "next", null, false);
+        when(gamificationService.findYuanTransactionsPageForAdmin(any(), any(), any(), eq("abc"), eq(10), eq(false)))
+                .thenReturn(page);
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/gamification/admin/yuan/transactions/cursor")
+                        .param("cursor", "abc")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.nextCursor").value("next"))
+                .andExpect(jsonPath("$.data.hasNext").value(true))
+                .andExpect(jsonPath("$.data.content[0].id").value(1));
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_ADMIN")
+    void exportYuanTransactions_gzip() throws Exception {
+        // Given
+        when(yuanTransactionExportService.export(eq(testUserId), any(), any(), eq(ExportFormat.CSV), any()))
+                .thenAnswer(invocation -> {
+                    invocation.<OutputStream>getArgument(4).write("id\n1\n".getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/v1/gamification/admin/yuan/transactions/export")
+                        .param("userId", testUserId.toString())
+                        .param("format", "csv")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andReturn();
+
+        // Then
+        try (GZIPInputStream body = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertEquals("id\n1\n", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_ADMIN")
+    void exportYuanTransactions_unknownFormat_BadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/gamification/admin/yuan/transactions/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(yuanTransactionExportService);
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_USER")
+    void exportYuanTransactions_Forbidden() throws Exception {
+        mockMvc.perform(get("/api/v1/gamification/admin/yuan/transactions/export"))
+                .andExpect(status().isForbidden());
+    }
+
     @Test
     @WithMockUser(authorities = "ROLE_ADMIN")
     void adminAddYuan_Success() throws Exception {
@@ -127,4 +232,147 @@ class AdminGamificationControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_ADMIN")
+    void rebuildLeaderboard_Success() throws Exception {
+        // Given
+        when(leaderboardService.rebuild()).thenReturn(42L);
+
+        // When & Then
+        mockMvc.perform(post("/api/v1/gamification/admin/leaderboard/rebuild")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").value(42));
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_ADMIN")
+    void ingestLedgerRows_Success() throws Exception {
+        // Given
+        UUID jobId = UUID.randomUUID();
+        MockMultipartFile file = new MockMultipartFile("file", "rows.csv", "text/csv",
+                ("exp," + testUserId + ",10,Campaign\n").getBytes(StandardCharsets.UTF_8));
+        when(ledgerBulkIngestService.submitFile(any())).thenReturn(new BulkJobDTO(
+                jobId, LedgerBulkIngestService.JOB_TYPE, BulkJobStatus.RUNNING, 0, 0, OffsetDateTime.now(), null, null, List.of()));
+
+        // When & Then
+        mockMvc.perform(multipart("/api/v1/gamification/admin/ledger/ingest")
+                        .file(file)
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.jobId").value(jobId.toString()))
+                .andExpect(jsonPath("$.data.status").value("RUNNING"));
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_USER")
+    void ingestLedgerRows_Forbidden() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "rows.csv", "text/csv", new byte[] {1});
+
+        mockMvc.perform(multipart("/api/v1/gamification/admin/ledger/ingest")
+                        .file(file)
+                        .with(csrf()))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(ledgerBulkIngestService);
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_ADMIN")
+    void getBulkJob_NotFound() throws Exception {
+        // Given
+        UUID jobId = UUID.randomUUID();
+        when(bulkJobService.getJob(jobId)).thenThrow(new ResourceNotFoundException("Bulk job not found: " + jobId));
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/gamification/admin/jobs/{jobId}", jobId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_ADMIN")
+    void adminBulkAddYuan_Success() throws Exception {
+        // Given
+        UUID jobId = UUID.randomUUID();
+        AdminBulkAddYuanRequestDTO request = new AdminBulkAddYuanRequestDTO(
+                List.of(new AdminAddYuanRequestDTO(testUserId, 5.0, "Promotion")));
+        when(adminYuanBulkGrantService.submit(request.getGrants())).thenReturn(new BulkJobDTO(
+                jobId, AdminYuanBulkGrantService.JOB_TYPE, BulkJobStatus.RUNNING, 0, 0, OffsetDateTime.now(), null, null, List.of()));
+
+        // When & Then
+        mockMvc.perform(post("/api/v1/gamification/admin/yuan/bulk-add")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.jobId").value(jobId.toString()));
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_ADMIN")
+    void adminBulkAddYuan_EmptyGrants_BadRequest() throws Exception {
+        mockMvc.perform(post("/api/v1/gamification/admin/yuan/bulk-add")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new AdminBulkAddYuanRequestDTO(List.of()))))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(adminYuanBulkGrantService);
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_ADMIN")
+    void adminBulkAddYuan_File_Success() throws Exception {
+        // Given
+        MockMultipartFile file = new MockMultipartFile("file", "grants.csv", "text/csv",
+                (testUserId + ",5,Promotion\n").getBytes(StandardCharsets.UTF_8));
+        when(adminYuanBulkGrantService.submitFile(any())).thenReturn(new BulkJobDTO(
+                UUID.randomUUID(), AdminYuanBulkGrantService.JOB_TYPE, BulkJobStatus.RUNNING, 0, 0, OffsetDateTime.now(), null, null, List.of()));
+
+        // When & Then
+        mockMvc.perform(multipart("/api/v1/gamification/admin/yuan/bulk-add")
+                        .file(file)
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.type").value(AdminYuanBulkGrantService.JOB_TYPE));
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_USER")
+    void adminBulkAddYuan_Forbidden() throws Exception {
+        AdminBulkAddYuanRequestDTO request = new AdminBulkAddYuanRequestDTO(
+                List.of(new AdminAddYuanRequestDTO(testUserId, 5.0, "Promotion")));
+
+        mockMvc.perform(post("/api/v1/gamification/admin/yuan/bulk-add")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(adminYuanBulkGrantService);
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_ADMIN")
+    void replayDeadLetters_Success() throws Exception {
+        // Given
+        UUID jobId = UUID.randomUUID();
+        when(deadLetterReplayService.submit("user.events", 500)).thenReturn(new BulkJobDTO(
+                jobId, DeadLetterReplayService.JOB_TYPE, BulkJobStatus.RUNNING, 0, 0, OffsetDateTime.now(), null, null, List.of()));
+
+        // When & Then
+        mockMvc.perform(post("/api/v1/gamification/admin/kafka/dlt/{topic}/replay", "user.events")
+                        .param("maxRecords", "500")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.jobId").value(jobId.toString()))
+                .andExpect(jsonPath("$.data.type").value(DeadLetterReplayService.JOB_TYPE));
+    }
+
+    @Test
+    @WithMockUser(authorities = "ROLE_USER")
+    void replayDeadLetters_Forbidden() throws Exception {
+        mockMvc.perform(post("/api/v1/gamification/admin/kafka/dlt/{topic}/replay", "user.events")
+                        .with(csrf()))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(deadLetterReplayService);
+    }
 }
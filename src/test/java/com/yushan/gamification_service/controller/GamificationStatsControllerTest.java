@@ -2,6 +2,7 @@ package com.yushan.gamification_service.controller;
 
 import com.yushan.gamification_service.dto.achievement.AchievementDTO;
 import com.yushan.gamification_service.dto.common.ApiResponse;
+import com.yushan.gamification_service.dto.common.CursorPageResponseDTO;
 import com.yushan.gamification_service.dto.stats.GamificationStatsDTO;
 import com.yushan.gamification_service.dto.transaction.YuanTransactionDTO;
 import com.yushan.gamification_service.service.GamificationService;
@@ -97,6 +98,25 @@ public class GamificationStatsControllerTest {
         }
     }
 
+    @Test
+    void getMyYuanTransactionsPage_Success() {
+        // Given
+        CursorPageResponseDTO<YuanTransactionDTO> page =
+                new CursorPageResponseDTO<>(testTransactions, 20, false, null, null, false);
+        try (MockedStatic<SecurityUtils> securityUtils = mockStatic(SecurityUtils.class)) {
+            securityUtils.when(SecurityUtils::getCurrentUserId).thenReturn(testUserId);
+            when(gamificationService.getTransactionHistoryPage(testUserId, null, 20, false)).thenReturn(page);
+
+            // When
+            ApiResponse<CursorPageResponseDTO<YuanTransactionDTO>> response =
+                gamificationStatsController.getMyYuanTransactionsPage(null, 20, false);
+
+            // Then
+            assertEquals(200, response.getCode());
+            assertEquals(page, response.getData());
+        }
+    }
+
     @Test
     void getMyUnlockedAchievements_Success() {
         // Given
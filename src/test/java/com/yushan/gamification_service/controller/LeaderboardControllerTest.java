@@ -0,0 +1,81 @@
+package com.yushan.gamification_service.controller;
+
+import com.yushan.gamification_service.dto.common.ApiResponse;
+import com.yushan.gamification_service.dto.leaderboard.LeaderboardEntryDTO;
+import com.yushan.gamification_service.dto.leaderboard.LeaderboardRankDTO;
+import com.yushan.gamification_service.enums.LeaderboardWindow;
+import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.service.LeaderboardService;
+import com.yushan.gamification_service.util.SecurityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LeaderboardControllerTest {
+
+    @Mock
+    private LeaderboardService leaderboardService;
+
+    @InjectMocks
+    private LeaderboardController leaderboardController;
+
+    @Test
+    void getTop_shouldReturnEntries() {
+        // Given
+        List<LeaderboardEntryDTO> entries = List.of(new LeaderboardEntryDTO(1, UUID.randomUUID().toString(), 100.0, 4));
+        when(leaderboardService.getTop(10)).thenReturn(entries);
+
+        // When
+        ApiResponse<List<LeaderboardEntryDTO>> response = leaderboardController.getTop(10);
+
+        // Then
+        assertEquals(entries, response.getData());
+    }
+
+    @Test
+    void getMyRank_shouldUseCurrentUser() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        LeaderboardEntryDTO self = new LeaderboardEntryDTO(7, userId.toString(), 50.0, 3);
+        LeaderboardRankDTO rank = new LeaderboardRankDTO(self, 20, List.of(self));
+        when(leaderboardService.getUserRank(userId, 5)).thenReturn(rank);
+
+        try (MockedStatic<SecurityUtils> securityUtils = mockStatic(SecurityUtils.class)) {
+            securityUtils.when(SecurityUtils::getCurrentUserId).thenReturn(userId);
+
+            // When
+            ApiResponse<LeaderboardRankDTO> response = leaderboardController.getMyRank(5);
+
+            // Then
+            assertEquals(7, response.getData().getUser().getRank());
+        }
+    }
+
+    @Test
+    void getWindowTop_shouldParseWindow() {
+        // Given
+        when(leaderboardService.getWindowTop(LeaderboardWindow.WEEKLY, 100)).thenReturn(List.of());
+
+        // When
+        ApiResponse<List<LeaderboardEntryDTO>> response = leaderboardController.getWindowTop("weekly", 100);
+
+        // Then
+        assertTrue(response.getData().isEmpty());
+    }
+
+    @Test
+    void getWindowTop_unknownWindow_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> leaderboardController.getWindowTop("yearly", 100));
+        verifyNoInteractions(leaderboardService);
+    }
+}
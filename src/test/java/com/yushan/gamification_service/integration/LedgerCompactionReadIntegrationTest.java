@@ -0,0 +1,134 @@
+package com.yushan.gamification_service.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yushan.gamification_service.dao.LedgerCompactionMapper;
+import com.yushan.gamification_service.dao.YuanTransactionMapper;
+import com.yushan.gamification_service.entity.YuanTransaction;
+import com.yushan.gamification_service.enums.ExportFormat;
+import com.yushan.gamification_service.enums.LedgerType;
+import com.yushan.gamification_service.service.YuanTransactionExportService;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compacts Yuan ledger rows on a real PostgreSQL and checks that history and exports still list the rows
+ * moved to the archive. Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class LedgerCompactionReadIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+    private static JdbcTemplate jdbcTemplate;
+    private static DataSourceTransactionManager transactionManager;
+    private static YuanTransactionMapper yuanTransactionMapper;
+    private static LedgerCompactionMapper ledgerCompactionMapper;
+
+    private YuanTransactionExportService exportService;
+    private UUID userId;
+    private List<Long> ids;
+
+    @BeforeAll
+    static void setUpDatabase() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Flyway.configure()
+                .dataSource(dataSource)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setMapperLocations(
+                new PathMatchingResourcePatternResolver().getResources("classpath:/mapper/**Mapper.xml"));
+        factoryBean.setTypeAliasesPackage("com.yushan.gamification_service.entity");
+        factoryBean.setConfigLocation(
+                new PathMatchingResourcePatternResolver().getResource("classpath:config/mybatis-config.xml"));
+        SqlSessionFactory sqlSessionFactory = factoryBean.getObject();
+        SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(sqlSessionFactory);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        yuanTransactionMapper = sqlSessionTemplate.getMapper(YuanTransactionMapper.class);
+        ledgerCompactionMapper = sqlSessionTemplate.getMapper(LedgerCompactionMapper.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        exportService = new YuanTransactionExportService();
+        ReflectionTestUtils.setField(exportService, "yuanTransactionMapper", yuanTransactionMapper);
+        ReflectionTestUtils.setField(exportService, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(exportService, "objectMapper", new ObjectMapper());
+
+        // Two rows older than the 90-day cutoff, one recent row
+        userId = UUID.randomUUID();
+        ids = new ArrayList<>();
+        for (int daysAgo : new int[] {200, 100, 1}) {
+            ids.add(jdbcTemplate.queryForObject(
+                    "INSERT INTO yuan_transactions (user_id, amount, description, created_at) "
+                            + "VALUES (?, ?, 'grant', LOCALTIMESTAMP - make_interval(days => ?)) RETURNING id",
+                    Long.class, userId, (double) daysAgo, daysAgo));
+        }
+        int compacted = ledgerCompactionMapper.compactUsers(
+                LedgerType.YUAN, List.of(userId), LocalDateTime.now().minusDays(90));
+        assertEquals(2, compacted);
+    }
+
+    @Test
+    void export_AcrossCompactionCutoff_IncludesArchivedRows() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long written = exportService.export(userId, OffsetDateTime.now().minusDays(365), OffsetDateTime.now(),
+                ExportFormat.CSV, output);
+
+        assertEquals(3, written);
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        for (int i = 0; i < ids.size(); i++) {
+            assertTrue(lines[i + 1].startsWith(ids.get(i) + "," + userId + ","), lines[i + 1]);
+        }
+        assertEquals(3L, yuanTransactionMapper.countWithFilters(
+                userId, OffsetDateTime.now().minusDays(365), OffsetDateTime.now()));
+    }
+
+    @Test
+    void keysetHistory_AcrossCompactionCutoff_PagesIntoArchive() {
+        List<YuanTransaction> first = yuanTransactionMapper.findByUserIdAfter(userId, null, null, 2);
+        assertEquals(List.of(ids.get(2), ids.get(1)), first.stream().map(YuanTransaction::getId).toList());
+
+        YuanTransaction last = first.get(1);
+        List<YuanTransaction> second = yuanTransactionMapper.findByUserIdAfter(
+                userId, last.getCreatedAt().toLocalDateTime(), last.getId(), 2);
+        assertEquals(List.of(ids.get(0)), second.stream().map(YuanTransaction::getId).toList());
+
+        assertEquals(3, yuanTransactionMapper.countByUserId(userId));
+        assertEquals(301.0, yuanTransactionMapper.sumAmountByUserId(userId));
+    }
+}
@@ -0,0 +1,167 @@
+package com.yushan.gamification_service.integration;
+
+import com.yushan.gamification_service.dao.ProcessedEventMapper;
+import com.yushan.gamification_service.entity.ProcessedEvent;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Claims idempotency keys on a real PostgreSQL: concurrent claims of one key, and claims for days without a
+ * processed_events partition, which partition maintenance moves out of the default partition.
+ * Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ProcessedEventPartitionIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+    private static ProcessedEventMapper processedEventMapper;
+
+    @BeforeAll
+    static void setUpDatabase() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Flyway.configure()
+                .dataSource(dataSource)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setMapperLocations(
+                new PathMatchingResourcePatternResolver().getResources("classpath:/mapper/**Mapper.xml"));
+        factoryBean.setTypeAliasesPackage("com.yushan.gamification_service.entity");
+        factoryBean.setConfigLocation(
+                new PathMatchingResourcePatternResolver().getResource("classpath:config/mybatis-config.xml"));
+        SqlSessionFactory sqlSessionFactory = factoryBean.getObject();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        processedEventMapper = new SqlSessionTemplate(sqlSessionFactory).getMapper(ProcessedEventMapper.class);
+    }
+
+    @Test
+    void claim_DayWithoutPartition_IsMovedIntoDailyPartitionByMaintenance() {
+        // Given: no partition exists this far ahead (V6 creates one week)
+        LocalDate day = LocalDate.now().plusDays(15);
+        String key = "idempotency:test:" + UUID.randomUUID();
+        assertEquals(1, processedEventMapper.insert(event(key, day.atTime(12, 0))));
+        assertEquals("processed_events_default", partitionOf(key));
+
+        // When
+        int created = processedEventMapper.createPartitions(20);
+
+        // Then
+        assertTrue(created > 0);
+        assertEquals("processed_events_p" + day.format(DateTimeFormatter.BASIC_ISO_DATE), partitionOf(key));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM processed_events_default", Integer.class));
+        assertTrue(processedEventMapper.existsByIdempotencyKey(key));
+        assertTrue(processedEventMapper.insertBatch(List.of(key), "Test", "gamification-service").isEmpty());
+    }
+
+    @Test
+    void claim_SameKeyConcurrently_SecondWaitsAndGetsNothing() throws Exception {
+        // Given: a batch claim that is still open
+        String key = "idempotency:test:" + UUID.randomUUID();
+        List<String> batch = new ArrayList<>(List.of(key));
+        for (int i = 0; i < 499; i++) {
+            batch.add("idempotency:test:" + UUID.randomUUID());
+        }
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<String>> first = executor.submit(() -> transactionTemplate.execute(status -> {
+                List<String> keys = processedEventMapper.insertBatch(batch, "Test", "gamification-service");
+                claimed.countDown();
+                await(commit);
+                return keys;
+            }));
+            assertTrue(claimed.await(30, TimeUnit.SECONDS));
+
+            // When
+            Future<List<String>> second = executor.submit(() -> transactionTemplate.execute(status ->
+                    processedEventMapper.insertBatch(List.of(key), "Test", "gamification-service")));
+
+            // Then: the second claim waits for the first transaction, then sees its committed row
+            assertThrows(TimeoutException.class, () -> second.get(500, TimeUnit.MILLISECONDS));
+            commit.countDown();
+            assertEquals(500, first.get(30, TimeUnit.SECONDS).size());
+            assertTrue(second.get(30, TimeUnit.SECONDS).isEmpty());
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM processed_event_claims", Integer.class));
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void dropPartitionsOlderThan_DeletesExpiredRowsOfDefaultPartition() {
+        // Given
+        String key = "idempotency:test:" + UUID.randomUUID();
+        assertEquals(1, processedEventMapper.insert(event(key, LocalDateTime.now().minusDays(60))));
+        assertEquals("processed_events_default", partitionOf(key));
+
+        // When
+        processedEventMapper.dropPartitionsOlderThan(30);
+
+        // Then
+        assertFalse(processedEventMapper.existsByIdempotencyKey(key));
+    }
+
+    private static ProcessedEvent event(String key, LocalDateTime processedAt) {
+        ProcessedEvent event = new ProcessedEvent();
+        event.setIdempotencyKey(key);
+        event.setEventType("Test");
+        event.setServiceName("gamification-service");
+        event.setProcessedAt(processedAt);
+        return event;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String partitionOf(String key) {
+        return jdbcTemplate.queryForObject(
+                "SELECT tableoid::regclass::text FROM processed_events WHERE idempotency_key = ?", String.class, key);
+    }
+}
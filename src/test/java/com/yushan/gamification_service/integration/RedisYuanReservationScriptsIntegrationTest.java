@@ -0,0 +1,136 @@
+package com.yushan.gamification_service.integration;
+
+import com.yushan.gamification_service.entity.UserProgress;
+import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.repository.UserProgressRepository;
+import com.yushan.gamification_service.service.RedisYuanReservationEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the reservation Lua scripts against a real Redis. Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RedisYuanReservationScriptsIntegrationTest {
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:latest")).withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate stringRedisTemplate;
+
+    private final UserProgressRepository userProgressRepository = mock(UserProgressRepository.class);
+    private RedisYuanReservationEngine engine;
+    private UUID userId;
+
+    @BeforeAll
+    static void setUpRedis() {
+        connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void tearDownRedis() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        engine = new RedisYuanReservationEngine();
+        ReflectionTestUtils.setField(engine, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(engine, "userProgressRepository", userProgressRepository);
+        ReflectionTestUtils.setField(engine, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(engine, "reservationTimeoutMinutes", 5);
+        ReflectionTestUtils.setField(engine, "retentionSeconds", 60L);
+
+        userId = UUID.randomUUID();
+        UserProgress progress = new UserProgress(userId, 0.0, 2.0);
+        progress.setVersion(1L);
+        when(userProgressRepository.findUserProgressByUserId(userId)).thenReturn(Optional.of(progress));
+    }
+
+    @Test
+    void reserve_NeverHoldsMoreThanBalance() {
+        engine.reserve(userId, 1.0, "saga-1");
+        engine.reserve(userId, 1.0, "saga-2");
+
+        assertThrows(ValidationException.class, () -> engine.reserve(userId, 1.0, "saga-3"));
+        assertEquals("2", balanceField("reserved"));
+    }
+
+    @Test
+    void confirm_MovesReservedToPendingAndAppendsToOutbox() {
+        UUID reservationId = engine.reserve(userId, 1.0, "saga-1");
+        long outboxBefore = stringRedisTemplate.opsForStream().size("yuan:outbox");
+
+        assertTrue(engine.confirm(reservationId, userId));
+        assertTrue(engine.confirm(reservationId, userId));
+
+        assertEquals("0", balanceField("reserved"));
+        assertEquals("1", balanceField("balance"));
+        assertEquals("1", balanceField("pending"));
+        assertEquals(outboxBefore + 1, stringRedisTemplate.opsForStream().size("yuan:outbox"));
+        assertEquals("saga-1", engine.findBySagaId("saga-1").getSagaId());
+    }
+
+    @Test
+    void release_ReturnsReservedYuanOnce() {
+        UUID reservationId = engine.reserve(userId, 2.0, "saga-1");
+
+        assertTrue(engine.release(reservationId, userId));
+        assertTrue(engine.release(reservationId, userId));
+
+        assertEquals("0", balanceField("reserved"));
+        assertThrows(ValidationException.class, () -> engine.confirm(reservationId, userId));
+    }
+
+    @Test
+    void reserve_AfterPostgresDebit_SeesLowerBalance() {
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        engine.reserve(userId, 0.5, "saga-1");
+
+        // 1.0 Yuan spent directly in Postgres (e.g. a non-SAGA vote), then the post-commit reload
+        UserProgress debited = new UserProgress(userId, 0.0, 1.0);
+        debited.setVersion(2L);
+        when(userProgressRepository.findUserProgressByUserId(userId)).thenReturn(Optional.of(debited));
+        engine.syncBalancesAfterCommit(List.of(userId));
+
+        assertEquals("1", balanceField("balance"));
+        assertEquals("0.5", balanceField("reserved"));
+        assertThrows(ValidationException.class, () -> engine.reserve(userId, 1.0, "saga-2"));
+        engine.reserve(userId, 0.5, "saga-3");
+    }
+
+    @Test
+    void syncBalancesAfterCommit_NotLoaded_DoesNotCreateHash() {
+        ReflectionTestUtils.setField(engine, "enabled", true);
+
+        engine.syncBalancesAfterCommit(List.of(userId));
+
+        assertFalse(stringRedisTemplate.hasKey("yuan:balance:" + userId));
+    }
+
+    private String balanceField(String field) {
+        return (String) stringRedisTemplate.opsForHash().get("yuan:balance:" + userId, field);
+    }
+}
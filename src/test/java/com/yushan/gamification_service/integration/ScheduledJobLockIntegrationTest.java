@@ -0,0 +1,104 @@
+package com.yushan.gamification_service.integration;
+
+import com.yushan.gamification_service.service.ScheduledJobLockService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts several application contexts against one PostgreSQL, like replicas of the service, and checks that
+ * a scheduled job runs on one of them at a time. Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ScheduledJobLockIntegrationTest {
+
+    private static final int INSTANCES = 3;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+    private final List<AnnotationConfigApplicationContext> instances = new ArrayList<>();
+
+    @BeforeEach
+    void startInstances() {
+        for (int i = 0; i < INSTANCES; i++) {
+            AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+            context.registerBean(DataSource.class, () -> new DriverManagerDataSource(
+                    postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()));
+            context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+            context.registerBean(ScheduledJobLockService.class);
+            context.refresh();
+            instances.add(context);
+        }
+    }
+
+    @AfterEach
+    void stopInstances() {
+        instances.forEach(AnnotationConfigApplicationContext::close);
+    }
+
+    @Test
+    void runExclusively_SameJobOnEveryInstance_RunsOnOne() throws Exception {
+        CountDownLatch jobStarted = new CountDownLatch(1);
+        CountDownLatch releaseJob = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(INSTANCES);
+        try {
+            Future<Boolean> leader = executor.submit(() -> lockService(0).runExclusively("yuan-reservation-cleanup", () -> {
+                runs.incrementAndGet();
+                jobStarted.countDown();
+                await(releaseJob);
+            }));
+            assertTrue(jobStarted.await(10, TimeUnit.SECONDS));
+
+            for (int i = 1; i < INSTANCES; i++) {
+                assertFalse(lockService(i).runExclusively("yuan-reservation-cleanup", runs::incrementAndGet));
+            }
+            // Other jobs are not blocked by the running one
+            assertTrue(lockService(1).runExclusively("leaderboard-rebuild", () -> { }));
+
+            releaseJob.countDown();
+            assertTrue(leader.get(10, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+
+            // Once the job has finished another instance can take the next run
+            assertTrue(lockService(2).runExclusively("yuan-reservation-cleanup", runs::incrementAndGet));
+            assertEquals(2, runs.get());
+        } finally {
+            releaseJob.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private ScheduledJobLockService lockService(int instance) {
+        return instances.get(instance).getBean(ScheduledJobLockService.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
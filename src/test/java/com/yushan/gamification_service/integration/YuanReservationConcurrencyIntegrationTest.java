@@ -0,0 +1,190 @@
+package com.yushan.gamification_service.integration;
+
+import com.yushan.gamification_service.dao.YuanReservationMapper;
+import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.repository.UserProgressRepository;
+import com.yushan.gamification_service.service.KafkaEventProducerService;
+import com.yushan.gamification_service.service.RedisYuanReservationEngine;
+import com.yushan.gamification_service.service.YuanReservationExpiryWheel;
+import com.yushan.gamification_service.service.YuanReservationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the reservation statements against a real PostgreSQL to check that concurrent reservations of one
+ * user never hold more Yuan than the user has. Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class YuanReservationConcurrencyIntegrationTest {
+
+    private static final int THREADS = 32;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+    private static JdbcTemplate jdbcTemplate;
+    private static DataSourceTransactionManager transactionManager;
+    private static YuanReservationMapper yuanReservationMapper;
+
+    private YuanReservationService yuanReservationService;
+    private UUID userId;
+
+    @BeforeAll
+    static void setUpDatabase() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Flyway.configure()
+                .dataSource(dataSource)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setMapperLocations(
+                new PathMatchingResourcePatternResolver().getResources("classpath:/mapper/**Mapper.xml"));
+        factoryBean.setTypeAliasesPackage("com.yushan.gamification_service.entity");
+        factoryBean.setConfigLocation(
+                new PathMatchingResourcePatternResolver().getResource("classpath:config/mybatis-config.xml"));
+        SqlSessionFactory sqlSessionFactory = factoryBean.getObject();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        yuanReservationMapper = new SqlSessionTemplate(sqlSessionFactory).getMapper(YuanReservationMapper.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        yuanReservationService = new YuanReservationService();
+        ReflectionTestUtils.setField(yuanReservationService, "yuanReservationMapper", yuanReservationMapper);
+        ReflectionTestUtils.setField(yuanReservationService, "userProgressRepository", mock(UserProgressRepository.class));
+        ReflectionTestUtils.setField(yuanReservationService, "redisEngine", mock(RedisYuanReservationEngine.class));
+        ReflectionTestUtils.setField(yuanReservationService, "expiryWheel", mock(YuanReservationExpiryWheel.class));
+        ReflectionTestUtils.setField(yuanReservationService, "kafkaEventProducerService", mock(KafkaEventProducerService.class));
+        ReflectionTestUtils.setField(yuanReservationService, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(yuanReservationService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(yuanReservationService, "reservationTimeoutMinutes", 5);
+        ReflectionTestUtils.setField(yuanReservationService, "sweepBatchSize", 3);
+        ReflectionTestUtils.setField(yuanReservationService, "sweepMaxBatches", 1000);
+
+        userId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO user_progress (user_id, total_exp, yuan_balance) VALUES (?, 0, 10)", userId);
+    }
+
+    @Test
+    void concurrentReservations_NeverReserveMoreThanBalance() throws Exception {
+        List<UUID> reserved = reserveConcurrently();
+
+        assertEquals(10, reserved.size());
+        assertEquals(10.0, reservedYuan());
+        assertEquals(10, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM yuan_reservation WHERE user_id = ? AND status = 'RESERVED'", Integer.class, userId));
+    }
+
+    @Test
+    void confirmAndRelease_MoveReservedAmountOnce() throws Exception {
+        List<UUID> reserved = reserveConcurrently();
+
+        assertEquals(1, yuanReservationMapper.confirmReservation(reserved.get(0), OffsetDateTime.now()));
+        assertEquals(0, yuanReservationMapper.releaseReservation(reserved.get(0), OffsetDateTime.now()));
+        assertEquals(1, yuanReservationMapper.releaseReservation(reserved.get(1), OffsetDateTime.now()));
+        assertEquals(0, yuanReservationMapper.releaseReservation(reserved.get(1), OffsetDateTime.now()));
+        assertEquals(8.0, reservedYuan());
+
+        // The released Yuan can be reserved again, the confirmed one is no longer held
+        yuanReservationService.reserveYuan(userId, 1.0, "saga-again");
+        assertEquals(9.0, reservedYuan());
+    }
+
+    @Test
+    void cleanupExpiredReservations_ReleasesEveryExpiredReservationInBatches() throws Exception {
+        List<UUID> reserved = reserveConcurrently();
+        yuanReservationMapper.confirmReservation(reserved.get(0), OffsetDateTime.now());
+        jdbcTemplate.update("UPDATE yuan_reservation SET expires_at = NOW() - INTERVAL '1 minute' WHERE user_id = ?", userId);
+
+        yuanReservationService.cleanupExpiredReservations();
+
+        assertEquals(0.0, reservedYuan());
+        assertEquals(9, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM yuan_reservation WHERE user_id = ? AND status = 'RELEASED'", Integer.class, userId));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM yuan_reservation WHERE user_id = ? AND status = 'CONFIRMED'", Integer.class, userId));
+    }
+
+    @Test
+    void releaseExpiredReservations_SkipsConfirmedAndUnexpired() throws Exception {
+        List<UUID> reserved = reserveConcurrently();
+        yuanReservationMapper.confirmReservation(reserved.get(0), OffsetDateTime.now());
+        jdbcTemplate.update("UPDATE yuan_reservation SET expires_at = NOW() - INTERVAL '1 minute' WHERE reservation_id IN (?, ?)",
+                reserved.get(0), reserved.get(1));
+
+        assertEquals(1, yuanReservationService.releaseExpiredReservations(reserved.subList(0, 3)));
+
+        assertEquals(8.0, reservedYuan());
+        assertEquals("RELEASED", jdbcTemplate.queryForObject(
+                "SELECT status FROM yuan_reservation WHERE reservation_id = ?", String.class, reserved.get(1)));
+    }
+
+    private List<UUID> reserveConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<UUID>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                String sagaId = "saga-" + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        return yuanReservationService.reserveYuan(userId, 1.0, sagaId);
+                    } catch (ValidationException e) {
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+
+            List<UUID> reserved = new ArrayList<>();
+            for (Future<UUID> future : futures) {
+                UUID reservationId = future.get();
+                if (reservationId != null) {
+                    reserved.add(reservationId);
+                }
+            }
+            return reserved;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double reservedYuan() {
+        return jdbcTemplate.queryForObject("SELECT yuan_reserved FROM user_progress WHERE user_id = ?", Double.class, userId);
+    }
+}
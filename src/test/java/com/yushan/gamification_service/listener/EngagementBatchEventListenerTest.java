@@ -0,0 +1,138 @@
+package com.yushan.gamification_service.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yushan.gamification_service.dto.event.EngagementReward;
+import com.yushan.gamification_service.enums.EngagementRewardType;
+import com.yushan.gamification_service.service.EngagementRewardBatchService;
+import com.yushan.gamification_service.service.GamificationService;
+import com.yushan.gamification_service.service.IdempotencyService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EngagementBatchEventListenerTest {
+
+    @Mock
+    private GamificationService gamificationService;
+
+    @Spy
+    private EventReader eventReader = new EventReader(new ObjectMapper());
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private EngagementRewardBatchService engagementRewardBatchService;
+
+    @InjectMocks
+    private EngagementBatchEventListener listener;
+
+    private final UUID testUserId = UUID.randomUUID();
+
+    private List<ConsumerRecord<String, byte[]>> records(String topic, String... values) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            records.add(new ConsumerRecord<>(topic, 0, i, null, values[i].getBytes(StandardCharsets.UTF_8)));
+        }
+        return records;
+    }
+
+    private String commentJson(long commentId) {
+        return String.format("{\"commentId\":%d,\"userId\":\"%s\"}", commentId, testUserId);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void handleCommentCreatedEvents_shouldAwardWholeBatchAndCacheKeys() {
+        // Given
+        when(engagementRewardBatchService.filterUnprocessed(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(engagementRewardBatchService.award(eq(EngagementRewardType.COMMENT), anyList())).thenAnswer(inv -> inv.getArgument(1));
+
+        // When
+        listener.handleCommentCreatedEvents(records("comment-events", commentJson(1), commentJson(2)));
+
+        // Then
+        ArgumentCaptor<List<EngagementReward>> captor = ArgumentCaptor.forClass(List.class);
+        verify(engagementRewardBatchService).award(eq(EngagementRewardType.COMMENT), captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertEquals("idempotency:comment-reward:1", captor.getValue().get(0).idempotencyKey());
+        assertEquals(testUserId, captor.getValue().get(0).userId());
+        verify(idempotencyService).cacheProcessed(List.of("idempotency:comment-reward:1", "idempotency:comment-reward:2"));
+        verifyNoInteractions(gamificationService);
+    }
+
+    @Test
+    void handleCommentCreatedEvents_allAlreadyProcessed_shouldSkipWrite() {
+        // Given
+        when(engagementRewardBatchService.filterUnprocessed(anyList())).thenReturn(List.of());
+
+        // When
+        listener.handleCommentCreatedEvents(records("comment-events", commentJson(1)));
+
+        // Then
+        verify(engagementRewardBatchService, never()).award(any(), anyList());
+        verify(idempotencyService, never()).cacheProcessed(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void handleReviewCreatedEvents_poisonRecord_shouldProcessPrefixAndReportIndex() {
+        // Given
+        String valid = String.format("{\"reviewId\":7,\"userId\":\"%s\"}", testUserId);
+        when(engagementRewardBatchService.filterUnprocessed(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(engagementRewardBatchService.award(eq(EngagementRewardType.REVIEW), anyList())).thenAnswer(inv -> inv.getArgument(1));
+
+        // When
+        BatchListenerFailedException exception = assertThrows(BatchListenerFailedException.class,
+                () -> listener.handleReviewCreatedEvents(records("review-events", valid, "not-json", valid)));
+
+        // Then
+        assertEquals(1, exception.getIndex());
+        ArgumentCaptor<List<EngagementReward>> captor = ArgumentCaptor.forClass(List.class);
+        verify(engagementRewardBatchService).award(eq(EngagementRewardType.REVIEW), captor.capture());
+        assertEquals(1, captor.getValue().size());
+    }
+
+    @Test
+    void handleVoteCreatedEvents_batchWriteFails_shouldIsolateFailingRecord() {
+        // Given
+        UUID otherUserId = UUID.randomUUID();
+        String first = String.format("{\"voteId\":1,\"userId\":\"%s\"}", testUserId);
+        String second = String.format("{\"voteId\":2,\"userId\":\"%s\"}", otherUserId);
+        when(engagementRewardBatchService.filterUnprocessed(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(engagementRewardBatchService.award(eq(EngagementRewardType.VOTE), anyList()))
+                .thenThrow(new RuntimeException("batch insert failed"));
+        when(idempotencyService.processOnce(anyString(), eq("VoteReward"), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        });
+        doNothing().when(gamificationService).processUserVote(testUserId);
+        doThrow(new RuntimeException("insufficient yuan")).when(gamificationService).processUserVote(otherUserId);
+
+        // When
+        BatchListenerFailedException exception = assertThrows(BatchListenerFailedException.class,
+                () -> listener.handleVoteCreatedEvents(records("vote-events", first, second)));
+
+        // Then
+        assertEquals(1, exception.getIndex());
+        verify(gamificationService).processUserVote(testUserId);
+        verify(idempotencyService).processOnce(eq("idempotency:vote-reward:1"), eq("VoteReward"), any(Runnable.class));
+        verify(idempotencyService).processOnce(eq("idempotency:vote-reward:2"), eq("VoteReward"), any(Runnable.class));
+    }
+}
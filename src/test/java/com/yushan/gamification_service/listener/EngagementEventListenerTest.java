@@ -1,7 +1,5 @@
 package com.yushan.gamification_service.listener;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yushan.gamification_service.service.GamificationService;
 import com.yushan.gamification_service.service.IdempotencyService;
@@ -9,10 +7,13 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -23,11 +24,8 @@ class EngagementEventListenerTest {
     @Mock
     private GamificationService gamificationService;
 
-    @Mock
-    private ObjectMapper objectMapper;
-
-    @Mock
-    private JsonNode jsonNode;
+    @Spy
+    private EventReader eventReader = new EventReader(new ObjectMapper());
 
     @Mock
     private IdempotencyService idempotencyService;
@@ -42,102 +40,103 @@ class EngagementEventListenerTest {
     void handleCommentCreatedEvent_shouldProcessComment() throws Exception {
         // Given
         long commentId = 123L;
-        String eventJson = String.format("{\"commentId\":%d,\"userId\":\"%s\"}", commentId, testUserIdStr);
-
-        JsonNode commentIdNode = mock(JsonNode.class);
-        JsonNode userIdNode = mock(JsonNode.class);
-        when(objectMapper.readTree(eventJson)).thenReturn(jsonNode);
-        when(jsonNode.get("commentId")).thenReturn(commentIdNode);
-        when(commentIdNode.asInt()).thenReturn((int) commentId);
-        when(jsonNode.get("userId")).thenReturn(userIdNode);
-        when(userIdNode.asText()).thenReturn(testUserIdStr);
-        when(idempotencyService.isProcessed(anyString(), eq("CommentReward"))).thenReturn(false); // Not processed yet
-        doNothing().when(idempotencyService).markAsProcessed(anyString(), eq("CommentReward"));
+        byte[] payload = json("{\"commentId\":%d,\"userId\":\"%s\",\"novelId\":7}", commentId, testUserIdStr);
+
+        when(idempotencyService.processOnce(anyString(), eq("CommentReward"), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run(); // Claimed: run the business action
+            return true;
+        });
         doNothing().when(gamificationService).processUserComment(testUserId, commentId);
 
         // When
-        engagementEventListener.handleCommentCreatedEvent(eventJson);
+        engagementEventListener.handleCommentCreatedEvent(payload);
 
         // Then
-        verify(objectMapper).readTree(eventJson);
-        verify(idempotencyService).isProcessed(anyString(), eq("CommentReward"));
+        verify(eventReader).readComment(payload);
+        verify(idempotencyService).processOnce(eq("idempotency:comment-reward:123"), eq("CommentReward"), any(Runnable.class));
         verify(gamificationService).processUserComment(testUserId, commentId);
-        verify(idempotencyService).markAsProcessed(anyString(), eq("CommentReward"));
     }
 
     @Test
     void handleReviewCreatedEvent_shouldProcessReview() throws Exception {
         // Given
         long reviewId = 456L;
-        String eventJson = String.format("{\"reviewId\":%d,\"userId\":\"%s\"}", reviewId, testUserIdStr);
-
-        JsonNode reviewIdNode = mock(JsonNode.class);
-        JsonNode userIdNode = mock(JsonNode.class);
-        when(objectMapper.readTree(eventJson)).thenReturn(jsonNode);
-        when(jsonNode.get("reviewId")).thenReturn(reviewIdNode);
-        when(reviewIdNode.asInt()).thenReturn((int) reviewId);
-        when(jsonNode.get("userId")).thenReturn(userIdNode);
-        when(userIdNode.asText()).thenReturn(testUserIdStr);
-        when(idempotencyService.isProcessed(anyString(), eq("ReviewReward"))).thenReturn(false); // Not processed yet
-        doNothing().when(idempotencyService).markAsProcessed(anyString(), eq("ReviewReward"));
+        byte[] payload = json("{\"reviewId\":%d,\"userId\":\"%s\"}", reviewId, testUserIdStr);
+
+        when(idempotencyService.processOnce(anyString(), eq("ReviewReward"), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run(); // Claimed: run the business action
+            return true;
+        });
         doNothing().when(gamificationService).processUserReview(testUserId, reviewId);
 
         // When
-        engagementEventListener.handleReviewCreatedEvent(eventJson);
+        engagementEventListener.handleReviewCreatedEvent(payload);
 
         // Then
-        verify(objectMapper).readTree(eventJson);
-        verify(idempotencyService).isProcessed(anyString(), eq("ReviewReward"));
+        verify(eventReader).readReview(payload);
+        verify(idempotencyService).processOnce(eq("idempotency:review-reward:456"), eq("ReviewReward"), any(Runnable.class));
         verify(gamificationService).processUserReview(testUserId, reviewId);
-        verify(idempotencyService).markAsProcessed(anyString(), eq("ReviewReward"));
     }
 
     @Test
     void handleVoteCreatedEvent_shouldProcessVote() throws Exception {
         // Given
         Integer voteId = 789;
-        String eventJson = String.format("{\"voteId\":%d,\"userId\":\"%s\"}", voteId, testUserIdStr);
-        
-        JsonNode voteIdNode = mock(JsonNode.class);
-        JsonNode userIdNode = mock(JsonNode.class);
-        when(objectMapper.readTree(eventJson)).thenReturn(jsonNode);
-        when(jsonNode.has("voteId")).thenReturn(true);
-        when(jsonNode.get("voteId")).thenReturn(voteIdNode);
-        when(voteIdNode.asInt()).thenReturn(voteId);
-        when(jsonNode.get("userId")).thenReturn(userIdNode);
-        when(userIdNode.asText()).thenReturn(testUserIdStr);
-        when(idempotencyService.isProcessed(anyString(), eq("VoteReward"))).thenReturn(false); // Not processed yet
-        doNothing().when(idempotencyService).markAsProcessed(anyString(), eq("VoteReward"));
+        byte[] payload = json("{\"voteId\":%d,\"userId\":\"%s\"}", voteId, testUserIdStr);
+
+        when(idempotencyService.processOnce(anyString(), eq("VoteReward"), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run(); // Claimed: run the business action
+            return true;
+        });
         doNothing().when(gamificationService).processUserVote(testUserId);
 
         // When
-        engagementEventListener.handleVoteCreatedEvent(eventJson);
+        engagementEventListener.handleVoteCreatedEvent(payload);
 
         // Then
-        verify(objectMapper).readTree(eventJson);
-        verify(idempotencyService).isProcessed(anyString(), eq("VoteReward"));
+        verify(eventReader).readVote(payload);
+        verify(idempotencyService).processOnce(eq("idempotency:vote-reward:789"), eq("VoteReward"), any(Runnable.class));
         verify(gamificationService).processUserVote(testUserId);
-        verify(idempotencyService).markAsProcessed(anyString(), eq("VoteReward"));
+    }
+
+    @Test
+    void handleCommentCreatedEvent_alreadyClaimed_shouldSkipReward() throws Exception {
+        // Given
+        byte[] payload = json("{\"commentId\":1,\"userId\":\"%s\"}", testUserIdStr);
+        when(idempotencyService.processOnce(eq("idempotency:comment-reward:1"), eq("CommentReward"), any(Runnable.class))).thenReturn(false);
+
+        // When
+        engagementEventListener.handleCommentCreatedEvent(payload);
+
+        // Then
+        verifyNoInteractions(gamificationService);
     }
 
     @Test
     void handleEvent_shouldCatchJsonProcessingException() throws Exception {
         // Given
-        String invalidJson = "invalid-json";
-        when(objectMapper.readTree(invalidJson))
-                .thenThrow(new JsonProcessingException("Test Exception") {});
+        byte[] invalidJson = "invalid-json".getBytes(StandardCharsets.UTF_8);
 
-        // When & Then
-        try {
-            engagementEventListener.handleCommentCreatedEvent(invalidJson);
-        } catch (RuntimeException e) {
-            // Expected: RuntimeException is thrown to trigger Kafka retry
-        }
+        // When & Then: RuntimeException is thrown to trigger Kafka retry
+        assertThrows(RuntimeException.class, () -> engagementEventListener.handleCommentCreatedEvent(invalidJson));
 
         // Then
         // Verify that the service method was not called due to the exception
         verify(gamificationService, never()).processUserComment(any(), anyLong());
-        verify(idempotencyService, never()).isProcessed(anyString(), anyString());
-        verify(idempotencyService, never()).markAsProcessed(anyString(), anyString());
+        verify(idempotencyService, never()).processOnce(anyString(), anyString(), any());
+    }
+
+    @Test
+    void handleCommentCreatedEvent_missingCommentId_shouldFailWithoutReward() {
+        // Given
+        byte[] payload = json("{\"userId\":\"%s\"}", testUserIdStr);
+
+        // When & Then
+        assertThrows(RuntimeException.class, () -> engagementEventListener.handleCommentCreatedEvent(payload));
+        verifyNoInteractions(idempotencyService, gamificationService);
+    }
+
+    private static byte[] json(String format, Object... args) {
+        return String.format(format, args).getBytes(StandardCharsets.UTF_8);
     }
 }
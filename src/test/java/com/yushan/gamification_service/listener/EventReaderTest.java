@@ -0,0 +1,72 @@
+package com.yushan.gamification_service.listener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yushan.gamification_service.dto.event.EventEnvelope;
+import com.yushan.gamification_service.dto.event.UserRegisteredEvent;
+import com.yushan.gamification_service.dto.event.VoteCreatedEvent;
+import com.yushan.gamification_service.dto.event.VoteSagaVoteCreatedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventReaderTest {
+
+    private final EventReader eventReader = new EventReader(new ObjectMapper().findAndRegisterModules());
+
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    void readUserEvent_shouldBindPayloadByEventType() throws Exception {
+        EventEnvelope envelope = eventReader.readUserEvent(bytes(
+                "{\"eventType\":\"UserRegisteredEvent\",\"payload\":{\"uuid\":\"" + userId + "\",\"email\":\"a@b.c\",\"extra\":true}}"));
+
+        assertEquals("UserRegisteredEvent", envelope.eventType());
+        UserRegisteredEvent event = assertInstanceOf(UserRegisteredEvent.class, envelope.payload());
+        assertEquals(userId, event.uuid());
+        assertEquals("a@b.c", event.email());
+    }
+
+    @Test
+    void readUserEvent_unknownEventType_shouldLeavePayloadEmpty() throws Exception {
+        EventEnvelope envelope = eventReader.readUserEvent(bytes("{\"eventType\":\"UserDeletedEvent\",\"payload\":{\"uuid\":\"" + userId + "\"}}"));
+
+        assertEquals("UserDeletedEvent", envelope.eventType());
+        assertNull(envelope.payload());
+    }
+
+    @Test
+    void readVoteSagaVoteCreated_shouldUnwrapDoubleEncodedPayload() throws Exception {
+        String inner = "{\"sagaId\":\"saga-1\",\"userId\":\"" + userId + "\",\"novelId\":3,\"timestamp\":\"2024-05-01T10:15:30\"}";
+        String doubleEncoded = new ObjectMapper().writeValueAsString(inner);
+
+        VoteSagaVoteCreatedEvent event = eventReader.readVoteSagaVoteCreated(bytes(doubleEncoded));
+
+        assertEquals("saga-1", event.getSagaId());
+        assertEquals(userId, event.getUserId());
+        assertEquals(LocalDateTime.of(2024, 5, 1, 10, 15, 30), event.getTimestamp());
+    }
+
+    @Test
+    void readVote_voteIdIsOptional() throws Exception {
+        VoteCreatedEvent event = eventReader.readVote(bytes("{\"userId\":\"" + userId + "\",\"novelId\":3}"));
+
+        assertNull(event.voteId());
+        assertEquals(userId, event.userId());
+    }
+
+    @Test
+    void read_invalidOrIncompletePayload_shouldThrowJsonProcessingException() {
+        assertThrows(JsonProcessingException.class, () -> eventReader.readComment(new byte[0]));
+        assertThrows(JsonProcessingException.class, () -> eventReader.readComment(bytes("not json")));
+        assertThrows(JsonProcessingException.class, () -> eventReader.readComment(bytes("{\"userId\":\"" + userId + "\"}")));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,18 +1,19 @@
 package com.yushan.gamification_service.listener;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.yushan.gamification_service.dto.event.LevelUpEvent;
 import com.yushan.gamification_service.service.AchievementService;
 import com.yushan.gamification_service.service.IdempotencyService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -23,8 +24,8 @@ class InternalEventListenerTest {
     @Mock
     private AchievementService achievementService;
 
-    @Mock
-    private ObjectMapper objectMapper;
+    @Spy
+    private EventReader eventReader = new EventReader(new ObjectMapper());
 
     @Mock
     private IdempotencyService idempotencyService;
@@ -37,41 +38,33 @@ class InternalEventListenerTest {
         // Given
         UUID userId = UUID.randomUUID();
         int newLevel = 5;
-        LevelUpEvent event = new LevelUpEvent(userId, newLevel);
-        String message = "{\"userId\":\"" + userId + "\",\"newLevel\":5}";
+        byte[] message = ("{\"userId\":\"" + userId + "\",\"newLevel\":5}").getBytes(StandardCharsets.UTF_8);
 
-        when(objectMapper.readValue(message, LevelUpEvent.class)).thenReturn(event);
-        when(idempotencyService.isProcessed(anyString(), eq("LevelUpAchievement"))).thenReturn(false); // Not processed yet
-        doNothing().when(idempotencyService).markAsProcessed(anyString(), eq("LevelUpAchievement"));
+        when(idempotencyService.processOnce(anyString(), eq("LevelUpAchievement"), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run(); // Claimed: run the business action
+            return true;
+        });
         doNothing().when(achievementService).checkAndUnlockLevelAchievements(userId, newLevel);
 
         // When
         internalEventListener.handleLevelUpEvent(message);
 
         // Then
-        verify(objectMapper).readValue(message, LevelUpEvent.class);
-        verify(idempotencyService).isProcessed(anyString(), eq("LevelUpAchievement"));
+        verify(eventReader).readLevelUp(message);
+        verify(idempotencyService).processOnce(eq("idempotency:level-up:" + userId + ":5"), eq("LevelUpAchievement"), any(Runnable.class));
         verify(achievementService).checkAndUnlockLevelAchievements(userId, newLevel);
-        verify(idempotencyService).markAsProcessed(anyString(), eq("LevelUpAchievement"));
     }
 
     @Test
     void handleLevelUpEvent_shouldHandleJsonProcessingException() throws Exception {
         // Given
-        String invalidMessage = "invalid-json";
-        when(objectMapper.readValue(invalidMessage, LevelUpEvent.class))
-                .thenThrow(new JsonProcessingException("Test Exception") {});
+        byte[] invalidMessage = "invalid-json".getBytes(StandardCharsets.UTF_8);
 
-        // When & Then
-        try {
-            internalEventListener.handleLevelUpEvent(invalidMessage);
-        } catch (RuntimeException e) {
-            // Expected: RuntimeException is thrown to trigger Kafka retry
-        }
+        // When & Then: RuntimeException is thrown to trigger Kafka retry
+        assertThrows(RuntimeException.class, () -> internalEventListener.handleLevelUpEvent(invalidMessage));
 
         // Then
         // Verify that the service method was not called due to the exception
         verify(achievementService, never()).checkAndUnlockLevelAchievements(any(UUID.class), anyInt());
     }
 }
-
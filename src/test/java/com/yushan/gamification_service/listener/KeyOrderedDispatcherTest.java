@@ -0,0 +1,135 @@
+package com.yushan.gamification_service.listener;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyOrderedDispatcherTest {
+
+    private final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher("test", 4, Set.of("userId", "uuid"), false);
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void dispatch_shouldKeepOrderPerKey() {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            records.add(record(i, "user-" + (i % 3), String.valueOf(i)));
+        }
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+
+        dispatcher.dispatch(records, record -> handled.add(record.key() + ":" + new String(record.value(), StandardCharsets.UTF_8)));
+
+        assertEquals(50, handled.size());
+        for (int user = 0; user < 3; user++) {
+            String prefix = "user-" + user + ":";
+            List<Integer> values = handled.stream()
+                    .filter(entry -> entry.startsWith(prefix))
+                    .map(entry -> Integer.parseInt(entry.substring(prefix.length())))
+                    .toList();
+            assertEquals(values.stream().sorted().toList(), values);
+        }
+    }
+
+    @Test
+    void dispatch_shouldNotBlockOtherKeysBehindSlowKey() throws Exception {
+        CountDownLatch otherKeyDone = new CountDownLatch(1);
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(0, "slow", "a"),
+                record(1, "fast", "b"));
+
+        dispatcher.dispatch(records, record -> {
+            if (record.key().equals("slow")) {
+                try {
+                    // Only completes if the other key runs while this one is still busy
+                    assertTrue(otherKeyDone.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            } else {
+                otherKeyDone.countDown();
+            }
+        });
+
+        assertEquals(0, otherKeyDone.getCount());
+    }
+
+    @Test
+    void dispatch_shouldReportLowestFailedIndexAndStopThatKey() {
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(0, "a", "ok"),
+                record(1, "b", "ok"),
+                record(2, "a", "fail"),
+                record(3, "b", "fail"),
+                record(4, "a", "after-failure"),
+                record(5, "c", "ok"));
+        List<Long> handled = Collections.synchronizedList(new ArrayList<>());
+
+        BatchListenerFailedException e = assertThrows(BatchListenerFailedException.class,
+                () -> dispatcher.dispatch(records, record -> {
+                    if (new String(record.value(), StandardCharsets.UTF_8).equals("fail")) {
+                        throw new IllegalStateException("boom " + record.offset());
+                    }
+                    handled.add(record.offset());
+                }));
+
+        assertEquals(2, e.getIndex());
+        assertEquals("boom 2", e.getCause().getMessage());
+        assertFalse(handled.contains(4L));
+        assertTrue(handled.containsAll(List.of(0L, 1L, 5L)));
+    }
+
+    @Test
+    void dispatch_shouldRunLanesOnVirtualThreads() {
+        KeyOrderedDispatcher virtualDispatcher = new KeyOrderedDispatcher("virtual", 2, Set.of("userId"), true);
+        List<Boolean> virtual = Collections.synchronizedList(new ArrayList<>());
+        try {
+            virtualDispatcher.dispatch(List.of(record(0, "a", "1"), record(1, "b", "2")),
+                    record -> virtual.add(Thread.currentThread().isVirtual()));
+        } finally {
+            virtualDispatcher.shutdown();
+        }
+
+        assertEquals(List.of(true, true), virtual);
+    }
+
+    @Test
+    void keyOf_shouldPreferRecordKeyThenPayloadField() {
+        assertEquals("k", dispatcher.keyOf(record(0, "k", "{\"userId\":\"u1\"}")));
+        assertEquals("u1", dispatcher.keyOf(record(0, null, "{\"sagaId\":\"s\",\"userId\":\"u1\"}")));
+        assertEquals("u2", dispatcher.keyOf(record(0, null, "{\"eventType\":\"X\",\"payload\":{\"uuid\":\"u2\"}}")));
+        assertEquals("", dispatcher.keyOf(record(0, null, "not json")));
+        assertEquals("", dispatcher.keyOf(record(0, null, "{\"other\":1}")));
+    }
+
+    @Test
+    void keyOf_payloadKeyFirst_shouldPreferPayloadFieldThenRecordKey() {
+        KeyOrderedDispatcher userLanes = new KeyOrderedDispatcher("user-lanes", 1, Set.of("userId"), true, false);
+        try {
+            assertEquals("u1", userLanes.keyOf(record(0, "saga-1", "{\"sagaId\":\"saga-1\",\"userId\":\"u1\"}")));
+            assertEquals("u1", userLanes.keyOf(record(1, "saga-2", "{\"sagaId\":\"saga-2\",\"userId\":\"u1\"}")));
+            assertEquals("saga-3", userLanes.keyOf(record(2, "saga-3", "not json")));
+            assertEquals("", userLanes.keyOf(record(3, null, "{\"other\":1}")));
+        } finally {
+            userLanes.shutdown();
+        }
+    }
+
+    private ConsumerRecord<String, byte[]> record(long offset, String key, String value) {
+        return new ConsumerRecord<>("topic", 0, offset, key, value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,22 +1,19 @@
 package com.yushan.gamification_service.listener;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.yushan.gamification_service.dto.event.EventEnvelope;
-import com.yushan.gamification_service.dto.event.UserLoggedInEvent;
-import com.yushan.gamification_service.dto.event.UserRegisteredEvent;
 import com.yushan.gamification_service.service.GamificationService;
 import com.yushan.gamification_service.service.IdempotencyService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.Date;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -27,11 +24,8 @@ class UserEventListenerTest {
     @Mock
     private GamificationService gamificationService;
 
-    @Mock
-    private ObjectMapper objectMapper;
-
-    @Mock
-    private JsonNode jsonNode;
+    @Spy
+    private EventReader eventReader = new EventReader(new ObjectMapper());
 
     @Mock
     private IdempotencyService idempotencyService;
@@ -43,25 +37,19 @@ class UserEventListenerTest {
     void handleUserEvent_shouldProcessUserRegistration() throws Exception {
         // Given
         UUID userId = UUID.randomUUID();
-        String email = "test@example.com";
-        String message = "{\"eventType\":\"UserRegisteredEvent\", \"payload\":{...}}";
-        Date date = new Date();
-        UserRegisteredEvent registeredEvent = new UserRegisteredEvent(userId, "", email, date, date, date, date);
-        EventEnvelope envelope = new EventEnvelope("UserRegisteredEvent", jsonNode);
-
-        when(objectMapper.readValue(message, EventEnvelope.class)).thenReturn(envelope);
-        when(objectMapper.treeToValue(jsonNode, UserRegisteredEvent.class)).thenReturn(registeredEvent);
-        when(idempotencyService.isProcessed(anyString(), eq("UserRegistration"))).thenReturn(false); // Not processed yet
-        doNothing().when(idempotencyService).markAsProcessed(anyString(), eq("UserRegistration"));
+        byte[] message = userEvent("UserRegisteredEvent", userId);
+        when(idempotencyService.processOnce(anyString(), eq("UserRegistration"), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run(); // Claimed: run the business action
+            return true;
+        });
         doNothing().when(gamificationService).processUserRegistration(userId);
 
         // When
         userEventListener.handleUserEvent(message);
 
         // Then
-        verify(idempotencyService).isProcessed(anyString(), eq("UserRegistration"));
+        verify(idempotencyService).processOnce(eq("idempotency:user-registration:" + userId), eq("UserRegistration"), any(Runnable.class));
         verify(gamificationService).processUserRegistration(userId);
-        verify(idempotencyService).markAsProcessed(anyString(), eq("UserRegistration"));
         verify(gamificationService, never()).processUserLogin(any());
     }
 
@@ -69,40 +57,47 @@ class UserEventListenerTest {
     void handleUserEvent_shouldProcessUserLogin() throws Exception {
         // Given
         UUID userId = UUID.randomUUID();
-        String email = "test@example.com";
-        String message = "{\"eventType\":\"UserLoggedInEvent\", \"payload\":{...}}";
-        Date date = new Date();
-        UserLoggedInEvent loggedInEvent = new UserLoggedInEvent(userId, "", email, date, date, date, date);
-        EventEnvelope envelope = new EventEnvelope("UserLoggedInEvent", jsonNode);
-
-        when(objectMapper.readValue(message, EventEnvelope.class)).thenReturn(envelope);
-        when(objectMapper.treeToValue(jsonNode, UserLoggedInEvent.class)).thenReturn(loggedInEvent);
-        when(idempotencyService.isProcessed(anyString(), eq("UserLogin"))).thenReturn(false); // Not processed yet
-        doNothing().when(idempotencyService).markAsProcessed(anyString(), eq("UserLogin"));
+        byte[] message = userEvent("UserLoggedInEvent", userId);
+        when(idempotencyService.processOnce(anyString(), eq("UserLogin"), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run(); // Claimed: run the business action
+            return true;
+        });
         doNothing().when(gamificationService).processUserLogin(userId);
 
         // When
         userEventListener.handleUserEvent(message);
 
         // Then
-        verify(idempotencyService).isProcessed(anyString(), eq("UserLogin"));
+        verify(idempotencyService).processOnce(anyString(), eq("UserLogin"), any(Runnable.class));
         verify(gamificationService).processUserLogin(userId);
-        verify(idempotencyService).markAsProcessed(anyString(), eq("UserLogin"));
         verify(gamificationService, never()).processUserRegistration(any());
     }
 
+    @Test
+    void handleUserEvent_shouldReadPayloadBeforeEventType() throws Exception {
+        // Given: producers do not guarantee field order
+        UUID userId = UUID.randomUUID();
+        byte[] message = ("{\"payload\":{\"uuid\":\"" + userId + "\",\"email\":\"test@example.com\",\"createTime\":1700000000000},"
+                + "\"eventType\":\"UserLoggedInEvent\",\"timestamp\":\"2024-01-01T00:00:00\"}").getBytes(StandardCharsets.UTF_8);
+        when(idempotencyService.processOnce(anyString(), eq("UserLogin"), any(Runnable.class))).thenReturn(true);
+
+        // When
+        userEventListener.handleUserEvent(message);
+
+        // Then
+        verify(idempotencyService).processOnce(startsWith("idempotency:user-login:" + userId), eq("UserLogin"), any(Runnable.class));
+    }
+
     @Test
     void handleUserEvent_shouldIgnoreUnknownEventType() throws Exception {
         // Given
-        String message = "{\"eventType\":\"UnknownEvent\", \"payload\":{...}}";
-        EventEnvelope envelope = new EventEnvelope("UnknownEvent", jsonNode);
-
-        when(objectMapper.readValue(message, EventEnvelope.class)).thenReturn(envelope);
+        byte[] message = "{\"eventType\":\"UnknownEvent\", \"payload\":{\"foo\":1}}".getBytes(StandardCharsets.UTF_8);
 
         // When
         userEventListener.handleUserEvent(message);
 
         // Then
+        verifyNoInteractions(idempotencyService);
         verify(gamificationService, never()).processUserRegistration(any());
         verify(gamificationService, never()).processUserLogin(any());
     }
@@ -110,19 +105,19 @@ class UserEventListenerTest {
     @Test
     void handleUserEvent_shouldHandleJsonProcessingException() throws Exception {
         // Given
-        String invalidJson = "invalid-json";
-        when(objectMapper.readValue(invalidJson, EventEnvelope.class))
-                .thenThrow(new JsonProcessingException("Test Exception") {});
+        byte[] invalidJson = "invalid-json".getBytes(StandardCharsets.UTF_8);
 
-        // When & Then
-        try {
-            userEventListener.handleUserEvent(invalidJson);
-        } catch (RuntimeException e) {
-            // Expected: RuntimeException is thrown to trigger Kafka retry
-        }
+        // When & Then: RuntimeException is thrown to trigger Kafka retry
+        assertThrows(RuntimeException.class, () -> userEventListener.handleUserEvent(invalidJson));
 
         // Then
         verify(gamificationService, never()).processUserRegistration(any());
         verify(gamificationService, never()).processUserLogin(any());
     }
+
+    private static byte[] userEvent(String eventType, UUID userId) {
+        return ("{\"eventType\":\"" + eventType + "\",\"payload\":{\"uuid\":\"" + userId + "\",\"username\":\"reader\","
+                + "\"email\":\"test@example.com\",\"createTime\":1700000000000,\"lastLoginTime\":1700000000000}}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
 }
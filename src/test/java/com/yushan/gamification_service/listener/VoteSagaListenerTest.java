@@ -0,0 +1,161 @@
+package com.yushan.gamification_service.listener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yushan.gamification_service.dto.event.VoteSagaCompensateYuanEvent;
+import com.yushan.gamification_service.dto.event.VoteSagaFailedEvent;
+import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.repository.UserProgressRepository;
+import com.yushan.gamification_service.service.GamificationService;
+import com.yushan.gamification_service.service.IdempotencyService;
+import com.yushan.gamification_service.service.YuanReservationService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VoteSagaListenerTest {
+
+    @Mock
+    private YuanReservationService yuanReservationService;
+
+    @Mock
+    private GamificationService gamificationService;
+
+    @Mock
+    private UserProgressRepository userProgressRepository;
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Mock
+    private ObjectMapper objectMapper;
+
+    @Spy
+    private EventReader eventReader = new EventReader(new ObjectMapper());
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @InjectMocks
+    private VoteSagaListener voteSagaListener;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID reservationId = UUID.randomUUID();
+
+    @Test
+    void handleVoteSagaStart_insufficientYuan_shouldPublishSagaFailure() {
+        // Given
+        byte[] payload = json("{\"sagaId\":\"saga-1\",\"userId\":\"%s\",\"novelId\":7}", userId);
+        when(idempotencyService.processOnce(eq("idempotency:vote-saga-start:saga-1"), eq("VoteSagaStart"), any(Runnable.class)))
+                .thenThrow(new ValidationException("Insufficient Yuan balance"));
+
+        // When
+        voteSagaListener.handleVoteSagaStart(payload);
+
+        // Then
+        verify(kafkaTemplate).send(eq("vote-saga.failed"), eq("saga-1"), any(VoteSagaFailedEvent.class));
+    }
+
+    @Test
+    void handleVoteSagaStart_transientFailure_shouldPropagateForRetry() {
+        // Given
+        byte[] payload = json("{\"sagaId\":\"saga-1\",\"userId\":\"%s\",\"novelId\":7}", userId);
+        when(idempotencyService.processOnce(anyString(), eq("VoteSagaStart"), any(Runnable.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        // When & Then
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> voteSagaListener.handleVoteSagaStart(payload));
+        assertInstanceOf(DataAccessResourceFailureException.class, thrown.getCause());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void handleVoteSagaStart_invalidJson_shouldPropagateParseErrorForDlt() {
+        // Given
+        byte[] payload = "invalid-json".getBytes(StandardCharsets.UTF_8);
+
+        // When & Then: the parse error is excluded from retries, so the record goes straight to the DLT
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> voteSagaListener.handleVoteSagaStart(payload));
+        assertInstanceOf(JsonProcessingException.class, thrown.getCause());
+        verifyNoInteractions(idempotencyService, kafkaTemplate);
+    }
+
+    @Test
+    void handleVoteSagaVoteCreated_confirmationRejected_shouldCompensateAndFailSaga() {
+        // Given
+        byte[] payload = voteCreatedPayload();
+        when(idempotencyService.processOnce(eq("idempotency:vote-saga-confirm:saga-1"), eq("VoteSagaConfirm"), any(Runnable.class)))
+                .thenThrow(new ValidationException("Reservation has expired"));
+
+        // When
+        voteSagaListener.handleVoteSagaVoteCreated(payload);
+
+        // Then
+        verify(kafkaTemplate).send(eq("vote-saga.compensate-yuan"), eq("saga-1"), any(VoteSagaCompensateYuanEvent.class));
+        verify(kafkaTemplate).send(eq("vote-saga.failed"), eq("saga-1"), any(VoteSagaFailedEvent.class));
+    }
+
+    @Test
+    void handleVoteSagaVoteCreated_transientFailure_shouldPropagateWithoutCompensation() {
+        // Given
+        byte[] payload = voteCreatedPayload();
+        when(idempotencyService.processOnce(anyString(), eq("VoteSagaConfirm"), any(Runnable.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        // When & Then
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> voteSagaListener.handleVoteSagaVoteCreated(payload));
+        assertInstanceOf(DataAccessResourceFailureException.class, thrown.getCause());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void handleVoteSagaVoteCreated_invalidJson_shouldPropagateParseErrorForDlt() {
+        // Given
+        byte[] payload = "{\"sagaId\":\"saga-1\"".getBytes(StandardCharsets.UTF_8);
+
+        // When & Then
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> voteSagaListener.handleVoteSagaVoteCreated(payload));
+        assertInstanceOf(JsonProcessingException.class, thrown.getCause());
+        verifyNoInteractions(idempotencyService, yuanReservationService, kafkaTemplate);
+    }
+
+    @Test
+    void handleVoteSagaVoteCreated_shouldConfirmReservationAndAwardExp() {
+        // Given
+        byte[] payload = voteCreatedPayload();
+        when(idempotencyService.processOnce(anyString(), eq("VoteSagaConfirm"), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run(); // Claimed: run the business action
+            return true;
+        });
+
+        // When
+        voteSagaListener.handleVoteSagaVoteCreated(payload);
+
+        // Then
+        verify(yuanReservationService).confirmReservation(reservationId, userId, userProgressRepository);
+        verify(gamificationService).awardExpForVote(userId);
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    private byte[] voteCreatedPayload() {
+        return json("{\"sagaId\":\"saga-1\",\"userId\":\"%s\",\"novelId\":7,\"voteId\":11,\"reservationId\":\"%s\"}",
+                userId, reservationId);
+    }
+
+    private static byte[] json(String format, Object... args) {
+        return String.format(format, args).getBytes(StandardCharsets.UTF_8);
+    }
+}
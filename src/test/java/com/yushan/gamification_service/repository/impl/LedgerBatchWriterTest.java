@@ -0,0 +1,192 @@
+package com.yushan.gamification_service.repository.impl;
+
+import com.yushan.gamification_service.dao.ExpTransactionMapper;
+import com.yushan.gamification_service.dao.YuanTransactionMapper;
+import com.yushan.gamification_service.entity.ExpTransaction;
+import com.yushan.gamification_service.entity.YuanTransaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerBatchWriterTest {
+
+    @Mock
+    private ExpTransactionMapper expTransactionMapper;
+
+    @Mock
+    private YuanTransactionMapper yuanTransactionMapper;
+
+    @InjectMocks
+    private LedgerBatchWriter ledgerBatchWriter;
+
+    private final UUID userId = UUID.randomUUID();
+    private final List<List<ExpTransaction>> expBatches = new ArrayList<>();
+    private final List<List<YuanTransaction>> yuanBatches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(ledgerBatchWriter, "maxBufferedRows", 1000);
+        // The writer clears its buffer after each flush, so keep a copy of what was inserted
+        lenient().doAnswer(invocation -> {
+            expBatches.add(new ArrayList<>(invocation.getArgument(0)));
+            return 0;
+        }).when(expTransactionMapper).insertBatch(anyList());
+        lenient().doAnswer(invocation -> {
+            yuanBatches.add(new ArrayList<>(invocation.getArgument(0)));
+            return 0;
+        }).when(yuanTransactionMapper).insertBatch(anyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            completeTransaction();
+        }
+    }
+
+    @Test
+    void append_shouldReturnFalseWhenTransactionDoesNotDefer() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertFalse(ledgerBatchWriter.append(exp(10.0)));
+        assertFalse(ledgerBatchWriter.append(yuan(1.0)));
+        verifyNoInteractions(expTransactionMapper, yuanTransactionMapper);
+    }
+
+    @Test
+    void deferUntilCommit_shouldBeNoOpWithoutTransaction() {
+        ledgerBatchWriter.deferUntilCommit();
+
+        assertFalse(ledgerBatchWriter.append(exp(10.0)));
+    }
+
+    @Test
+    void beforeCommit_shouldInsertBufferedRowsInAppendOrder() {
+        TransactionSynchronizationManager.initSynchronization();
+        ledgerBatchWriter.deferUntilCommit();
+        ExpTransaction first = exp(10.0);
+        ExpTransaction second = exp(5.0);
+        YuanTransaction yuan = yuan(-1.0);
+
+        assertTrue(ledgerBatchWriter.append(first));
+        assertTrue(ledgerBatchWriter.append(yuan));
+        assertTrue(ledgerBatchWriter.append(second));
+        verifyNoInteractions(expTransactionMapper, yuanTransactionMapper);
+
+        commitTransaction();
+
+        assertEquals(List.of(List.of(first, second)), expBatches);
+        assertEquals(List.of(List.of(yuan)), yuanBatches);
+    }
+
+    @Test
+    void flush_shouldWriteBufferedRowsAndKeepDeferring() {
+        TransactionSynchronizationManager.initSynchronization();
+        ledgerBatchWriter.deferUntilCommit();
+        ledgerBatchWriter.append(exp(10.0));
+
+        ledgerBatchWriter.flush();
+        ledgerBatchWriter.append(exp(20.0));
+        commitTransaction();
+
+        assertEquals(2, expBatches.size());
+        assertEquals(20.0, expBatches.get(1).get(0).getAmount());
+        verify(yuanTransactionMapper, never()).insertBatch(anyList());
+    }
+
+    @Test
+    void append_shouldFlushWhenBufferIsFull() {
+        ReflectionTestUtils.setField(ledgerBatchWriter, "maxBufferedRows", 2);
+        TransactionSynchronizationManager.initSynchronization();
+        ledgerBatchWriter.deferUntilCommit();
+
+        ledgerBatchWriter.append(exp(1.0));
+        ledgerBatchWriter.append(yuan(2.0));
+
+        assertEquals(1, expBatches.size());
+        assertEquals(1, yuanBatches.size());
+    }
+
+    @Test
+    void appendAll_shouldSplitRowsIntoBoundedInserts() {
+        ReflectionTestUtils.setField(ledgerBatchWriter, "maxBufferedRows", 2);
+        TransactionSynchronizationManager.initSynchronization();
+        ledgerBatchWriter.deferUntilCommit();
+        List<YuanTransaction> rows = List.of(yuan(1.0), yuan(2.0), yuan(3.0), yuan(4.0), yuan(5.0));
+
+        assertTrue(ledgerBatchWriter.appendAll(List.of(), rows));
+        assertEquals(2, yuanBatches.size());
+        commitTransaction();
+
+        assertEquals(List.of(rows.subList(0, 2), rows.subList(2, 4), rows.subList(4, 5)), yuanBatches);
+        verifyNoInteractions(expTransactionMapper);
+    }
+
+    @Test
+    void appendAll_shouldReturnFalseWhenTransactionDoesNotDefer() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertFalse(ledgerBatchWriter.appendAll(List.of(exp(1.0)), List.of(yuan(1.0))));
+        verifyNoInteractions(expTransactionMapper, yuanTransactionMapper);
+    }
+
+    @Test
+    void afterCompletion_shouldDropBufferOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        ledgerBatchWriter.deferUntilCommit();
+        ledgerBatchWriter.append(exp(10.0));
+
+        completeTransaction();
+
+        verifyNoInteractions(expTransactionMapper);
+        TransactionSynchronizationManager.initSynchronization();
+        assertFalse(ledgerBatchWriter.append(exp(10.0)));
+    }
+
+    private void commitTransaction() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.beforeCommit(false);
+        }
+        completeTransaction();
+    }
+
+    private void completeTransaction() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+
+    private ExpTransaction exp(double amount) {
+        ExpTransaction transaction = new ExpTransaction();
+        transaction.setUserId(userId);
+        transaction.setAmount(amount);
+        transaction.setReason("test");
+        return transaction;
+    }
+
+    private YuanTransaction yuan(double amount) {
+        YuanTransaction transaction = new YuanTransaction();
+        transaction.setUserId(userId);
+        transaction.setAmount(amount);
+        transaction.setDescription("test");
+        return transaction;
+    }
+}
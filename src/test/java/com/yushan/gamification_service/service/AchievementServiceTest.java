@@ -39,26 +39,26 @@ public class AchievementServiceTest {
     @Test
     void checkAndUnlockLoginAchievements_FirstLogin_UnlocksAchievement() {
         // Given
-        when(userProgressRepository.findUserAchievementByUserIdAndAchievementId(eq(testUserId), eq("WELCOME_TO_YUSHAN")))
-            .thenReturn(null);
+        when(userProgressRepository.saveUserAchievementIfAbsent(testUserId, "WELCOME_TO_YUSHAN")).thenReturn(true);
 
         // When
         achievementService.checkAndUnlockLoginAchievements(testUserId);
 
         // Then
-        verify(userProgressRepository).saveUserAchievement(any(UserAchievement.class));
+        verify(userProgressRepository).saveUserAchievementIfAbsent(testUserId, "WELCOME_TO_YUSHAN");
+        verify(userProgressRepository, never()).findUserAchievementByUserIdAndAchievementId(any(), any());
     }
 
     @Test
     void checkAndUnlockLoginAchievements_AlreadyUnlocked_DoesNothing() {
         // Given
-        when(userProgressRepository.findUserAchievementByUserIdAndAchievementId(eq(testUserId), eq("WELCOME_TO_YUSHAN")))
-            .thenReturn(1L);
+        when(userProgressRepository.saveUserAchievementIfAbsent(testUserId, "WELCOME_TO_YUSHAN")).thenReturn(false);
 
         // When
         achievementService.checkAndUnlockLoginAchievements(testUserId);
 
         // Then
+        verify(userProgressRepository).saveUserAchievementIfAbsent(testUserId, "WELCOME_TO_YUSHAN");
         verify(userProgressRepository, never()).saveUserAchievement(any(UserAchievement.class));
     }
 
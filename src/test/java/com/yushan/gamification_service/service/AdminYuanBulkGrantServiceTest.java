@@ -0,0 +1,144 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dto.admin.AdminAddYuanRequestDTO;
+import com.yushan.gamification_service.entity.YuanTransaction;
+import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.repository.UserProgressRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdminYuanBulkGrantServiceTest {
+
+    @Mock
+    private UserProgressRepository userProgressRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private BulkJobService bulkJobService;
+
+    @InjectMocks
+    private AdminYuanBulkGrantService adminYuanBulkGrantService;
+
+    private final UUID user1 = UUID.randomUUID();
+    private final UUID user2 = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(adminYuanBulkGrantService, "chunkSize", 2);
+        ReflectionTestUtils.setField(adminYuanBulkGrantService, "maxGrants", 10);
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    void submit_shouldRejectWholeRequestWhenAnyGrantIsInvalid() {
+        List<AdminAddYuanRequestDTO> grants = List.of(
+                new AdminAddYuanRequestDTO(user1, 5.0, null),
+                new AdminAddYuanRequestDTO(user2, -1.0, null),
+                new AdminAddYuanRequestDTO(null, 1.0, null));
+
+        ValidationException e = assertThrows(ValidationException.class, () -> adminYuanBulkGrantService.submit(grants));
+
+        assertTrue(e.getMessage().startsWith("2 invalid grants"));
+        assertTrue(e.getMessage().contains("grant 2: amount must be greater than 0"));
+        assertTrue(e.getMessage().contains("grant 3: userId must not be null"));
+        verifyNoInteractions(bulkJobService);
+    }
+
+    @Test
+    void submit_shouldRejectTooManyGrants() {
+        List<AdminAddYuanRequestDTO> grants = java.util.Collections.nCopies(11, new AdminAddYuanRequestDTO(user1, 1.0, null));
+
+        assertThrows(ValidationException.class, () -> adminYuanBulkGrantService.submit(grants));
+    }
+
+    @Test
+    void grant_shouldWriteChunksAndReportFailedChunk() {
+        // Given
+        BulkJob job = new BulkJob(AdminYuanBulkGrantService.JOB_TYPE);
+        List<AdminAddYuanRequestDTO> grants = List.of(
+                new AdminAddYuanRequestDTO(user1, 5.0, "Promotion"),
+                new AdminAddYuanRequestDTO(user2, 3.0, null),
+                new AdminAddYuanRequestDTO(user1, 1.0, null),
+                new AdminAddYuanRequestDTO(user2, 2.0, null),
+                new AdminAddYuanRequestDTO(user1, 4.0, null));
+        when(userProgressRepository.saveRewardTransactionsBatch(eq(List.of()), anyList()))
+                .thenReturn(List.of())
+                .thenThrow(new RuntimeException("deadlock detected"))
+                .thenReturn(List.of());
+
+        // When
+        adminYuanBulkGrantService.grant(grants, job);
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<YuanTransaction>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(userProgressRepository, times(3)).saveRewardTransactionsBatch(eq(List.of()), chunks.capture());
+        verify(userProgressRepository, times(3)).deferLedgerWrites();
+        List<YuanTransaction> first = chunks.getAllValues().get(0);
+        assertEquals(2, first.size());
+        assertEquals("Promotion", first.get(0).getDescription());
+        assertEquals("Admin adjustment", first.get(1).getDescription());
+
+        assertEquals(3, job.getProcessedRows());
+        assertEquals(2, job.getFailedRows());
+        assertEquals(3, job.toDTO().getFailures().get(0).getFirstRow());
+        assertEquals("deadlock detected", job.toDTO().getFailures().get(0).getMessage());
+    }
+
+    @Test
+    void submitFile_shouldReportInvalidLinesByLineNumber() {
+        MockMultipartFile file = new MockMultipartFile("file", "grants.csv", "text/csv",
+                ("user_id,amount,reason\n"
+                        + user1 + ",5,\"Promo, October\"\n"
+                        + "not-a-uuid,5\n"
+                        + user2 + ",0\n").getBytes(StandardCharsets.UTF_8));
+
+        ValidationException e = assertThrows(ValidationException.class, () -> adminYuanBulkGrantService.submitFile(file));
+
+        assertTrue(e.getMessage().startsWith("2 invalid grants"));
+        assertTrue(e.getMessage().contains("line 3:"));
+        assertTrue(e.getMessage().contains("line 4: amount must be greater than 0"));
+    }
+
+    @Test
+    void submitFile_shouldSubmitParsedGrants() {
+        MockMultipartFile file = new MockMultipartFile("file", "grants.csv", "text/csv",
+                (user1 + ",5,\"Promo, October\"\n" + user2 + ",2.5\n").getBytes(StandardCharsets.UTF_8));
+
+        adminYuanBulkGrantService.submitFile(file);
+
+        verify(bulkJobService).submit(eq(AdminYuanBulkGrantService.JOB_TYPE), any());
+    }
+
+    @Test
+    void parseLine_shouldReadOptionalReason() {
+        AdminAddYuanRequestDTO grant = AdminYuanBulkGrantService.parseLine(user1 + ",5,\"Promo, October\"");
+
+        assertEquals(user1, grant.getUserId());
+        assertEquals(5.0, grant.getAmount());
+        assertEquals("Promo, October", grant.getReason());
+        assertNull(AdminYuanBulkGrantService.parseLine(user1 + ",5").getReason());
+    }
+}
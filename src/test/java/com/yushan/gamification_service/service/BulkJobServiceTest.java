@@ -0,0 +1,78 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dto.admin.BulkJobDTO;
+import com.yushan.gamification_service.enums.BulkJobStatus;
+import com.yushan.gamification_service.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkJobServiceTest {
+
+    private BulkJobService bulkJobService;
+
+    @BeforeEach
+    void setUp() {
+        bulkJobService = new BulkJobService();
+        ReflectionTestUtils.setField(bulkJobService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(bulkJobService, "threads", 1);
+        ReflectionTestUtils.setField(bulkJobService, "retentionMinutes", 60L);
+        bulkJobService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulkJobService.shutdown();
+    }
+
+    @Test
+    void submit_shouldRunJobAndReportProgress() throws Exception {
+        BulkJobDTO started = bulkJobService.submit("TEST", job -> {
+            job.addProcessed(10);
+            job.addFailedChunk(11, 5, "bad chunk");
+        });
+
+        BulkJobDTO finished = awaitFinished(started.getJobId());
+
+        assertEquals(BulkJobStatus.COMPLETED_WITH_ERRORS, finished.getStatus());
+        assertEquals(10, finished.getProcessedRows());
+        assertEquals(5, finished.getFailedRows());
+        assertEquals("bad chunk", finished.getFailures().get(0).getMessage());
+        assertNotNull(finished.getFinishedAt());
+    }
+
+    @Test
+    void submit_shouldMarkJobFailedWhenWorkThrows() throws Exception {
+        BulkJobDTO started = bulkJobService.submit("TEST", job -> {
+            throw new IllegalStateException("database unavailable");
+        });
+
+        BulkJobDTO finished = awaitFinished(started.getJobId());
+
+        assertEquals(BulkJobStatus.FAILED, finished.getStatus());
+        assertEquals("database unavailable", finished.getError());
+    }
+
+    @Test
+    void getJob_shouldThrowForUnknownJob() {
+        assertThrows(ResourceNotFoundException.class, () -> bulkJobService.getJob(UUID.randomUUID()));
+    }
+
+    private BulkJobDTO awaitFinished(UUID jobId) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            BulkJobDTO job = bulkJobService.getJob(jobId);
+            if (job.getStatus() != BulkJobStatus.RUNNING) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        fail("Job did not finish");
+        return null;
+    }
+}
@@ -0,0 +1,162 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.exception.ValidationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeadLetterReplayServiceTest {
+
+    private static final String TOPIC = "user.events";
+    private static final TopicPartition DLT_PARTITION = new TopicPartition(TOPIC + ".DLT", 0);
+
+    @Mock
+    private KafkaTemplate<Object, Object> deadLetterKafkaTemplate;
+
+    @Mock
+    private BulkJobService bulkJobService;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    @InjectMocks
+    private DeadLetterReplayService deadLetterReplayService;
+
+    private MockConsumer<byte[], byte[]> consumer;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(deadLetterReplayService, "deadLetterKafkaTemplate", deadLetterKafkaTemplate);
+        ReflectionTestUtils.setField(deadLetterReplayService, "maxRecordsLimit", 1000);
+        ReflectionTestUtils.setField(deadLetterReplayService, "pollTimeoutMs", 10L);
+        ReflectionTestUtils.setField(deadLetterReplayService, "sendTimeoutSeconds", 5L);
+
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized void close() {
+                // keep the consumer readable for assertions
+            }
+        };
+        consumer.updatePartitions(DLT_PARTITION.topic(),
+                List.of(new PartitionInfo(DLT_PARTITION.topic(), 0, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(DLT_PARTITION, 0L));
+        consumer.updateEndOffsets(Map.of(DLT_PARTITION, 3L));
+        consumer.schedulePollTask(() -> {
+            for (long offset = 0; offset < 4; offset++) {
+                consumer.addRecord(deadLetter(offset));
+            }
+        });
+        lenient().doReturn(consumer).when(deadLetterReplayService).createConsumer();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void replay_shouldRepublishRecordsUpToEndOffsetsAndCommit() {
+        when(deadLetterKafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        BulkJob job = new BulkJob(DeadLetterReplayService.JOB_TYPE);
+
+        deadLetterReplayService.replay(TOPIC, 100, job);
+
+        // The record at offset 3 arrived after the replay started and is left for the next replay
+        ArgumentCaptor<ProducerRecord<Object, Object>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(deadLetterKafkaTemplate, times(3)).send(sent.capture());
+        ProducerRecord<Object, Object> first = sent.getAllValues().get(0);
+        assertEquals(TOPIC, first.topic());
+        assertArrayEquals("key-0".getBytes(StandardCharsets.UTF_8), (byte[]) first.key());
+        assertArrayEquals("value-0".getBytes(StandardCharsets.UTF_8), (byte[]) first.value());
+        assertNotNull(first.headers().lastHeader("traceparent"));
+        assertNull(first.headers().lastHeader("kafka_dlt-exception-message"));
+        assertNull(first.headers().lastHeader("retry_topic-attempts"));
+
+        assertEquals(3, job.getProcessedRows());
+        assertEquals(3L, committedOffset());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void replay_shouldStopAtMaxRecords() {
+        when(deadLetterKafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        BulkJob job = new BulkJob(DeadLetterReplayService.JOB_TYPE);
+
+        deadLetterReplayService.replay(TOPIC, 2, job);
+
+        verify(deadLetterKafkaTemplate, times(2)).send(any(ProducerRecord.class));
+        assertEquals(2, job.getProcessedRows());
+        assertEquals(2L, committedOffset());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void replay_shouldNotCommitWhenPublishingFails() {
+        when(deadLetterKafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+        BulkJob job = new BulkJob(DeadLetterReplayService.JOB_TYPE);
+
+        assertThrows(IllegalStateException.class, () -> deadLetterReplayService.replay(TOPIC, 100, job));
+
+        assertEquals(0, job.getProcessedRows());
+        assertEquals(3, job.getFailedRows());
+        assertTrue(consumer.committed(Set.of(DLT_PARTITION)).isEmpty()
+                || consumer.committed(Set.of(DLT_PARTITION)).get(DLT_PARTITION) == null);
+    }
+
+    @Test
+    void submit_shouldRejectUnknownTopic() {
+        assertThrows(ValidationException.class, () -> deadLetterReplayService.submit("unknown-topic", 10));
+        verifyNoInteractions(bulkJobService);
+    }
+
+    @Test
+    void submit_shouldRejectMaxRecordsAboveLimit() {
+        assertThrows(ValidationException.class, () -> deadLetterReplayService.submit(TOPIC, 5000));
+        verifyNoInteractions(bulkJobService);
+    }
+
+    private long committedOffset() {
+        return Optional.ofNullable(consumer.committed(Set.of(DLT_PARTITION)).get(DLT_PARTITION))
+                .map(OffsetAndMetadata::offset)
+                .orElse(-1L);
+    }
+
+    private static ConsumerRecord<byte[], byte[]> deadLetter(long offset) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(new RecordHeader("traceparent", "00-abc".getBytes(StandardCharsets.UTF_8)));
+        headers.add(new RecordHeader("kafka_dlt-exception-message", "boom".getBytes(StandardCharsets.UTF_8)));
+        headers.add(new RecordHeader("retry_topic-attempts", new byte[] {0, 0, 0, 4}));
+        return new ConsumerRecord<>(DLT_PARTITION.topic(), 0, offset, 0L, TimestampType.CREATE_TIME, 0, 0,
+                ("key-" + offset).getBytes(StandardCharsets.UTF_8),
+                ("value-" + offset).getBytes(StandardCharsets.UTF_8),
+                headers, Optional.empty());
+    }
+}
@@ -0,0 +1,77 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dto.event.EngagementReward;
+import com.yushan.gamification_service.enums.EngagementRewardType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EngagementRewardBatchServiceTest {
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private GamificationService gamificationService;
+
+    @InjectMocks
+    private EngagementRewardBatchService engagementRewardBatchService;
+
+    private final UUID testUserId = UUID.randomUUID();
+
+    @Test
+    void filterUnprocessed_shouldDropDuplicatesAndProcessedKeys() {
+        // Given
+        EngagementReward first = new EngagementReward("key:1", testUserId, 1L);
+        EngagementReward duplicate = new EngagementReward("key:1", testUserId, 1L);
+        EngagementReward processed = new EngagementReward("key:2", testUserId, 2L);
+        EngagementReward fresh = new EngagementReward("key:3", testUserId, 3L);
+        when(idempotencyService.findProcessedKeys(Set.of("key:1", "key:2", "key:3"))).thenReturn(Set.of("key:2"));
+
+        // When
+        List<EngagementReward> result = engagementRewardBatchService.filterUnprocessed(List.of(first, duplicate, processed, fresh));
+
+        // Then
+        assertEquals(List.of(first, fresh), result);
+    }
+
+    @Test
+    void award_shouldOnlyAwardClaimedKeys() {
+        // Given
+        EngagementReward claimed = new EngagementReward("key:1", testUserId, 1L);
+        EngagementReward lost = new EngagementReward("key:2", testUserId, 2L);
+        when(idempotencyService.claimAll(List.of("key:1", "key:2"), "CommentReward")).thenReturn(Set.of("key:1"));
+
+        // When
+        List<EngagementReward> awarded = engagementRewardBatchService.award(EngagementRewardType.COMMENT, List.of(claimed, lost));
+
+        // Then
+        assertEquals(List.of(claimed), awarded);
+        verify(gamificationService).awardEngagementBatch(EngagementRewardType.COMMENT, List.of(claimed));
+    }
+
+    @Test
+    void award_nothingClaimed_shouldNotWriteLedger() {
+        // Given
+        EngagementReward lost = new EngagementReward("key:1", testUserId, 1L);
+        when(idempotencyService.claimAll(anyList(), eq("ReviewReward"))).thenReturn(Set.of());
+
+        // When
+        List<EngagementReward> awarded = engagementRewardBatchService.award(EngagementRewardType.REVIEW, List.of(lost));
+
+        // Then
+        assertTrue(awarded.isEmpty());
+        verifyNoInteractions(gamificationService);
+    }
+}
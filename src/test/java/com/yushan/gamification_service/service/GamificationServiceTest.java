@@ -2,17 +2,23 @@ package com.yushan.gamification_service.service;
 
 import com.yushan.gamification_service.repository.UserProgressRepository;
 import com.yushan.gamification_service.dto.achievement.AchievementDTO;
+import com.yushan.gamification_service.dto.common.CursorPageResponseDTO;
 import com.yushan.gamification_service.dto.common.PageResponseDTO;
+import com.yushan.gamification_service.dto.event.EngagementReward;
 import com.yushan.gamification_service.dto.event.LevelUpEvent;
 import com.yushan.gamification_service.dto.stats.GamificationStatsDTO;
 import com.yushan.gamification_service.dto.transaction.AdminYuanTransactionDTO;
+import com.yushan.gamification_service.dto.transaction.YuanTransactionDTO;
 import com.yushan.gamification_service.dto.vote.VoteCheckResponseDTO;
 import com.yushan.gamification_service.entity.*;
+import com.yushan.gamification_service.enums.EngagementRewardType;
 import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.util.TransactionCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -21,6 +27,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -46,6 +53,9 @@ public class GamificationServiceTest {
     @Mock
     private TransactionAwareKafkaPublisher transactionAwareKafkaPublisher;
 
+    @Mock
+    private LeaderboardService leaderboardService;
+
     @InjectMocks
     private GamificationService gamificationService;
 
@@ -79,63 +89,75 @@ public class GamificationServiceTest {
     @Test
     void processUserLogin_FirstLoginOfDay_Success() {
         // Given
-        when(userProgressRepository.findDailyRewardLogByUserId(testUserId)).thenReturn(Optional.empty());
-        when(userProgressRepository.sumExpAmountByUserId(testUserId)).thenReturn(0.0);
+        when(userProgressRepository.claimDailyReward(testUserId, LocalDate.now())).thenReturn(0.0);
+        when(userProgressRepository.saveRewardTransactions(any(ExpTransaction.class), any(YuanTransaction.class))).thenReturn(5.0);
         when(levelService.calculateLevel(anyDouble())).thenReturn(1);
 
         // When
         gamificationService.processUserLogin(testUserId);
 
         // Then
-        verify(userProgressRepository).saveExpTransaction(any(ExpTransaction.class));
-        verify(userProgressRepository).saveYuanTransaction(any(YuanTransaction.class));
+        ArgumentCaptor<ExpTransaction> expCaptor = ArgumentCaptor.forClass(ExpTransaction.class);
+        ArgumentCaptor<YuanTransaction> yuanCaptor = ArgumentCaptor.forClass(YuanTransaction.class);
+        verify(userProgressRepository).saveRewardTransactions(expCaptor.capture(), yuanCaptor.capture());
+        assertEquals(5.0, expCaptor.getValue().getAmount());
+        assertEquals(1.0, yuanCaptor.getValue().getAmount());
         verify(achievementService).checkAndUnlockLoginAchievements(testUserId);
-        verify(userProgressRepository).saveDailyRewardLog(any(DailyRewardLog.class));
-        verify(userProgressRepository, never()).updateDailyRewardLog(any());
     }
 
     @Test
-    void processUserLogin_PreviousDayLogin_Success() {
+    void processUserLogin_PreviousDayLogin_YuanMatchesLevel() {
         // Given
-        DailyRewardLog oldLog = new DailyRewardLog();
-        oldLog.setUserId(testUserId);
-        oldLog.setLastRewardDate(LocalDate.now().minusDays(1));
-        when(userProgressRepository.findDailyRewardLogByUserId(testUserId)).thenReturn(Optional.of(oldLog));
-        when(userProgressRepository.sumExpAmountByUserId(testUserId)).thenReturn(10.0);
-        when(levelService.calculateLevel(anyDouble())).thenReturn(1);
+        when(userProgressRepository.claimDailyReward(testUserId, LocalDate.now())).thenReturn(250.0);
+        when(userProgressRepository.saveRewardTransactions(any(ExpTransaction.class), any(YuanTransaction.class))).thenReturn(255.0);
+        when(levelService.calculateLevel(anyDouble())).thenReturn(3);
 
         // When
         gamificationService.processUserLogin(testUserId);
 
         // Then
-        verify(userProgressRepository).saveExpTransaction(any(ExpTransaction.class));
-        verify(userProgressRepository).saveYuanTransaction(any(YuanTransaction.class));
-        verify(userProgressRepository).updateDailyRewardLog(any(DailyRewardLog.class));
-        verify(userProgressRepository, never()).saveDailyRewardLog(any());
+        ArgumentCaptor<YuanTransaction> yuanCaptor = ArgumentCaptor.forClass(YuanTransaction.class);
+        verify(userProgressRepository).saveRewardTransactions(any(ExpTransaction.class), yuanCaptor.capture());
+        assertEquals(3.0, yuanCaptor.getValue().getAmount());
+        assertEquals("Daily Login Reward", yuanCaptor.getValue().getDescription());
     }
 
     @Test
     void processUserLogin_AlreadyLoggedInToday_NoReward() {
         // Given
-        DailyRewardLog existingLog = new DailyRewardLog();
-        existingLog.setUserId(testUserId);
-        existingLog.setLastRewardDate(LocalDate.now());
-        when(userProgressRepository.findDailyRewardLogByUserId(testUserId)).thenReturn(Optional.of(existingLog));
+        when(userProgressRepository.claimDailyReward(testUserId, LocalDate.now())).thenReturn(null);
 
         // When
         gamificationService.processUserLogin(testUserId);
 
         // Then
+        verify(userProgressRepository, never()).saveRewardTransactions(any(), any());
         verify(userProgressRepository, never()).saveExpTransaction(any());
         verify(userProgressRepository, never()).saveYuanTransaction(any());
         verify(achievementService).checkAndUnlockLoginAchievements(testUserId);
     }
 
+    @Test
+    void processUserLogin_FirstLoginOfDay_TwoRepositoryRoundTrips() {
+        // Given
+        when(userProgressRepository.claimDailyReward(testUserId, LocalDate.now())).thenReturn(10.0);
+        when(userProgressRepository.saveRewardTransactions(any(ExpTransaction.class), any(YuanTransaction.class))).thenReturn(15.0);
+        when(levelService.calculateLevel(anyDouble())).thenReturn(1);
+
+        // When
+        gamificationService.processUserLogin(testUserId);
+
+        // Then - claim + combined ledger write, no reward-log lookup or ledger SUMs
+        verify(userProgressRepository).claimDailyReward(testUserId, LocalDate.now());
+        verify(userProgressRepository).saveRewardTransactions(any(ExpTransaction.class), any(YuanTransaction.class));
+        verifyNoMoreInteractions(userProgressRepository);
+    }
+
     @Test
     void processUserLogin_LevelUp_EventPublished() {
         // Given
-        when(userProgressRepository.findDailyRewardLogByUserId(testUserId)).thenReturn(Optional.empty());
-        when(userProgressRepository.sumExpAmountByUserId(testUserId)).thenReturn(98.0, 103.0); // Before and after
+        when(userProgressRepository.claimDailyReward(testUserId, LocalDate.now())).thenReturn(98.0);
+        when(userProgressRepository.saveRewardTransactions(any(ExpTransaction.class), any(YuanTransaction.class))).thenReturn(103.0);
         when(levelService.calculateLevel(98.0)).thenReturn(1);
         when(levelService.calculateLevel(103.0)).thenReturn(2);
 
@@ -149,7 +171,7 @@ public class GamificationServiceTest {
     @Test
     void processUserComment_Success() {
         // Given
-        when(userProgressRepository.sumExpAmountByUserId(testUserId)).thenReturn(10.0, 15.0);
+        when(userProgressRepository.saveExpTransaction(any(ExpTransaction.class))).thenReturn(15.0);
         when(levelService.calculateLevel(anyDouble())).thenReturn(1);
 
         // When
@@ -157,14 +179,16 @@ public class GamificationServiceTest {
 
         // Then
         verify(userProgressRepository).saveExpTransaction(any(ExpTransaction.class));
+        verify(userProgressRepository, never()).sumExpAmountByUserId(any());
         verify(achievementService).checkAndUnlockCommentAchievements(testUserId, 1L);
+        verify(leaderboardService).recordExpAward(testUserId, 15.0, 5.0);
         verify(kafkaTemplate, never()).send(any(), any());
     }
 
     @Test
     void processUserReview_Success() {
         // Given
-        when(userProgressRepository.sumExpAmountByUserId(testUserId)).thenReturn(10.0, 15.0);
+        when(userProgressRepository.saveExpTransaction(any(ExpTransaction.class))).thenReturn(15.0);
         when(levelService.calculateLevel(anyDouble())).thenReturn(1);
 
         // When
@@ -178,7 +202,7 @@ public class GamificationServiceTest {
     @Test
     void processUserVote_Success() {
         // Given
-        when(userProgressRepository.sumExpAmountByUserId(testUserId)).thenReturn(10.0, 13.0);
+        when(userProgressRepository.saveExpTransaction(any(ExpTransaction.class))).thenReturn(13.0);
         when(levelService.calculateLevel(anyDouble())).thenReturn(1);
 
         // When
@@ -189,11 +213,45 @@ public class GamificationServiceTest {
         verify(userProgressRepository).saveYuanTransaction(any(YuanTransaction.class));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void awardEngagementBatch_Votes_AggregatesPerUserAndDeductsYuan() {
+        // Given
+        UUID otherUserId = UUID.randomUUID();
+        List<EngagementReward> rewards = List.of(
+                new EngagementReward("vote:1", testUserId, 1L),
+                new EngagementReward("vote:2", testUserId, 2L),
+                new EngagementReward("vote:3", otherUserId, 3L));
+        when(userProgressRepository.saveRewardTransactionsBatch(anyList(), anyList())).thenReturn(List.of(
+                new UserProgress(testUserId, 101.0, 8.0),
+                new UserProgress(otherUserId, 20.0, 4.0)));
+        when(levelService.calculateLevel(101.0)).thenReturn(2);
+        when(levelService.calculateLevel(95.0)).thenReturn(1);
+        when(levelService.calculateLevel(20.0)).thenReturn(1);
+        when(levelService.calculateLevel(17.0)).thenReturn(1);
+
+        // When
+        gamificationService.awardEngagementBatch(EngagementRewardType.VOTE, rewards);
+
+        // Then
+        ArgumentCaptor<List<ExpTransaction>> expCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<YuanTransaction>> yuanCaptor = ArgumentCaptor.forClass(List.class);
+        InOrder inOrder = inOrder(userProgressRepository);
+        inOrder.verify(userProgressRepository).deferLedgerWrites();
+        inOrder.verify(userProgressRepository).saveRewardTransactionsBatch(expCaptor.capture(), yuanCaptor.capture());
+        assertEquals(3, expCaptor.getValue().size());
+        assertEquals(3.0, expCaptor.getValue().get(0).getAmount());
+        assertEquals(3, yuanCaptor.getValue().size());
+        assertEquals(-1.0, yuanCaptor.getValue().get(0).getAmount());
+        verify(transactionAwareKafkaPublisher, times(1)).publishAfterCommit(any(Runnable.class));
+        verifyNoInteractions(achievementService);
+    }
+
     @Test
     void getGamificationStatsForUser_WithData() {
         // Given
-        when(userProgressRepository.sumExpAmountByUserId(testUserId)).thenReturn(150.0);
-        when(userProgressRepository.sumYuanAmountByUserId(testUserId)).thenReturn(25.5);
+        when(userProgressRepository.findUserProgressByUserId(testUserId))
+                .thenReturn(Optional.of(new UserProgress(testUserId, 150.0, 25.5)));
         when(levelService.calculateLevel(150.0)).thenReturn(2);
         when(levelService.getExpForNextLevel(2)).thenReturn(500.0);
 
@@ -204,13 +262,14 @@ public class GamificationServiceTest {
         assertEquals(150.0, stats.getCurrentExp());
         assertEquals(500.0, stats.getTotalExpForNextLevel());
         assertEquals(25.5, stats.getYuanBalance());
+        verify(userProgressRepository, never()).sumExpAmountByUserId(any());
+        verify(userProgressRepository, never()).sumYuanAmountByUserId(any());
     }
 
     @Test
     void getGamificationStatsForUser_NoData() {
         // Given
-        when(userProgressRepository.sumExpAmountByUserId(testUserId)).thenReturn(null);
-        when(userProgressRepository.sumYuanAmountByUserId(testUserId)).thenReturn(null);
+        when(userProgressRepository.findUserProgressByUserId(testUserId)).thenReturn(Optional.empty());
         when(levelService.calculateLevel(0.0)).thenReturn(1);
         when(levelService.getExpForNextLevel(1)).thenReturn(100.0);
 
@@ -271,7 +330,7 @@ public class GamificationServiceTest {
     @Test
     void rewardComment_Success() {
         // Given
-        when(userProgressRepository.sumExpAmountByUserId(testUserId)).thenReturn(10.0, 15.0);
+        when(userProgressRepository.saveExpTransaction(any(ExpTransaction.class))).thenReturn(15.0);
         when(levelService.calculateLevel(anyDouble())).thenReturn(1);
 
         // When
@@ -284,7 +343,7 @@ public class GamificationServiceTest {
     @Test
     void rewardReview_Success() {
         // Given
-        when(userProgressRepository.sumExpAmountByUserId(testUserId)).thenReturn(10.0, 15.0);
+        when(userProgressRepository.saveExpTransaction(any(ExpTransaction.class))).thenReturn(15.0);
         when(levelService.calculateLevel(anyDouble())).thenReturn(1);
 
         // When
@@ -297,7 +356,7 @@ public class GamificationServiceTest {
     @Test
     void rewardVote_Success() {
         // Given
-        when(userProgressRepository.sumExpAmountByUserId(testUserId)).thenReturn(10.0, 13.0);
+        when(userProgressRepository.saveExpTransaction(any(ExpTransaction.class))).thenReturn(13.0);
         when(levelService.calculateLevel(anyDouble())).thenReturn(1);
 
         // When
@@ -310,7 +369,8 @@ public class GamificationServiceTest {
     @Test
     void checkVoteEligibility_CanVote() {
         // Given
-        when(userProgressRepository.sumYuanAmountByUserId(testUserId)).thenReturn(10.0);
+        when(userProgressRepository.findUserProgressByUserId(testUserId))
+                .thenReturn(Optional.of(new UserProgress(testUserId, 0.0, 10.0)));
 
         // When
         VoteCheckResponseDTO response = gamificationService.checkVoteEligibility(testUserId);
@@ -323,19 +383,36 @@ public class GamificationServiceTest {
     @Test
     void checkVoteEligibility_CannotVote() {
         // Given
-        when(userProgressRepository.sumYuanAmountByUserId(testUserId)).thenReturn(0.5);
+        when(userProgressRepository.findUserProgressByUserId(testUserId))
+                .thenReturn(Optional.of(new UserProgress(testUserId, 0.0, 0.5)));
+
+        // When
+        VoteCheckResponseDTO response = gamificationService.checkVoteEligibility(testUserId);
+
+        // Then
+        assertFalse(response.isCanVote());
+    }
+
+    @Test
+    void checkVoteEligibility_BalanceHeldByReservations_CannotVote() {
+        // Given
+        UserProgress progress = new UserProgress(testUserId, 0.0, 3.0);
+        progress.setYuanReserved(2.5);
+        when(userProgressRepository.findUserProgressByUserId(testUserId)).thenReturn(Optional.of(progress));
 
         // When
         VoteCheckResponseDTO response = gamificationService.checkVoteEligibility(testUserId);
 
         // Then
         assertFalse(response.isCanVote());
+        assertEquals(0.5, response.getCurrentYuanBalance());
     }
 
     @Test
     void checkVoteEligibility_NullBalance() {
         // Given
-        when(userProgressRepository.sumYuanAmountByUserId(testUserId)).thenReturn(null);
+        when(userProgressRepository.findUserProgressByUserId(testUserId))
+                .thenReturn(Optional.of(new UserProgress(testUserId, null, null)));
 
         // When
         VoteCheckResponseDTO response = gamificationService.checkVoteEligibility(testUserId);
@@ -482,4 +559,85 @@ public class GamificationServiceTest {
         verify(userProgressRepository, never()).sumExpAmountGroupedByUsers(any());
     }
 
+
+    private static YuanTransaction yuanRow(long id, OffsetDateTime createdAt) {
+        YuanTransaction transaction = new YuanTransaction();
+        transaction.setId(id);
+        transaction.setAmount(1.0);
+        transaction.setCreatedAt(createdAt);
+        return transaction;
+    }
+
+    @Test
+    void getTransactionHistoryPage_shouldReturnNextCursorFromLastRowShown() {
+        // Given: size + 1 rows means another page exists
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        when(userProgressRepository.findYuanTransactionsByUserIdAfter(testUserId, null, 3))
+                .thenReturn(List.of(yuanRow(9, now), yuanRow(8, now), yuanRow(7, now.minusSeconds(1))));
+
+        // When
+        CursorPageResponseDTO<YuanTransactionDTO> page = gamificationService.getTransactionHistoryPage(testUserId, null, 2, false);
+
+        // Then
+        assertEquals(2, page.getContent().size());
+        assertTrue(page.isHasNext());
+        assertEquals(TransactionCursor.of(now, 8L), TransactionCursor.decode(page.getNextCursor()));
+        assertNull(page.getTotalElements());
+        verify(userProgressRepository, never()).countYuanTransactionsByUserId(any());
+    }
+
+    @Test
+    void getTransactionHistoryPage_lastPage_shouldHaveNoCursorAndExactTotal() {
+        // Given
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        TransactionCursor cursor = TransactionCursor.of(now, 8L);
+        when(userProgressRepository.findYuanTransactionsByUserIdAfter(testUserId, cursor, 3))
+                .thenReturn(List.of(yuanRow(7, now)));
+        when(userProgressRepository.countYuanTransactionsByUserId(testUserId)).thenReturn(3L);
+
+        // When
+        CursorPageResponseDTO<YuanTransactionDTO> page =
+                gamificationService.getTransactionHistoryPage(testUserId, cursor.encode(), 2, true);
+
+        // Then
+        assertFalse(page.isHasNext());
+        assertNull(page.getNextCursor());
+        assertEquals(3L, page.getTotalElements());
+        assertFalse(page.isTotalEstimated());
+    }
+
+    @Test
+    void findYuanTransactionsPageForAdmin_unfilteredTotal_shouldUseEstimate() {
+        // Given
+        when(userProgressRepository.findYuanTransactionsWithFiltersAfter(null, null, null, null, 101))
+                .thenReturn(List.of());
+        when(userProgressRepository.estimateYuanTransactionCount()).thenReturn(123456L);
+
+        // When (size is capped at 100)
+        CursorPageResponseDTO<AdminYuanTransactionDTO> page =
+                gamificationService.findYuanTransactionsPageForAdmin(null, null, null, null, 500, true);
+
+        // Then
+        assertEquals(100, page.getSize());
+        assertEquals(123456L, page.getTotalElements());
+        assertTrue(page.isTotalEstimated());
+        verify(userProgressRepository, never()).countYuanTransactionsWithFilters(any(), any(), any());
+    }
+
+    @Test
+    void findYuanTransactionsPageForAdmin_filteredTotal_shouldCountExactly() {
+        // Given
+        when(userProgressRepository.findYuanTransactionsWithFiltersAfter(testUserId, null, null, null, 21))
+                .thenReturn(List.of(yuanRow(1, OffsetDateTime.now())));
+        when(userProgressRepository.countYuanTransactionsWithFilters(testUserId, null, null)).thenReturn(1L);
+
+        // When
+        CursorPageResponseDTO<AdminYuanTransactionDTO> page =
+                gamificationService.findYuanTransactionsPageForAdmin(testUserId, null, null, null, 20, true);
+
+        // Then
+        assertEquals(1L, page.getTotalElements());
+        assertFalse(page.isTotalEstimated());
+        verify(userProgressRepository, never()).estimateYuanTransactionCount();
+    }
 }
@@ -0,0 +1,263 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.ProcessedEventMapper;
+import com.yushan.gamification_service.util.RedisUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private RedisUtil redisUtil;
+
+    @Mock
+    private ProcessedEventMapper processedEventMapper;
+
+    @Mock
+    private ProcessedEventFilter processedEventFilter;
+
+    @InjectMocks
+    private IdempotencyService idempotencyService;
+
+    private static final String KEY = "idempotency:comment-reward:1";
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(idempotencyService, "claimTtlMs", 60000L);
+        lenient().when(processedEventFilter.mightContain(anyString())).thenReturn(true);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private void completeTransaction(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    @Test
+    void tryClaim_redisHit_shouldSkipDatabase() {
+        // Given
+        when(redisUtil.setIfAbsent(eq(KEY), eq("pending"), any(Duration.class))).thenReturn(false);
+        when(redisUtil.get(KEY)).thenReturn("processed");
+
+        // When
+        boolean claimed = idempotencyService.tryClaim(KEY, "CommentReward");
+
+        // Then
+        assertFalse(claimed);
+        verifyNoInteractions(processedEventMapper);
+    }
+
+    @Test
+    void tryClaim_newEvent_shouldInsertAndPromoteMarkerOnCommit() {
+        // Given
+        when(redisUtil.setIfAbsent(KEY, "pending", Duration.ofMillis(60000L))).thenReturn(true);
+        when(processedEventMapper.insertBatch(List.of(KEY), "CommentReward", "gamification-service")).thenReturn(List.of(KEY));
+
+        // When
+        boolean claimed = idempotencyService.tryClaim(KEY, "CommentReward");
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Then
+        assertTrue(claimed);
+        verify(redisUtil).set(KEY, "processed", Duration.ofDays(7));
+        verify(redisUtil, never()).delete(KEY);
+    }
+
+    @Test
+    void tryClaim_pendingMarker_shouldFallThroughToDatabaseClaim() {
+        // Given: a previous owner crashed mid-transaction and left its pending marker behind
+        when(redisUtil.setIfAbsent(KEY, "pending", Duration.ofMillis(60000L))).thenReturn(false);
+        when(redisUtil.get(KEY)).thenReturn("pending");
+        when(processedEventMapper.insertBatch(List.of(KEY), "CommentReward", "gamification-service")).thenReturn(List.of(KEY));
+
+        // When
+        boolean claimed = idempotencyService.tryClaim(KEY, "CommentReward");
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Then
+        assertTrue(claimed);
+        verify(redisUtil).set(KEY, "processed", Duration.ofDays(7));
+    }
+
+    @Test
+    void tryClaim_pendingMarkerCommittedByOtherConsumer_shouldReturnFalse() {
+        // Given
+        when(redisUtil.setIfAbsent(eq(KEY), eq("pending"), any(Duration.class))).thenReturn(false);
+        when(redisUtil.get(KEY)).thenReturn("pending");
+        when(processedEventMapper.insertBatch(anyCollection(), eq("CommentReward"), anyString())).thenReturn(Collections.emptyList());
+
+        // When
+        boolean claimed = idempotencyService.tryClaim(KEY, "CommentReward");
+
+        // Then
+        assertFalse(claimed);
+    }
+
+    @Test
+    void tryClaim_alreadyInDatabase_shouldReturnFalse() {
+        // Given
+        when(redisUtil.setIfAbsent(eq(KEY), eq("pending"), any(Duration.class))).thenReturn(true);
+        when(processedEventMapper.insertBatch(anyCollection(), eq("CommentReward"), anyString())).thenReturn(Collections.emptyList());
+
+        // When
+        boolean claimed = idempotencyService.tryClaim(KEY, "CommentReward");
+
+        // Then
+        assertFalse(claimed);
+    }
+
+    @Test
+    void processOnce_actionFails_shouldReleaseRedisMarkerOnRollback() {
+        // Given
+        when(redisUtil.setIfAbsent(eq(KEY), eq("pending"), any(Duration.class))).thenReturn(true);
+        when(processedEventMapper.insertBatch(anyCollection(), eq("CommentReward"), anyString())).thenReturn(List.of(KEY));
+
+        // When
+        assertThrows(IllegalStateException.class, () -> idempotencyService.processOnce(KEY, "CommentReward", () -> {
+            throw new IllegalStateException("reward failed");
+        }));
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Then
+        verify(redisUtil).delete(KEY);
+        verify(redisUtil, never()).set(eq(KEY), any(), any(Duration.class));
+    }
+
+    @Test
+    void processOnce_notClaimed_shouldNotRunAction() {
+        // Given
+        when(redisUtil.setIfAbsent(eq(KEY), eq("pending"), any(Duration.class))).thenReturn(false);
+        when(redisUtil.get(KEY)).thenReturn("processed");
+        Runnable action = mock(Runnable.class);
+
+        // When
+        boolean processed = idempotencyService.processOnce(KEY, "CommentReward", action);
+
+        // Then
+        assertFalse(processed);
+        verifyNoInteractions(action);
+    }
+
+    @Test
+    void tryClaim_bloomDefiniteNegative_shouldSkipRedisAndClaimInDatabase() {
+        // Given
+        when(processedEventFilter.mightContain(KEY)).thenReturn(false);
+        when(processedEventMapper.insertBatch(List.of(KEY), "CommentReward", "gamification-service")).thenReturn(List.of(KEY));
+
+        // When
+        boolean claimed = idempotencyService.tryClaim(KEY, "CommentReward");
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Then
+        assertTrue(claimed);
+        verify(redisUtil, never()).setIfAbsent(anyString(), any(), any(Duration.class));
+        verify(redisUtil).set(KEY, "processed", Duration.ofDays(7));
+        verify(processedEventFilter).put(KEY);
+    }
+
+    @Test
+    void isProcessed_bloomDefiniteNegative_shouldSkipRemoteLookups() {
+        // Given
+        when(processedEventFilter.mightContain(KEY)).thenReturn(false);
+
+        // When
+        boolean processed = idempotencyService.isProcessed(KEY, "CommentReward");
+
+        // Then
+        assertFalse(processed);
+        verifyNoInteractions(redisUtil, processedEventMapper);
+    }
+
+    @Test
+    void isProcessed_bloomFalsePositive_shouldRecordIt() {
+        // Given
+        when(redisUtil.get(KEY)).thenReturn(null);
+        when(processedEventMapper.existsByIdempotencyKey(KEY)).thenReturn(false);
+
+        // When
+        boolean processed = idempotencyService.isProcessed(KEY, "CommentReward");
+
+        // Then
+        assertFalse(processed);
+        verify(processedEventFilter).recordFalsePositives(1);
+    }
+
+    @Test
+    void findProcessedKeys_shouldOnlyLookUpBloomCandidates() {
+        // Given
+        String other = "idempotency:comment-reward:2";
+        when(processedEventFilter.mightContain(other)).thenReturn(false);
+        when(redisUtil.keysWithValue(List.of(KEY), "processed")).thenReturn(new HashSet<>(Set.of(KEY)));
+
+        // When
+        Set<String> processed = idempotencyService.findProcessedKeys(List.of(KEY, other));
+
+        // Then
+        assertEquals(Set.of(KEY), processed);
+        verifyNoInteractions(processedEventMapper);
+    }
+
+    @Test
+    void findProcessedKeys_pendingMarker_shouldCheckDatabase() {
+        // Given: Redis only reports keys holding the processed marker, so the pending key is a miss
+        when(redisUtil.keysWithValue(List.of(KEY), "processed")).thenReturn(new HashSet<>());
+        when(processedEventMapper.findExistingKeys(List.of(KEY))).thenReturn(Collections.emptyList());
+
+        // When
+        Set<String> processed = idempotencyService.findProcessedKeys(List.of(KEY));
+
+        // Then
+        assertTrue(processed.isEmpty());
+        verify(processedEventMapper).findExistingKeys(List.of(KEY));
+    }
+
+    @Test
+    void cleanupOldProcessedEvents_shouldDropExpiredPartitions() {
+        // Given
+        when(processedEventMapper.dropPartitionsOlderThan(30)).thenReturn(2);
+
+        // When
+        idempotencyService.cleanupOldProcessedEvents(30);
+
+        // Then
+        verify(processedEventMapper).dropPartitionsOlderThan(30);
+        verifyNoInteractions(redisUtil);
+    }
+
+    @Test
+    void createUpcomingPartitions_shouldReturnCreatedCount() {
+        // Given
+        when(processedEventMapper.createPartitions(7)).thenReturn(1);
+
+        // When
+        int created = idempotencyService.createUpcomingPartitions(7);
+
+        // Then
+        assertEquals(1, created);
+    }
+}
@@ -1,6 +1,7 @@
 package com.yushan.gamification_service.service;
 
 import com.yushan.gamification_service.dto.event.UserActivityEvent;
+import com.yushan.gamification_service.dto.event.YuanReservationReleasedEvent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,6 +13,7 @@ import org.springframework.kafka.support.SendResult;
 import org.springframework.messaging.Message;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -81,4 +83,22 @@ public class KafkaEventProducerServiceTest {
         // Then
         verify(kafkaTemplate).send("active", testUserId.toString(), testEvent);
     }
+
+    @Test
+    void publishYuanReservationReleasedEvents_OneSendPerEventKeyedBySagaId() {
+        // Given
+        YuanReservationReleasedEvent first = YuanReservationReleasedEvent.builder().sagaId("saga-1").build();
+        YuanReservationReleasedEvent second = YuanReservationReleasedEvent.builder().sagaId("saga-2").build();
+        when(kafkaTemplate.send(eq("yuan-reservation.released"), eq("saga-1"), any()))
+            .thenThrow(new RuntimeException("Test exception"));
+        when(kafkaTemplate.send(eq("yuan-reservation.released"), eq("saga-2"), any()))
+            .thenReturn(new CompletableFuture<>());
+
+        // When (a failed send does not stop the rest)
+        kafkaEventProducerService.publishYuanReservationReleasedEvents(List.of(first, second));
+
+        // Then
+        verify(kafkaTemplate).send("yuan-reservation.released", "saga-1", first);
+        verify(kafkaTemplate).send("yuan-reservation.released", "saga-2", second);
+    }
 }
@@ -0,0 +1,315 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.UserProgressMapper;
+import com.yushan.gamification_service.dto.common.PageResponseDTO;
+import com.yushan.gamification_service.dto.leaderboard.LeaderboardEntryDTO;
+import com.yushan.gamification_service.dto.leaderboard.LeaderboardRankDTO;
+import com.yushan.gamification_service.entity.UserProgress;
+import com.yushan.gamification_service.enums.LeaderboardWindow;
+import com.yushan.gamification_service.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LeaderboardServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private UserProgressMapper userProgressMapper;
+
+    @Mock
+    private LevelService levelService;
+
+    @InjectMocks
+    private LeaderboardService leaderboardService;
+
+    private static final String KEY = "leaderboard:exp:all-time";
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(leaderboardService, "rebuildChunkSize", 2);
+        ReflectionTestUtils.setField(leaderboardService, "windowCacheTtlMs", 30000L);
+        lenient().when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        lenient().when(levelService.calculateLevel(anyDouble())).thenReturn(3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Set<ZSetOperations.TypedTuple<String>> tuples(Object... memberScorePairs) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = new LinkedHashSet<>();
+        for (int i = 0; i < memberScorePairs.length; i += 2) {
+            tuples.add(new DefaultTypedTuple<>((String) memberScorePairs[i], (Double) memberScorePairs[i + 1]));
+        }
+        return tuples;
+    }
+
+    private static UserProgress progress(UUID userId, double totalExp) {
+        UserProgress progress = new UserProgress();
+        progress.setUserId(userId);
+        progress.setTotalExp(totalExp);
+        return progress;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordExpAward_inTransaction_shouldWriteOnceAfterCommit() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        leaderboardService.recordExpAward(UUID.randomUUID(), 10.0, 5.0);
+        leaderboardService.recordExpAward(UUID.randomUUID(), 20.0, 5.0);
+
+        // Then: nothing written before commit, one pipeline after
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        synchronizations.get(0).afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        verify(stringRedisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordExpAward_rolledBack_shouldNotWrite() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        leaderboardService.recordExpAward(UUID.randomUUID(), 10.0, 5.0);
+        TransactionSynchronizationManager.getSynchronizations().get(0)
+                .afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Then
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void getTop_shouldRankInScoreOrder() {
+        // Given
+        when(zSetOperations.reverseRangeWithScores(KEY, 0, 1)).thenReturn(tuples("a", 30.0, "b", 20.0));
+
+        // When
+        List<LeaderboardEntryDTO> top = leaderboardService.getTop(2);
+
+        // Then
+        assertEquals(2, top.size());
+        assertEquals(1, top.get(0).getRank());
+        assertEquals("a", top.get(0).getUserId());
+        assertEquals(30.0, top.get(0).getTotalExp());
+        assertEquals(3, top.get(0).getLevel());
+        assertEquals(2, top.get(1).getRank());
+    }
+
+    @Test
+    void getPage_shouldOffsetRanks() {
+        // Given
+        when(zSetOperations.zCard(KEY)).thenReturn(5L);
+        when(zSetOperations.reverseRangeWithScores(KEY, 2, 3)).thenReturn(tuples("c", 10.0, "d", 5.0));
+
+        // When
+        PageResponseDTO<LeaderboardEntryDTO> page = leaderboardService.getPage(1, 2);
+
+        // Then
+        assertEquals(5, page.getTotalElements());
+        assertEquals(3, page.getContent().get(0).getRank());
+        assertEquals(4, page.getContent().get(1).getRank());
+    }
+
+    @Test
+    void getUserRank_shouldReturnNeighbours() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        when(zSetOperations.reverseRank(KEY, userId.toString())).thenReturn(4L);
+        when(zSetOperations.reverseRangeWithScores(KEY, 3, 5))
+                .thenReturn(tuples("above", 50.0, userId.toString(), 40.0, "below", 30.0));
+        when(zSetOperations.zCard(KEY)).thenReturn(100L);
+
+        // When
+        LeaderboardRankDTO rank = leaderboardService.getUserRank(userId, 1);
+
+        // Then
+        assertEquals(5, rank.getUser().getRank());
+        assertEquals(40.0, rank.getUser().getTotalExp());
+        assertEquals(100, rank.getTotalPlayers());
+        assertEquals(3, rank.getNeighbours().size());
+        assertEquals(4, rank.getNeighbours().get(0).getRank());
+    }
+
+    @Test
+    void getUserRank_notRanked_shouldThrow() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        when(zSetOperations.reverseRank(KEY, userId.toString())).thenReturn(null);
+
+        // When & Then
+        assertThrows(ResourceNotFoundException.class, () -> leaderboardService.getUserRank(userId, 5));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuild_shouldLoadChunksIntoTemporaryKeyAndSwap() {
+        // Given
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        when(userProgressMapper.findExpTotalsAfter(null, 2)).thenReturn(List.of(progress(first, 10.0), progress(second, 20.0)));
+        when(userProgressMapper.findExpTotalsAfter(second, 2)).thenReturn(List.of(progress(third, 30.0)));
+        when(userProgressMapper.currentTimestamp()).thenReturn(LocalDateTime.of(2025, 1, 1, 12, 0));
+        when(userProgressMapper.findExpTotalsUpdatedSince(any())).thenReturn(List.of());
+
+        // When
+        long loaded = leaderboardService.rebuild();
+
+        // Then
+        assertEquals(3, loaded);
+        verify(zSetOperations, times(2)).add(startsWith(KEY + ":rebuild:"), anySet());
+        verify(stringRedisTemplate).rename(startsWith(KEY + ":rebuild:"), eq(KEY));
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void rebuild_noPlayers_shouldClearLeaderboard() {
+        // Given
+        when(userProgressMapper.findExpTotalsAfter(null, 2)).thenReturn(List.of());
+        when(userProgressMapper.currentTimestamp()).thenReturn(LocalDateTime.of(2025, 1, 1, 12, 0));
+        when(userProgressMapper.findExpTotalsUpdatedSince(any())).thenReturn(List.of());
+
+        // When
+        long loaded = leaderboardService.rebuild();
+
+        // Then
+        assertEquals(0, loaded);
+        verify(stringRedisTemplate).delete(KEY);
+        verify(stringRedisTemplate, never()).rename(anyString(), anyString());
+    }
+
+    @Test
+    void rebuild_shouldReplayAwardsSinceDatabaseStartTime() {
+        // Given: the database clock, not the JVM clock, bounds the catch-up replay
+        UUID userId = UUID.randomUUID();
+        when(userProgressMapper.currentTimestamp()).thenReturn(LocalDateTime.of(2025, 1, 1, 12, 0));
+        when(userProgressMapper.findExpTotalsAfter(null, 2)).thenReturn(List.of(progress(userId, 10.0)));
+        when(userProgressMapper.findExpTotalsUpdatedSince(LocalDateTime.of(2025, 1, 1, 11, 58)))
+                .thenReturn(List.of(progress(userId, 15.0)));
+
+        // When
+        leaderboardService.rebuild();
+
+        // Then
+        verify(userProgressMapper).findExpTotalsUpdatedSince(LocalDateTime.of(2025, 1, 1, 11, 58));
+        verify(stringRedisTemplate).executePipelined(any(RedisCallback.class));
+    }
+
+    private static String bucket(LocalDate day) {
+        return "leaderboard:exp:daily:" + day.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordExpAward_shouldUpdateAllTimeScoreAndTodaysBucket() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return List.of();
+        });
+
+        // When (no transaction: written immediately)
+        leaderboardService.recordExpAward(userId, 120.0, 5.0);
+
+        // Then
+        String today = bucket(LocalDate.now());
+        verify(connection).zAdd(KEY, 120.0, userId.toString(), RedisZSetCommands.ZAddArgs.empty().gt());
+        verify(connection).zIncrBy(today, 5.0, userId.toString());
+        verify(connection).expire(eq(today), anyLong());
+    }
+
+    @Test
+    void getWindowTop_weeklyColdCache_shouldMergeSevenDailyBuckets() {
+        // Given
+        LocalDate today = LocalDate.now();
+        String unionKey = "leaderboard:exp:window:weekly:" + today.format(DateTimeFormatter.BASIC_ISO_DATE);
+        when(stringRedisTemplate.hasKey(unionKey)).thenReturn(false);
+        when(zSetOperations.reverseRangeWithScores(unionKey, 0, 99)).thenReturn(tuples("a", 40.0, "b", 25.0));
+        when(zSetOperations.score(KEY, "a", "b")).thenReturn(Arrays.asList(900.0, 300.0));
+        when(levelService.calculateLevel(900.0)).thenReturn(7);
+
+        // When
+        List<LeaderboardEntryDTO> top = leaderboardService.getWindowTop(LeaderboardWindow.WEEKLY, 100);
+
+        // Then
+        List<String> keys = List.of(unionKey, bucket(today), bucket(today.minusDays(1)), bucket(today.minusDays(2)),
+                bucket(today.minusDays(3)), bucket(today.minusDays(4)), bucket(today.minusDays(5)), bucket(today.minusDays(6)));
+        verify(stringRedisTemplate).execute(LeaderboardService.WINDOW_UNION_SCRIPT, keys, "30000");
+        verify(stringRedisTemplate, never()).expire(eq(unionKey), any(Duration.class));
+        assertEquals(40.0, top.get(0).getTotalExp());
+        assertEquals(7, top.get(0).getLevel());
+    }
+
+    @Test
+    void getWindowTop_weeklyWarmCache_shouldNotRecompute() {
+        // Given
+        String unionKey = "leaderboard:exp:window:weekly:" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+        when(stringRedisTemplate.hasKey(unionKey)).thenReturn(true);
+        when(zSetOperations.reverseRangeWithScores(unionKey, 0, 9)).thenReturn(tuples());
+
+        // When
+        List<LeaderboardEntryDTO> top = leaderboardService.getWindowTop(LeaderboardWindow.WEEKLY, 10);
+
+        // Then
+        assertTrue(top.isEmpty());
+        verify(stringRedisTemplate, never()).execute(eq(LeaderboardService.WINDOW_UNION_SCRIPT), anyList(), any());
+    }
+
+    @Test
+    void getWindowTop_daily_shouldReadTodaysBucketDirectly() {
+        // Given
+        when(zSetOperations.reverseRangeWithScores(bucket(LocalDate.now()), 0, 9)).thenReturn(tuples());
+
+        // When
+        leaderboardService.getWindowTop(LeaderboardWindow.DAILY, 10);
+
+        // Then
+        verify(stringRedisTemplate, never()).hasKey(anyString());
+        verify(stringRedisTemplate, never()).execute(eq(LeaderboardService.WINDOW_UNION_SCRIPT), anyList(), any());
+    }
+}
@@ -0,0 +1,195 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.UserProgressMapper;
+import com.yushan.gamification_service.dto.admin.LedgerIngestRow;
+import com.yushan.gamification_service.entity.UserProgress;
+import com.yushan.gamification_service.enums.BulkJobStatus;
+import com.yushan.gamification_service.enums.LedgerType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerBulkIngestServiceTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private UserProgressMapper userProgressMapper;
+
+    @Mock
+    private LeaderboardService leaderboardService;
+
+    @Mock
+    private BulkJobService bulkJobService;
+
+    @Mock
+    private RedisYuanReservationEngine redisYuanReservationEngine;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PGConnection pgConnection;
+
+    @Mock
+    private CopyManager copyManager;
+
+    @InjectMocks
+    private LedgerBulkIngestService ledgerBulkIngestService;
+
+    private final UUID user1 = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private final UUID user2 = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private final List<String> copies = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(ledgerBulkIngestService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(ledgerBulkIngestService, "batchSize", 2);
+        ledgerBulkIngestService.init();
+
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        lenient().when(dataSource.getConnection()).thenReturn(connection);
+        lenient().when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        lenient().when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        lenient().when(copyManager.copyIn(anyString(), any(InputStream.class))).thenAnswer(invocation -> {
+            InputStream data = invocation.getArgument(1);
+            copies.add(invocation.getArgument(0) + "\n" + new String(data.readAllBytes(), StandardCharsets.UTF_8));
+            return 1L;
+        });
+        lenient().when(userProgressMapper.addBatch(anyList())).thenAnswer(invocation -> {
+            List<UserProgress> deltas = invocation.getArgument(0);
+            return deltas.stream()
+                    .map(delta -> new UserProgress(delta.getUserId(), delta.getTotalExp() + 100, delta.getYuanBalance()))
+                    .toList();
+        });
+    }
+
+    @Test
+    void ingest_shouldCopyEachLedgerAndApplyBalancesOncePerBatch() {
+        // Given
+        BulkJob job = new BulkJob(LedgerBulkIngestService.JOB_TYPE);
+        List<LedgerIngestRow> rows = List.of(
+                new LedgerIngestRow(LedgerType.EXP, user1, 10.0, "Campaign"),
+                new LedgerIngestRow(LedgerType.YUAN, user1, 5.0, "Say \"hi\""),
+                new LedgerIngestRow(LedgerType.EXP, user2, 3.0, null));
+
+        // When
+        ledgerBulkIngestService.ingest(rows.iterator(), job);
+
+        // Then
+        assertEquals(List.of(
+                "COPY exp_transactions (user_id, amount, reason) FROM STDIN WITH (FORMAT csv)\n"
+                        + user1 + ",10.0,\"Campaign\"\n",
+                "COPY yuan_transactions (user_id, amount, description) FROM STDIN WITH (FORMAT csv)\n"
+                        + user1 + ",5.0,\"Say \"\"hi\"\"\"\n",
+                "COPY exp_transactions (user_id, amount, reason) FROM STDIN WITH (FORMAT csv)\n"
+                        + user2 + ",3.0,\n"), copies);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<UserProgress>> deltas = ArgumentCaptor.forClass(List.class);
+        verify(userProgressMapper, times(2)).addBatch(deltas.capture());
+        UserProgress firstBatch = deltas.getAllValues().get(0).get(0);
+        assertEquals(user1, firstBatch.getUserId());
+        assertEquals(10.0, firstBatch.getTotalExp());
+        assertEquals(5.0, firstBatch.getYuanBalance());
+
+        verify(leaderboardService).recordExpAward(user1, 110.0, 10.0);
+        verify(leaderboardService).recordExpAward(user2, 103.0, 3.0);
+        assertEquals(3, job.getProcessedRows());
+        assertEquals(0, job.getFailedRows());
+    }
+
+    @Test
+    void ingest_shouldReportFailedBatchAndContinue() throws Exception {
+        // Given
+        BulkJob job = new BulkJob(LedgerBulkIngestService.JOB_TYPE);
+        when(copyManager.copyIn(anyString(), any(InputStream.class)))
+                .thenThrow(new java.sql.SQLException("boom"))
+                .thenReturn(1L);
+        List<LedgerIngestRow> rows = List.of(
+                new LedgerIngestRow(LedgerType.EXP, user1, 1.0, null),
+                new LedgerIngestRow(LedgerType.EXP, user1, 2.0, null),
+                new LedgerIngestRow(LedgerType.EXP, user2, 3.0, null));
+
+        // When
+        ledgerBulkIngestService.ingest(rows.iterator(), job);
+
+        // Then
+        assertEquals(1, job.getProcessedRows());
+        assertEquals(2, job.getFailedRows());
+        assertEquals(1, job.toDTO().getFailures().get(0).getFirstRow());
+        verify(transactionManager).rollback(any());
+        job.complete();
+        assertEquals(BulkJobStatus.COMPLETED_WITH_ERRORS, job.getStatus());
+    }
+
+    @Test
+    void ingest_csv_shouldReportInvalidLinesByLineNumber() {
+        // Given
+        BulkJob job = new BulkJob(LedgerBulkIngestService.JOB_TYPE);
+        String csv = "ledger,user_id,amount,text\n"
+                + "exp," + user1 + ",10,\"Backfill, October\"\n"
+                + "gold," + user1 + ",10,Nope\n"
+                + "yuan,not-a-uuid,1\n"
+                + "yuan," + user2 + ",0\n"
+                + "\n"
+                + "yuan," + user2 + ",2\n";
+        LedgerBulkIngestService.CsvRows rows =
+                ledgerBulkIngestService.new CsvRows(new BufferedReader(new StringReader(csv)), job);
+
+        // When
+        ledgerBulkIngestService.ingest(rows, job);
+
+        // Then
+        assertEquals(2, job.getProcessedRows());
+        assertEquals(3, job.getFailedRows());
+        assertEquals(List.of(3L, 4L, 5L), job.toDTO().getFailures().stream().map(f -> f.getFirstRow()).toList());
+        assertTrue(copies.get(0).endsWith(user1 + ",10.0,\"Backfill, October\"\n"));
+    }
+
+    @Test
+    void parseLine_shouldHandleQuotedText() {
+        LedgerIngestRow row = LedgerBulkIngestService.parseLine("YUAN," + user1 + ",-1.5,\"a \"\"quoted\"\", text\"");
+
+        assertEquals(LedgerType.YUAN, row.ledger());
+        assertEquals(-1.5, row.amount());
+        assertEquals("a \"quoted\", text", row.text());
+    }
+
+    @Test
+    void parseLine_shouldRejectUnterminatedQuote() {
+        assertThrows(IllegalArgumentException.class,
+                () -> LedgerBulkIngestService.parseLine("exp," + user1 + ",1,\"open"));
+    }
+}
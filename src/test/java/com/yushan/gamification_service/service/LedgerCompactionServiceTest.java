@@ -0,0 +1,120 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.LedgerCompactionMapper;
+import com.yushan.gamification_service.entity.LedgerCompactionProgress;
+import com.yushan.gamification_service.enums.LedgerType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerCompactionServiceTest {
+
+    @Mock
+    private LedgerCompactionMapper ledgerCompactionMapper;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private LedgerCompactionService ledgerCompactionService;
+
+    private final UUID user1 = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private final UUID user2 = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private final UUID user3 = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(ledgerCompactionService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(ledgerCompactionService, "retentionDays", 90);
+        ReflectionTestUtils.setField(ledgerCompactionService, "chunkSize", 2);
+        ReflectionTestUtils.setField(ledgerCompactionService, "parallelism", 2);
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        // Nothing to compact in the Yuan ledger unless a test says otherwise
+        lenient().when(ledgerCompactionMapper.findUsersWithRowsBefore(eq(LedgerType.YUAN), any(), any(), anyInt()))
+                .thenReturn(List.of());
+    }
+
+    @Test
+    void compactAll_shouldCompactPagesInChunksAndCheckpoint() {
+        // Given
+        when(ledgerCompactionMapper.findUsersWithRowsBefore(eq(LedgerType.EXP), any(), isNull(), eq(4)))
+                .thenReturn(List.of(user1, user2, user3));
+        when(ledgerCompactionMapper.findUsersWithRowsBefore(eq(LedgerType.EXP), any(), eq(user3), eq(4)))
+                .thenReturn(List.of());
+        when(ledgerCompactionMapper.compactUsers(eq(LedgerType.EXP), anyList(), any())).thenReturn(10, 5);
+
+        // When
+        long compacted = ledgerCompactionService.compactAll();
+
+        // Then
+        assertEquals(15, compacted);
+        verify(ledgerCompactionMapper).compactUsers(eq(LedgerType.EXP), eq(List.of(user1, user2)), any());
+        verify(ledgerCompactionMapper).compactUsers(eq(LedgerType.EXP), eq(List.of(user3)), any());
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(ledgerCompactionMapper).saveProgress(eq(LedgerType.EXP), cutoff.capture(), isNull());
+        verify(ledgerCompactionMapper).saveProgress(LedgerType.EXP, cutoff.getValue(), user3);
+        assertTrue(cutoff.getValue().isBefore(LocalDateTime.now().minusDays(89)));
+        verify(ledgerCompactionMapper).deleteProgress(LedgerType.EXP);
+        verify(ledgerCompactionMapper).deleteProgress(LedgerType.YUAN);
+    }
+
+    @Test
+    void compactAll_withCheckpoint_shouldResumeWithSameCutoff() {
+        // Given
+        LocalDateTime previousCutoff = LocalDateTime.of(2025, 1, 1, 2, 30);
+        LedgerCompactionProgress progress = new LedgerCompactionProgress();
+        progress.setLedger("exp");
+        progress.setCutoff(previousCutoff);
+        progress.setLastUserId(user2);
+        when(ledgerCompactionMapper.findProgress(LedgerType.EXP)).thenReturn(progress);
+        when(ledgerCompactionMapper.findUsersWithRowsBefore(LedgerType.EXP, previousCutoff, user2, 4))
+                .thenReturn(List.of(user3));
+        when(ledgerCompactionMapper.findUsersWithRowsBefore(LedgerType.EXP, previousCutoff, user3, 4))
+                .thenReturn(List.of());
+        when(ledgerCompactionMapper.compactUsers(LedgerType.EXP, List.of(user3), previousCutoff)).thenReturn(3);
+
+        // When
+        long compacted = ledgerCompactionService.compactAll();
+
+        // Then
+        assertEquals(3, compacted);
+        verify(ledgerCompactionMapper, never()).saveProgress(eq(LedgerType.EXP), any(), isNull());
+        verify(ledgerCompactionMapper).saveProgress(LedgerType.EXP, previousCutoff, user3);
+    }
+
+    @Test
+    void compactAll_chunkFailure_shouldKeepCheckpoint() {
+        // Given
+        when(ledgerCompactionMapper.findUsersWithRowsBefore(eq(LedgerType.EXP), any(), isNull(), eq(4)))
+                .thenReturn(List.of(user1));
+        when(ledgerCompactionMapper.compactUsers(eq(LedgerType.EXP), anyList(), any()))
+                .thenThrow(new RuntimeException("deadlock detected"));
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> ledgerCompactionService.compactAll());
+        verify(ledgerCompactionMapper, never()).saveProgress(eq(LedgerType.EXP), any(), eq(user1));
+        verify(ledgerCompactionMapper, never()).deleteProgress(any());
+    }
+}
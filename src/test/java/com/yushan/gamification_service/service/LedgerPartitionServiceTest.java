@@ -0,0 +1,35 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.LedgerPartitionMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerPartitionServiceTest {
+
+    @Mock
+    private LedgerPartitionMapper ledgerPartitionMapper;
+
+    @InjectMocks
+    private LedgerPartitionService ledgerPartitionService;
+
+    @Test
+    void createUpcomingPartitions_shouldReturnCreatedCount() {
+        // Given
+        when(ledgerPartitionMapper.createPartitions(3)).thenReturn(2);
+
+        // When
+        int created = ledgerPartitionService.createUpcomingPartitions(3);
+
+        // Then
+        assertEquals(2, created);
+        verify(ledgerPartitionMapper).createPartitions(3);
+    }
+}
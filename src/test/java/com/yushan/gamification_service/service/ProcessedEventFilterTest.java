@@ -0,0 +1,114 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.ProcessedEventMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProcessedEventFilterTest {
+
+    @Mock
+    private ProcessedEventMapper processedEventMapper;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private ProcessedEventFilter processedEventFilter;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(processedEventFilter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(processedEventFilter, "enabled", true);
+        ReflectionTestUtils.setField(processedEventFilter, "expectedInsertions", 1_000L);
+        ReflectionTestUtils.setField(processedEventFilter, "fpp", 0.001);
+        processedEventFilter.init();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenProcessedKeys(List<String> keys) {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        Cursor<String> cursor = mock(Cursor.class);
+        when(cursor.iterator()).thenReturn(keys.iterator());
+        when(processedEventMapper.streamAllKeys()).thenReturn(cursor);
+    }
+
+    @Test
+    void mightContain_beforeLoad_shouldReportMaybePresent() {
+        assertTrue(processedEventFilter.mightContain("idempotency:comment-reward:1"));
+        assertEquals(1.0, meterRegistry.get("gamification.idempotency.bloom.lookups")
+                .tag("result", "not_ready").counter().count());
+    }
+
+    @Test
+    void rebuild_shouldLoadKeysAndAnswerDefiniteNegatives() {
+        // Given
+        givenProcessedKeys(List.of("idempotency:comment-reward:1", "idempotency:comment-reward:2"));
+
+        // When
+        long loaded = processedEventFilter.rebuild();
+
+        // Then
+        assertEquals(2, loaded);
+        assertTrue(processedEventFilter.isReady());
+        assertTrue(processedEventFilter.mightContain("idempotency:comment-reward:1"));
+        assertFalse(processedEventFilter.mightContain("idempotency:comment-reward:3"));
+        assertEquals(1.0, meterRegistry.get("gamification.idempotency.bloom.lookups")
+                .tag("result", "definite_negative").counter().count());
+        assertEquals(1.0, meterRegistry.get("gamification.idempotency.bloom.ready").gauge().value());
+    }
+
+    @Test
+    void put_afterLoad_shouldBeVisible() {
+        // Given
+        givenProcessedKeys(List.of());
+        processedEventFilter.rebuild();
+
+        // When
+        processedEventFilter.put("idempotency:vote-reward:9");
+
+        // Then
+        assertTrue(processedEventFilter.mightContain("idempotency:vote-reward:9"));
+    }
+
+    @Test
+    void rebuild_databaseFailure_shouldStayNotReady() {
+        // Given
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(processedEventMapper.streamAllKeys()).thenThrow(new RuntimeException("relation does not exist"));
+
+        // When
+        long loaded = processedEventFilter.rebuild();
+
+        // Then
+        assertEquals(-1, loaded);
+        assertFalse(processedEventFilter.isReady());
+        assertTrue(processedEventFilter.mightContain("any-key"));
+    }
+
+    @Test
+    void mightContain_disabled_shouldAlwaysReportMaybePresent() {
+        ReflectionTestUtils.setField(processedEventFilter, "enabled", false);
+
+        assertTrue(processedEventFilter.mightContain("idempotency:comment-reward:1"));
+        verifyNoInteractions(processedEventMapper);
+    }
+}
@@ -0,0 +1,252 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.YuanReservationMapper;
+import com.yushan.gamification_service.entity.UserProgress;
+import com.yushan.gamification_service.entity.YuanReservation;
+import com.yushan.gamification_service.entity.YuanTransaction;
+import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.repository.UserProgressRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisYuanReservationEngineTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    @Mock
+    private YuanReservationMapper yuanReservationMapper;
+
+    @Mock
+    private UserProgressRepository userProgressRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private RedisYuanReservationEngine engine;
+
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(engine, "reservationTimeoutMinutes", 5);
+        ReflectionTestUtils.setField(engine, "retentionSeconds", 86400L);
+        ReflectionTestUtils.setField(engine, "outboxBatchSize", 500);
+        lenient().when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+    }
+
+    @Test
+    void reserve_Loaded_OneScriptCall() {
+        // Given
+        when(stringRedisTemplate.execute(same(RedisYuanReservationEngine.RESERVE_SCRIPT), anyList(), any(Object[].class)))
+                .thenReturn(List.of("OK"));
+
+        // When
+        UUID reservationId = engine.reserve(userId, 1.0, "saga-1");
+
+        // Then
+        assertNotNull(reservationId);
+        verify(stringRedisTemplate, times(1)).execute(any(), anyList(), any(Object[].class));
+        verifyNoInteractions(userProgressRepository);
+    }
+
+    @Test
+    void reserve_BalanceMissing_LoadsFromPostgresAndRetries() {
+        // Given
+        UserProgress progress = new UserProgress(userId, 0.0, 5.0);
+        progress.setVersion(7L);
+        when(userProgressRepository.findUserProgressByUserId(userId)).thenReturn(Optional.of(progress));
+        when(stringRedisTemplate.execute(same(RedisYuanReservationEngine.RESERVE_SCRIPT), anyList(), any(Object[].class)))
+                .thenReturn(List.of("MISSING"), List.of("OK"));
+
+        // When
+        engine.reserve(userId, 1.0, "saga-1");
+
+        // Then
+        verify(stringRedisTemplate).execute(same(RedisYuanReservationEngine.SYNC_SCRIPT),
+                eq(List.of("yuan:balance:" + userId, "yuan:outbox")),
+                eq("5.0"), eq("7"), eq("yuan-outbox-drainer"), eq(""), eq("0"), eq("0"));
+        verify(stringRedisTemplate, times(2)).execute(same(RedisYuanReservationEngine.RESERVE_SCRIPT), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void reserve_InsufficientAfterReload_Throws() {
+        // Given
+        when(userProgressRepository.findUserProgressByUserId(userId)).thenReturn(Optional.empty());
+        when(stringRedisTemplate.execute(same(RedisYuanReservationEngine.RESERVE_SCRIPT), anyList(), any(Object[].class)))
+                .thenReturn(List.of("INSUFFICIENT", "0.5"));
+
+        // When & Then
+        ValidationException e = assertThrows(ValidationException.class, () -> engine.reserve(userId, 1.0, "saga-1"));
+        assertTrue(e.getMessage().contains("Available: 0.5"));
+    }
+
+    @Test
+    void confirm_AlreadyConfirmed_Succeeds() {
+        // Given
+        when(stringRedisTemplate.execute(same(RedisYuanReservationEngine.CONFIRM_SCRIPT), anyList(), any(Object[].class)))
+                .thenReturn(List.of("CONFIRMED"));
+
+        // When & Then
+        assertTrue(engine.confirm(UUID.randomUUID(), userId));
+    }
+
+    @Test
+    void confirm_Expired_Throws() {
+        // Given
+        when(stringRedisTemplate.execute(same(RedisYuanReservationEngine.CONFIRM_SCRIPT), anyList(), any(Object[].class)))
+                .thenReturn(List.of("EXPIRED"));
+
+        // When & Then
+        assertThrows(ValidationException.class, () -> engine.confirm(UUID.randomUUID(), userId));
+    }
+
+    @Test
+    void release_NotFound_ReturnsFalse() {
+        // Given
+        when(stringRedisTemplate.execute(same(RedisYuanReservationEngine.RELEASE_SCRIPT), anyList(), any(Object[].class)))
+                .thenReturn(List.of("NOT_FOUND"));
+
+        // When & Then
+        assertFalse(engine.release(UUID.randomUUID(), userId));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void drainOutbox_WritesNewDeductionsOnceAndAcknowledgesEveryEntry() {
+        // Given
+        MapRecord<String, Object, Object> applied = outboxEntry("1-0");
+        MapRecord<String, Object, Object> fresh = outboxEntry("2-0");
+        when(streamOperations.read(any(org.springframework.data.redis.connection.stream.Consumer.class), any(), any()))
+                .thenReturn(List.of(), List.of(applied, fresh));
+        when(yuanReservationMapper.insertConfirmed(any(YuanReservation.class))).thenReturn(0, 1);
+        UserProgress progress = new UserProgress(userId, 0.0, 8.0);
+        progress.setVersion(12L);
+        when(userProgressRepository.findUserProgressByUserId(userId)).thenReturn(Optional.of(progress));
+
+        // When
+        int drained = engine.drainOutbox();
+
+        // Then
+        assertEquals(2, drained);
+        ArgumentCaptor<YuanTransaction> captor = ArgumentCaptor.forClass(YuanTransaction.class);
+        verify(userProgressRepository).saveYuanTransaction(captor.capture());
+        assertEquals(-1.0, captor.getValue().getAmount());
+        verify(userProgressRepository).deferLedgerWrites();
+        verify(stringRedisTemplate).execute(same(RedisYuanReservationEngine.SYNC_SCRIPT), anyList(),
+                eq("8.0"), eq("12"), eq("yuan-outbox-drainer"), eq("1-0"), eq("1.0"), eq("0"));
+        verify(stringRedisTemplate).execute(same(RedisYuanReservationEngine.SYNC_SCRIPT), anyList(),
+                eq("8.0"), eq("12"), eq("yuan-outbox-drainer"), eq("2-0"), eq("1.0"), eq("0"));
+    }
+
+    @Test
+    void drainOutbox_Empty_DoesNotOpenTransaction() {
+        // Given
+        when(streamOperations.read(any(org.springframework.data.redis.connection.stream.Consumer.class), any(), any()))
+                .thenReturn(List.of());
+
+        // When & Then
+        assertEquals(0, engine.drainOutbox());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void syncBalancesAfterCommit_ReloadsLoadedHashOnlyAfterCommit() {
+        // Given
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        UserProgress progress = new UserProgress(userId, 0.0, 0.5);
+        progress.setVersion(9L);
+        when(userProgressRepository.findUserProgressByUserId(userId)).thenReturn(Optional.of(progress));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            engine.syncBalancesAfterCommit(List.of(userId));
+            engine.syncBalancesAfterCommit(List.of(userId));
+
+            // Then: nothing before commit, one reload of the loaded hash after it
+            verifyNoInteractions(stringRedisTemplate);
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            assertEquals(1, synchronizations.size());
+            synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(stringRedisTemplate).execute(same(RedisYuanReservationEngine.SYNC_SCRIPT),
+                eq(List.of("yuan:balance:" + userId, "yuan:outbox")),
+                eq("0.5"), eq("9"), eq("yuan-outbox-drainer"), eq(""), eq("0"), eq("1"));
+    }
+
+    @Test
+    void syncBalancesAfterCommit_RolledBack_DoesNotReload() {
+        // Given
+        ReflectionTestUtils.setField(engine, "enabled", true);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            engine.syncBalancesAfterCommit(List.of(userId));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Then
+        verifyNoInteractions(stringRedisTemplate, userProgressRepository);
+    }
+
+    @Test
+    void syncBalancesAfterCommit_Disabled_NoOp() {
+        // When
+        engine.syncBalancesAfterCommit(List.of(userId));
+
+        // Then
+        verifyNoInteractions(stringRedisTemplate, userProgressRepository);
+    }
+
+    private MapRecord<String, Object, Object> outboxEntry(String id) {
+        Map<Object, Object> fields = Map.of(
+                "reservationId", UUID.randomUUID().toString(),
+                "userId", userId.toString(),
+                "amount", "1.0",
+                "sagaId", "saga-" + id,
+                "createdAt", "1700000000000",
+                "expiresAt", "1700000300000",
+                "confirmedAt", "1700000060000");
+        return StreamRecords.newRecord().in("yuan:outbox").withId(RecordId.of(id)).ofMap(fields);
+    }
+}
@@ -0,0 +1,145 @@
+package com.yushan.gamification_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScheduledJobLockServiceTest {
+
+    private static final String TRY_LOCK = "SELECT pg_try_advisory_lock(hashtext(?))";
+    private static final String UNLOCK = "SELECT pg_advisory_unlock(hashtext(?))";
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private ScheduledJobLockService scheduledJobLockService;
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(scheduledJobLockService, "enabled", true);
+    }
+
+    @Test
+    void runExclusively_LockFree_RunsJobAndUnlocks() throws SQLException {
+        // Given
+        when(dataSource.getConnection()).thenReturn(connection);
+        PreparedStatement tryLock = statementReturning(true);
+        PreparedStatement unlock = statementReturning(true);
+        when(connection.prepareStatement(TRY_LOCK)).thenReturn(tryLock);
+        when(connection.prepareStatement(UNLOCK)).thenReturn(unlock);
+
+        // When
+        assertTrue(scheduledJobLockService.runExclusively("yuan-reservation-cleanup", runs::incrementAndGet));
+
+        // Then
+        assertEquals(1, runs.get());
+        verify(tryLock).setString(1, "scheduled_job:yuan-reservation-cleanup");
+        verify(unlock).executeQuery();
+        verify(connection).close();
+        assertEquals(1.0, meterRegistry.counter("gamification.scheduler.lock",
+                "job", "yuan-reservation-cleanup", "result", "acquired").count());
+    }
+
+    @Test
+    void runExclusively_LockHeldElsewhere_SkipsJob() throws SQLException {
+        // Given
+        when(dataSource.getConnection()).thenReturn(connection);
+        PreparedStatement tryLock = statementReturning(false);
+        when(connection.prepareStatement(TRY_LOCK)).thenReturn(tryLock);
+
+        // When
+        assertFalse(scheduledJobLockService.runExclusively("yuan-reservation-cleanup", runs::incrementAndGet));
+
+        // Then
+        assertEquals(0, runs.get());
+        verify(connection, never()).prepareStatement(UNLOCK);
+        verify(connection).close();
+    }
+
+    @Test
+    void runExclusively_JobThrows_StillUnlocks() throws SQLException {
+        // Given
+        when(dataSource.getConnection()).thenReturn(connection);
+        PreparedStatement tryLock = statementReturning(true);
+        PreparedStatement unlock = statementReturning(true);
+        when(connection.prepareStatement(TRY_LOCK)).thenReturn(tryLock);
+        when(connection.prepareStatement(UNLOCK)).thenReturn(unlock);
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> scheduledJobLockService.runExclusively("job", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        verify(unlock).executeQuery();
+    }
+
+    @Test
+    void runExclusively_UnlockFails_AbortsSession() throws SQLException {
+        // Given
+        when(dataSource.getConnection()).thenReturn(connection);
+        PreparedStatement tryLock = statementReturning(true);
+        when(connection.prepareStatement(TRY_LOCK)).thenReturn(tryLock);
+        when(connection.prepareStatement(UNLOCK)).thenThrow(new SQLException("connection reset"));
+
+        // When
+        assertTrue(scheduledJobLockService.runExclusively("job", runs::incrementAndGet));
+
+        // Then
+        verify(connection).abort(any());
+    }
+
+    @Test
+    void runExclusively_DatabaseDown_SkipsJob() throws SQLException {
+        // Given
+        when(dataSource.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        // When & Then
+        assertFalse(scheduledJobLockService.runExclusively("job", runs::incrementAndGet));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void runExclusively_Disabled_RunsWithoutLock() {
+        // Given
+        ReflectionTestUtils.setField(scheduledJobLockService, "enabled", false);
+
+        // When & Then
+        assertTrue(scheduledJobLockService.runExclusively("job", runs::incrementAndGet));
+        assertEquals(1, runs.get());
+        verifyNoInteractions(dataSource);
+    }
+
+    private PreparedStatement statementReturning(boolean value) throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getBoolean(1)).thenReturn(value);
+        return statement;
+    }
+}
@@ -0,0 +1,85 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.UserProgressMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserProgressReconciliationServiceTest {
+
+    @Mock
+    private UserProgressMapper userProgressMapper;
+
+    @InjectMocks
+    private UserProgressReconciliationService reconciliationService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reconciliationService, "batchSize", 100);
+        ReflectionTestUtils.setField(reconciliationService, "repairEnabled", true);
+    }
+
+    @Test
+    void reconcile_NoDrift_NothingRepaired() {
+        // Given
+        when(userProgressMapper.findDriftedUsers(100)).thenReturn(Collections.emptyList());
+
+        // When
+        int drifted = reconciliationService.reconcile();
+
+        // Then
+        assertEquals(0, drifted);
+        verify(userProgressMapper, never()).resyncFromLedger(any());
+    }
+
+    @Test
+    void reconcile_Drift_RepairsFromLedger() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        Map<String, Object> row = new HashMap<>();
+        row.put("userId", userId);
+        row.put("storedExp", 10.0);
+        row.put("ledgerExp", 15.0);
+        row.put("storedYuan", 2.0);
+        row.put("ledgerYuan", 2.0);
+        when(userProgressMapper.findDriftedUsers(100)).thenReturn(Collections.singletonList(row));
+
+        // When
+        int drifted = reconciliationService.reconcile();
+
+        // Then
+        assertEquals(1, drifted);
+        verify(userProgressMapper).lockByUserId(userId);
+        verify(userProgressMapper).resyncFromLedger(userId);
+    }
+
+    @Test
+    void reconcile_RepairDisabled_OnlyReports() {
+        // Given
+        ReflectionTestUtils.setField(reconciliationService, "repairEnabled", false);
+        Map<String, Object> row = new HashMap<>();
+        row.put("userId", UUID.randomUUID());
+        when(userProgressMapper.findDriftedUsers(100)).thenReturn(Collections.singletonList(row));
+
+        // When
+        int drifted = reconciliationService.reconcile();
+
+        // Then
+        assertEquals(1, drifted);
+        verify(userProgressMapper, never()).resyncFromLedger(any());
+    }
+}
@@ -0,0 +1,147 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.YuanReservationMapper;
+import com.yushan.gamification_service.entity.YuanReservation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class YuanReservationExpiryWheelTest {
+
+    @Mock
+    private YuanReservationMapper yuanReservationMapper;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private YuanReservationExpiryWheel expiryWheel;
+
+    private long now;
+    private final List<UUID> fired = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(expiryWheel, "enabled", true);
+        ReflectionTestUtils.setField(expiryWheel, "tickMillis", 100L);
+        ReflectionTestUtils.setField(expiryWheel, "wheelSize", 64);
+        ReflectionTestUtils.setField(expiryWheel, "rebuildPageSize", 2);
+        expiryWheel.init();
+        now = System.currentTimeMillis();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void schedule_FiresWithinATickOfExpiresAt() {
+        // Given
+        UUID reservationId = UUID.randomUUID();
+        expiryWheel.schedule(reservationId, at(now + 5_000));
+
+        // When
+        expiryWheel.tick(now + 4_999, fired::addAll);
+        assertTrue(fired.isEmpty());
+        expiryWheel.tick(now + 5_100, fired::addAll);
+
+        // Then
+        assertEquals(List.of(reservationId), fired);
+        assertEquals(1, meterRegistry.timer("gamification.yuan.expiry_wheel.lag").count());
+    }
+
+    @Test
+    void schedule_InTransaction_WaitsForCommit() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+        expiryWheel.schedule(UUID.randomUUID(), at(now));
+        assertEquals(0, expiryWheel.pending());
+
+        // When
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        // Then
+        assertEquals(1, expiryWheel.pending());
+    }
+
+    @Test
+    void rebuild_PagesThroughReservedReservations() {
+        // Given
+        YuanReservation first = reserved(1L, now - 1_000);
+        YuanReservation second = reserved(2L, now + 60_000);
+        YuanReservation third = reserved(3L, now + 120_000);
+        when(yuanReservationMapper.findReservedAfter(0L, 2)).thenReturn(List.of(first, second));
+        when(yuanReservationMapper.findReservedAfter(2L, 2)).thenReturn(List.of(third));
+
+        // When
+        assertEquals(3, expiryWheel.rebuild());
+        expiryWheel.tick(now + 100, fired::addAll);
+
+        // Then
+        assertEquals(List.of(first.getReservationId()), fired);
+        assertEquals(2, expiryWheel.pending());
+    }
+
+    @Test
+    void tick_HandlerFails_DoesNotThrow() {
+        // Given
+        expiryWheel.schedule(UUID.randomUUID(), at(now));
+
+        // When & Then
+        assertDoesNotThrow(() -> expiryWheel.tick(now + 200, ids -> {
+            throw new IllegalStateException("database down");
+        }));
+        assertEquals(0, expiryWheel.pending());
+    }
+
+    @Test
+    void disabled_SchedulesNothing() {
+        // Given
+        ReflectionTestUtils.setField(expiryWheel, "enabled", false);
+
+        // When
+        expiryWheel.schedule(UUID.randomUUID(), at(now));
+
+        // Then
+        assertEquals(0, expiryWheel.rebuild());
+        assertEquals(0, expiryWheel.pending());
+        verify(yuanReservationMapper, never()).findReservedAfter(eq(0L), anyInt());
+    }
+
+    private YuanReservation reserved(long id, long expiresAtMillis) {
+        YuanReservation reservation = new YuanReservation();
+        reservation.setId(id);
+        reservation.setReservationId(UUID.randomUUID());
+        reservation.setStatus(YuanReservation.ReservationStatus.RESERVED);
+        reservation.setExpiresAt(at(expiresAtMillis));
+        return reservation;
+    }
+
+    private OffsetDateTime at(long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,292 @@
+package com.yushan.gamification_service.service;
+
+import com.yushan.gamification_service.dao.YuanReservationMapper;
+import com.yushan.gamification_service.dto.event.YuanReservationReleasedEvent;
+import com.yushan.gamification_service.entity.UserProgress;
+import com.yushan.gamification_service.entity.YuanReservation;
+import com.yushan.gamification_service.entity.YuanTransaction;
+import com.yushan.gamification_service.exception.ValidationException;
+import com.yushan.gamification_service.repository.UserProgressRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class YuanReservationServiceTest {
+
+    @Mock
+    private YuanReservationMapper yuanReservationMapper;
+
+    @Mock
+    private UserProgressRepository userProgressRepository;
+
+    @Mock
+    private RedisYuanReservationEngine redisEngine;
+
+    @Mock
+    private YuanReservationExpiryWheel expiryWheel;
+
+    @Mock
+    private KafkaEventProducerService kafkaEventProducerService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private YuanReservationService yuanReservationService;
+
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(yuanReservationService, "reservationTimeoutMinutes", 5);
+        ReflectionTestUtils.setField(yuanReservationService, "sweepBatchSize", 2);
+        ReflectionTestUtils.setField(yuanReservationService, "sweepMaxBatches", 10);
+    }
+
+    @Test
+    void reserveYuan_Sufficient_ReservesInOneStatement() {
+        // Given
+        when(yuanReservationMapper.reserve(any(YuanReservation.class))).thenReturn(42L);
+
+        // When
+        UUID reservationId = yuanReservationService.reserveYuan(userId, 1.0, "saga-1");
+
+        // Then
+        ArgumentCaptor<YuanReservation> captor = ArgumentCaptor.forClass(YuanReservation.class);
+        verify(yuanReservationMapper).reserve(captor.capture());
+        YuanReservation reservation = captor.getValue();
+        assertEquals(reservationId, reservation.getReservationId());
+        assertEquals(userId, reservation.getUserId());
+        assertEquals(1.0, reservation.getAmount());
+        assertEquals("saga-1", reservation.getSagaId());
+        assertEquals(YuanReservation.ReservationStatus.RESERVED, reservation.getStatus());
+        assertEquals(42L, reservation.getId());
+        verify(expiryWheel).schedule(reservationId, reservation.getExpiresAt());
+        verifyNoInteractions(userProgressRepository);
+    }
+
+    @Test
+    void reserveYuan_Insufficient_ThrowsWithAvailableBalance() {
+        // Given
+        UserProgress progress = new UserProgress(userId, 0.0, 3.0);
+        progress.setYuanReserved(2.5);
+        when(yuanReservationMapper.reserve(any(YuanReservation.class))).thenReturn(null);
+        when(userProgressRepository.findUserProgressByUserId(userId)).thenReturn(Optional.of(progress));
+
+        // When & Then
+        ValidationException e = assertThrows(ValidationException.class,
+                () -> yuanReservationService.reserveYuan(userId, 1.0, "saga-1"));
+        assertTrue(e.getMessage().contains("Available: 0.5"));
+    }
+
+    @Test
+    void reserveYuan_SubCentAmount_ReservesStoredScale() {
+        // Given
+        when(yuanReservationMapper.reserve(any(YuanReservation.class))).thenReturn(42L);
+
+        // When
+        yuanReservationService.reserveYuan(userId, 0.335, "saga-1");
+
+        // Then: the amount added to yuan_reserved is the one release and confirm subtract again
+        ArgumentCaptor<YuanReservation> captor = ArgumentCaptor.forClass(YuanReservation.class);
+        verify(yuanReservationMapper).reserve(captor.capture());
+        assertEquals(0.34, captor.getValue().getAmount());
+    }
+
+    @Test
+    void reserveYuan_RoundsToZero_Throws() {
+        assertThrows(ValidationException.class, () -> yuanReservationService.reserveYuan(userId, 0.004, "saga-1"));
+        verifyNoInteractions(yuanReservationMapper);
+    }
+
+    @Test
+    void reserveYuan_InvalidAmount_Throws() {
+        assertThrows(ValidationException.class, () -> yuanReservationService.reserveYuan(userId, 0.0, "saga-1"));
+        verifyNoInteractions(yuanReservationMapper);
+    }
+
+    @Test
+    void confirmReservation_DeductsAndConfirms() {
+        // Given
+        UUID reservationId = UUID.randomUUID();
+        when(yuanReservationMapper.findByReservationId(reservationId)).thenReturn(reservation(reservationId, YuanReservation.ReservationStatus.RESERVED));
+        when(userProgressRepository.findUserProgressByUserId(userId)).thenReturn(Optional.of(new UserProgress(userId, 0.0, 5.0)));
+        when(yuanReservationMapper.confirmReservation(eq(reservationId), any(OffsetDateTime.class))).thenReturn(1);
+
+        // When
+        assertTrue(yuanReservationService.confirmReservation(reservationId, userId, userProgressRepository));
+
+        // Then: the reservation row is locked before user_progress, like every release path
+        InOrder inOrder = inOrder(yuanReservationMapper, userProgressRepository);
+        inOrder.verify(yuanReservationMapper).confirmReservation(eq(reservationId), any(OffsetDateTime.class));
+        ArgumentCaptor<YuanTransaction> captor = ArgumentCaptor.forClass(YuanTransaction.class);
+        inOrder.verify(userProgressRepository).saveYuanTransaction(captor.capture());
+        assertEquals(-1.0, captor.getValue().getAmount());
+    }
+
+    @Test
+    void confirmReservation_ReleasedConcurrently_ThrowsWithoutDeducting() {
+        // Given
+        UUID reservationId = UUID.randomUUID();
+        when(yuanReservationMapper.findByReservationId(reservationId)).thenReturn(reservation(reservationId, YuanReservation.ReservationStatus.RESERVED));
+        when(userProgressRepository.findUserProgressByUserId(userId)).thenReturn(Optional.of(new UserProgress(userId, 0.0, 5.0)));
+        when(yuanReservationMapper.confirmReservation(eq(reservationId), any(OffsetDateTime.class))).thenReturn(0);
+
+        // When & Then
+        assertThrows(ValidationException.class,
+                () -> yuanReservationService.confirmReservation(reservationId, userId, userProgressRepository));
+        verify(userProgressRepository, never()).saveYuanTransaction(any());
+    }
+
+    @Test
+    void releaseReservation_Reserved_ReleasesReservedAmount() {
+        // Given
+        UUID reservationId = UUID.randomUUID();
+        when(yuanReservationMapper.findByReservationId(reservationId)).thenReturn(reservation(reservationId, YuanReservation.ReservationStatus.RESERVED));
+        when(yuanReservationMapper.releaseReservation(eq(reservationId), any(OffsetDateTime.class))).thenReturn(1);
+
+        // When & Then
+        assertTrue(yuanReservationService.releaseReservation(reservationId, userId));
+        verify(yuanReservationMapper, never()).releaseConfirmedReservation(any(), any());
+    }
+
+    @Test
+    void releaseReservation_ConfirmedConcurrently_FallsBackToConfirmedTransition() {
+        // Given
+        UUID reservationId = UUID.randomUUID();
+        when(yuanReservationMapper.findByReservationId(reservationId)).thenReturn(reservation(reservationId, YuanReservation.ReservationStatus.RESERVED));
+        when(yuanReservationMapper.releaseReservation(eq(reservationId), any(OffsetDateTime.class))).thenReturn(0);
+        when(yuanReservationMapper.releaseConfirmedReservation(eq(reservationId), any(OffsetDateTime.class))).thenReturn(1);
+
+        // When & Then
+        assertTrue(yuanReservationService.releaseReservation(reservationId, userId));
+    }
+
+    @Test
+    void releaseReservation_Confirmed_DoesNotTouchReservedAmount() {
+        // Given
+        UUID reservationId = UUID.randomUUID();
+        when(yuanReservationMapper.findByReservationId(reservationId)).thenReturn(reservation(reservationId, YuanReservation.ReservationStatus.CONFIRMED));
+        when(yuanReservationMapper.releaseConfirmedReservation(eq(reservationId), any(OffsetDateTime.class))).thenReturn(1);
+
+        // When & Then
+        assertTrue(yuanReservationService.releaseReservation(reservationId, userId));
+        verify(yuanReservationMapper, never()).releaseReservation(any(), any());
+    }
+
+    @Test
+    void reserveYuan_RedisEngineEnabled_Delegates() {
+        // Given
+        UUID reservationId = UUID.randomUUID();
+        when(redisEngine.isEnabled()).thenReturn(true);
+        when(redisEngine.reserve(userId, 1.0, "saga-1")).thenReturn(reservationId);
+
+        // When & Then
+        assertEquals(reservationId, yuanReservationService.reserveYuan(userId, 1.0, "saga-1"));
+        verifyNoInteractions(yuanReservationMapper);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cleanupExpiredReservations_SweepsInBatchesUntilDrained() {
+        // Given
+        YuanReservation first = reservation(UUID.randomUUID(), YuanReservation.ReservationStatus.RELEASED);
+        YuanReservation second = reservation(UUID.randomUUID(), YuanReservation.ReservationStatus.RELEASED);
+        YuanReservation third = reservation(UUID.randomUUID(), YuanReservation.ReservationStatus.RELEASED);
+        when(yuanReservationMapper.releaseExpiredBatch(any(OffsetDateTime.class), eq(2)))
+                .thenReturn(List.of(first, second), List.of(third));
+
+        // When
+        int released = yuanReservationService.cleanupExpiredReservations();
+
+        // Then
+        assertEquals(3, released);
+        verify(yuanReservationMapper, times(2)).releaseExpiredBatch(any(OffsetDateTime.class), eq(2));
+        verify(transactionManager, times(2)).commit(any());
+        ArgumentCaptor<List<YuanReservationReleasedEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(kafkaEventProducerService, times(2)).publishYuanReservationReleasedEvents(captor.capture());
+        assertEquals(2, captor.getAllValues().get(0).size());
+        assertEquals(third.getReservationId(), captor.getAllValues().get(1).get(0).getReservationId());
+        assertEquals(3.0, meterRegistry.counter("gamification.yuan.expiry_sweep.released").count());
+        assertEquals(1, meterRegistry.timer("gamification.yuan.expiry_sweep").count());
+        verify(yuanReservationMapper, never()).findByReservationId(any());
+    }
+
+    @Test
+    void cleanupExpiredReservations_NothingExpired_PublishesNothing() {
+        // Given
+        when(yuanReservationMapper.releaseExpiredBatch(any(OffsetDateTime.class), eq(2))).thenReturn(List.of());
+
+        // When & Then
+        assertEquals(0, yuanReservationService.cleanupExpiredReservations());
+        verifyNoInteractions(kafkaEventProducerService);
+    }
+
+    @Test
+    void cleanupExpiredReservations_StopsAtMaxBatches() {
+        // Given
+        ReflectionTestUtils.setField(yuanReservationService, "sweepMaxBatches", 3);
+        when(yuanReservationMapper.releaseExpiredBatch(any(OffsetDateTime.class), eq(2)))
+                .thenAnswer(invocation -> List.of(
+                        reservation(UUID.randomUUID(), YuanReservation.ReservationStatus.RELEASED),
+                        reservation(UUID.randomUUID(), YuanReservation.ReservationStatus.RELEASED)));
+
+        // When & Then
+        assertEquals(6, yuanReservationService.cleanupExpiredReservations());
+        verify(yuanReservationMapper, times(3)).releaseExpiredBatch(any(OffsetDateTime.class), eq(2));
+    }
+
+    @Test
+    void releaseExpiredReservations_ReleasesByIdInBatches() {
+        // Given
+        List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        YuanReservation released = reservation(ids.get(0), YuanReservation.ReservationStatus.RELEASED);
+        when(yuanReservationMapper.releaseExpiredByIds(eq(ids.subList(0, 2)), any(OffsetDateTime.class)))
+                .thenReturn(List.of(released));
+        when(yuanReservationMapper.releaseExpiredByIds(eq(ids.subList(2, 3)), any(OffsetDateTime.class)))
+                .thenReturn(List.of());
+
+        // When
+        int count = yuanReservationService.releaseExpiredReservations(ids);
+
+        // Then
+        assertEquals(1, count);
+        verify(kafkaEventProducerService, times(1)).publishYuanReservationReleasedEvents(anyList());
+        assertEquals(1.0, meterRegistry.counter("gamification.yuan.expiry_wheel.released").count());
+    }
+
+    private YuanReservation reservation(UUID reservationId, YuanReservation.ReservationStatus status) {
+        YuanReservation reservation = new YuanReservation();
+        reservation.setReservationId(reservationId);
+        reservation.setUserId(userId);
+        reservation.setAmount(1.0);
+        reservation.setSagaId("saga-1");
+        reservation.setStatus(status);
+        reservation.setExpiresAt(OffsetDateTime.now().plusMinutes(5));
+        return reservation;
+    }
+}
@@ -0,0 +1,125 @@
+package com.yushan.gamification_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.yushan.gamification_service.dao.YuanTransactionMapper;
+import com.yushan.gamification_service.entity.YuanTransaction;
+import com.yushan.gamification_service.enums.ExportFormat;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class YuanTransactionExportServiceTest {
+
+    @Mock
+    private YuanTransactionMapper yuanTransactionMapper;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private YuanTransactionExportService exportService;
+
+    private final UUID userId = UUID.fromString("11111111-1111-1111-1111-111111111111");
+    private final OffsetDateTime createdAt = OffsetDateTime.of(2025, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC);
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        ReflectionTestUtils.setField(exportService, "objectMapper", objectMapper);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    private YuanTransaction row(long id, double amount, String description) {
+        YuanTransaction transaction = new YuanTransaction();
+        transaction.setId(id);
+        transaction.setUserId(userId);
+        transaction.setAmount(amount);
+        transaction.setDescription(description);
+        transaction.setCreatedAt(createdAt);
+        return transaction;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cursor<YuanTransaction> givenRows(List<YuanTransaction> rows) {
+        Cursor<YuanTransaction> cursor = mock(Cursor.class);
+        when(cursor.iterator()).thenReturn(rows.iterator());
+        when(yuanTransactionMapper.streamWithFilters(userId, null, null)).thenReturn(cursor);
+        return cursor;
+    }
+
+    @Test
+    void export_ndjson_shouldWriteOneObjectPerLineInReadOnlyTransaction() throws Exception {
+        // Given
+        Cursor<YuanTransaction> cursor = givenRows(List.of(row(1, 10.0, "Daily Login Reward"), row(2, -1.0, "Vote cost")));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // When
+        long written = exportService.export(userId, null, null, ExportFormat.NDJSON, output);
+
+        // Then
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, written);
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":1,"));
+        assertTrue(lines[1].contains("\"description\":\"Vote cost\""));
+        assertTrue(lines[1].contains("\"createdAt\":\"2025-01-02T03:04:05Z\""));
+        verify(cursor).close();
+        verify(transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
+    }
+
+    @Test
+    void export_csv_shouldQuoteAndEscapeDescriptions() throws Exception {
+        // Given
+        givenRows(List.of(row(1, 5.0, "Refund, \"manual\""), row(2, 1.0, "=HYPERLINK(\"x\")")));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // When
+        long written = exportService.export(userId, null, null, ExportFormat.CSV, output);
+
+        // Then
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, written);
+        assertEquals("id,user_id,amount,description,created_at", lines[0]);
+        assertEquals("1," + userId + ",5.0,\"Refund, \"\"manual\"\"\",2025-01-02T03:04:05Z", lines[1]);
+        assertEquals("2," + userId + ",1.0,\"'=HYPERLINK(\"\"x\"\")\",2025-01-02T03:04:05Z", lines[2]);
+    }
+
+    @Test
+    void export_noRows_shouldWriteNothingForNdjson() {
+        // Given
+        givenRows(List.of());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // When
+        long written = exportService.export(userId, null, null, ExportFormat.NDJSON, output);
+
+        // Then
+        assertEquals(0, written);
+        assertEquals(0, output.size());
+    }
+}
@@ -0,0 +1,62 @@
+package com.yushan.gamification_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    @Test
+    void advance_shouldFireWithinOneTickAfterDeadline() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 250);
+
+        assertTrue(wheel.advance(200).isEmpty());
+        assertTrue(wheel.advance(249).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(300));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_shouldNotFireItemsOfLaterRevolutionsSharingABucket() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 4, 0);
+        wheel.schedule("near", 200);
+        wheel.schedule("far", 600);
+
+        assertEquals(List.of("near"), wheel.advance(200));
+        assertTrue(wheel.advance(500).isEmpty());
+        assertEquals(List.of("far"), wheel.advance(600));
+    }
+
+    @Test
+    void schedule_pastDeadline_shouldFireOnNextAdvance() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 8, 1_000);
+        wheel.schedule("late", 10);
+
+        assertEquals(List.of("late"), wheel.advance(1_100));
+    }
+
+    @Test
+    void advance_afterLongPause_shouldFireEverythingDue() {
+        HashedTimingWheel<Integer> wheel = new HashedTimingWheel<>(10, 16, 0);
+        for (int i = 1; i <= 100; i++) {
+            wheel.schedule(i, i * 10L);
+        }
+        wheel.schedule(1_000, 5_000);
+
+        List<Integer> due = new ArrayList<>(wheel.advance(1_000));
+
+        assertEquals(100, due.size());
+        assertFalse(due.contains(1_000));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void constructor_shouldRejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel<>(0, 8, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel<>(100, 0, 0));
+    }
+}
@@ -0,0 +1,73 @@
+package com.yushan.gamification_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void put_shouldNeverProduceFalseNegatives() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+
+        for (int i = 0; i < 5_000; i++) {
+            filter.put("idempotency:comment-reward:" + i);
+        }
+
+        for (int i = 0; i < 5_000; i++) {
+            assertTrue(filter.mightContain("idempotency:comment-reward:" + i));
+        }
+    }
+
+    @Test
+    void put_beyondCapacity_shouldAddStages() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+        long initialMemory = filter.memoryBytes();
+
+        for (int i = 0; i < 1_000; i++) {
+            filter.put("key-" + i);
+        }
+
+        assertTrue(filter.stageCount() > 1);
+        assertTrue(filter.memoryBytes() > initialMemory);
+        assertTrue(filter.approximateCount() <= 1_000);
+        assertTrue(filter.approximateCount() > 900);
+    }
+
+    @Test
+    void mightContain_shouldStayNearTargetFalsePositiveRate() {
+        double targetFpp = 0.01;
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, targetFpp);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("processed-" + i);
+        }
+
+        int falsePositives = 0;
+        int probes = 20_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("unseen-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // Generous margin: the bound is statistical
+        assertTrue((double) falsePositives / probes < targetFpp * 2,
+                "false-positive rate too high: " + falsePositives + "/" + probes);
+        assertTrue(filter.expectedFpp() < targetFpp * 2);
+    }
+
+    @Test
+    void hash_shouldMatchMurmur3ReferenceValue() {
+        // MurmurHash3_x64_128("hello", seed 0) = cbd8a7b341bd9b02 5b1e906a48ae1d19
+        long[] hash = ScalableBloomFilter.hash("hello");
+
+        assertEquals(0xcbd8a7b341bd9b02L, hash[0]);
+        assertEquals(0x5b1e906a48ae1d19L, hash[1]);
+    }
+
+    @Test
+    void constructor_invalidArguments_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(100, 1.0));
+    }
+}
@@ -0,0 +1,43 @@
+package com.yushan.gamification_service.util;
+
+import com.yushan.gamification_service.exception.ValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionCursorTest {
+
+    @Test
+    void encodeDecode_shouldRoundTripWithMicroseconds() {
+        TransactionCursor cursor = new TransactionCursor(LocalDateTime.of(2025, 3, 1, 12, 30, 45, 123456000), 42L);
+
+        TransactionCursor decoded = TransactionCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+    }
+
+    @Test
+    void of_shouldNormaliseToUtc() {
+        OffsetDateTime createdAt = OffsetDateTime.of(2025, 3, 1, 19, 0, 0, 0, ZoneOffset.ofHours(7));
+
+        TransactionCursor cursor = TransactionCursor.of(createdAt, 7L);
+
+        assertEquals(LocalDateTime.of(2025, 3, 1, 12, 0), cursor.createdAt());
+        assertEquals(7L, cursor.id());
+    }
+
+    @Test
+    void decode_blank_shouldReturnNull() {
+        assertNull(TransactionCursor.decode(null));
+        assertNull(TransactionCursor.decode(" "));
+    }
+
+    @Test
+    void decode_garbage_shouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> TransactionCursor.decode("not-a-cursor"));
+    }
+}